@@ -51,6 +51,11 @@ public class DataStreamElement {
      */
     public final long offset;
 
+    /**
+     * Timestamp of the data stream element (ConsumerRecord.timestamp())
+     */
+    public final long timestamp;
+
     /**
      * DataStreamElement constructor.
      *
@@ -59,13 +64,15 @@ public class DataStreamElement {
      * @param topic     Topic from which the data stream element was consumed
      * @param partition Partition from which the data stream element was consumed
      * @param offset    Offset of the data stream element in the partition
+     * @param timestamp Timestamp of the data stream element
      */
-    public DataStreamElement(byte[] content, String key, String topic, int partition, long offset) {
+    public DataStreamElement(byte[] content, String key, String topic, int partition, long offset, long timestamp) {
         this.content = content;
         this.key = key;
         this.topic = topic;
         this.partition = partition;
         this.offset = offset;
+        this.timestamp = timestamp;
     }
 
     /**
@@ -74,7 +81,7 @@ public class DataStreamElement {
      * @param record Kafka ConsumerRecord
      */
     public DataStreamElement(ConsumerRecord<String, byte[]> record) {
-        this(record.value(), record.key(), record.topic(), record.partition(), record.offset());
+        this(record.value(), record.key(), record.topic(), record.partition(), record.offset(), record.timestamp());
     }
 
     /**
@@ -97,6 +104,8 @@ public class DataStreamElement {
         buffer.append(this.partition);
         buffer.append(",offset=");
         buffer.append(this.offset);
+        buffer.append(",timestamp=");
+        buffer.append(this.timestamp);
         buffer.append("]");
         return buffer.toString();
     }
@@ -107,21 +116,61 @@ public class DataStreamElement {
      * @return JSON representation of the data stream element
      */
     public String getConsumeResultJson() {
-        StringBuffer buffer = new StringBuffer("{\"v\":\"");
+        StringBuffer buffer = new StringBuffer();
+        appendConsumeResultJson(buffer, this.content, this.key, this.topic, this.partition, this.offset, this.timestamp);
+        return buffer.toString();
+    }
 
-        // https://stackoverflow.com/questions/20706783/put-byte-array-to-json-and-vice-versa
-        String base64String = Base64.encodeBase64String(this.content);
-        buffer.append(base64String);
+    /**
+     * Appends the JSON representation of a data stream element to a buffer (enables rendering buffered data stream elements without creating DataStreamElement objects).
+     *
+     * @param buffer    Buffer to which the JSON representation is appended
+     * @param content   Content of the data stream element
+     * @param key       Key of the data stream element
+     * @param topic     Topic from which the data stream element was consumed
+     * @param partition Partition from which the data stream element was consumed
+     * @param offset    Offset of the data stream element in the partition
+     * @param timestamp Timestamp of the data stream element
+     */
+    public static void appendConsumeResultJson(StringBuffer buffer, byte[] content, String key, String topic, int partition, long offset, long timestamp) {
+        appendConsumeResultJson(buffer, content, null, key, topic, partition, offset, timestamp);
+    }
 
-        buffer.append("\",\"k\":\"");
-        buffer.append(this.key);
+    /**
+     * Appends the JSON representation of a data stream element with an optionally decoded content to a buffer.
+     *
+     * @param buffer      Buffer to which the JSON representation is appended
+     * @param content     Content of the data stream element
+     * @param decodedJson JSON representation of the decoded content which is embedded instead of the base64-encoded content, or null
+     * @param key         Key of the data stream element
+     * @param topic       Topic from which the data stream element was consumed
+     * @param partition   Partition from which the data stream element was consumed
+     * @param offset      Offset of the data stream element in the partition
+     * @param timestamp   Timestamp of the data stream element
+     */
+    public static void appendConsumeResultJson(StringBuffer buffer, byte[] content, String decodedJson, String key, String topic, int partition, long offset, long timestamp) {
+        if (decodedJson != null) {
+            buffer.append("{\"v\":");
+            buffer.append(decodedJson);
+            buffer.append(",\"k\":\"");
+        } else {
+            buffer.append("{\"v\":\"");
+
+            // https://stackoverflow.com/questions/20706783/put-byte-array-to-json-and-vice-versa
+            String base64String = Base64.encodeBase64String(content);
+            buffer.append(base64String);
+
+            buffer.append("\",\"k\":\"");
+        }
+        buffer.append(key);
         buffer.append("\",\"t\":\"");
-        buffer.append(this.topic);
+        buffer.append(topic);
         buffer.append("\",\"p\":");
-        buffer.append(this.partition);
+        buffer.append(partition);
         buffer.append(",\"o\":");
-        buffer.append(this.offset);
+        buffer.append(offset);
+        buffer.append(",\"ts\":");
+        buffer.append(timestamp);
         buffer.append("}");
-        return buffer.toString();
     }
 }
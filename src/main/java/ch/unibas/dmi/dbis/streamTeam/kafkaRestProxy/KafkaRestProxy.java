@@ -18,12 +18,42 @@
 
 package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy;
 
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.aggregate.AggregateStore;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.DataStreamBuffer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.Downsampler;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.LatestValueTable;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.RingBuffer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.DataStreamCursor;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.TopicBuffer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer.ClusterSource;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer.DeepReadCursor;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer.HistoricalFetcher;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer.StreamConsumer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.DecoderRegistry;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.PayloadDecoder;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.embedded.DataStreamListener;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.embedded.ListenerSubscription;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilterCache;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.GrpcServer;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ErrorCode;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer.RecordProducer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushHandler;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushHub;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.AdmissionHandler;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RequestHandler;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.ServerFactory;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard.ShardHandler;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard.ShardRouter;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill.SpillStore;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats.KeyStatistics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,13 +61,20 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main simulation class which reads data stream elements from the sensor data file and generates the sensor data stream w.r.t. the current match time.
+ * The constructor starts all components and returns. Besides the REST API (optional), the KafkaRestProxy can be embedded in a JVM service and used with its typed Java API
+ * (snapshots, cursor reads, latest values and subscriptions) which returns the buffered DataStreamElements without serialization.
  */
 public class KafkaRestProxy {
 
@@ -54,17 +91,77 @@ public class KafkaRestProxy {
     /**
      * Buffer
      */
-    private ConcurrentHashMap<String, ConcurrentHashMap<String, LinkedList<DataStreamElement>>> buffer;
+    private final DataStreamBuffer buffer;
 
     /**
-     * The number of data stream elements that are buffered for each topic-key-combination (includig the dedicated all-key)
+     * Dedicated all-key which enables additionally storing the latest data stream elements of a topic for all keys
      */
-    private final int bufferSize;
+    private final String dedicatedAllKey;
 
     /**
-     * Dedicated all-key which enables additionally storing the latest data stream elements of a topic for all keys
+     * HistoricalFetchers for deep reads per cluster name (every cluster is read with its own KafkaConsumers) or null if deep reads are disabled
      */
-    private final String dedicatedAllKey;
+    private final Map<String, HistoricalFetcher> historicalFetchers;
+
+    /**
+     * AggregateStore for the sliding-window aggregates or null if aggregates are disabled
+     */
+    private final AggregateStore aggregateStore;
+
+    /**
+     * KeyStatistics for the heavy-hitter statistics or null if statistics are disabled
+     */
+    private final KeyStatistics keyStatistics;
+
+    /**
+     * Payload decoders per topic (/consume?...&fmt=json)
+     */
+    private final DecoderRegistry decoderRegistry;
+
+    /**
+     * Compiled filters and projections per query string (/consume?...&filter=...&fields=...)
+     */
+    private final ElementFilterCache elementFilterCache;
+
+    /**
+     * Limit above which /consume REST API calls which are served from a single ring buffer are streamed
+     */
+    private final int streamingThreshold;
+
+    /**
+     * Number of data stream elements which are rendered and flushed per chunk of a streamed /consume REST API call
+     */
+    private final int streamingChunkElements;
+
+    /**
+     * Producer for the /produce REST API calls or null if producing is disabled
+     */
+    private final RecordProducer recordProducer;
+
+    /**
+     * Routes the ingested data stream elements to the WebSocket push sessions, the gRPC subscriptions and the embedded listeners
+     */
+    private final PushHub pushHub;
+
+    /**
+     * Routes the topics to the nodes of the sharded proxy cluster or null if sharding is disabled
+     */
+    private final ShardRouter shardRouter;
+
+    /**
+     * Kafka clusters from which the StreamConsumers ingest (home cluster first)
+     */
+    private final List<ClusterSource> clusterSources;
+
+    /**
+     * Threads of the StreamConsumers
+     */
+    private final List<Thread> streamConsumerThreads;
+
+    /**
+     * Jetty server or null if the REST API is disabled
+     */
+    private final Server server;
 
     /**
      * Creates and starts the KafkaRestProxy.
@@ -87,6 +184,7 @@ public class KafkaRestProxy {
         }
 
         KafkaRestProxy sensorSimulator = new KafkaRestProxy(properties);
+        sensorSimulator.join();
     }
 
     /**
@@ -95,31 +193,161 @@ public class KafkaRestProxy {
      * @param properties Properties
      */
     public KafkaRestProxy(Properties properties) {
+        this(properties, null);
+    }
+
+    /**
+     * KafkaRestProxy constructor which uses the given Kafka consumer as record source for the StreamConsumer of the home cluster.
+     *
+     * @param properties    Properties
+     * @param kafkaConsumer Kafka consumer (e.g., a MockConsumer) or null to create the Kafka consumers from the properties
+     */
+    public KafkaRestProxy(Properties properties, Consumer<String, byte[]> kafkaConsumer) {
+        this(properties, kafkaConsumer, null);
+    }
+
+    /**
+     * KafkaRestProxy constructor which uses the given Kafka consumer as record source for the StreamConsumer of the home cluster and the given Kafka producer for the /produce REST API calls.
+     * The given Kafka consumer replaces all consumer threads of the home cluster, the additional clusters are always consumed with KafkaConsumers.
+     *
+     * @param properties    Properties
+     * @param kafkaConsumer Kafka consumer (e.g., a MockConsumer) or null to create the Kafka consumers from the properties
+     * @param kafkaProducer Kafka producer (e.g., a MockProducer) or null to create the Kafka producer from the properties
+     */
+    public KafkaRestProxy(Properties properties, Consumer<String, byte[]> kafkaConsumer, Producer<String, byte[]> kafkaProducer) {
         this.properties = properties;
 
-        this.buffer = new ConcurrentHashMap<>();
-        this.bufferSize = PropertyReadHelper.readIntOrDie(properties, "bufferSize");
+        int bufferSize = PropertyReadHelper.readIntOrDie(properties, "bufferSize");
+        if (PropertyReadHelper.readBooleanOrDie(properties, "spill.enabled")) {
+            SpillStore spillStore = new SpillStore(properties);
+            ShutdownHelper.addCloseable(spillStore);
+            Thread spillStoreThread = new Thread(spillStore);
+            spillStoreThread.start();
+            this.buffer = new DataStreamBuffer(bufferSize, spillStore);
+        } else {
+            this.buffer = new DataStreamBuffer(bufferSize);
+        }
         this.dedicatedAllKey = PropertyReadHelper.readStringOrDie(properties, "dedicatedAllKey");
-        int port = PropertyReadHelper.readIntOrDie(properties, "jetty.port");
 
-        // Start StreamConsumer
-        StreamConsumer streamConsumer = new StreamConsumer(properties, this);
-        ShutdownHelper.addCloseable(streamConsumer);
-        Thread streamConsumerThead = new Thread(streamConsumer);
-        streamConsumerThead.start();
+        this.clusterSources = ClusterSource.createClusterSources(properties);
+
+        if (PropertyReadHelper.readBooleanOrDie(properties, "deepRead.enabled")) {
+            this.historicalFetchers = new HashMap<>();
+            for (ClusterSource clusterSource : this.clusterSources) {
+                HistoricalFetcher historicalFetcher = new HistoricalFetcher(properties, clusterSource.getBrokerList());
+                ShutdownHelper.addCloseable(historicalFetcher);
+                this.historicalFetchers.put(clusterSource.name, historicalFetcher);
+            }
+        } else {
+            this.historicalFetchers = null;
+        }
+
+        if (PropertyReadHelper.readBooleanOrDie(properties, "aggregate.enabled")) {
+            this.aggregateStore = new AggregateStore(properties);
+        } else {
+            this.aggregateStore = null;
+        }
+
+        this.decoderRegistry = new DecoderRegistry(properties);
+        this.elementFilterCache = new ElementFilterCache(PropertyReadHelper.readIntOrDie(properties, "filter.cachedQueries"));
+        this.streamingThreshold = PropertyReadHelper.readIntOrDie(properties, "consume.streamingThreshold");
+        this.streamingChunkElements = PropertyReadHelper.readIntOrDie(properties, "consume.streamingChunkElements");
+
+        if (PropertyReadHelper.readBooleanOrDie(properties, "stats.enabled")) {
+            this.keyStatistics = new KeyStatistics(properties);
+        } else {
+            this.keyStatistics = null;
+        }
+
+        this.pushHub = new PushHub(properties, this.dedicatedAllKey);
+
+        if (PropertyReadHelper.readBooleanOrDie(properties, "produce.enabled")) {
+            this.recordProducer = new RecordProducer(properties, kafkaProducer, this::ingest);
+            ShutdownHelper.addCloseable(this.recordProducer);
+        } else {
+            this.recordProducer = null;
+        }
+
+        // Join the sharded proxy cluster (before the StreamConsumers subscribe such that they only subscribe the owned topics)
+        if (PropertyReadHelper.readBooleanOrDie(properties, "shard.enabled")) {
+            this.shardRouter = new ShardRouter(properties, this::dropForeignTopics);
+            ShutdownHelper.addCloseable(this.shardRouter);
+            Thread shardRouterThread = new Thread(this.shardRouter, "ShardRouter");
+            shardRouterThread.setDaemon(true);
+            shardRouterThread.start();
+        } else {
+            this.shardRouter = null;
+        }
+
+        // Start StreamConsumers (every cluster with its own consumer threads)
+        this.streamConsumerThreads = new ArrayList<>();
+        for (ClusterSource clusterSource : this.clusterSources) {
+            boolean injected = kafkaConsumer != null && clusterSource == this.clusterSources.get(0);
+            int consumerThreads = injected ? 1 : clusterSource.getConsumerThreads();
+            for (int i = 0; i < consumerThreads; ++i) {
+                StreamConsumer streamConsumer = injected ? new StreamConsumer(properties, this, kafkaConsumer, clusterSource) : new StreamConsumer(properties, this, clusterSource);
+                ShutdownHelper.addCloseable(streamConsumer);
+                Thread streamConsumerThread = new Thread(streamConsumer, "StreamConsumer-" + clusterSource.name + "-" + i);
+                streamConsumerThread.start();
+                this.streamConsumerThreads.add(streamConsumerThread);
+            }
+        }
+        logger.info("Started StreamConsumers for {} cluster(s).", this.clusterSources.size());
+
+        // Start gRPC server
+        if (PropertyReadHelper.readBooleanOrDie(properties, "grpc.enabled")) {
+            try {
+                GrpcServer grpcServer = new GrpcServer(properties, this, this.pushHub);
+                ShutdownHelper.addCloseable(grpcServer);
+            } catch (IOException e) {
+                logger.error("Caught exception during gRPC server start.", e);
+                ShutdownHelper.shutdown(ErrorCode.ServerException);
+            }
+        }
 
         // Start Jetty server
-        Server server = new Server(port);
-        RequestHandler requestHandler = new RequestHandler(this);
-        server.setHandler(requestHandler);
+        if (PropertyReadHelper.readBooleanOrDie(properties, "jetty.enabled")) {
+            Handler handler = new RequestHandler(this, properties);
+            if (PropertyReadHelper.readBooleanOrDie(properties, "push.enabled")) {
+                handler = new PushHandler(handler, this.pushHub, properties);
+            }
+            if (this.shardRouter != null) {
+                ShardHandler shardHandler = new ShardHandler(handler, this, this.shardRouter, properties);
+                ShutdownHelper.addCloseable(shardHandler);
+                handler = shardHandler;
+            }
+            if (PropertyReadHelper.readBooleanOrDie(properties, "admission.enabled")) {
+                handler = new AdmissionHandler(handler, this, properties);
+            }
+            this.server = ServerFactory.createServer(properties, handler);
+            try {
+                this.server.start();
+                JettyCloseHelper jettyCloseHelper = new JettyCloseHelper(this.server);
+                ShutdownHelper.addCloseable(jettyCloseHelper);
+            } catch (Exception e) {
+                logger.error("Caught exception during Jetty server start.", e);
+                ShutdownHelper.shutdown(ErrorCode.ServerException);
+            }
+        } else {
+            this.server = null;
+            logger.info("Jetty server is disabled (embedded Java API and gRPC only).");
+        }
+    }
+
+    /**
+     * Blocks until the KafkaRestProxy has been stopped (until the Jetty server has been stopped or, if the REST API is disabled, until the StreamConsumers have been closed).
+     */
+    public void join() {
         try {
-            server.start();
-            JettyCloseHelper jettyCloseHelper = new JettyCloseHelper(server);
-            ShutdownHelper.addCloseable(jettyCloseHelper);
-            server.join();
-        } catch (Exception e) {
-            logger.error("Caught exception during Jetty server start or join.", e);
-            ShutdownHelper.shutdown(ErrorCode.ServerException);
+            if (this.server != null) {
+                this.server.join();
+            } else {
+                for (Thread streamConsumerThread : this.streamConsumerThreads) {
+                    streamConsumerThread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.trace("InterruptedException while joining the KafkaRestProxy.", e);
         }
     }
 
@@ -164,56 +392,222 @@ public class KafkaRestProxy {
     }
 
     /**
-     * Adds a new data stream element to the buffer (thread-safe).
+     * Adds a new data stream element to the buffer (thread-safe). Data stream elements which have already been reflected by the RecordProducer are skipped.
      *
      * @param dataStreamElement
      */
     public void addToBuffer(DataStreamElement dataStreamElement) {
-        // Get or create map for the topic of the dataStreamElement
-        ConcurrentHashMap<String, LinkedList<DataStreamElement>> mapForTopic;
-        synchronized (this.buffer) { // to ensure that the mapForTopic is not replaced with an empty map after it has been filled with a listForKey and a data stream element (can happen if there is a context switch between creating an empty map and adding it to the map)
-            if (this.buffer.containsKey(dataStreamElement.topic)) {
-                mapForTopic = this.buffer.get(dataStreamElement.topic);
-            } else {
-                mapForTopic = new ConcurrentHashMap<>();
-                this.buffer.put(dataStreamElement.topic, mapForTopic);
-            }
+        if (this.recordProducer != null && this.recordProducer.consumeReflected(dataStreamElement.topic, dataStreamElement.partition, dataStreamElement.offset)) {
+            return;
         }
+        ingest(dataStreamElement);
+    }
 
-        // Get or create queue for the topic and the key of the dataStreamElement
-        LinkedList<DataStreamElement> listForKey;
-        LinkedList<DataStreamElement> listForAll;
-        synchronized (mapForTopic) { // to ensure that the listForKey is not replaced with an empty list after it has been filled with a data stream element (can happen if there is a context switch between creating an empty list and adding it to the map)
-            if (mapForTopic.containsKey(dataStreamElement.key)) {
-                listForKey = mapForTopic.get(dataStreamElement.key);
-            } else {
-                listForKey = new LinkedList();
-                mapForTopic.put(dataStreamElement.key, listForKey);
-            }
+    /**
+     * Adds a consumed or reflected data stream element to the buffer, the aggregates and the statistics (thread-safe).
+     *
+     * @param dataStreamElement Data stream element
+     */
+    private void ingest(DataStreamElement dataStreamElement) {
+        if (!ownsTopic(dataStreamElement.topic)) { // consumed before the StreamConsumer has dropped the subscription of a moved topic
+            return;
+        }
+        this.buffer.add(dataStreamElement);
+        if (this.aggregateStore != null) {
+            this.aggregateStore.add(dataStreamElement);
+        }
+        if (this.keyStatistics != null) {
+            this.keyStatistics.countIngest(dataStreamElement.topic, dataStreamElement.key);
+        }
+        this.pushHub.publish(dataStreamElement);
+    }
 
-            if (mapForTopic.containsKey(this.dedicatedAllKey)) {
-                listForAll = mapForTopic.get(this.dedicatedAllKey);
-            } else {
-                listForAll = new LinkedList();
-                mapForTopic.put(this.dedicatedAllKey, listForAll);
+    /**
+     * Checks if this node serves a topic. Without sharding, every topic is served.
+     *
+     * @param topic Topic (in the buffer)
+     * @return True if this node owns the topic
+     */
+    public boolean ownsTopic(String topic) {
+        return this.shardRouter == null || this.shardRouter.isOwner(topic);
+    }
+
+    /**
+     * Removes the buffered data stream elements of the topics which are owned by another node after a membership change of the sharded proxy cluster.
+     * The topics which have moved to this node are subscribed by the StreamConsumers with their next subscription update.
+     */
+    private void dropForeignTopics() {
+        for (String topic : new ArrayList<>(this.buffer.getTopics())) {
+            if (!ownsTopic(topic) && this.buffer.removeTopic(topic)) {
+                logger.info("Removed topic {} which is now owned by {}.", topic, this.shardRouter.getOwner(topic));
             }
         }
+    }
 
-        synchronized (listForKey) { // to ensure that listForKey is only modified or read by one thread at a time
-            if (listForKey.size() == this.bufferSize) {
-                listForKey.removeLast();
-            }
-            listForKey.addFirst(dataStreamElement);
+    /**
+     * Produces the records of a /produce REST API call.
+     *
+     * @param topic     Topic (?t=...) of the /produce REST API call
+     * @param records   Records of the /produce REST API call
+     * @param awaitAcks False for fire-and-forget, true if the RestResult should contain the acknowledgments
+     * @return Future which is completed with the RestResult
+     */
+    public CompletableFuture<RestResult> produce(String topic, List<ProducerRecord<String, byte[]>> records, boolean awaitAcks) {
+        if (this.recordProducer == null) {
+            return CompletableFuture.completedFuture(RestResult.generateNotImplementedResult("/produce"));
         }
+        return this.recordProducer.send(topic, records, awaitAcks);
+    }
 
-        synchronized (listForAll) { // to ensure that listForAll is only modified or read by one thread at a time
-            if (listForAll.size() == this.bufferSize) {
-                listForAll.removeLast();
-            }
-            listForAll.addFirst(dataStreamElement);
+    /**
+     * Adds the latest data stream elements of a topic or topic-key-combination (latest first) to the list (for the typed gRPC and Java APIs, served from the ring buffers only).
+     * The contents are shared with the buffer and must not be modified.
+     *
+     * @param topic  Topic
+     * @param key    Key or null for all keys
+     * @param limit  Maximum number of data stream elements
+     * @param from   Start of the time range (inclusive)
+     * @param to     End of the time range (inclusive)
+     * @param cursor Cursor of the previous call (only data stream elements which have been added since then are added) or 0 for all
+     * @param result List to which the data stream elements are added
+     * @return Cursor for the next call
+     */
+    public long collectDataStreamElements(String topic, String key, int limit, long from, long to, long cursor, List<DataStreamElement> result) {
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer == null) {
+            return cursor;
+        }
+        if (key == null || key.equals(this.dedicatedAllKey)) {
+            return topicBuffer.collectForAll(limit, from, to, cursor, result);
+        }
+        RingBuffer ringBuffer = topicBuffer.getRingBufferForKey(key);
+        if (ringBuffer == null) {
+            return cursor;
+        }
+        return ringBuffer.collect(topicBuffer.topic, limit, from, to, cursor, result);
+    }
+
+    /**
+     * Returns the latest data stream elements of a topic or topic-key-combination (latest first, snapshot for the typed Java API, served from the ring buffers only).
+     * The contents are shared with the buffer and must not be modified.
+     *
+     * @param topic Topic
+     * @param key   Key or null for all keys
+     * @param limit Maximum number of data stream elements
+     * @return Data stream elements
+     */
+    public List<DataStreamElement> getDataStreamElements(String topic, String key, int limit) {
+        List<DataStreamElement> result = new ArrayList<>();
+        collectDataStreamElements(topic, key, limit, Long.MIN_VALUE, Long.MAX_VALUE, 0, result);
+        return result;
+    }
+
+    /**
+     * Returns the latest data stream element of a topic-key-combination (for the typed Java API). The content is shared with the buffer and must not be modified.
+     *
+     * @param topic Topic
+     * @param key   Key
+     * @return Latest data stream element or null if there is no data stream element for the topic-key-combination
+     */
+    public DataStreamElement getLatestDataStreamElement(String topic, String key) {
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        return topicBuffer == null ? null : topicBuffer.getLatestValueTable().get(topicBuffer.topic, key);
+    }
+
+    /**
+     * Adds the latest data stream element of every key of a topic which has been updated since the given version to the list (for the typed Java API, like the /latest REST API call).
+     * The contents are shared with the buffer and must not be modified.
+     *
+     * @param topic        Topic
+     * @param keys         Keys or null for all keys
+     * @param sinceVersion Version of the previous call or 0 for all keys
+     * @param result       List to which the data stream elements are added
+     * @return Version for the next call
+     */
+    public long collectLatestDataStreamElements(String topic, Collection<String> keys, long sinceVersion, List<DataStreamElement> result) {
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer == null) {
+            return sinceVersion;
+        }
+        LatestValueTable latestValueTable = topicBuffer.getLatestValueTable();
+        long version = latestValueTable.getVersion(); // read before the data stream elements such that no update is missed by the next incremental call
+        latestValueTable.collectLatest(topicBuffer.topic, keys, sinceVersion, result);
+        return version;
+    }
+
+    /**
+     * Subscribes a listener to the new data stream elements of a topic or topic-key-combination (for the typed Java API).
+     * The listener is called on the ingest path without any serialization, close the returned subscription to unsubscribe.
+     *
+     * @param topic    Topic
+     * @param key      Key or null for all keys
+     * @param listener Listener
+     * @return Subscription
+     */
+    public ListenerSubscription subscribe(String topic, String key, DataStreamListener listener) {
+        ListenerSubscription subscription = new ListenerSubscription(this.pushHub, topic, key == null ? this.dedicatedAllKey : key, listener);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Returns the topics (for the typed gRPC and Java APIs).
+     *
+     * @return Topics
+     */
+    public Collection<String> getTopics() {
+        return this.buffer.getTopics();
+    }
+
+    /**
+     * Adds the keys of a topic to the list (for the typed gRPC and Java APIs).
+     *
+     * @param topic  Topic
+     * @param prefix Prefix of the keys (empty for all keys)
+     * @param after  Only keys which are greater than this key are added, or null to start with the first key
+     * @param max    Maximum number of keys
+     * @param keys   List to which the keys are added
+     * @return True if there are further keys which start with the prefix after the added keys
+     */
+    public boolean getKeys(String topic, String prefix, String after, int max, List<String> keys) {
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        return topicBuffer != null && topicBuffer.getKeys(prefix, after, max, keys);
+    }
+
+    /**
+     * Counts a /consume REST API call for the read-side heavy-hitter statistics.
+     *
+     * @param topic Topic (?t=...) of the /consume REST API call
+     * @param key   Key (?k=...) of the /consume REST API call, or null if /comsume had no key
+     */
+    public void countRead(String topic, String key) {
+        if (this.keyStatistics != null) {
+            this.keyStatistics.countRead(topic, key == null ? this.dedicatedAllKey : key);
         }
     }
 
+    /**
+     * Estimates the size of the contents of a /consume REST API call (for the cost model of the admission control).
+     *
+     * @param topic Topic (?t=...) of the /consume REST API call
+     * @param limit Limit (?l=...) of the /consume REST API call, or Integer.MAX_VALUE if /consume had no limit
+     * @return Estimated size of the contents in bytes
+     */
+    public long estimateContentBytes(String topic, int limit) {
+        return this.buffer.estimateContentBytes(topic, limit);
+    }
+
+    /**
+     * Returns the compiled filter and projection for the filter and fields parameters of a /consume REST API call (cached per query string).
+     *
+     * @param filter Filter (?filter=...) of the /consume REST API call, or null if /consume had no filter
+     * @param fields Fields (?fields=...) of the /consume REST API call, or null if /consume had no fields
+     * @return Compiled filter and projection
+     * @throws IllegalArgumentException Thrown if a filter clause or a field is invalid
+     */
+    public ElementFilter getElementFilter(String filter, String fields) throws IllegalArgumentException {
+        return this.elementFilterCache.get(filter, fields);
+    }
 
     /**
      * Generates the RestResult for a /consume REST API call with a limit parameter.
@@ -224,28 +618,117 @@ public class KafkaRestProxy {
      * @return RestResult
      */
     public RestResult getDataStreamElementsWithLimit(String topic, String key, int limit) {
-        if (this.buffer.containsKey(topic)) {
-            ConcurrentHashMap<String, LinkedList<DataStreamElement>> mapForTopic = this.buffer.get(topic);
+        return getDataStreamElementsInTimeRange(topic, key, limit, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Generates the RestResult for a /consume REST API call with a time range.
+     *
+     * @param topic Topic (?t=...) of the /consume REST API call
+     * @param key   Key (?k=...) of the /consume REST API call (a trailing * matches all keys with the prefix), or null if /comsume had no key
+     * @param limit Limit (?l=...) of the /consume REST API call, or Integer.MAX_VALUE if /consume had no limit
+     * @param from  Start of the time range (?from=...) of the /consume REST API call (inclusive), or Long.MIN_VALUE if /consume had no start
+     * @param to    End of the time range (?to=...) of the /consume REST API call (inclusive), or Long.MAX_VALUE if /consume had no end
+     * @param deep  True if data stream elements which are older than the buffered data stream elements should be fetched from Kafka (?deep=true) if the buffer does not contain enough data stream elements
+     * @return RestResult
+     */
+    public RestResult getDataStreamElementsInTimeRange(String topic, String key, int limit, long from, long to, boolean deep) {
+        return getDataStreamElementsInTimeRange(topic, key, -1, limit, from, to, deep, null, false, null);
+    }
+
+    /**
+     * Generates the RestResult for a /consume REST API call with a time range, optional downsampling, optionally decoded contents, an optional filter and projection and an optional partition.
+     * Reads of all keys are served by merging the partition ring buffers (latest first), partition-scoped reads (?p=...) are served from the ring buffer of the partition only (no spilled data stream elements and no deep reads).
+     * Deep reads fetch the Kafka topic from the cluster from which the topic is ingested. Topics which are ingested from several clusters (merged namespace) are served without spilled data stream elements and reject deep reads.
+     * Downsampled reads (?stride=..., ?bucket=... or ?maxPoints=...) are served from the buffered data stream elements only.
+     * Filtered reads (?filter=... or ?fields=...) always return the decoded contents and require a decoder for the topic.
+     * The filter is evaluated while iterating the data stream elements, hence spilled and deeply read data stream elements which do not match reduce the number of returned data stream elements.
+     *
+     * @param topic       Topic (?t=...) of the /consume REST API call
+     * @param key         Key (?k=...) of the /consume REST API call (a trailing * matches all keys with the prefix), or null if /comsume had no key
+     * @param partition   Partition (?p=...) of the /consume REST API call, or -1 if /consume had no partition
+     * @param limit       Limit (?l=...) of the /consume REST API call, or Integer.MAX_VALUE if /consume had no limit
+     * @param from        Start of the time range (?from=...) of the /consume REST API call (inclusive), or Long.MIN_VALUE if /consume had no start
+     * @param to          End of the time range (?to=...) of the /consume REST API call (inclusive), or Long.MAX_VALUE if /consume had no end
+     * @param deep        True if data stream elements which are older than the buffered data stream elements should be fetched from Kafka (?deep=true) if the buffer does not contain enough data stream elements
+     * @param downsampler Downsampler, or null if /consume had no downsampling parameters
+     * @param decode      True if the contents should be decoded with the decoder of the topic (?fmt=json), contents of topics without decoder stay base64-encoded
+     * @param filter      Filter and projection, or null if /consume had no filter and no fields parameter
+     * @return RestResult
+     */
+    public RestResult getDataStreamElementsInTimeRange(String topic, String key, int partition, int limit, long from, long to, boolean deep, Downsampler downsampler, boolean decode, ElementFilter filter) {
+        if (downsampler != null) {
+            limit = Math.min(limit, downsampler.getMaxPoints());
+        }
+        PayloadDecoder decoder = decode || filter != null ? this.decoderRegistry.getDecoder(topic) : null;
+        if (filter != null && decoder == null) {
+            return RestResult.generateWrongParameterValueResult("consume", "filter and fields require a decoder for topic " + topic + ".");
+        }
+        if (partition >= 0 && key != null && !key.equals(this.dedicatedAllKey)) {
+            return RestResult.generateWrongParameterValueResult("consume", "partition (p=...) cannot be combined with a key (k=...).");
+        }
+        if (partition >= 0 && deep) {
+            return RestResult.generateWrongParameterValueResult("consume", "partition (p=...) cannot be combined with deep reads (deep=true).");
+        }
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer != null) {
             if (key == null) {
                 key = this.dedicatedAllKey;
+            } else if (key.endsWith("*")) {
+                return getDataStreamElementsForKeyPrefix(topicBuffer, key, limit, from, to, downsampler, decoder, filter);
             }
-            if (mapForTopic.containsKey(key)) {
-                LinkedList<DataStreamElement> listForKey = mapForTopic.get(key);
-
+            boolean all = key.equals(this.dedicatedAllKey) && partition < 0;
+            RingBuffer ringBuffer = all ? null : partition >= 0 ? topicBuffer.getRingBufferForPartition(partition) : topicBuffer.getRingBufferForKey(key);
+            if (all || ringBuffer != null) {
                 StringBuffer dataJsonArray = new StringBuffer("[");
-                int i = 0;
-
-                synchronized (listForKey) { // to ensure that a list is only modified or read by one thread at a time
-                    Iterator<DataStreamElement> iterator = listForKey.iterator();
-                    while (iterator.hasNext() && i < limit) {
-                        if (i > 0) {
-                            dataJsonArray.append(",");
-                        }
-                        dataJsonArray.append(iterator.next().getConsumeResultJson());
-                        i++;
+                SpillStore spillStore = this.buffer.getSpillStore();
+                if (downsampler != null || partition >= 0) {
+                    spillStore = null;
+                    deep = false;
+                }
+
+                // Stream large reads which are served from the ring buffers only (the cursor fixes the sequence ranges now and renders them chunk by chunk while writing)
+                if (spillStore == null && !deep && limit > this.streamingThreshold) {
+                    DataStreamCursor cursor = all ? topicBuffer.openCursorForAll(limit, from, to, downsampler, decoder, filter) : ringBuffer.openCursor(topicBuffer.topic, limit, from, to, downsampler, decoder, filter);
+                    int streamingLimit = limit;
+                    return RestResult.generateStreamingDataResult(topic, key, writer -> streamDataStreamElements(writer, cursor, streamingLimit));
+                }
+
+                // The offsets only continue the read if all buffered data stream elements of the topic stem from the same cluster (the source is resolved after reading the ring buffers since a cluster is known as source before its data stream elements are buffered)
+                Map<Integer, Long> oldestOffsets = deep || spillStore != null ? new HashMap<>() : null;
+                int appended = all ? topicBuffer.appendConsumeResultJsonForAll(dataJsonArray, limit, from, to, oldestOffsets, downsampler, decoder, filter) : ringBuffer.appendConsumeResultJson(dataJsonArray, topicBuffer.topic, limit, from, to, oldestOffsets, downsampler, decoder, filter);
+                String keyOrNullForAll = all ? null : key;
+                ClusterSource sourceCluster = oldestOffsets == null ? null : ClusterSource.getSourceCluster(this.clusterSources, topicBuffer.topic);
+                if (oldestOffsets != null && sourceCluster == null) {
+                    if (deep) {
+                        return RestResult.generateWrongParameterValueResult("consume", "deep reads (deep=true) are not supported for topic " + topic + " since it is ingested from several clusters (clusters.namespace=merged).");
                     }
+                    spillStore = null; // the spilled partitions and offsets of several clusters cannot be told apart
                 }
 
+                // Transparently continue with the spilled data stream elements
+                if (spillStore != null && appended < limit) {
+                    List<DataStreamElement> spilledDataStreamElements = spillStore.read(topic, keyOrNullForAll, limit - appended, from, to, oldestOffsets);
+                    appended = appendDataStreamElements(dataJsonArray, topicBuffer.topic, spilledDataStreamElements, appended, limit, oldestOffsets, null, decoder, filter);
+                }
+
+                // Fetch even older data stream elements from Kafka
+                if (deep && appended < limit) {
+                    if (this.historicalFetchers == null) {
+                        return RestResult.generateWrongParameterValueResult("consume", "deep reads (deep=true) are disabled.");
+                    }
+                    String kafkaTopic = sourceCluster.getKafkaTopic(topicBuffer.topic);
+                    DeepReadCursor deepReadCursor = this.historicalFetchers.get(sourceCluster.name).openCursor(kafkaTopic == null ? topicBuffer.topic : kafkaTopic, keyOrNullForAll, from, to, oldestOffsets);
+                    if (deepReadCursor == null) {
+                        return RestResult.generateServiceUnavailableResult("consume", "too many concurrent deep reads (deep=true).");
+                    }
+
+                    // Stream the fetched data stream elements after the buffered and spilled ones (the cursor fetches the chunks while writing and releases its KafkaConsumer afterwards)
+                    String bufferedDataJsonArray = dataJsonArray.toString();
+                    int bufferedAppended = appended;
+                    int deepLimit = limit;
+                    return RestResult.generateStreamingDataResult(topic, key, writer -> streamDeepReadElements(writer, bufferedDataJsonArray, bufferedAppended, deepReadCursor, topicBuffer.topic, deepLimit, decoder, filter));
+                }
                 dataJsonArray.append("]");
                 return RestResult.generateDataResult(topic, key, dataJsonArray.toString());
             } else {
@@ -257,66 +740,316 @@ public class KafkaRestProxy {
     }
 
     /**
-     * Generates the RestResult for a /listsTopics REST API call.
+     * Renders the data stream elements of a cursor chunk by chunk and flushes every chunk to the response.
+     *
+     * @param writer Writer of the response
+     * @param cursor Cursor
+     * @param limit  Maximum number of data stream elements
+     * @throws IOException Thrown if unable to write to the response
+     */
+    private void streamDataStreamElements(Writer writer, DataStreamCursor cursor, int limit) throws IOException {
+        writer.write("[");
+        StringBuffer chunk = new StringBuffer();
+        int appended = 0;
+        while (appended < limit) {
+            int requested = Math.min(limit - appended, this.streamingChunkElements);
+            chunk.setLength(0);
+            int chunkAppended = cursor.appendConsumeResultJson(chunk, requested, appended > 0);
+            writer.write(chunk.toString());
+            writer.flush();
+            appended += chunkAppended;
+            if (chunkAppended < requested) {
+                break; // cursor is exhausted
+            }
+        }
+        writer.write("]");
+    }
+
+    /**
+     * Writes the already rendered data stream elements and then renders the data stream elements of a deep read chunk by chunk and flushes every chunk to the response.
+     *
+     * @param writer                Writer of the response
+     * @param bufferedDataJsonArray Start of the JSON array with the rendered buffered and spilled data stream elements
+     * @param appended              Number of data stream elements in bufferedDataJsonArray
+     * @param deepReadCursor        Cursor of the deep read (closed afterwards)
+     * @param topic                 Topic of the data stream elements
+     * @param limit                 Maximum number of data stream elements
+     * @param decoder               Decoder for the contents, or null to render the base64-encoded contents
+     * @param filter                Filter and projection which is evaluated on the decoded contents, or null
+     * @throws IOException Thrown if unable to write to the response
+     */
+    private void streamDeepReadElements(Writer writer, String bufferedDataJsonArray, int appended, DeepReadCursor deepReadCursor, String topic, int limit, PayloadDecoder decoder, ElementFilter filter) throws IOException {
+        try {
+            writer.write(bufferedDataJsonArray);
+            writer.flush();
+            List<DataStreamElement> dataStreamElements = new ArrayList<>();
+            StringBuffer chunk = new StringBuffer();
+            while (appended < limit) {
+                int requested = Math.min(limit - appended, this.streamingChunkElements);
+                dataStreamElements.clear();
+                int fetched = deepReadCursor.next(requested, dataStreamElements);
+                chunk.setLength(0);
+                appended = appendDataStreamElements(chunk, topic, dataStreamElements, appended, limit, null, null, decoder, filter);
+                writer.write(chunk.toString());
+                writer.flush();
+                if (fetched < requested) {
+                    break; // cursor is exhausted
+                }
+            }
+            writer.write("]");
+        } finally {
+            deepReadCursor.close();
+        }
+    }
+
+    /**
+     * Generates the RestResult for a /consume REST API call with a key prefix (?k=prefix*) by merging the buffered data stream elements of all matching keys (latest first).
+     * The ring buffers of the matching keys are merged with a cursor (k-way merge), hence the filter and the downsampler are only evaluated until the limit is reached.
+     * Only the buffered data stream elements are considered (no spilled data stream elements and no deep reads).
+     *
+     * @param topicBuffer Topic buffer
+     * @param keyPattern  Key pattern (?k=prefix*) of the /consume REST API call
+     * @param limit       Limit (?l=...) of the /consume REST API call, or Integer.MAX_VALUE if /consume had no limit
+     * @param from        Start of the time range (?from=...) of the /consume REST API call (inclusive), or Long.MIN_VALUE if /consume had no start
+     * @param to          End of the time range (?to=...) of the /consume REST API call (inclusive), or Long.MAX_VALUE if /consume had no end
+     * @param downsampler Downsampler, or null if /consume had no downsampling parameters
+     * @param decoder     Decoder for the contents, or null to render the base64-encoded contents
+     * @param filter      Filter and projection, or null
+     * @return RestResult
+     */
+    private RestResult getDataStreamElementsForKeyPrefix(TopicBuffer topicBuffer, String keyPattern, int limit, long from, long to, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        String prefix = keyPattern.substring(0, keyPattern.length() - 1);
+        DataStreamCursor cursor = topicBuffer.openCursorForKeyPrefix(prefix, limit, from, to, downsampler, decoder, filter);
+        if (cursor == null) {
+            return RestResult.generateNoDataResult(topicBuffer.topic, keyPattern);
+        }
+        if (limit > this.streamingThreshold) {
+            return RestResult.generateStreamingDataResult(topicBuffer.topic, keyPattern, writer -> streamDataStreamElements(writer, cursor, limit));
+        }
+        StringBuffer dataJsonArray = new StringBuffer("[");
+        if (cursor.appendConsumeResultJson(dataJsonArray, limit, false) == 0) {
+            return RestResult.generateNoDataResult(topicBuffer.topic, keyPattern);
+        }
+        dataJsonArray.append("]");
+        return RestResult.generateDataResult(topicBuffer.topic, keyPattern, dataJsonArray.toString());
+    }
+
+    /**
+     * Appends the JSON representations of data stream elements to a JSON array.
+     *
+     * @param dataJsonArray      JSON array to which the data stream elements are appended
+     * @param topic              Topic of the data stream elements
+     * @param dataStreamElements Data stream elements
+     * @param appended           Number of data stream elements which are already in the JSON array
+     * @param limit              Maximum number of data stream elements in the JSON array
+     * @param oldestOffsets      Map with the offset of the oldest data stream element per partition which is updated with the iterated data stream elements, or null
+     * @param downsampler        Started downsampler which is applied to the data stream elements that match the filter, or null
+     * @param decoder            Decoder for the contents, or null to render the base64-encoded contents
+     * @param filter             Filter and projection which is evaluated on the decoded contents, or null
+     * @return Number of data stream elements in the JSON array
+     */
+    private static int appendDataStreamElements(StringBuffer dataJsonArray, String topic, List<DataStreamElement> dataStreamElements, int appended, int limit, Map<Integer, Long> oldestOffsets, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        for (DataStreamElement dataStreamElement : dataStreamElements) {
+            if (appended >= limit) {
+                break;
+            }
+            if (oldestOffsets != null) {
+                oldestOffsets.merge(dataStreamElement.partition, dataStreamElement.offset, Math::min);
+            }
+            String decodedJson = decoder == null ? null : decoder.decodeToJsonOrNull(dataStreamElement.content);
+            if (filter != null) {
+                decodedJson = filter.apply(decodedJson);
+                if (decodedJson == null) {
+                    continue;
+                }
+            }
+            if (downsampler != null && !downsampler.accept(dataStreamElement.timestamp)) {
+                continue;
+            }
+            if (appended++ > 0) {
+                dataJsonArray.append(",");
+            }
+            DataStreamElement.appendConsumeResultJson(dataJsonArray, dataStreamElement.content, decodedJson, dataStreamElement.key, topic, dataStreamElement.partition, dataStreamElement.offset, dataStreamElement.timestamp);
+        }
+        return appended;
+    }
+
+    /**
+     * Generates the RestResult for a /latest REST API call.
+     *
+     * @param topic        Topic (?t=...) of the /latest REST API call
+     * @param keys         Keys (?k=...,...) of the /latest REST API call, or null if /latest had no keys
+     * @param sinceVersion Version (?v=...) of the /latest REST API call, or 0 if /latest had no version
+     * @return RestResult
+     */
+    public RestResult getLatestDataStreamElements(String topic, Collection<String> keys, long sinceVersion) {
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer != null) {
+            LatestValueTable latestValueTable = topicBuffer.getLatestValueTable();
+            long version = latestValueTable.getVersion(); // read before the data stream elements such that no update is missed by the next incremental call
+            StringBuffer dataJsonArray = new StringBuffer("[");
+            latestValueTable.appendLatestJson(dataJsonArray, topicBuffer.topic, keys, sinceVersion);
+            dataJsonArray.append("]");
+            return RestResult.generateLatestResult(topic, version, dataJsonArray.toString());
+        } else {
+            return RestResult.generateNoLatestResult(topic);
+        }
+    }
+
+    /**
+     * Generates the RestResult for an /aggregate REST API call.
+     *
+     * @param topic Topic (?t=...) of the /aggregate REST API call
+     * @param key   Key (?k=...), comma-separated keys (?k=...,...) or key prefix (?k=prefix*) of the /aggregate REST API call, or null if /aggregate had no key (dedicated all-key and all keys)
+     * @return RestResult
+     */
+    public RestResult getAggregates(String topic, String key) {
+        if (this.aggregateStore == null) {
+            return RestResult.generateWrongParameterValueResult("aggregate", "aggregates are disabled.");
+        }
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer == null) {
+            return RestResult.generateNoAggregatesResult(topic);
+        }
+
+        boolean includeAll;
+        List<String> keys = new ArrayList<>();
+        if (key == null) {
+            includeAll = true;
+            topicBuffer.getKeys("", null, Integer.MAX_VALUE, keys);
+        } else if (key.endsWith("*")) {
+            includeAll = false;
+            topicBuffer.getKeys(key.substring(0, key.length() - 1), null, Integer.MAX_VALUE, keys);
+        } else {
+            includeAll = false;
+            for (String singleKey : key.split(",")) {
+                if (singleKey.equals(this.dedicatedAllKey)) {
+                    includeAll = true;
+                } else {
+                    keys.add(singleKey);
+                }
+            }
+        }
+
+        StringBuffer aggregatesJsonArray = new StringBuffer("[");
+        this.aggregateStore.appendAggregatesJson(aggregatesJsonArray, topicBuffer.topic, this.dedicatedAllKey, includeAll, keys);
+        aggregatesJsonArray.append("]");
+        return RestResult.generateAggregateResult(topic, this.aggregateStore.getWindowsJsonArray(), aggregatesJsonArray.toString());
+    }
+
+    /**
+     * Generates the RestResult for a /stats REST API call.
+     *
+     * @param topic Topic (?t=...) of the /stats REST API call
+     * @return RestResult
+     */
+    public RestResult getStats(String topic) {
+        if (this.keyStatistics == null) {
+            return RestResult.generateWrongParameterValueResult("stats", "statistics are disabled.");
+        }
+        String ingestStatsJson = this.keyStatistics.getIngestStatsJson(topic);
+        if (ingestStatsJson == null) {
+            return RestResult.generateNoStatsResult(topic);
+        }
+        return RestResult.generateStatsResult(topic, ingestStatsJson, this.keyStatistics.getReadStatsJson(topic));
+    }
+
+    /**
+     * Generates the RestResult for a /clusters REST API call (ingest metrics per cluster).
+     *
+     * @return RestResult
+     */
+    public RestResult getClusters() {
+        StringBuffer clustersJsonArray = new StringBuffer("[");
+        for (int i = 0; i < this.clusterSources.size(); ++i) {
+            if (i > 0) {
+                clustersJsonArray.append(",");
+            }
+            this.clusterSources.get(i).appendJson(clustersJsonArray);
+        }
+        clustersJsonArray.append("]");
+        return RestResult.generateClustersResult(clustersJsonArray.toString());
+    }
+
+    /**
+     * Returns the RestResult for a /listsTopics REST API call (only rendered again if a new topic has appeared).
      *
      * @return RestResult
      */
     public RestResult getTopicList() {
-        synchronized (this.buffer) { // to ensure that no new topics are added to the buffer while iterating
-            if (this.buffer.isEmpty()) {
-                return RestResult.generateNoTopicsResult();
-            } else {
-                StringBuffer topicsJsonArray = new StringBuffer("[");
-                boolean isFirst = true;
-                Iterator<String> iterator = this.buffer.keySet().iterator();
-                while (iterator.hasNext()) {
-                    if (isFirst) {
-                        isFirst = false;
-                    } else {
-                        topicsJsonArray.append(",");
-                    }
-                    topicsJsonArray.append("\"");
-                    topicsJsonArray.append(iterator.next());
-                    topicsJsonArray.append("\"");
+        return this.buffer.getTopicListing().get(this::renderTopicList);
+    }
+
+    /**
+     * Generates the RestResult for a /listsTopics REST API call.
+     *
+     * @return RestResult
+     */
+    private RestResult renderTopicList() {
+        Iterator<String> iterator = this.buffer.getTopics().iterator();
+        if (!iterator.hasNext()) {
+            return RestResult.generateNoTopicsResult();
+        } else {
+            StringBuffer topicsJsonArray = new StringBuffer("[");
+            boolean isFirst = true;
+            while (iterator.hasNext()) {
+                if (isFirst) {
+                    isFirst = false;
+                } else {
+                    topicsJsonArray.append(",");
                 }
-                topicsJsonArray.append("]");
-                return RestResult.generateListTopicsResult(topicsJsonArray.toString());
+                topicsJsonArray.append("\"");
+                topicsJsonArray.append(iterator.next());
+                topicsJsonArray.append("\"");
             }
+            topicsJsonArray.append("]");
+            return RestResult.generateListTopicsResult(topicsJsonArray.toString());
         }
     }
 
     /**
-     * Generates the RestResult for a /listKeys REST API call.
+     * Returns the RestResult for a /listKeys REST API call without prefix and pagination (only rendered again if a new key has appeared).
      *
      * @param topic Topic (?t=...) of the /listKeys REST API call
      * @return RestResult
      */
     public RestResult getKeyList(String topic) {
-        if (this.buffer.containsKey(topic)) {
-            ConcurrentHashMap<String, LinkedList<DataStreamElement>> mapForTopic = this.buffer.get(topic);
-            synchronized (mapForTopic) { // to ensure that no new keys are added to mapForTopic while iterating
-                if (mapForTopic.isEmpty()) {
-                    return RestResult.generateNoKeysResult(topic);
-                } else {
-                    StringBuffer keysJsonArray = new StringBuffer("[");
-                    boolean isFirst = true;
-                    Iterator<String> iterator = mapForTopic.keySet().iterator();
-                    while (iterator.hasNext()) {
-                        String key = iterator.next();
-                        if (key != this.dedicatedAllKey) { // Do not list the dedicated all-key as it is not an actual key
-                            if (isFirst) {
-                                isFirst = false;
-                            } else {
-                                keysJsonArray.append(",");
-                            }
-                            keysJsonArray.append("\"");
-                            keysJsonArray.append(key);
-                            keysJsonArray.append("\"");
-                        }
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer != null) {
+            return topicBuffer.getKeyListing().get(() -> getKeyList(topic, "", null, Integer.MAX_VALUE));
+        } else {
+            return RestResult.generateNoKeysResult(topic);
+        }
+    }
+
+    /**
+     * Generates the RestResult for a paginated /listKeys REST API call. The keys are listed in key order.
+     *
+     * @param topic  Topic (?t=...) of the /listKeys REST API call
+     * @param prefix Prefix (?k=prefix*) of the /listKeys REST API call, or an empty string if /listKeys had no prefix
+     * @param after  Key (?after=...) after which the listing starts, or null if /listKeys had no such key
+     * @param max    Maximum number of keys (?max=...), or Integer.MAX_VALUE if /listKeys had no maximum
+     * @return RestResult
+     */
+    public RestResult getKeyList(String topic, String prefix, String after, int max) {
+        TopicBuffer topicBuffer = this.buffer.getTopicBuffer(topic);
+        if (topicBuffer != null) {
+            List<String> keys = new ArrayList<>();
+            boolean hasMore = topicBuffer.getKeys(prefix, after, max, keys);
+            if (keys.isEmpty()) {
+                return RestResult.generateNoKeysResult(topic);
+            } else {
+                StringBuffer keysJsonArray = new StringBuffer("[");
+                for (int i = 0; i < keys.size(); ++i) {
+                    if (i > 0) {
+                        keysJsonArray.append(",");
                     }
-                    keysJsonArray.append("]");
-                    return RestResult.generateListKeysResult(topic, keysJsonArray.toString());
+                    keysJsonArray.append("\"");
+                    keysJsonArray.append(keys.get(i));
+                    keysJsonArray.append("\"");
                 }
+                keysJsonArray.append("]");
+                return RestResult.generateListKeysResult(topic, keysJsonArray.toString(), hasMore ? keys.get(keys.size() - 1) : null);
             }
         } else {
             return RestResult.generateNoKeysResult(topic);
@@ -0,0 +1,189 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.aggregate;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incrementally maintains sliding-window aggregates (count, byte volume and rate) per topic-key-combination and per topic (dedicated all-key).
+ * The aggregates are updated on ingest with bucketed counters such that an /aggregate call never scans data stream elements.
+ */
+public class AggregateStore {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AggregateStore.class);
+
+    /**
+     * Length of a bucket in ms
+     */
+    private final long bucketMillis;
+
+    /**
+     * Lengths of the windows in ms
+     */
+    private final long[] windowMillis;
+
+    /**
+     * Number of buckets per counter (enough for the longest window)
+     */
+    private final int buckets;
+
+    /**
+     * Counters per topic and key
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, SlidingWindowCounter>> countersForKeys;
+
+    /**
+     * Counters per topic (dedicated all-key)
+     */
+    private final ConcurrentHashMap<String, SlidingWindowCounter> countersForAll;
+
+    /**
+     * AggregateStore constructor.
+     *
+     * @param properties Properties
+     */
+    public AggregateStore(Properties properties) {
+        this.bucketMillis = PropertyReadHelper.readLongOrDie(properties, "aggregate.bucketMillis");
+        List<String> windows = PropertyReadHelper.readListOfStringsOrDie(properties, "aggregate.windows");
+        this.windowMillis = new long[windows.size()];
+        long maxWindowMillis = this.bucketMillis;
+        for (int i = 0; i < this.windowMillis.length; ++i) {
+            this.windowMillis[i] = Long.parseLong(windows.get(i).trim());
+            maxWindowMillis = Math.max(maxWindowMillis, this.windowMillis[i]);
+        }
+        this.buckets = (int) ((maxWindowMillis + this.bucketMillis - 1) / this.bucketMillis);
+        this.countersForKeys = new ConcurrentHashMap<>();
+        this.countersForAll = new ConcurrentHashMap<>();
+        logger.info("Initialized AggregateStore with {} buckets of {} ms", this.buckets, this.bucketMillis);
+    }
+
+    /**
+     * Counts a new data stream element for its key and for the dedicated all-key (thread-safe).
+     * A data stream element without content (tombstone) is counted with 0 bytes.
+     *
+     * @param dataStreamElement Data stream element
+     */
+    public void add(DataStreamElement dataStreamElement) {
+        long time = System.currentTimeMillis();
+        // a null content (tombstone) is counted with 0 bytes
+        int contentBytes = dataStreamElement.content == null ? 0 : dataStreamElement.content.length;
+
+        SlidingWindowCounter counterForAll = this.countersForAll.get(dataStreamElement.topic);
+        if (counterForAll == null) {
+            counterForAll = this.countersForAll.computeIfAbsent(dataStreamElement.topic, topic -> new SlidingWindowCounter(this.buckets, this.bucketMillis, time));
+        }
+        counterForAll.add(time, contentBytes);
+
+        ConcurrentHashMap<String, SlidingWindowCounter> countersForTopic = this.countersForKeys.get(dataStreamElement.topic);
+        if (countersForTopic == null) {
+            countersForTopic = this.countersForKeys.computeIfAbsent(dataStreamElement.topic, topic -> new ConcurrentHashMap<>());
+        }
+        SlidingWindowCounter counterForKey = countersForTopic.get(dataStreamElement.key);
+        if (counterForKey == null) {
+            counterForKey = countersForTopic.computeIfAbsent(dataStreamElement.key, key -> new SlidingWindowCounter(this.buckets, this.bucketMillis, time));
+        }
+        counterForKey.add(time, contentBytes);
+    }
+
+    /**
+     * Returns the JSON representation of the window lengths.
+     *
+     * @return JSON array
+     */
+    public String getWindowsJsonArray() {
+        StringBuffer windowsJsonArray = new StringBuffer("[");
+        for (int i = 0; i < this.windowMillis.length; ++i) {
+            if (i > 0) {
+                windowsJsonArray.append(",");
+            }
+            windowsJsonArray.append(this.windowMillis[i]);
+        }
+        windowsJsonArray.append("]");
+        return windowsJsonArray.toString();
+    }
+
+    /**
+     * Appends the JSON representations of the aggregates of the dedicated all-key and of the keys to the JSON array.
+     *
+     * @param aggregatesJsonArray JSON array to which the aggregates are appended
+     * @param topic               Topic
+     * @param dedicatedAllKey     Dedicated all-key
+     * @param includeAll          True if the aggregates of the dedicated all-key should be appended
+     * @param keys                Keys whose aggregates are appended
+     * @return Number of appended aggregates
+     */
+    public int appendAggregatesJson(StringBuffer aggregatesJsonArray, String topic, String dedicatedAllKey, boolean includeAll, Collection<String> keys) {
+        long time = System.currentTimeMillis();
+        int appended = 0;
+        if (includeAll) {
+            appended = appendAggregateJson(aggregatesJsonArray, dedicatedAllKey, this.countersForAll.get(topic), time, appended);
+        }
+        ConcurrentHashMap<String, SlidingWindowCounter> countersForTopic = this.countersForKeys.get(topic);
+        if (countersForTopic != null) {
+            for (String key : keys) {
+                appended = appendAggregateJson(aggregatesJsonArray, key, countersForTopic.get(key), time, appended);
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Appends the JSON representation of the aggregates of a counter ({"k":...,"c":[...],"b":[...],"r":[...]}).
+     *
+     * @param aggregatesJsonArray JSON array to which the aggregates are appended
+     * @param key                 Key
+     * @param counter             Counter or null
+     * @param time                Current time in ms
+     * @param appended            Number of aggregates which are already in the JSON array
+     * @return Number of aggregates in the JSON array
+     */
+    private int appendAggregateJson(StringBuffer aggregatesJsonArray, String key, SlidingWindowCounter counter, long time, int appended) {
+        if (counter == null) {
+            return appended;
+        }
+        StringBuffer countsJson = new StringBuffer();
+        StringBuffer bytesJson = new StringBuffer();
+        StringBuffer ratesJson = new StringBuffer();
+        counter.appendWindows(time, this.windowMillis, countsJson, bytesJson, ratesJson);
+        if (appended > 0) {
+            aggregatesJsonArray.append(",");
+        }
+        aggregatesJsonArray.append("{\"k\":\"");
+        aggregatesJsonArray.append(key);
+        aggregatesJsonArray.append("\",\"c\":[");
+        aggregatesJsonArray.append(countsJson);
+        aggregatesJsonArray.append("],\"b\":[");
+        aggregatesJsonArray.append(bytesJson);
+        aggregatesJsonArray.append("],\"r\":[");
+        aggregatesJsonArray.append(ratesJson);
+        aggregatesJsonArray.append("]}");
+        return appended + 1;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.aggregate;
+
+/**
+ * Counts data stream elements and their bytes in a fixed number of time buckets (ring of buckets which is advanced with the ingest time).
+ * Adding costs O(1) (amortized) and querying a sliding window costs O(buckets), independent of the number of data stream elements.
+ */
+class SlidingWindowCounter {
+
+    /**
+     * Number of data stream elements per bucket
+     */
+    private final long[] counts;
+
+    /**
+     * Number of content bytes per bucket
+     */
+    private final long[] bytes;
+
+    /**
+     * Length of a bucket in ms
+     */
+    private final long bucketMillis;
+
+    /**
+     * Number of the current bucket (time / bucketMillis)
+     */
+    private long currentBucket;
+
+    /**
+     * Creation time of the counter in ms (windows which reach further back only cover the time since the creation)
+     */
+    private final long creationTime;
+
+    /**
+     * SlidingWindowCounter constructor.
+     *
+     * @param buckets      Number of buckets
+     * @param bucketMillis Length of a bucket in ms
+     * @param creationTime Creation time in ms
+     */
+    SlidingWindowCounter(int buckets, long bucketMillis, long creationTime) {
+        this.counts = new long[buckets];
+        this.bytes = new long[buckets];
+        this.bucketMillis = bucketMillis;
+        this.currentBucket = 0;
+        this.creationTime = creationTime;
+    }
+
+    /**
+     * Clears all buckets which are older than the bucket of the given time.
+     *
+     * @param time Time in ms
+     */
+    private void advance(long time) {
+        long bucket = time / this.bucketMillis;
+        if (bucket > this.currentBucket) {
+            long bucketsToClear = Math.min(bucket - this.currentBucket, this.counts.length);
+            for (long i = 1; i <= bucketsToClear; ++i) {
+                int index = (int) ((this.currentBucket + i) % this.counts.length);
+                this.counts[index] = 0;
+                this.bytes[index] = 0;
+            }
+            this.currentBucket = bucket;
+        }
+    }
+
+    /**
+     * Counts a data stream element.
+     *
+     * @param time         Ingest time in ms
+     * @param contentBytes Number of content bytes of the data stream element
+     */
+    synchronized void add(long time, int contentBytes) {
+        advance(time);
+        int index = (int) (this.currentBucket % this.counts.length);
+        this.counts[index]++;
+        this.bytes[index] += contentBytes;
+    }
+
+    /**
+     * Appends the count, the byte volume and the rate for every window to the arrays.
+     * A window covers its number of buckets including the (partial) current bucket, the rate is based on the covered time.
+     *
+     * @param time         Current time in ms
+     * @param windowMillis Lengths of the windows in ms (each at most the number of buckets times bucketMillis)
+     * @param countsJson   JSON array (without brackets) to which the counts are appended
+     * @param bytesJson    JSON array (without brackets) to which the byte volumes are appended
+     * @param ratesJson    JSON array (without brackets) to which the rates (data stream elements per second) are appended
+     */
+    synchronized void appendWindows(long time, long[] windowMillis, StringBuffer countsJson, StringBuffer bytesJson, StringBuffer ratesJson) {
+        advance(time);
+        for (int w = 0; w < windowMillis.length; ++w) {
+            int windowBuckets = (int) Math.min((windowMillis[w] + this.bucketMillis - 1) / this.bucketMillis, this.counts.length);
+            long count = 0;
+            long byteVolume = 0;
+            for (int i = 0; i < windowBuckets; ++i) {
+                int index = (int) ((this.currentBucket - i) % this.counts.length);
+                count += this.counts[index];
+                byteVolume += this.bytes[index];
+            }
+            long coveredMillis = Math.min((windowBuckets - 1) * this.bucketMillis + (time - this.currentBucket * this.bucketMillis), time - this.creationTime) + 1;
+            if (w > 0) {
+                countsJson.append(",");
+                bytesJson.append(",");
+                ratesJson.append(",");
+            }
+            countsJson.append(count);
+            bytesJson.append(byteVolume);
+            ratesJson.append(Math.round(count * 1000000.0 / coveredMillis) / 1000.0);
+        }
+    }
+}
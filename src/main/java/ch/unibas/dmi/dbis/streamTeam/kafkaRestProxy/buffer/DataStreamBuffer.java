@@ -0,0 +1,163 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill.SpillStore;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffers the latest data stream elements for each topic-key-combination and for each topic-partition (merged for the dedicated all-key).
+ */
+public class DataStreamBuffer {
+
+    /**
+     * Topic buffers (the keys of the map are the deduplicated topic strings)
+     */
+    private final ConcurrentHashMap<String, TopicBuffer> topicBuffers;
+
+    /**
+     * The number of data stream elements that are buffered for each topic-key-combination and for each topic-partition (merged for the dedicated all-key)
+     */
+    private final int bufferSize;
+
+    /**
+     * SpillStore for the evicted data stream elements or null if spilling is disabled
+     */
+    private final SpillStore spillStore;
+
+    /**
+     * Snapshot of the rendered topic listing (invalidated if a new topic appears)
+     */
+    private final ListingSnapshot<RestResult> topicListing;
+
+    /**
+     * DataStreamBuffer constructor.
+     *
+     * @param bufferSize The number of data stream elements that are buffered for each topic-key-combination and for each topic-partition (merged for the dedicated all-key)
+     */
+    public DataStreamBuffer(int bufferSize) {
+        this(bufferSize, null);
+    }
+
+    /**
+     * DataStreamBuffer constructor.
+     *
+     * @param bufferSize The number of data stream elements that are buffered for each topic-key-combination and for each topic-partition (merged for the dedicated all-key)
+     * @param spillStore SpillStore for the evicted data stream elements or null if spilling is disabled
+     */
+    public DataStreamBuffer(int bufferSize, SpillStore spillStore) {
+        this.topicBuffers = new ConcurrentHashMap<>();
+        this.bufferSize = bufferSize;
+        this.spillStore = spillStore;
+        this.topicListing = new ListingSnapshot<>();
+    }
+
+    /**
+     * Adds a new data stream element to the buffer (thread-safe).
+     *
+     * @param dataStreamElement Data stream element
+     */
+    public void add(DataStreamElement dataStreamElement) {
+        // Get or create topic buffer for the topic of the dataStreamElement
+        TopicBuffer topicBuffer = this.topicBuffers.get(dataStreamElement.topic);
+        if (topicBuffer == null) {
+            synchronized (this.topicBuffers) { // to ensure that the topicBuffer is not replaced with an empty topic buffer after it has been filled with a data stream element (can happen if there is a context switch between creating an empty topic buffer and adding it to the map)
+                topicBuffer = this.topicBuffers.get(dataStreamElement.topic);
+                if (topicBuffer == null) {
+                    topicBuffer = new TopicBuffer(dataStreamElement.topic, this.bufferSize, this.spillStore);
+                    this.topicBuffers.put(dataStreamElement.topic, topicBuffer);
+                    this.topicListing.invalidate();
+                }
+            }
+        }
+        topicBuffer.add(dataStreamElement);
+    }
+
+    /**
+     * Removes the topic buffer of a topic (e.g., after the topic has been moved to another node of the sharded proxy cluster).
+     *
+     * @param topic Topic
+     * @return True if there was a topic buffer for the topic
+     */
+    public boolean removeTopic(String topic) {
+        synchronized (this.topicBuffers) {
+            if (this.topicBuffers.remove(topic) == null) {
+                return false;
+            }
+            this.topicListing.invalidate();
+            return true;
+        }
+    }
+
+    /**
+     * Returns the topic buffer for a topic.
+     *
+     * @param topic Topic
+     * @return Topic buffer or null if there is no data stream element for this topic
+     */
+    public TopicBuffer getTopicBuffer(String topic) {
+        return this.topicBuffers.get(topic);
+    }
+
+    /**
+     * Estimates the size of the contents of a read with a limit based on the average content size of the topic.
+     *
+     * @param topic Topic
+     * @param limit Limit (capped at the buffer size)
+     * @return Estimated size of the contents in bytes (0 if there is no topic buffer for the topic)
+     */
+    public long estimateContentBytes(String topic, int limit) {
+        TopicBuffer topicBuffer = this.topicBuffers.get(topic);
+        if (topicBuffer == null) {
+            return 0;
+        }
+        return (long) (Math.min(limit, this.bufferSize) * topicBuffer.getAverageContentBytes());
+    }
+
+    /**
+     * Returns the SpillStore.
+     *
+     * @return SpillStore or null if spilling is disabled
+     */
+    public SpillStore getSpillStore() {
+        return this.spillStore;
+    }
+
+    /**
+     * Returns the snapshot of the rendered topic listing.
+     *
+     * @return Snapshot of the rendered topic listing
+     */
+    public ListingSnapshot<RestResult> getTopicListing() {
+        return this.topicListing;
+    }
+
+    /**
+     * Returns the topics.
+     *
+     * @return Topics
+     */
+    public Set<String> getTopics() {
+        return this.topicBuffers.keySet();
+    }
+}
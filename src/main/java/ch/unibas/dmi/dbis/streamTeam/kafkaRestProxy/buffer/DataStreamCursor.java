@@ -0,0 +1,36 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+/**
+ * Cursor over a snapshot of buffered data stream elements (latest first) which renders them chunk by chunk.
+ * Implemented by the RingBufferCursor (single ring buffer) and the MergingCursor (k-way merge of the partition ring buffers of a topic or of the ring buffers of the keys with a prefix).
+ */
+public interface DataStreamCursor {
+
+    /**
+     * Appends the JSON representations of the next data stream elements whose timestamps are in the time range, whose decoded contents match the filter and which are accepted by the downsampler to the JSON array.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param limit         Maximum number of appended data stream elements
+     * @param leadingComma  True if the JSON array already contains data stream elements
+     * @return Number of appended data stream elements (less than the limit if the cursor is exhausted)
+     */
+    int appendConsumeResultJson(StringBuffer dataJsonArray, int limit, boolean leadingComma);
+}
@@ -0,0 +1,116 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+/**
+ * Decides for every data stream element of a /consume read (walked latest first) if it is part of the downsampled result.
+ * Supports stride sampling (every n-th data stream element), time-bucket sampling (latest data stream element per bucket) and max-points decimation (stride derived from the number of candidates).
+ * A downsampler is stateful and must only be used for a single read.
+ */
+public class Downsampler {
+
+    /**
+     * Every stride-th data stream element is accepted (1 for all)
+     */
+    private final int stride;
+
+    /**
+     * Length of the time buckets in ms (0 for no time-bucket sampling)
+     */
+    private final long bucketMillis;
+
+    /**
+     * Maximum number of accepted data stream elements (Integer.MAX_VALUE for no max-points decimation)
+     */
+    private final int maxPoints;
+
+    /**
+     * Stride which is applied (stride or the stride that is required for the max-points decimation)
+     */
+    private int effectiveStride;
+
+    /**
+     * Number of data stream elements which have been checked
+     */
+    private long checked;
+
+    /**
+     * Time bucket of the latest accepted data stream element or Long.MIN_VALUE
+     */
+    private long lastBucket;
+
+    /**
+     * Downsampler constructor.
+     *
+     * @param stride       Every stride-th data stream element is accepted (1 for all)
+     * @param bucketMillis Length of the time buckets in ms (0 for no time-bucket sampling)
+     * @param maxPoints    Maximum number of accepted data stream elements (Integer.MAX_VALUE for no max-points decimation)
+     */
+    public Downsampler(int stride, long bucketMillis, int maxPoints) {
+        this.stride = stride;
+        this.bucketMillis = bucketMillis;
+        this.maxPoints = maxPoints;
+        this.effectiveStride = stride;
+        this.checked = 0;
+        this.lastBucket = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the maximum number of accepted data stream elements.
+     *
+     * @return Maximum number of accepted data stream elements
+     */
+    public int getMaxPoints() {
+        return this.maxPoints;
+    }
+
+    /**
+     * Starts the walk over the data stream elements and derives the stride for the max-points decimation.
+     *
+     * @param candidates (Estimated) number of data stream elements which are checked
+     */
+    public void start(int candidates) {
+        this.checked = 0;
+        this.lastBucket = Long.MIN_VALUE;
+        this.effectiveStride = this.stride;
+        if (this.maxPoints != Integer.MAX_VALUE && candidates > this.maxPoints) {
+            this.effectiveStride = Math.max(this.stride, (candidates + this.maxPoints - 1) / this.maxPoints);
+        }
+    }
+
+    /**
+     * Checks if the next data stream element (latest first) is accepted.
+     *
+     * @param timestamp Timestamp of the data stream element
+     * @return True if the data stream element is part of the downsampled result
+     */
+    public boolean accept(long timestamp) {
+        if (this.checked++ % this.effectiveStride != 0) {
+            return false;
+        }
+        if (this.bucketMillis > 0) {
+            long bucket = Math.floorDiv(timestamp, this.bucketMillis);
+            if (bucket == this.lastBucket) {
+                return false; // a later data stream element of this bucket has already been accepted
+            }
+            this.lastBucket = bucket;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+/**
+ * Listener which is notified about data stream elements that are overwritten in a full ring buffer.
+ * Called while the ring buffer is locked and thus must not block.
+ */
+public interface EvictionListener {
+
+    /**
+     * Called when a data stream element is evicted from a ring buffer.
+     *
+     * @param content   Content of the data stream element
+     * @param key       Key of the data stream element
+     * @param partition Partition of the data stream element
+     * @param offset    Offset of the data stream element
+     * @param timestamp Timestamp of the data stream element
+     */
+    void evicted(byte[] content, String key, int partition, long offset, long timestamp);
+}
@@ -0,0 +1,219 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the latest data stream element for every key of a topic together with a version (topic-wide counter which is incremented with every update).
+ * The versions enable incremental reads which only return the keys that have changed since a given version.
+ */
+public class LatestValueTable {
+
+    /**
+     * Latest data stream element of a key with the version of the update.
+     */
+    private static class LatestValue {
+
+        /**
+         * Content of the data stream element
+         */
+        private final byte[] content;
+
+        /**
+         * Partition of the data stream element
+         */
+        private final int partition;
+
+        /**
+         * Offset of the data stream element
+         */
+        private final long offset;
+
+        /**
+         * Timestamp of the data stream element
+         */
+        private final long timestamp;
+
+        /**
+         * Version of the update
+         */
+        private final long version;
+
+        /**
+         * LatestValue constructor.
+         *
+         * @param content   Content of the data stream element
+         * @param partition Partition of the data stream element
+         * @param offset    Offset of the data stream element
+         * @param timestamp Timestamp of the data stream element
+         * @param version   Version of the update
+         */
+        private LatestValue(byte[] content, int partition, long offset, long timestamp, long version) {
+            this.content = content;
+            this.partition = partition;
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Latest data stream element for every (deduplicated) key
+     */
+    private final ConcurrentHashMap<String, LatestValue> latestValues;
+
+    /**
+     * Version of the latest update (only published after the update is visible in latestValues)
+     */
+    private volatile long version;
+
+    /**
+     * LatestValueTable constructor.
+     */
+    public LatestValueTable() {
+        this.latestValues = new ConcurrentHashMap<>();
+        this.version = 0;
+    }
+
+    /**
+     * Updates the latest data stream element of a key.
+     *
+     * @param key       Deduplicated key of the data stream element
+     * @param content   Content of the data stream element
+     * @param partition Partition of the data stream element
+     * @param offset    Offset of the data stream element
+     * @param timestamp Timestamp of the data stream element
+     */
+    public void update(String key, byte[] content, int partition, long offset, long timestamp) {
+        synchronized (this.latestValues) { // to ensure that the versions are published in order (a reader which reads version v sees all updates up to v)
+            long newVersion = this.version + 1;
+            this.latestValues.put(key, new LatestValue(content, partition, offset, timestamp, newVersion));
+            this.version = newVersion;
+        }
+    }
+
+    /**
+     * Returns the version of the latest update.
+     *
+     * @return Version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Appends the JSON representations of the latest data stream elements to the JSON array.
+     * Has to be called after getVersion() such that all updates up to the returned version are included.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param topic         Topic of the data stream elements
+     * @param keys          Keys whose data stream elements are appended or null for all keys
+     * @param sinceVersion  Only data stream elements which have been updated after this version are appended
+     * @return Number of appended data stream elements
+     */
+    public int appendLatestJson(StringBuffer dataJsonArray, String topic, Collection<String> keys, long sinceVersion) {
+        int appended = 0;
+        if (keys == null) {
+            for (Map.Entry<String, LatestValue> entry : this.latestValues.entrySet()) {
+                appended = appendLatestValue(dataJsonArray, topic, entry.getKey(), entry.getValue(), sinceVersion, appended);
+            }
+        } else {
+            for (String key : keys) {
+                appended = appendLatestValue(dataJsonArray, topic, key, this.latestValues.get(key), sinceVersion, appended);
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Returns the latest data stream element of a key (the content is shared with the buffer and must not be modified).
+     *
+     * @param topic Topic of the data stream element
+     * @param key   Key
+     * @return Latest data stream element or null if there is no data stream element for the key
+     */
+    public DataStreamElement get(String topic, String key) {
+        LatestValue latestValue = this.latestValues.get(key);
+        return latestValue == null ? null : new DataStreamElement(latestValue.content, key, topic, latestValue.partition, latestValue.offset, latestValue.timestamp);
+    }
+
+    /**
+     * Adds the latest data stream elements to the list (the contents are shared with the buffer and must not be modified).
+     * Has to be called after getVersion() such that all updates up to the returned version are included.
+     *
+     * @param topic        Topic of the data stream elements
+     * @param keys         Keys whose data stream elements are added or null for all keys
+     * @param sinceVersion Only data stream elements which have been updated after this version are added
+     * @param result       List to which the data stream elements are added
+     */
+    public void collectLatest(String topic, Collection<String> keys, long sinceVersion, List<DataStreamElement> result) {
+        if (keys == null) {
+            for (Map.Entry<String, LatestValue> entry : this.latestValues.entrySet()) {
+                collectLatestValue(topic, entry.getKey(), entry.getValue(), sinceVersion, result);
+            }
+        } else {
+            for (String key : keys) {
+                collectLatestValue(topic, key, this.latestValues.get(key), sinceVersion, result);
+            }
+        }
+    }
+
+    /**
+     * Adds a latest data stream element to the list if it has been updated after the given version.
+     *
+     * @param topic        Topic of the data stream element
+     * @param key          Key of the data stream element
+     * @param latestValue  Latest data stream element or null
+     * @param sinceVersion Version
+     * @param result       List to which the data stream element is added
+     */
+    private static void collectLatestValue(String topic, String key, LatestValue latestValue, long sinceVersion, List<DataStreamElement> result) {
+        if (latestValue != null && latestValue.version > sinceVersion) {
+            result.add(new DataStreamElement(latestValue.content, key, topic, latestValue.partition, latestValue.offset, latestValue.timestamp));
+        }
+    }
+
+    /**
+     * Appends the JSON representation of a latest data stream element if it has been updated after the given version.
+     *
+     * @param dataJsonArray JSON array to which the data stream element is appended
+     * @param topic         Topic of the data stream element
+     * @param key           Key of the data stream element
+     * @param latestValue   Latest data stream element or null
+     * @param sinceVersion  Version
+     * @param appended      Number of data stream elements which are already in the JSON array
+     * @return Number of data stream elements in the JSON array
+     */
+    private static int appendLatestValue(StringBuffer dataJsonArray, String topic, String key, LatestValue latestValue, long sinceVersion, int appended) {
+        if (latestValue != null && latestValue.version > sinceVersion) {
+            if (appended > 0) {
+                dataJsonArray.append(",");
+            }
+            DataStreamElement.appendConsumeResultJson(dataJsonArray, latestValue.content, key, topic, latestValue.partition, latestValue.offset, latestValue.timestamp);
+            appended++;
+        }
+        return appended;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Copy-on-write snapshot of a rendered listing (e.g., of all topics or of all keys of a topic).
+ * Adding a new entry only increments the generation; the listing is rendered at most once per generation by the first reader and then swapped in atomically such that all further reads cost a single volatile read.
+ *
+ * @param <T> Type of the rendered listing
+ */
+public class ListingSnapshot<T> {
+
+    /**
+     * Rendered listing together with the generation it has been rendered for.
+     *
+     * @param <T> Type of the rendered listing
+     */
+    private static class Snapshot<T> {
+
+        /**
+         * Generation of the listing
+         */
+        private final long generation;
+
+        /**
+         * Rendered listing
+         */
+        private final T rendered;
+
+        /**
+         * Snapshot constructor.
+         *
+         * @param generation Generation of the listing
+         * @param rendered   Rendered listing
+         */
+        private Snapshot(long generation, T rendered) {
+            this.generation = generation;
+            this.rendered = rendered;
+        }
+    }
+
+    /**
+     * Generation of the listing (incremented after every new entry)
+     */
+    private final AtomicLong generation;
+
+    /**
+     * Latest rendered snapshot or null
+     */
+    private final AtomicReference<Snapshot<T>> snapshot;
+
+    /**
+     * ListingSnapshot constructor.
+     */
+    public ListingSnapshot() {
+        this.generation = new AtomicLong(0);
+        this.snapshot = new AtomicReference<>(null);
+    }
+
+    /**
+     * Invalidates the current snapshot. Has to be called after the new entry is visible for the renderer.
+     */
+    public void invalidate() {
+        this.generation.incrementAndGet();
+    }
+
+    /**
+     * Returns the rendered listing and renders it if a new entry has been added since the last rendering.
+     *
+     * @param renderer Renders the listing from the current entries
+     * @return Rendered listing
+     */
+    public T get(Supplier<T> renderer) {
+        long currentGeneration = this.generation.get(); // read before rendering such that the rendered listing contains at least all entries of this generation
+        Snapshot<T> currentSnapshot = this.snapshot.get();
+        if (currentSnapshot != null && currentSnapshot.generation >= currentGeneration) {
+            return currentSnapshot.rendered;
+        }
+
+        Snapshot<T> newSnapshot = new Snapshot<>(currentGeneration, renderer.get());
+        while (currentSnapshot == null || currentSnapshot.generation < currentGeneration) { // never replace a snapshot of a newer generation
+            if (this.snapshot.compareAndSet(currentSnapshot, newSnapshot)) {
+                break;
+            }
+            currentSnapshot = this.snapshot.get();
+        }
+        return newSnapshot.rendered;
+    }
+}
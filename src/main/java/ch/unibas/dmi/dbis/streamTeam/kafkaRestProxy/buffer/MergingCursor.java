@@ -0,0 +1,115 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Cursor which merges the cursors of multiple ring buffers of a topic, i.e., the partition ring buffers or the ring buffers of the keys with a prefix (k-way merge, latest first).
+ * The cursor with the latest current timestamp is taken next (ties are resolved by the lower partition and then by the higher offset), hence the order within a partition is kept and the merged order is deterministic.
+ * The filter and the downsampler are applied to the merged sequence, the ring buffer cursors only apply the time range and decode the contents. Not thread-safe (a cursor is used by a single REST API call).
+ */
+public class MergingCursor implements DataStreamCursor {
+
+    /**
+     * Ring buffer cursors which are not exhausted, ordered by the timestamp of their current data stream element (latest first)
+     */
+    private final PriorityQueue<RingBufferCursor> heads;
+
+    /**
+     * True if the contents are decoded
+     */
+    private final boolean decode;
+
+    /**
+     * Downsampler or null
+     */
+    private final Downsampler downsampler;
+
+    /**
+     * Filter and projection or null
+     */
+    private final ElementFilter filter;
+
+    /**
+     * MergingCursor constructor.
+     *
+     * @param cursors     Cursors of the ring buffers (opened without downsampler and filter)
+     * @param decode      True if the contents are decoded (the ring buffer cursors have been opened with a decoder)
+     * @param downsampler Downsampler (which is started with the number of candidates) or null
+     * @param filter      Filter and projection which is evaluated on the decoded contents or null
+     */
+    MergingCursor(List<RingBufferCursor> cursors, boolean decode, Downsampler downsampler, ElementFilter filter) {
+        this.heads = new PriorityQueue<>(Math.max(1, cursors.size()), (a, b) -> a.getCurrentTimestamp() != b.getCurrentTimestamp() ? Long.compare(b.getCurrentTimestamp(), a.getCurrentTimestamp())
+                : a.getCurrentPartition() != b.getCurrentPartition() ? Integer.compare(a.getCurrentPartition(), b.getCurrentPartition()) : Long.compare(b.getCurrentOffset(), a.getCurrentOffset()));
+        this.decode = decode;
+        this.downsampler = downsampler;
+        this.filter = filter;
+        int candidates = 0;
+        for (RingBufferCursor cursor : cursors) {
+            candidates += cursor.getRemaining();
+            if (cursor.advance()) {
+                this.heads.add(cursor);
+            }
+        }
+        if (downsampler != null) {
+            downsampler.start(candidates);
+        }
+    }
+
+    /**
+     * Appends the JSON representations of the next data stream elements of the merged sequence whose decoded contents match the filter and which are accepted by the downsampler to the JSON array.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param limit         Maximum number of appended data stream elements
+     * @param leadingComma  True if the JSON array already contains data stream elements
+     * @return Number of appended data stream elements (less than the limit if the cursor is exhausted)
+     */
+    @Override
+    public int appendConsumeResultJson(StringBuffer dataJsonArray, int limit, boolean leadingComma) {
+        int appended = 0;
+        while (appended < limit && !this.heads.isEmpty()) {
+            RingBufferCursor head = this.heads.poll();
+            long timestamp = head.getCurrentTimestamp();
+            String decodedJson = this.decode ? head.getCurrentDecodedJson() : null;
+            boolean accepted = true;
+            if (this.filter != null) {
+                decodedJson = this.filter.apply(decodedJson);
+                accepted = decodedJson != null;
+            }
+            if (accepted && this.downsampler != null) {
+                accepted = this.downsampler.accept(timestamp);
+            }
+            if (accepted) {
+                if (leadingComma || appended > 0) {
+                    dataJsonArray.append(",");
+                }
+                head.appendCurrentJson(dataJsonArray, decodedJson);
+                appended++;
+            }
+            if (head.advance()) {
+                this.heads.add(head);
+            }
+        }
+        return appended;
+    }
+}
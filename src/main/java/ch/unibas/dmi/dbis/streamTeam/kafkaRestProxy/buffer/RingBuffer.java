@@ -0,0 +1,543 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.PayloadDecoder;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-capacity buffer which stores the latest data stream elements of a topic-key-combination in primitive arrays (no per-element wrapper objects).
+ * The arrays grow on demand up to the capacity such that rarely used keys do not allocate the full capacity.
+ * All methods which access the arrays are synchronized to ensure that a ring buffer is only modified or read by one thread at a time.
+ * Reads only copy element references in chunks while holding the lock (see RingBufferCursor) and render the JSON representations after releasing it.
+ */
+public class RingBuffer {
+
+    /**
+     * Initial length of the arrays
+     */
+    private static final int INITIAL_LENGTH = 8;
+
+    /**
+     * Maximum number of data stream elements which are copied per chunk by a cursor
+     */
+    private static final int CHUNK_LENGTH = 256;
+
+    /**
+     * Marker for cached contents which cannot be decoded (compared by identity)
+     */
+    static final String UNDECODABLE = new String("");
+
+    /**
+     * Maximum number of data stream elements in the ring buffer
+     */
+    private final int capacity;
+
+    /**
+     * Key of all data stream elements in the ring buffer or null if the keys are stored per element (partition ring buffers)
+     */
+    private final String key;
+
+    /**
+     * Listener which is notified about evicted data stream elements or null
+     */
+    private final EvictionListener evictionListener;
+
+    /**
+     * Contents of the data stream elements
+     */
+    private byte[][] contents;
+
+    /**
+     * Partitions of the data stream elements
+     */
+    private int[] partitions;
+
+    /**
+     * Offsets of the data stream elements
+     */
+    private long[] offsets;
+
+    /**
+     * Timestamps of the data stream elements
+     */
+    private long[] timestamps;
+
+    /**
+     * Monotonic time index (maximum timestamp of all data stream elements up to and including the data stream element), enables binary search even if the timestamps are not strictly ordered
+     */
+    private long[] timeIndex;
+
+    /**
+     * Maximum lateness (time index minus timestamp) of all data stream elements which have ever been added (bounds how far an out-of-order data stream element can lie behind the time index)
+     */
+    private long maxLateness;
+
+    /**
+     * Keys of the data stream elements (only if key is null, references the deduplicated key strings of the topic)
+     */
+    private String[] keys;
+
+    /**
+     * Counter of the topic-wide sequence numbers or null (only for the partition ring buffers of a topic, whose data stream elements are merged with a topic-wide cursor)
+     */
+    private final AtomicLong topicSequence;
+
+    /**
+     * Topic-wide sequence numbers of the data stream elements (only if topicSequence is not null)
+     */
+    private long[] topicSequences;
+
+    /**
+     * Cached JSON representations of the decoded contents (allocated on the first read with a decoder, UNDECODABLE if the content cannot be decoded)
+     */
+    private String[] decoded;
+
+    /**
+     * Index at which the next data stream element is stored
+     */
+    private int head;
+
+    /**
+     * Number of data stream elements in the ring buffer
+     */
+    private int size;
+
+    /**
+     * Number of data stream elements which have ever been added (the i-th latest data stream element has the sequence number sequence - 1 - i)
+     */
+    private long sequence;
+
+    /**
+     * RingBuffer constructor.
+     *
+     * @param capacity Maximum number of data stream elements in the ring buffer
+     * @param key      Key of all data stream elements in the ring buffer or null if the keys have to be stored per element
+     */
+    public RingBuffer(int capacity, String key) {
+        this(capacity, key, null);
+    }
+
+    /**
+     * RingBuffer constructor.
+     *
+     * @param capacity         Maximum number of data stream elements in the ring buffer
+     * @param key              Key of all data stream elements in the ring buffer or null if the keys have to be stored per element
+     * @param evictionListener Listener which is notified about evicted data stream elements or null
+     */
+    public RingBuffer(int capacity, String key, EvictionListener evictionListener) {
+        this(capacity, key, evictionListener, null);
+    }
+
+    /**
+     * RingBuffer constructor for a partition ring buffer of a topic.
+     *
+     * @param capacity         Maximum number of data stream elements in the ring buffer
+     * @param key              Key of all data stream elements in the ring buffer or null if the keys have to be stored per element
+     * @param evictionListener Listener which is notified about evicted data stream elements or null
+     * @param topicSequence    Counter of the topic-wide sequence numbers (shared by the partition ring buffers of the topic) or null
+     */
+    public RingBuffer(int capacity, String key, EvictionListener evictionListener, AtomicLong topicSequence) {
+        this.capacity = capacity;
+        this.key = key;
+        this.evictionListener = evictionListener;
+        int length = Math.min(INITIAL_LENGTH, capacity);
+        this.contents = new byte[length][];
+        this.partitions = new int[length];
+        this.offsets = new long[length];
+        this.timestamps = new long[length];
+        this.timeIndex = new long[length];
+        this.keys = key == null ? new String[length] : null;
+        this.topicSequence = topicSequence;
+        this.topicSequences = topicSequence == null ? null : new long[length];
+        this.decoded = null;
+        this.maxLateness = 0;
+        this.head = 0;
+        this.size = 0;
+        this.sequence = 0;
+    }
+
+    /**
+     * Adds a data stream element to the ring buffer and overwrites the oldest data stream element if the ring buffer is full.
+     *
+     * @param content   Content of the data stream element
+     * @param key       Deduplicated key of the data stream element
+     * @param partition Partition of the data stream element
+     * @param offset    Offset of the data stream element
+     * @param timestamp Timestamp of the data stream element
+     */
+    public synchronized void add(byte[] content, String key, int partition, long offset, long timestamp) {
+        if (this.size == this.contents.length && this.contents.length < this.capacity) {
+            grow();
+        }
+        long previousTimeIndex = this.size == 0 ? Long.MIN_VALUE : this.timeIndex[indexOf(0)];
+        if (this.size == this.capacity && this.evictionListener != null) {
+            this.evictionListener.evicted(this.contents[this.head], this.keys == null ? this.key : this.keys[this.head], this.partitions[this.head], this.offsets[this.head], this.timestamps[this.head]);
+        }
+        this.contents[this.head] = content;
+        this.partitions[this.head] = partition;
+        this.offsets[this.head] = offset;
+        this.timestamps[this.head] = timestamp;
+        this.timeIndex[this.head] = Math.max(previousTimeIndex, timestamp);
+        long lateness = this.timeIndex[this.head] - timestamp;
+        if (lateness > this.maxLateness || lateness < 0) { // negative on overflow
+            this.maxLateness = lateness < 0 ? Long.MAX_VALUE : lateness;
+        }
+        if (this.keys != null) {
+            this.keys[this.head] = key;
+        }
+        if (this.topicSequences != null) {
+            this.topicSequences[this.head] = this.topicSequence.getAndIncrement(); // while holding the lock such that a reader which sees the counter value also sees the data stream element
+        }
+        if (this.decoded != null) {
+            this.decoded[this.head] = null;
+        }
+        this.head = (this.head + 1) % this.contents.length;
+        if (this.size < this.contents.length) {
+            this.size++;
+        }
+        this.sequence++;
+    }
+
+    /**
+     * Doubles the length of the arrays (at most up to the capacity). Only called if the ring buffer is full, i.e., the oldest element is at index head.
+     */
+    private void grow() {
+        int newLength = (int) Math.min((long) this.contents.length * 2, this.capacity);
+        this.contents = unroll(this.contents, newLength);
+        this.partitions = unroll(this.partitions, newLength);
+        this.offsets = unroll(this.offsets, newLength);
+        this.timestamps = unroll(this.timestamps, newLength);
+        this.timeIndex = unroll(this.timeIndex, newLength);
+        if (this.keys != null) {
+            this.keys = unroll(this.keys, newLength);
+        }
+        if (this.topicSequences != null) {
+            this.topicSequences = unroll(this.topicSequences, newLength);
+        }
+        if (this.decoded != null) {
+            this.decoded = unroll(this.decoded, newLength);
+        }
+        this.head = this.size;
+    }
+
+    /**
+     * Copies a full ring buffer array into a new array such that the oldest element is at index 0.
+     *
+     * @param array     Array
+     * @param newLength Length of the new array
+     * @param <T>       Type of the array elements
+     * @return New array
+     */
+    private <T> T[] unroll(T[] array, int newLength) {
+        T[] result = Arrays.copyOf(array, newLength);
+        System.arraycopy(array, this.head, result, 0, this.size - this.head);
+        System.arraycopy(array, 0, result, this.size - this.head, this.head);
+        return result;
+    }
+
+    /**
+     * Copies a full ring buffer array into a new array such that the oldest element is at index 0.
+     *
+     * @param array     Array
+     * @param newLength Length of the new array
+     * @return New array
+     */
+    private int[] unroll(int[] array, int newLength) {
+        int[] result = new int[newLength];
+        System.arraycopy(array, this.head, result, 0, this.size - this.head);
+        System.arraycopy(array, 0, result, this.size - this.head, this.head);
+        return result;
+    }
+
+    /**
+     * Copies a full ring buffer array into a new array such that the oldest element is at index 0.
+     *
+     * @param array     Array
+     * @param newLength Length of the new array
+     * @return New array
+     */
+    private long[] unroll(long[] array, int newLength) {
+        long[] result = new long[newLength];
+        System.arraycopy(array, this.head, result, 0, this.size - this.head);
+        System.arraycopy(array, 0, result, this.size - this.head, this.head);
+        return result;
+    }
+
+    /**
+     * Returns the key of all data stream elements in the ring buffer.
+     *
+     * @return Key or null if the keys are stored per element
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Returns the number of data stream elements in the ring buffer.
+     *
+     * @return Number of data stream elements
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the array index of the i-th latest data stream element.
+     *
+     * @param i Position (0 = latest data stream element)
+     * @return Array index
+     */
+    private int indexOf(int i) {
+        int index = this.head - 1 - i;
+        return index < 0 ? index + this.contents.length : index;
+    }
+
+    /**
+     * Returns the position of the latest data stream element whose time index is not greater than the given time (binary search since the time index decreases with the position).
+     *
+     * @param time Time
+     * @return Position (0 = latest data stream element) or size if there is no such data stream element
+     */
+    private int firstPositionNotAfter(long time) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.timeIndex[indexOf(middle)] > time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the latest data stream element whose timestamp may not be greater than the end of a time range.
+     * Since the time index is a running maximum, an out-of-order data stream element with a timestamp in the time range can have a time index which is greater than the end of the time range,
+     * but never by more than the maximum lateness. Hence, the binary search is done with the end of the time range plus the maximum lateness.
+     *
+     * @param to End of the time range (inclusive)
+     * @return Position (0 = latest data stream element) from which on the data stream elements have to be checked
+     */
+    private int firstPositionForTo(long to) {
+        if (to == Long.MAX_VALUE || to + this.maxLateness < to) { // no binary search if the bound overflows
+            return 0;
+        }
+        return firstPositionNotAfter(to + this.maxLateness);
+    }
+
+    /**
+     * Appends the JSON representations of the latest data stream elements (latest first) to the JSON array.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param topic         Topic of the data stream elements
+     * @param limit         Maximum number of data stream elements
+     * @return Number of appended data stream elements
+     */
+    public int appendConsumeResultJson(StringBuffer dataJsonArray, String topic, int limit) {
+        return appendConsumeResultJson(dataJsonArray, topic, limit, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null, null);
+    }
+
+    /**
+     * Appends the JSON representations of the latest data stream elements (latest first) whose timestamps are in the time range, whose decoded contents match the filter and which are accepted by the downsampler to the JSON array.
+     * The start of the time range is determined with a binary search over the time index such that a read costs O(log n + k), the skipped data stream elements are never materialized.
+     * The filter is evaluated before the downsampling such that the downsampler only sees matching data stream elements. The decoded contents are cached such that every content is decoded at most once per ring buffer.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param topic         Topic of the data stream elements
+     * @param limit         Maximum number of appended data stream elements
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param oldestOffsets Map which is filled with the offset of the oldest data stream element in the ring buffer per partition (required for deep reads), or null
+     * @param downsampler   Downsampler or null to append all data stream elements
+     * @param decoder       Decoder for the contents or null to append the base64-encoded contents (required if a filter is given)
+     * @param filter        Filter and projection which is evaluated on the decoded contents or null
+     * @return Number of appended data stream elements
+     */
+    public int appendConsumeResultJson(StringBuffer dataJsonArray, String topic, int limit, long from, long to, Map<Integer, Long> oldestOffsets, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        if (oldestOffsets != null) {
+            collectOldestOffsets(oldestOffsets);
+        }
+        return openCursor(topic, limit, from, to, downsampler, decoder, filter).appendConsumeResultJson(dataJsonArray, limit, false);
+    }
+
+    /**
+     * Fills the map with the offset of the oldest data stream element in the ring buffer per partition.
+     *
+     * @param oldestOffsets Map which is filled with the offset of the oldest data stream element per partition
+     */
+    synchronized void collectOldestOffsets(Map<Integer, Long> oldestOffsets) {
+        for (int i = 0; i < this.size; ++i) {
+            int index = indexOf(i);
+            Long oldestOffset = oldestOffsets.get(this.partitions[index]);
+            if (oldestOffset == null || this.offsets[index] < oldestOffset) {
+                oldestOffsets.put(this.partitions[index], this.offsets[index]);
+            }
+        }
+    }
+
+    /**
+     * Opens a cursor over the data stream elements whose timestamps may be in the time range (determined with a binary search over the time index, see firstPositionForTo).
+     * The cursor only references the sequence range of the data stream elements, i.e., opening it costs O(log n) regardless of the number of data stream elements.
+     *
+     * @param topic       Topic of the data stream elements
+     * @param limit       Expected maximum number of data stream elements which are read with the cursor (only limits the chunk length)
+     * @param from        Start of the time range (inclusive)
+     * @param to          End of the time range (inclusive)
+     * @param downsampler Downsampler (which is started with the number of candidates) or null
+     * @param decoder     Decoder for the contents or null to render the base64-encoded contents (required if a filter is given)
+     * @param filter      Filter and projection which is evaluated on the decoded contents or null
+     * @return Cursor
+     */
+    public synchronized RingBufferCursor openCursor(String topic, int limit, long from, long to, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        int start = firstPositionForTo(to);
+        int end = from == Long.MIN_VALUE ? this.size : firstPositionNotAfter(from - 1); // all older data stream elements have smaller timestamps
+        if (downsampler != null) {
+            downsampler.start(end - start);
+        }
+        int chunkLength = Math.max(1, Math.min(CHUNK_LENGTH, Math.min(limit, end - start)));
+        return new RingBufferCursor(this, topic, from, to, downsampler, decoder, filter, this.sequence - 1 - start, this.sequence - end, chunkLength, this.keys != null);
+    }
+
+    /**
+     * Copies the next chunk of element references (latest first, starting at the next sequence number of the cursor) into the chunk arrays of the cursor.
+     * Stops at data stream elements which have already been evicted.
+     *
+     * @param cursor         Cursor
+     * @param lowestSequence Sequence number of the oldest data stream element of the snapshot of the cursor
+     */
+    synchronized void copyChunk(RingBufferCursor cursor, long lowestSequence) {
+        int position = (int) Math.min(this.sequence - 1 - cursor.nextSequence, Integer.MAX_VALUE);
+        int chunkSize = (int) Math.max(0, Math.min(Math.min(cursor.contents.length, cursor.nextSequence - lowestSequence + 1), this.size - position));
+        for (int i = 0; i < chunkSize; ++i) {
+            int index = indexOf(position + i);
+            cursor.contents[i] = this.contents[index];
+            cursor.partitions[i] = this.partitions[index];
+            cursor.offsets[i] = this.offsets[index];
+            cursor.timestamps[i] = this.timestamps[index];
+            if (cursor.keys != null) {
+                cursor.keys[i] = this.keys[index];
+            }
+            if (cursor.decoded != null) {
+                cursor.decoded[i] = this.decoded == null ? null : this.decoded[index];
+            }
+        }
+        cursor.chunkSequence = cursor.nextSequence;
+        cursor.chunkSize = chunkSize;
+        cursor.nextSequence -= chunkSize;
+    }
+
+    /**
+     * Caches the decoded content of a data stream element if it has not been evicted in the meantime.
+     *
+     * @param sequence    Sequence number of the data stream element
+     * @param content     Content of the data stream element (compared by identity)
+     * @param decodedJson JSON representation of the decoded content or UNDECODABLE
+     */
+    synchronized void cacheDecoded(long sequence, byte[] content, String decodedJson) {
+        long position = this.sequence - 1 - sequence;
+        if (position < this.size) {
+            int index = indexOf((int) position);
+            if (this.contents[index] == content) {
+                if (this.decoded == null) {
+                    this.decoded = new String[this.contents.length];
+                }
+                this.decoded[index] = decodedJson;
+            }
+        }
+    }
+
+    /**
+     * Adds the latest data stream elements (latest first) whose timestamps are in the time range to the list (for merging the data stream elements of multiple ring buffers).
+     *
+     * @param topic  Topic of the data stream elements
+     * @param limit  Maximum number of data stream elements
+     * @param from   Start of the time range (inclusive)
+     * @param to     End of the time range (inclusive)
+     * @param result List to which the data stream elements are added
+     */
+    public void collect(String topic, int limit, long from, long to, List<DataStreamElement> result) {
+        collect(topic, limit, from, to, 0, result);
+    }
+
+    /**
+     * Adds the latest data stream elements (latest first) whose timestamps are in the time range and which have been added since the given sequence number to the list (for incremental reads with a cursor).
+     *
+     * @param topic         Topic of the data stream elements
+     * @param limit         Maximum number of data stream elements
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param sinceSequence Sequence number of the oldest data stream element which may be added (cursor of the previous call, 0 for all)
+     * @param result        List to which the data stream elements are added
+     * @return Sequence number of the next data stream element (cursor for the next call)
+     */
+    public synchronized long collect(String topic, int limit, long from, long to, long sinceSequence, List<DataStreamElement> result) {
+        long added = this.sequence - sinceSequence;
+        int positions = added < 0 || added > this.size ? this.size : (int) added; // a cursor which is ahead of the sequence number stems from an earlier ring buffer (e.g., before a restart)
+        int collected = 0;
+        for (int i = firstPositionForTo(to); i < positions && collected < limit; ++i) {
+            int index = indexOf(i);
+            if (this.timeIndex[index] < from) {
+                break; // all older data stream elements have smaller timestamps
+            }
+            long timestamp = this.timestamps[index];
+            if (timestamp >= from && timestamp <= to) {
+                result.add(new DataStreamElement(this.contents[index], this.keys == null ? this.key : this.keys[index], topic, this.partitions[index], this.offsets[index], timestamp));
+                collected++;
+            }
+        }
+        return this.sequence;
+    }
+
+    /**
+     * Adds the latest data stream elements (latest first) whose timestamps are in the time range and whose topic-wide sequence numbers are in the sequence range to the list
+     * (for merging the partition ring buffers of a topic with a topic-wide cursor). Only for ring buffers with topic-wide sequence numbers.
+     *
+     * @param topic              Topic of the data stream elements
+     * @param limit              Maximum number of data stream elements
+     * @param from               Start of the time range (inclusive)
+     * @param to                 End of the time range (inclusive)
+     * @param sinceTopicSequence Start of the sequence range (inclusive)
+     * @param untilTopicSequence End of the sequence range (exclusive)
+     * @param result             List to which the data stream elements are added
+     */
+    synchronized void collectInTopicSequenceRange(String topic, int limit, long from, long to, long sinceTopicSequence, long untilTopicSequence, List<DataStreamElement> result) {
+        int collected = 0;
+        for (int i = firstPositionForTo(to); i < this.size && collected < limit; ++i) {
+            int index = indexOf(i);
+            long topicSequence = this.topicSequences[index];
+            if (topicSequence < sinceTopicSequence || this.timeIndex[index] < from) {
+                break; // all older data stream elements have smaller sequence numbers and smaller timestamps
+            }
+            long timestamp = this.timestamps[index];
+            if (topicSequence < untilTopicSequence && timestamp >= from && timestamp <= to) {
+                result.add(new DataStreamElement(this.contents[index], this.keys == null ? this.key : this.keys[index], topic, this.partitions[index], this.offsets[index], timestamp));
+                collected++;
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.PayloadDecoder;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+
+/**
+ * Cursor over a snapshot of the data stream elements of a ring buffer in a time range (latest first), identified by their sequence range at the time the cursor was opened.
+ * The cursor copies chunks of element references while holding the lock of the ring buffer and renders them after releasing it, such that the ingest never waits for the serialization of a read.
+ * Data stream elements which are evicted while the cursor is in use are skipped. Not thread-safe (a cursor is used by a single REST API call).
+ */
+public class RingBufferCursor implements DataStreamCursor {
+
+    /**
+     * Ring buffer
+     */
+    private final RingBuffer ringBuffer;
+
+    /**
+     * Topic of the data stream elements
+     */
+    private final String topic;
+
+    /**
+     * Start of the time range (inclusive)
+     */
+    private final long from;
+
+    /**
+     * End of the time range (inclusive)
+     */
+    private final long to;
+
+    /**
+     * Downsampler or null
+     */
+    private final Downsampler downsampler;
+
+    /**
+     * Decoder for the contents or null
+     */
+    private final PayloadDecoder decoder;
+
+    /**
+     * Filter and projection or null
+     */
+    private final ElementFilter filter;
+
+    /**
+     * Sequence number of the oldest data stream element of the snapshot
+     */
+    private final long lowestSequence;
+
+    /**
+     * Sequence number of the next data stream element which is copied into a chunk
+     */
+    long nextSequence;
+
+    /**
+     * Contents of the current chunk
+     */
+    final byte[][] contents;
+
+    /**
+     * Keys of the current chunk (only if the ring buffer stores the keys per element)
+     */
+    final String[] keys;
+
+    /**
+     * Partitions of the current chunk
+     */
+    final int[] partitions;
+
+    /**
+     * Offsets of the current chunk
+     */
+    final long[] offsets;
+
+    /**
+     * Timestamps of the current chunk
+     */
+    final long[] timestamps;
+
+    /**
+     * Cached decoded contents of the current chunk
+     */
+    final String[] decoded;
+
+    /**
+     * Sequence number of the first (latest) data stream element of the current chunk
+     */
+    long chunkSequence;
+
+    /**
+     * Number of data stream elements in the current chunk
+     */
+    int chunkSize;
+
+    /**
+     * Position of the next data stream element in the current chunk
+     */
+    private int chunkPosition;
+
+    /**
+     * Position of the current data stream element in the current chunk (set by advance())
+     */
+    private int current;
+
+    /**
+     * RingBufferCursor constructor (called by the ring buffer while holding its lock).
+     *
+     * @param ringBuffer      Ring buffer
+     * @param topic           Topic of the data stream elements
+     * @param from            Start of the time range (inclusive)
+     * @param to              End of the time range (inclusive)
+     * @param downsampler     Downsampler or null
+     * @param decoder         Decoder for the contents or null
+     * @param filter          Filter and projection or null
+     * @param highestSequence Sequence number of the latest data stream element of the snapshot
+     * @param lowestSequence  Sequence number of the oldest data stream element of the snapshot
+     * @param chunkLength     Maximum number of data stream elements per chunk
+     * @param perElementKeys  True if the ring buffer stores the keys per element
+     */
+    RingBufferCursor(RingBuffer ringBuffer, String topic, long from, long to, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter, long highestSequence, long lowestSequence, int chunkLength, boolean perElementKeys) {
+        this.ringBuffer = ringBuffer;
+        this.topic = topic;
+        this.from = from;
+        this.to = to;
+        this.downsampler = downsampler;
+        this.decoder = decoder;
+        this.filter = filter;
+        this.lowestSequence = lowestSequence;
+        this.nextSequence = highestSequence;
+        this.contents = new byte[chunkLength][];
+        this.keys = perElementKeys ? new String[chunkLength] : null;
+        this.partitions = new int[chunkLength];
+        this.offsets = new long[chunkLength];
+        this.timestamps = new long[chunkLength];
+        this.decoded = decoder == null ? null : new String[chunkLength];
+        this.chunkSequence = highestSequence;
+        this.chunkSize = 0;
+        this.chunkPosition = 0;
+        this.current = -1;
+    }
+
+    /**
+     * Returns the number of data stream elements which remain to be copied (upper bound for the remaining data stream elements in the time range).
+     *
+     * @return Number of remaining data stream elements
+     */
+    public int getRemaining() {
+        return (int) Math.max(0, this.nextSequence - this.lowestSequence + 1) + (this.chunkSize - this.chunkPosition);
+    }
+
+    /**
+     * Appends the JSON representations of the next data stream elements whose timestamps are in the time range, whose decoded contents match the filter and which are accepted by the downsampler to the JSON array.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param limit         Maximum number of appended data stream elements
+     * @param leadingComma  True if the JSON array already contains data stream elements
+     * @return Number of appended data stream elements (less than the limit if the cursor is exhausted)
+     */
+    @Override
+    public int appendConsumeResultJson(StringBuffer dataJsonArray, int limit, boolean leadingComma) {
+        int appended = 0;
+        while (appended < limit && advance()) {
+            String decodedJson = this.decoder == null ? null : getCurrentDecodedJson();
+            if (this.filter != null) {
+                decodedJson = this.filter.apply(decodedJson);
+                if (decodedJson == null) {
+                    continue;
+                }
+            }
+            if (this.downsampler != null && !this.downsampler.accept(this.timestamps[this.current])) {
+                continue;
+            }
+            if (leadingComma || appended > 0) {
+                dataJsonArray.append(",");
+            }
+            appendCurrentJson(dataJsonArray, decodedJson);
+            appended++;
+        }
+        return appended;
+    }
+
+    /**
+     * Moves to the next data stream element whose timestamp is in the time range.
+     *
+     * @return True if there is such a data stream element, false if the cursor is exhausted
+     */
+    boolean advance() {
+        while (true) {
+            if (this.chunkPosition == this.chunkSize && !nextChunk()) {
+                return false;
+            }
+            this.current = this.chunkPosition++;
+            long timestamp = this.timestamps[this.current];
+            if (timestamp >= this.from && timestamp <= this.to) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the timestamp of the current data stream element.
+     *
+     * @return Timestamp
+     */
+    long getCurrentTimestamp() {
+        return this.timestamps[this.current];
+    }
+
+    /**
+     * Returns the partition of the current data stream element.
+     *
+     * @return Partition
+     */
+    int getCurrentPartition() {
+        return this.partitions[this.current];
+    }
+
+    /**
+     * Returns the offset of the current data stream element.
+     *
+     * @return Offset
+     */
+    long getCurrentOffset() {
+        return this.offsets[this.current];
+    }
+
+    /**
+     * Appends the JSON representation of the current data stream element.
+     *
+     * @param dataJsonArray JSON array to which the data stream element is appended
+     * @param decodedJson   JSON representation of the decoded (and projected) content or null to append the base64-encoded content
+     */
+    void appendCurrentJson(StringBuffer dataJsonArray, String decodedJson) {
+        String key = this.keys == null ? this.ringBuffer.getKey() : this.keys[this.current];
+        DataStreamElement.appendConsumeResultJson(dataJsonArray, this.contents[this.current], decodedJson, key, this.topic, this.partitions[this.current], this.offsets[this.current], this.timestamps[this.current]);
+    }
+
+    /**
+     * Copies the next chunk of element references from the ring buffer.
+     *
+     * @return True if the chunk contains data stream elements, false if the cursor is exhausted
+     */
+    private boolean nextChunk() {
+        if (this.nextSequence < this.lowestSequence) {
+            return false;
+        }
+        this.chunkPosition = 0;
+        this.ringBuffer.copyChunk(this, this.lowestSequence);
+        if (this.chunkSize == 0) {
+            this.nextSequence = this.lowestSequence - 1; // the remaining data stream elements have been evicted
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the decoded content of the current data stream element, decodes it (outside the lock of the ring buffer) and caches it in the ring buffer if it has not been decoded yet.
+     *
+     * @return JSON representation of the decoded content or null if the content cannot be decoded
+     */
+    String getCurrentDecodedJson() {
+        int i = this.current;
+        String decodedJson = this.decoded[i];
+        if (decodedJson == null) {
+            decodedJson = this.decoder.decodeToJsonOrNull(this.contents[i]);
+            this.ringBuffer.cacheDecoded(this.chunkSequence - i, this.contents[i], decodedJson == null ? RingBuffer.UNDECODABLE : decodedJson);
+            return decodedJson;
+        }
+        return decodedJson == RingBuffer.UNDECODABLE ? null : decodedJson;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.PayloadDecoder;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill.SpillStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers the latest data stream elements of a single topic for each key and for each partition.
+ * The dedicated all-key is served by merging the partition ring buffers at read time (k-way merge by timestamp), such that the partitions never contend on a shared ring buffer
+ * and the order of the merged data stream elements is deterministic (the order within a partition is kept).
+ */
+public class TopicBuffer {
+
+    /**
+     * Topic (shared by all data stream elements of the topic buffer)
+     */
+    public final String topic;
+
+    /**
+     * The number of data stream elements that are buffered for each key and for each partition
+     */
+    private final int bufferSize;
+
+    /**
+     * Ring buffers for the keys (the keys of the map are the deduplicated key strings)
+     */
+    private final ConcurrentHashMap<String, RingBuffer> ringBuffersForKeys;
+
+    /**
+     * Sorted index of the ring buffers for the keys (only updated if a new key appears, enables lock-free prefix queries and paginated listings)
+     */
+    private final ConcurrentSkipListMap<String, RingBuffer> keyIndex;
+
+    /**
+     * Snapshot of the rendered listing of all keys (invalidated if a new key appears)
+     */
+    private final ListingSnapshot<RestResult> keyListing;
+
+    /**
+     * Ring buffers for the partitions indexed by partition (null for partitions without data stream elements, replaced by a longer copy if a higher partition appears)
+     */
+    private volatile RingBuffer[] ringBuffersForPartitions;
+
+    /**
+     * Counter of the topic-wide sequence numbers of the partition ring buffers (cursor for incremental reads of the dedicated all-key)
+     */
+    private final AtomicLong topicSequence;
+
+    /**
+     * SpillStore to which the data stream elements evicted from the partition ring buffers are handed over or null
+     */
+    private final SpillStore spillStore;
+
+    /**
+     * Latest data stream element for every key
+     */
+    private final LatestValueTable latestValueTable;
+
+    /**
+     * Exponential moving average of the content sizes in bytes (concurrent updates may get lost, which is acceptable for an estimate)
+     */
+    private volatile double averageContentBytes;
+
+    /**
+     * TopicBuffer constructor.
+     *
+     * @param topic      Topic
+     * @param bufferSize The number of data stream elements that are buffered for each key and for each partition
+     * @param spillStore SpillStore to which the data stream elements evicted from the partition ring buffers are handed over or null
+     */
+    public TopicBuffer(String topic, int bufferSize, SpillStore spillStore) {
+        this.topic = topic;
+        this.bufferSize = bufferSize;
+        this.ringBuffersForKeys = new ConcurrentHashMap<>();
+        this.keyIndex = new ConcurrentSkipListMap<>();
+        this.keyListing = new ListingSnapshot<>();
+        this.latestValueTable = new LatestValueTable();
+        this.averageContentBytes = 0;
+        this.ringBuffersForPartitions = new RingBuffer[0];
+        this.topicSequence = new AtomicLong();
+        this.spillStore = spillStore;
+    }
+
+    /**
+     * Returns the ring buffer for a partition and creates it if it does not exist yet.
+     *
+     * @param partition Partition
+     * @return Ring buffer for the partition
+     */
+    private RingBuffer getOrCreateRingBufferForPartition(int partition) {
+        RingBuffer[] ringBuffers = this.ringBuffersForPartitions;
+        if (partition < ringBuffers.length && ringBuffers[partition] != null) {
+            return ringBuffers[partition];
+        }
+        synchronized (this.topicSequence) { // copy-on-write such that the readers never lock
+            ringBuffers = this.ringBuffersForPartitions;
+            if (partition < ringBuffers.length && ringBuffers[partition] != null) {
+                return ringBuffers[partition];
+            }
+            RingBuffer[] newRingBuffers = Arrays.copyOf(ringBuffers, Math.max(ringBuffers.length, partition + 1));
+            if (this.spillStore == null) {
+                newRingBuffers[partition] = new RingBuffer(this.bufferSize, null, null, this.topicSequence);
+            } else {
+                // Every data stream element is evicted exactly once from the ring buffer of its partition
+                SpillStore spillStore = this.spillStore;
+                newRingBuffers[partition] = new RingBuffer(this.bufferSize, null, (content, key, p, offset, timestamp) -> spillStore.spill(new DataStreamElement(content, key, this.topic, p, offset, timestamp)), this.topicSequence);
+            }
+            this.ringBuffersForPartitions = newRingBuffers;
+            return newRingBuffers[partition];
+        }
+    }
+
+    /**
+     * Adds a new data stream element to the ring buffer of its key and to the ring buffer of its partition (thread-safe).
+     *
+     * @param dataStreamElement Data stream element
+     */
+    public void add(DataStreamElement dataStreamElement) {
+        // Get or create ring buffer for the key of the dataStreamElement
+        RingBuffer ringBufferForKey = this.ringBuffersForKeys.get(dataStreamElement.key);
+        if (ringBufferForKey == null) {
+            synchronized (this.ringBuffersForKeys) { // to ensure that the ringBufferForKey is not replaced with an empty ring buffer after it has been filled with a data stream element (can happen if there is a context switch between creating an empty ring buffer and adding it to the map)
+                ringBufferForKey = this.ringBuffersForKeys.get(dataStreamElement.key);
+                if (ringBufferForKey == null) {
+                    ringBufferForKey = new RingBuffer(this.bufferSize, dataStreamElement.key);
+                    this.ringBuffersForKeys.put(dataStreamElement.key, ringBufferForKey);
+                    this.keyIndex.put(ringBufferForKey.getKey(), ringBufferForKey);
+                    this.keyListing.invalidate();
+                }
+            }
+        }
+
+        // Use the key string of the ring buffer such that the partition ring buffer does not reference a new key string per data stream element
+        String deduplicatedKey = ringBufferForKey.getKey();
+        ringBufferForKey.add(dataStreamElement.content, deduplicatedKey, dataStreamElement.partition, dataStreamElement.offset, dataStreamElement.timestamp);
+        getOrCreateRingBufferForPartition(dataStreamElement.partition).add(dataStreamElement.content, deduplicatedKey, dataStreamElement.partition, dataStreamElement.offset, dataStreamElement.timestamp);
+        this.latestValueTable.update(deduplicatedKey, dataStreamElement.content, dataStreamElement.partition, dataStreamElement.offset, dataStreamElement.timestamp);
+        int contentBytes = dataStreamElement.content == null ? 0 : dataStreamElement.content.length; // a null content (tombstone) counts as 0 bytes
+        double average = this.averageContentBytes;
+        this.averageContentBytes = average == 0 ? contentBytes : average + (contentBytes - average) / 64;
+    }
+
+    /**
+     * Returns the exponential moving average of the content sizes.
+     *
+     * @return Average content size in bytes
+     */
+    public double getAverageContentBytes() {
+        return this.averageContentBytes;
+    }
+
+    /**
+     * Returns the ring buffer for a key.
+     *
+     * @param key Key
+     * @return Ring buffer or null if there is no data stream element with this key
+     */
+    public RingBuffer getRingBufferForKey(String key) {
+        return this.ringBuffersForKeys.get(key);
+    }
+
+    /**
+     * Returns the ring buffers for all keys which start with the prefix (in key order).
+     *
+     * @param prefix Prefix of the keys (empty for all keys)
+     * @return Ring buffers
+     */
+    public Collection<RingBuffer> getRingBuffersForKeyPrefix(String prefix) {
+        List<RingBuffer> ringBuffers = new ArrayList<>();
+        for (Map.Entry<String, RingBuffer> entry : this.keyIndex.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            ringBuffers.add(entry.getValue());
+        }
+        return ringBuffers;
+    }
+
+    /**
+     * Returns the ring buffer for a partition.
+     *
+     * @param partition Partition
+     * @return Ring buffer or null if there is no data stream element in this partition
+     */
+    public RingBuffer getRingBufferForPartition(int partition) {
+        RingBuffer[] ringBuffers = this.ringBuffersForPartitions;
+        return partition >= 0 && partition < ringBuffers.length ? ringBuffers[partition] : null;
+    }
+
+    /**
+     * Returns the ring buffers of all partitions with data stream elements (in partition order).
+     *
+     * @return Ring buffers
+     */
+    public List<RingBuffer> getRingBuffersForPartitions() {
+        List<RingBuffer> ringBuffers = new ArrayList<>();
+        for (RingBuffer ringBuffer : this.ringBuffersForPartitions) {
+            if (ringBuffer != null) {
+                ringBuffers.add(ringBuffer);
+            }
+        }
+        return ringBuffers;
+    }
+
+    /**
+     * Opens a cursor over the data stream elements of all partitions whose timestamps are in the time range (dedicated all-key, merged latest first).
+     * The partition cursors only reference the sequence ranges of their ring buffers, i.e., opening the cursor costs O(p log n) regardless of the number of data stream elements.
+     *
+     * @param limit       Expected maximum number of data stream elements which are read with the cursor (only limits the chunk length)
+     * @param from        Start of the time range (inclusive)
+     * @param to          End of the time range (inclusive)
+     * @param downsampler Downsampler (which is started with the number of candidates) or null
+     * @param decoder     Decoder for the contents or null to render the base64-encoded contents (required if a filter is given)
+     * @param filter      Filter and projection which is evaluated on the decoded contents or null
+     * @return Cursor
+     */
+    public DataStreamCursor openCursorForAll(int limit, long from, long to, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        List<RingBuffer> ringBuffers = getRingBuffersForPartitions();
+        if (ringBuffers.size() == 1) {
+            return ringBuffers.get(0).openCursor(this.topic, limit, from, to, downsampler, decoder, filter); // nothing to merge
+        }
+        List<RingBufferCursor> cursors = new ArrayList<>(ringBuffers.size());
+        for (RingBuffer ringBuffer : ringBuffers) {
+            cursors.add(ringBuffer.openCursor(this.topic, limit, from, to, null, decoder, null));
+        }
+        return new MergingCursor(cursors, decoder != null, downsampler, filter);
+    }
+
+    /**
+     * Opens a cursor over the data stream elements of all keys which start with the prefix whose timestamps are in the time range (merged latest first).
+     * The filter and the downsampler are applied to the merged sequence, i.e., only as many data stream elements are rendered as are read with the cursor.
+     *
+     * @param prefix      Prefix of the keys (empty for all keys)
+     * @param limit       Expected maximum number of data stream elements which are read with the cursor (only limits the chunk length)
+     * @param from        Start of the time range (inclusive)
+     * @param to          End of the time range (inclusive)
+     * @param downsampler Downsampler (which is started with the number of candidates) or null
+     * @param decoder     Decoder for the contents or null to render the base64-encoded contents (required if a filter is given)
+     * @param filter      Filter and projection which is evaluated on the decoded contents or null
+     * @return Cursor or null if there is no key which starts with the prefix
+     */
+    public DataStreamCursor openCursorForKeyPrefix(String prefix, int limit, long from, long to, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        Collection<RingBuffer> ringBuffers = getRingBuffersForKeyPrefix(prefix);
+        if (ringBuffers.isEmpty()) {
+            return null;
+        }
+        List<RingBufferCursor> cursors = new ArrayList<>(ringBuffers.size());
+        for (RingBuffer ringBuffer : ringBuffers) {
+            cursors.add(ringBuffer.openCursor(this.topic, limit, from, to, null, decoder, null));
+        }
+        return new MergingCursor(cursors, decoder != null, downsampler, filter);
+    }
+
+    /**
+     * Appends the JSON representations of the latest data stream elements of all partitions (dedicated all-key, merged latest first) whose timestamps are in the time range,
+     * whose decoded contents match the filter and which are accepted by the downsampler to the JSON array.
+     *
+     * @param dataJsonArray JSON array to which the data stream elements are appended
+     * @param limit         Maximum number of appended data stream elements
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param oldestOffsets Map which is filled with the offset of the oldest buffered data stream element per partition (required for spilled and deep reads), or null
+     * @param downsampler   Downsampler or null to append all data stream elements
+     * @param decoder       Decoder for the contents or null to append the base64-encoded contents (required if a filter is given)
+     * @param filter        Filter and projection which is evaluated on the decoded contents or null
+     * @return Number of appended data stream elements
+     */
+    public int appendConsumeResultJsonForAll(StringBuffer dataJsonArray, int limit, long from, long to, Map<Integer, Long> oldestOffsets, Downsampler downsampler, PayloadDecoder decoder, ElementFilter filter) {
+        if (oldestOffsets != null) {
+            for (RingBuffer ringBuffer : getRingBuffersForPartitions()) {
+                ringBuffer.collectOldestOffsets(oldestOffsets);
+            }
+        }
+        return openCursorForAll(limit, from, to, downsampler, decoder, filter).appendConsumeResultJson(dataJsonArray, limit, false);
+    }
+
+    /**
+     * Adds the latest data stream elements of all partitions (dedicated all-key, merged latest first) whose timestamps are in the time range and which have been added since the cursor to the list.
+     *
+     * @param limit         Maximum number of data stream elements
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param sinceSequence Topic-wide sequence number of the oldest data stream element which may be added (cursor of the previous call, 0 for all)
+     * @param result        List to which the data stream elements are added
+     * @return Topic-wide sequence number of the next data stream element (cursor for the next call)
+     */
+    public long collectForAll(int limit, long from, long to, long sinceSequence, List<DataStreamElement> result) {
+        long untilSequence = this.topicSequence.get(); // read before the partition ring buffers such that every data stream element is returned by exactly one call
+        if (sinceSequence > untilSequence) {
+            sinceSequence = 0; // a cursor which is ahead of the sequence number stems from an earlier topic buffer (e.g., before a restart)
+        }
+        List<List<DataStreamElement>> partitionResults = new ArrayList<>();
+        for (RingBuffer ringBuffer : getRingBuffersForPartitions()) {
+            List<DataStreamElement> partitionResult = new ArrayList<>();
+            ringBuffer.collectInTopicSequenceRange(this.topic, limit, from, to, sinceSequence, untilSequence, partitionResult);
+            if (!partitionResult.isEmpty()) {
+                partitionResults.add(partitionResult);
+            }
+        }
+        merge(partitionResults, limit, result);
+        return untilSequence;
+    }
+
+    /**
+     * Merges lists of data stream elements which are each ordered latest first (k-way merge by timestamp, ties are resolved by the lower partition).
+     *
+     * @param lists  Lists of data stream elements (latest first)
+     * @param limit  Maximum number of merged data stream elements
+     * @param result List to which the merged data stream elements are added
+     */
+    private static void merge(List<List<DataStreamElement>> lists, int limit, List<DataStreamElement> result) {
+        if (lists.size() == 1) {
+            List<DataStreamElement> list = lists.get(0);
+            result.addAll(list.size() > limit ? list.subList(0, limit) : list);
+            return;
+        }
+        int[] positions = new int[lists.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, lists.size()), (a, b) -> {
+            DataStreamElement elementA = lists.get(a).get(positions[a]);
+            DataStreamElement elementB = lists.get(b).get(positions[b]);
+            return elementA.timestamp != elementB.timestamp ? Long.compare(elementB.timestamp, elementA.timestamp) : Integer.compare(elementA.partition, elementB.partition);
+        });
+        for (int i = 0; i < lists.size(); ++i) {
+            heads.add(i);
+        }
+        int merged = 0;
+        while (merged < limit && !heads.isEmpty()) {
+            int head = heads.poll();
+            result.add(lists.get(head).get(positions[head]++));
+            merged++;
+            if (positions[head] < lists.get(head).size()) {
+                heads.add(head);
+            }
+        }
+    }
+
+    /**
+     * Returns the table with the latest data stream element for every key.
+     *
+     * @return LatestValueTable
+     */
+    public LatestValueTable getLatestValueTable() {
+        return this.latestValueTable;
+    }
+
+    /**
+     * Returns the snapshot of the rendered listing of all keys.
+     *
+     * @return Snapshot of the rendered listing of all keys
+     */
+    public ListingSnapshot<RestResult> getKeyListing() {
+        return this.keyListing;
+    }
+
+    /**
+     * Returns a page of the keys which start with the prefix in key order without blocking the ingestion.
+     *
+     * @param prefix Prefix of the keys (empty for all keys)
+     * @param after  Only keys which are greater than this key are returned, or null to start with the first key
+     * @param max    Maximum number of keys
+     * @param keys   List to which the keys are added
+     * @return True if there are further keys which start with the prefix after the returned keys
+     */
+    public boolean getKeys(String prefix, String after, int max, List<String> keys) {
+        ConcurrentNavigableMap<String, RingBuffer> tail = after != null && after.compareTo(prefix) >= 0 ? this.keyIndex.tailMap(after, false) : this.keyIndex.tailMap(prefix, true);
+        for (String key : tail.keySet()) {
+            if (!key.startsWith(prefix)) {
+                return false;
+            }
+            if (keys.size() == max) {
+                return true;
+            }
+            keys.add(key);
+        }
+        return false;
+    }
+}
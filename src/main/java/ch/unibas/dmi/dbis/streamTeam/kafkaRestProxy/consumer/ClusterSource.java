@@ -0,0 +1,368 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ErrorCode;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Named Kafka cluster from which StreamConsumers ingest into the shared buffer with their own consumer threads and subscription rule (topic pattern).
+ * The home cluster (kafka.brokerList) keeps its topic names, the topics of the additional clusters (clusters=...) are either qualified with the cluster name or merged into the same topic namespace.
+ * Remembers the Kafka topic of every ingested buffer topic (for the deep reads) and counts the ingested data stream elements and bytes per cluster.
+ */
+public class ClusterSource {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ClusterSource.class);
+
+    /**
+     * Pattern of the characters which are legal in Kafka topic names
+     */
+    private static final Pattern LEGAL_TOPIC_CHARACTERS = Pattern.compile("[a-zA-Z0-9._-]*");
+
+    /**
+     * Name of the cluster
+     */
+    public final String name;
+
+    /**
+     * Kafka broker list of the cluster
+     */
+    private final String brokerList;
+
+    /**
+     * Consumer group id of the StreamConsumers of the cluster (shared such that the partitions are split among the consumer threads)
+     */
+    private final String groupId;
+
+    /**
+     * Prefix of the topic names in the buffer (empty if the topics are not qualified)
+     */
+    private final String topicPrefix;
+
+    /**
+     * Pattern of the subscribed topics
+     */
+    private final Pattern topicPattern;
+
+    /**
+     * Number of StreamConsumer threads
+     */
+    private final int consumerThreads;
+
+    /**
+     * Topic names in the buffer per Kafka topic name (such that qualifying a topic does not allocate a string per record)
+     */
+    private final ConcurrentHashMap<String, String> qualifiedTopics;
+
+    /**
+     * Kafka topic name per topic name in the buffer of all topics which have been ingested from this cluster
+     */
+    private final ConcurrentHashMap<String, String> kafkaTopics;
+
+    /**
+     * Number of running StreamConsumers
+     */
+    private final AtomicInteger runningConsumers;
+
+    /**
+     * Number of ingested data stream elements
+     */
+    private final LongAdder ingestedElements;
+
+    /**
+     * Number of ingested content bytes
+     */
+    private final LongAdder ingestedBytes;
+
+    /**
+     * Time of the latest ingest in ms (0 if nothing has been ingested yet)
+     */
+    private volatile long lastIngestTime;
+
+    /**
+     * ClusterSource constructor.
+     *
+     * @param name            Name of the cluster
+     * @param brokerList      Kafka broker list of the cluster
+     * @param groupId         Consumer group id of the StreamConsumers of the cluster
+     * @param topicPrefix     Prefix of the topic names in the buffer (empty if the topics are not qualified)
+     * @param topicPattern    Pattern of the subscribed topics
+     * @param consumerThreads Number of StreamConsumer threads
+     */
+    public ClusterSource(String name, String brokerList, String groupId, String topicPrefix, Pattern topicPattern, int consumerThreads) {
+        this.name = name;
+        this.brokerList = brokerList;
+        this.groupId = groupId;
+        this.topicPrefix = topicPrefix;
+        this.topicPattern = topicPattern;
+        this.consumerThreads = consumerThreads;
+        this.qualifiedTopics = new ConcurrentHashMap<>();
+        this.kafkaTopics = new ConcurrentHashMap<>();
+        this.runningConsumers = new AtomicInteger(0);
+        this.ingestedElements = new LongAdder();
+        this.ingestedBytes = new LongAdder();
+        this.lastIngestTime = 0;
+    }
+
+    /**
+     * Creates the home cluster (kafka.*) and the additional clusters (clusters=... and cluster.&lt;name&gt;.*) from the properties.
+     *
+     * @param properties Properties
+     * @return Cluster sources (home cluster first)
+     */
+    public static List<ClusterSource> createClusterSources(Properties properties) {
+        String groupIdPrefix = PropertyReadHelper.readStringOrDie(properties, "kafka.groupIdPrefix");
+        String homeName = PropertyReadHelper.readStringOrDie(properties, "kafka.clusterName");
+
+        List<ClusterSource> clusterSources = new ArrayList<>();
+        clusterSources.add(new ClusterSource(homeName,
+                PropertyReadHelper.readStringOrDie(properties, "kafka.brokerList"),
+                groupIdPrefix + "_" + UUID.randomUUID().toString(),
+                "",
+                compileTopicPattern(properties, "kafka.topicPattern"),
+                PropertyReadHelper.readIntOrDie(properties, "kafka.consumerThreads")));
+
+        boolean qualified;
+        String namespace = PropertyReadHelper.readStringOrDie(properties, "clusters.namespace");
+        if (namespace.equals("qualified")) {
+            qualified = true;
+        } else if (namespace.equals("merged")) {
+            qualified = false;
+        } else {
+            logger.error("clusters.namespace has to be qualified or merged but is {}.", namespace);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+            return clusterSources; // never reached
+        }
+        String separator = PropertyReadHelper.readStringOrDie(properties, "clusters.separator");
+        if (qualified && !isUnambiguousSeparator(separator)) {
+            logger.error("clusters.separator has to contain a character which is illegal in Kafka topic names (e.g., :) but is {}.", separator);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+
+        for (String name : PropertyReadHelper.readListOfStringsOrDie(properties, "clusters")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            for (ClusterSource clusterSource : clusterSources) {
+                if (clusterSource.name.equals(name)) {
+                    logger.error("Cluster name {} is used twice.", name);
+                    ShutdownHelper.shutdown(ErrorCode.PropertyException);
+                }
+            }
+            clusterSources.add(new ClusterSource(name,
+                    PropertyReadHelper.readStringOrDie(properties, "cluster." + name + ".brokerList"),
+                    groupIdPrefix + "_" + name + "_" + UUID.randomUUID().toString(),
+                    qualified ? name + separator : "",
+                    compileTopicPattern(properties, "cluster." + name + ".topicPattern"),
+                    PropertyReadHelper.readIntOrDie(properties, "cluster." + name + ".consumerThreads")));
+        }
+        return clusterSources;
+    }
+
+    /**
+     * Checks if a separator of qualified topics cannot collide with a Kafka topic name, i.e., if it contains a character which is illegal in Kafka topic names.
+     *
+     * @param separator Separator between the cluster name and the topic
+     * @return True if the separator contains a character which is illegal in Kafka topic names
+     */
+    static boolean isUnambiguousSeparator(String separator) {
+        return !LEGAL_TOPIC_CHARACTERS.matcher(separator).matches();
+    }
+
+    /**
+     * Returns the cluster from which a topic in the buffer is ingested.
+     * Topics which no cluster has ingested yet (e.g., topics which have only been reflected by the RecordProducer) belong to the home cluster.
+     *
+     * @param clusterSources Cluster sources (home cluster first)
+     * @param bufferTopic    Topic in the buffer
+     * @return Cluster or null if the topic is ingested from several clusters (merged namespace) such that its partitions and offsets are ambiguous
+     */
+    public static ClusterSource getSourceCluster(List<ClusterSource> clusterSources, String bufferTopic) {
+        ClusterSource sourceCluster = null;
+        for (ClusterSource clusterSource : clusterSources) {
+            if (clusterSource.getKafkaTopic(bufferTopic) != null) {
+                if (sourceCluster != null) {
+                    return null;
+                }
+                sourceCluster = clusterSource;
+            }
+        }
+        return sourceCluster == null ? clusterSources.get(0) : sourceCluster;
+    }
+
+    /**
+     * Reads and compiles a topic pattern or dies in case of an exception.
+     *
+     * @param properties Properties
+     * @param key        Key of the topic pattern
+     * @return Topic pattern
+     */
+    private static Pattern compileTopicPattern(Properties properties, String key) {
+        String regex = PropertyReadHelper.readStringOrDie(properties, key);
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            logger.error("Unable to compile topic pattern {} for key {}", regex, key, e);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+            return null; // never reached
+        }
+    }
+
+    /**
+     * Creates a KafkaConsumer for a StreamConsumer of the cluster.
+     *
+     * @return KafkaConsumer
+     */
+    public KafkaConsumer<String, byte[]> createKafkaConsumer() {
+        // https://kafka.apache.org/0100/javadoc/index.html?org/apache/kafka/clients/consumer/KafkaConsumer.html
+        Properties props = new Properties();
+        props.put("bootstrap.servers", this.brokerList);
+        props.put("group.id", this.groupId);
+        props.put("enable.auto.commit", "true");
+        props.put("auto.offset.reset", "earliest");
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+
+        return new KafkaConsumer<>(props);
+    }
+
+    /**
+     * Returns the Kafka broker list of the cluster.
+     *
+     * @return Kafka broker list
+     */
+    public String getBrokerList() {
+        return this.brokerList;
+    }
+
+    /**
+     * Returns the number of StreamConsumer threads.
+     *
+     * @return Number of StreamConsumer threads
+     */
+    public int getConsumerThreads() {
+        return this.consumerThreads;
+    }
+
+    /**
+     * Counts a started StreamConsumer.
+     */
+    void consumerStarted() {
+        this.runningConsumers.incrementAndGet();
+    }
+
+    /**
+     * Counts a stopped StreamConsumer.
+     */
+    void consumerStopped() {
+        this.runningConsumers.decrementAndGet();
+    }
+
+    /**
+     * Checks if a topic of the cluster should be subscribed (internal, changelog and metrics topics are never subscribed).
+     *
+     * @param topic Kafka topic name
+     * @return True if the topic should be subscribed
+     */
+    public boolean accepts(String topic) {
+        return !topic.startsWith("__") && !topic.contains("changelog") && !topic.contains("metrics") && this.topicPattern.matcher(topic).matches();
+    }
+
+    /**
+     * Returns the name of a topic of this cluster in the buffer.
+     *
+     * @param topic Topic in this cluster
+     * @return Topic in the buffer (qualified with the topic prefix)
+     */
+    public String getBufferTopic(String topic) {
+        return this.topicPrefix.isEmpty() ? topic : this.qualifiedTopics.computeIfAbsent(topic, t -> this.topicPrefix + t);
+    }
+
+    /**
+     * Returns the Kafka topic of a topic in the buffer which has been ingested from this cluster.
+     *
+     * @param bufferTopic Topic in the buffer
+     * @return Kafka topic or null if no data stream element of the topic has been ingested from this cluster
+     */
+    public String getKafkaTopic(String bufferTopic) {
+        return this.kafkaTopics.get(bufferTopic);
+    }
+
+    /**
+     * Creates the data stream element of a consumed record with the topic name in the buffer and counts it.
+     * The topic is remembered before the data stream element is buffered such that a read never sees a data stream element of a cluster which is not yet known as source of the topic.
+     *
+     * @param record Kafka ConsumerRecord
+     * @return Data stream element
+     */
+    public DataStreamElement ingest(ConsumerRecord<String, byte[]> record) {
+        String topic = getBufferTopic(record.topic());
+        if (this.kafkaTopics.get(topic) == null) { // get first since putIfAbsent locks the bin
+            this.kafkaTopics.putIfAbsent(topic, record.topic());
+        }
+        this.ingestedElements.increment();
+        if (record.value() != null) {
+            this.ingestedBytes.add(record.value().length);
+        }
+        this.lastIngestTime = System.currentTimeMillis();
+        return new DataStreamElement(record.value(), record.key(), topic, record.partition(), record.offset(), record.timestamp());
+    }
+
+    /**
+     * Appends the JSON representation of the ingest metrics ({"c":...,"q":...,"th":...,"n":...,"b":...,"ts":...}) where c is the name, q the topic prefix in the buffer,
+     * th the number of running consumer threads, n the number of ingested data stream elements, b the number of ingested content bytes and ts the time of the latest ingest.
+     *
+     * @param jsonBuffer JSON buffer
+     */
+    public void appendJson(StringBuffer jsonBuffer) {
+        jsonBuffer.append("{\"c\":\"");
+        jsonBuffer.append(this.name);
+        jsonBuffer.append("\",\"q\":\"");
+        jsonBuffer.append(this.topicPrefix);
+        jsonBuffer.append("\",\"th\":");
+        jsonBuffer.append(this.runningConsumers.get());
+        jsonBuffer.append(",\"n\":");
+        jsonBuffer.append(this.ingestedElements.sum());
+        jsonBuffer.append(",\"b\":");
+        jsonBuffer.append(this.ingestedBytes.sum());
+        jsonBuffer.append(",\"ts\":");
+        jsonBuffer.append(this.lastIngestTime);
+        jsonBuffer.append("}");
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Cursor over the data stream elements of a deep read (latest first). Every partition is scanned backwards chunk by chunk and the partitions are merged lazily
+ * (k-way merge by timestamp, ties are resolved by the lower partition), i.e., only the chunks which are needed for the data stream elements that are actually read are fetched.
+ * The order within a partition is the offset order. Holds a pooled KafkaConsumer of the HistoricalFetcher until it is closed. Not thread-safe (a cursor is used by a single REST API call).
+ */
+public class DeepReadCursor implements Closeable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DeepReadCursor.class);
+
+    /**
+     * Backward scan of a single partition.
+     */
+    static class PartitionScan {
+
+        /**
+         * Topic partition
+         */
+        private final TopicPartition topicPartition;
+
+        /**
+         * First offset that is scanned
+         */
+        private final long start;
+
+        /**
+         * Offset after the last offset that is scanned
+         */
+        private final long end;
+
+        /**
+         * Current end offset of the partition
+         */
+        private final long logEnd;
+
+        /**
+         * Index of the next chunk which is fetched
+         */
+        private long nextChunkIndex;
+
+        /**
+         * Current chunk or null before the first chunk has been fetched
+         */
+        private List<DataStreamElement> chunk;
+
+        /**
+         * Position of the current data stream element in the current chunk
+         */
+        private int position;
+
+        /**
+         * Number of scanned records
+         */
+        private long scanned;
+
+        /**
+         * PartitionScan constructor.
+         *
+         * @param topicPartition Topic partition
+         * @param start          First offset that is scanned
+         * @param end            Offset after the last offset that is scanned
+         * @param logEnd         Current end offset of the partition
+         */
+        PartitionScan(TopicPartition topicPartition, long start, long end, long logEnd) {
+            this.topicPartition = topicPartition;
+            this.start = start;
+            this.end = end;
+            this.logEnd = logEnd;
+            this.nextChunkIndex = -1;
+            this.chunk = null;
+            this.position = -1;
+            this.scanned = 0;
+        }
+
+        /**
+         * Returns the current data stream element.
+         *
+         * @return Current data stream element
+         */
+        DataStreamElement current() {
+            return this.chunk.get(this.position);
+        }
+    }
+
+    /**
+     * HistoricalFetcher to which the KafkaConsumer is returned
+     */
+    private final HistoricalFetcher historicalFetcher;
+
+    /**
+     * Pooled KafkaConsumer (null after the cursor has been closed)
+     */
+    private Consumer<String, byte[]> consumer;
+
+    /**
+     * Key or null for all keys
+     */
+    private final String key;
+
+    /**
+     * Start of the time range (inclusive)
+     */
+    private final long from;
+
+    /**
+     * End of the time range (inclusive)
+     */
+    private final long to;
+
+    /**
+     * Partition scans which have not been started yet
+     */
+    private List<PartitionScan> pendingPartitionScans;
+
+    /**
+     * Partition scans ordered by their current data stream elements (latest first)
+     */
+    private final PriorityQueue<PartitionScan> heads;
+
+    /**
+     * DeepReadCursor constructor.
+     *
+     * @param historicalFetcher HistoricalFetcher to which the KafkaConsumer is returned
+     * @param consumer          Pooled KafkaConsumer
+     * @param key               Key or null for all keys
+     * @param from              Start of the time range (inclusive)
+     * @param to                End of the time range (inclusive)
+     * @param partitionScans    Partition scans
+     */
+    DeepReadCursor(HistoricalFetcher historicalFetcher, Consumer<String, byte[]> consumer, String key, long from, long to, List<PartitionScan> partitionScans) {
+        this.historicalFetcher = historicalFetcher;
+        this.consumer = consumer;
+        this.key = key;
+        this.from = from;
+        this.to = to;
+        this.pendingPartitionScans = partitionScans;
+        this.heads = new PriorityQueue<>(Math.max(1, partitionScans.size()), (a, b) -> {
+            DataStreamElement elementA = a.current();
+            DataStreamElement elementB = b.current();
+            return elementA.timestamp != elementB.timestamp ? Long.compare(elementB.timestamp, elementA.timestamp) : Integer.compare(elementA.partition, elementB.partition);
+        });
+    }
+
+    /**
+     * Adds the next data stream elements (latest first) to the list.
+     *
+     * @param max    Maximum number of data stream elements
+     * @param result List to which the data stream elements are added
+     * @return Number of added data stream elements (less than max if the cursor is exhausted)
+     */
+    public int next(int max, List<DataStreamElement> result) {
+        if (this.consumer == null) {
+            return 0;
+        }
+        int added = 0;
+        try {
+            if (this.pendingPartitionScans != null) { // the first chunk of every partition is fetched on the first read
+                for (PartitionScan partitionScan : this.pendingPartitionScans) {
+                    if (advance(partitionScan)) {
+                        this.heads.add(partitionScan);
+                    }
+                }
+                this.pendingPartitionScans = null;
+            }
+            while (added < max && !this.heads.isEmpty()) {
+                PartitionScan partitionScan = this.heads.poll();
+                result.add(partitionScan.current());
+                added++;
+                if (advance(partitionScan)) {
+                    this.heads.add(partitionScan);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Caught exception during deep read.", e);
+            this.heads.clear();
+        }
+        return added;
+    }
+
+    /**
+     * Moves a partition scan to its next matching data stream element (fetches the previous chunk if the current chunk is exhausted).
+     *
+     * @param partitionScan Partition scan
+     * @return True if there is a next matching data stream element, false if the partition scan is exhausted
+     */
+    private boolean advance(PartitionScan partitionScan) {
+        int chunkSize = this.historicalFetcher.getChunkSize();
+        while (true) {
+            if (partitionScan.position <= 0) {
+                if (partitionScan.chunk == null) {
+                    partitionScan.nextChunkIndex = (partitionScan.end - 1) / chunkSize;
+                }
+                if (partitionScan.nextChunkIndex < partitionScan.start / chunkSize || partitionScan.scanned >= this.historicalFetcher.getMaxScannedRecords()) {
+                    return false;
+                }
+                partitionScan.chunk = this.historicalFetcher.getChunk(this.consumer, partitionScan.topicPartition, partitionScan.nextChunkIndex--, partitionScan.logEnd);
+                partitionScan.scanned += partitionScan.chunk.size();
+                partitionScan.position = partitionScan.chunk.size();
+                if (partitionScan.position == 0) {
+                    continue;
+                }
+            }
+            DataStreamElement dataStreamElement = partitionScan.chunk.get(--partitionScan.position); // latest first
+            if (dataStreamElement.offset >= partitionScan.start && dataStreamElement.offset < partitionScan.end
+                    && dataStreamElement.timestamp >= this.from && dataStreamElement.timestamp <= this.to
+                    && (this.key == null || this.key.equals(dataStreamElement.key))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the KafkaConsumer to the pool of the HistoricalFetcher.
+     */
+    @Override
+    public void close() {
+        if (this.consumer != null) {
+            this.historicalFetcher.release(this.consumer);
+            this.consumer = null;
+            this.heads.clear();
+        }
+    }
+}
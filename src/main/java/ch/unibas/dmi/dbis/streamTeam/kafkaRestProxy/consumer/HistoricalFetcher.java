@@ -0,0 +1,315 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches data stream elements which are older than the buffered data stream elements directly from Kafka (deep read).
+ * Uses a small pool of dedicated KafkaConsumers (separate from the StreamConsumer) which read with assign() and seek(),
+ * a bounded LRU cache of recently fetched chunks, and limits the number of concurrent deep reads to the pool size.
+ * A deep read is a DeepReadCursor which fetches the chunks lazily while the response is written, i.e., the fetched data stream elements are never collected in a list.
+ */
+public class HistoricalFetcher implements Closeable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalFetcher.class);
+
+    /**
+     * Pool of idle KafkaConsumers
+     */
+    private final BlockingQueue<Consumer<String, byte[]>> consumerPool;
+
+    /**
+     * All KafkaConsumers (for closing)
+     */
+    private final List<Consumer<String, byte[]>> consumers;
+
+    /**
+     * Number of offsets per chunk (chunks are aligned to multiples of the chunk size to enable caching)
+     */
+    private final int chunkSize;
+
+    /**
+     * Maximum number of records that are scanned per partition in a single deep read
+     */
+    private final int maxScannedRecords;
+
+    /**
+     * Maximum time to wait for an idle KafkaConsumer in ms
+     */
+    private final long acquireTimeout;
+
+    /**
+     * Poll timeout
+     */
+    private final Duration pollTimeout;
+
+    /**
+     * Maximum time for fetching a single chunk in ms
+     */
+    private final long fetchTimeout;
+
+    /**
+     * LRU cache of completely fetched chunks (key: topic/partition/chunk index)
+     */
+    private final Map<String, List<DataStreamElement>> chunkCache;
+
+    /**
+     * HistoricalFetcher constructor for the home cluster (kafka.brokerList).
+     *
+     * @param properties Properties
+     */
+    public HistoricalFetcher(Properties properties) {
+        this(properties, PropertyReadHelper.readStringOrDie(properties, "kafka.brokerList"));
+    }
+
+    /**
+     * HistoricalFetcher constructor for a Kafka cluster.
+     *
+     * @param properties Properties
+     * @param brokerList Kafka broker list of the cluster
+     */
+    public HistoricalFetcher(Properties properties, String brokerList) {
+        this(properties, createConsumers(properties, brokerList));
+    }
+
+    /**
+     * HistoricalFetcher constructor with injected consumers (e.g., MockConsumers in the unit tests).
+     *
+     * @param properties Properties
+     * @param consumers  Dedicated consumers for deep reads (the number of consumers is the maximum number of concurrent deep reads)
+     */
+    public HistoricalFetcher(Properties properties, List<? extends Consumer<String, byte[]>> consumers) {
+        logger.info("Initializing HistoricalFetcher");
+
+        this.chunkSize = PropertyReadHelper.readIntOrDie(properties, "deepRead.chunkSize");
+        this.maxScannedRecords = PropertyReadHelper.readIntOrDie(properties, "deepRead.maxScannedRecords");
+        this.acquireTimeout = PropertyReadHelper.readLongOrDie(properties, "deepRead.acquireTimeout");
+        this.fetchTimeout = PropertyReadHelper.readLongOrDie(properties, "deepRead.fetchTimeout");
+        this.pollTimeout = Duration.ofMillis(PropertyReadHelper.readLongOrDie(properties, "kafka.pollTimeout"));
+        int cachedChunks = PropertyReadHelper.readIntOrDie(properties, "deepRead.cachedChunks");
+
+        this.consumerPool = new ArrayBlockingQueue<>(Math.max(1, consumers.size()));
+        this.consumers = new ArrayList<>(consumers);
+        this.consumerPool.addAll(consumers);
+
+        // https://docs.oracle.com/javase/8/docs/api/java/util/LinkedHashMap.html#removeEldestEntry-java.util.Map.Entry-
+        this.chunkCache = Collections.synchronizedMap(new LinkedHashMap<String, List<DataStreamElement>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<DataStreamElement>> eldest) {
+                return size() > cachedChunks;
+            }
+        });
+    }
+
+    /**
+     * Creates the dedicated KafkaConsumers for deep reads.
+     *
+     * @param properties Properties
+     * @param brokerList Kafka broker list of the cluster
+     * @return KafkaConsumers
+     */
+    private static List<KafkaConsumer<String, byte[]>> createConsumers(Properties properties, String brokerList) {
+        int numberOfConsumers = PropertyReadHelper.readIntOrDie(properties, "deepRead.consumers");
+        int chunkSize = PropertyReadHelper.readIntOrDie(properties, "deepRead.chunkSize");
+
+        Properties props = new Properties();
+        props.put("bootstrap.servers", brokerList);
+        props.put("enable.auto.commit", "false");
+        props.put("max.poll.records", Integer.toString(chunkSize));
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+
+        List<KafkaConsumer<String, byte[]>> consumers = new ArrayList<>();
+        for (int i = 0; i < numberOfConsumers; ++i) {
+            consumers.add(new KafkaConsumer<>(props));
+        }
+        return consumers;
+    }
+
+    /**
+     * Opens a cursor over the data stream elements which are older than the buffered data stream elements (latest first).
+     * The cursor holds one of the pooled KafkaConsumers until it is closed and fetches the chunks lazily while it is read.
+     *
+     * @param topic         Kafka topic in the cluster of this HistoricalFetcher
+     * @param key           Key or null for all keys
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param oldestOffsets Offset of the oldest buffered data stream element per partition (only older data stream elements are fetched)
+     * @return Cursor (has to be closed) or null if all KafkaConsumers are busy
+     */
+    public DeepReadCursor openCursor(String topic, String key, long from, long to, Map<Integer, Long> oldestOffsets) {
+        Consumer<String, byte[]> consumer;
+        try {
+            consumer = this.consumerPool.poll(this.acquireTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            logger.trace("InterruptedException while waiting for a KafkaConsumer.", e);
+            consumer = null;
+        }
+        if (consumer == null) {
+            return null;
+        }
+
+        List<DeepReadCursor.PartitionScan> partitionScans = new ArrayList<>();
+        try {
+            // Only the partitions of the buffered data stream elements of a key are read (the key is always written to the same partition) but all partitions for the dedicated all-key
+            List<TopicPartition> topicPartitions = new ArrayList<>();
+            if (key == null) {
+                for (PartitionInfo partitionInfo : consumer.partitionsFor(topic)) {
+                    topicPartitions.add(new TopicPartition(topic, partitionInfo.partition()));
+                }
+            } else {
+                for (Integer partition : oldestOffsets.keySet()) {
+                    topicPartitions.add(new TopicPartition(topic, partition));
+                }
+            }
+
+            if (!topicPartitions.isEmpty()) {
+                Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(topicPartitions);
+                Map<TopicPartition, Long> endOffsets = consumer.endOffsets(topicPartitions);
+                Map<TopicPartition, OffsetAndTimestamp> offsetsForFrom = null;
+                if (from != Long.MIN_VALUE) {
+                    Map<TopicPartition, Long> timestampsToSearch = new HashMap<>();
+                    for (TopicPartition topicPartition : topicPartitions) {
+                        timestampsToSearch.put(topicPartition, Math.max(0, from));
+                    }
+                    offsetsForFrom = consumer.offsetsForTimes(timestampsToSearch);
+                }
+
+                for (TopicPartition topicPartition : topicPartitions) {
+                    long logEnd = endOffsets.get(topicPartition);
+                    long end = oldestOffsets.containsKey(topicPartition.partition()) ? Math.min(oldestOffsets.get(topicPartition.partition()), logEnd) : logEnd; // exclusive
+                    long start = beginningOffsets.get(topicPartition);
+                    if (offsetsForFrom != null) {
+                        OffsetAndTimestamp offsetForFrom = offsetsForFrom.get(topicPartition);
+                        start = offsetForFrom == null ? end : Math.max(start, offsetForFrom.offset());
+                    }
+                    if (end > start) {
+                        partitionScans.add(new DeepReadCursor.PartitionScan(topicPartition, start, end, logEnd));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Caught exception during deep read for topic {}.", topic, e);
+            partitionScans.clear();
+        }
+        return new DeepReadCursor(this, consumer, key, from, to, partitionScans);
+    }
+
+    /**
+     * Returns a KafkaConsumer to the pool (called when a cursor is closed).
+     *
+     * @param consumer KafkaConsumer
+     */
+    void release(Consumer<String, byte[]> consumer) {
+        this.consumerPool.add(consumer);
+    }
+
+    /**
+     * Returns the maximum number of records that are scanned per partition in a single deep read.
+     *
+     * @return Maximum number of scanned records per partition
+     */
+    int getMaxScannedRecords() {
+        return this.maxScannedRecords;
+    }
+
+    /**
+     * Returns the number of offsets per chunk.
+     *
+     * @return Number of offsets per chunk
+     */
+    int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Returns a chunk from the cache or fetches it from Kafka.
+     *
+     * @param consumer       KafkaConsumer
+     * @param topicPartition Topic partition
+     * @param chunkIndex     Index of the chunk
+     * @param logEnd         Current end offset of the partition
+     * @return Data stream elements of the chunk (ordered by offset)
+     */
+    List<DataStreamElement> getChunk(Consumer<String, byte[]> consumer, TopicPartition topicPartition, long chunkIndex, long logEnd) {
+        String cacheKey = topicPartition.topic() + "/" + topicPartition.partition() + "/" + chunkIndex;
+        List<DataStreamElement> chunk = this.chunkCache.get(cacheKey);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        long chunkStart = chunkIndex * this.chunkSize;
+        long chunkEnd = Math.min(chunkStart + this.chunkSize, logEnd);
+        chunk = new ArrayList<>();
+        consumer.assign(Collections.singletonList(topicPartition));
+        consumer.seek(topicPartition, chunkStart);
+        long deadline = System.currentTimeMillis() + this.fetchTimeout;
+        while (consumer.position(topicPartition) < chunkEnd && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, byte[]> record : consumer.poll(this.pollTimeout).records(topicPartition)) {
+                if (record.offset() < chunkEnd) {
+                    chunk.add(new DataStreamElement(record));
+                }
+            }
+        }
+        logger.debug("Fetched {} records of chunk {}.", chunk.size(), cacheKey);
+
+        if (chunkStart + this.chunkSize <= logEnd && consumer.position(topicPartition) >= chunkEnd) { // only complete chunks are cached
+            this.chunkCache.put(cacheKey, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Closes all KafkaConsumers.
+     */
+    @Override
+    public void close() {
+        for (Consumer<String, byte[]> consumer : this.consumers) {
+            consumer.wakeup();
+        }
+        for (Consumer<String, byte[]> consumer : this.consumers) {
+            try {
+                consumer.close();
+            } catch (RuntimeException e) { // e.g., ConcurrentModificationException if the KafkaConsumer is still in use
+                logger.error("Caught exception while closing a KafkaConsumer.", e);
+            }
+        }
+        logger.info("Closed HistoricalFetcher");
+    }
+}
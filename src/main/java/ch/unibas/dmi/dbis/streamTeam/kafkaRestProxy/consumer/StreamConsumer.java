@@ -21,18 +21,21 @@ package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.time.Duration;
 import java.util.*;
 
 /**
- * Consumes the streams from Kafka.
+ * Consumes the streams of a cluster from Kafka (one of the consumer threads of a ClusterSource).
  */
 public class StreamConsumer implements Closeable, Runnable {
 
@@ -47,9 +50,14 @@ public class StreamConsumer implements Closeable, Runnable {
     private final KafkaRestProxy kafkaRestProxy;
 
     /**
-     * KafkaConsumer
+     * Kafka consumer (a KafkaConsumer in production or a MockConsumer in the load test)
      */
-    private final KafkaConsumer<String, byte[]> kafkaConsumer;
+    private final Consumer<String, byte[]> kafkaConsumer;
+
+    /**
+     * Cluster from which the StreamConsumer consumes (subscription rule, topic names in the buffer and ingest metrics)
+     */
+    private final ClusterSource clusterSource;
 
     /**
      * Poll timeout
@@ -76,27 +84,30 @@ public class StreamConsumer implements Closeable, Runnable {
      *
      * @param properties     Properties
      * @param kafkaRestProxy KafkaRestProxy
+     * @param clusterSource  Cluster from which the StreamConsumer consumes
      */
-    public StreamConsumer(Properties properties, KafkaRestProxy kafkaRestProxy) {
-        logger.info("Initializing StreamConsumer");
+    public StreamConsumer(Properties properties, KafkaRestProxy kafkaRestProxy, ClusterSource clusterSource) {
+        this(properties, kafkaRestProxy, clusterSource.createKafkaConsumer(), clusterSource);
+    }
+
+    /**
+     * StreamConsumer constructor which uses the given Kafka consumer as record source.
+     *
+     * @param properties     Properties
+     * @param kafkaRestProxy KafkaRestProxy
+     * @param kafkaConsumer  Kafka consumer (e.g., a MockConsumer)
+     * @param clusterSource  Cluster from which the StreamConsumer consumes
+     */
+    public StreamConsumer(Properties properties, KafkaRestProxy kafkaRestProxy, Consumer<String, byte[]> kafkaConsumer, ClusterSource clusterSource) {
+        logger.info("Initializing StreamConsumer for cluster {}", clusterSource.name);
 
         this.kafkaRestProxy = kafkaRestProxy;
 
         this.pollTimeout = PropertyReadHelper.readLongOrDie(properties, "kafka.pollTimeout");
         this.subscriptionInterval = PropertyReadHelper.readLongOrDie(properties, "kafka.subscriptionInterval");
-        String brokerList = PropertyReadHelper.readStringOrDie(properties, "kafka.brokerList");
-        String groupIdPrefix = PropertyReadHelper.readStringOrDie(properties, "kafka.groupIdPrefix");
 
-        // https://kafka.apache.org/0100/javadoc/index.html?org/apache/kafka/clients/consumer/KafkaConsumer.html
-        Properties props = new Properties();
-        props.put("bootstrap.servers", brokerList);
-        props.put("group.id", groupIdPrefix + "_" + UUID.randomUUID().toString());
-        props.put("enable.auto.commit", "true");
-        props.put("auto.offset.reset", "earliest");
-        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
-
-        this.kafkaConsumer = new KafkaConsumer<>(props);
+        this.kafkaConsumer = kafkaConsumer;
+        this.clusterSource = clusterSource;
 
         this.subscriptionUpdater = new SubscriptionUpdater();
         Thread subscriptionUpdaterThread = new Thread(this.subscriptionUpdater);
@@ -109,14 +120,15 @@ public class StreamConsumer implements Closeable, Runnable {
      * Continuously polls new data stream elements from the subscribed topics and adds them to the buffer.
      */
     public void run() {
+        this.clusterSource.consumerStarted();
         while (this.runFlag) {
             try {
                 ConsumerRecords<String, byte[]> records;
                 synchronized (this.kafkaConsumer) { // required for SubscriptionUpdater
-                    records = this.kafkaConsumer.poll(this.pollTimeout);
+                    records = this.kafkaConsumer.poll(Duration.ofMillis(this.pollTimeout));
                 }
                 for (ConsumerRecord<String, byte[]> record : records) {
-                    DataStreamElement dataStreamElement = new DataStreamElement(record);
+                    DataStreamElement dataStreamElement = this.clusterSource.ingest(record);
                     logger.debug("Consumed: {}", dataStreamElement);
                     this.kafkaRestProxy.addToBuffer(dataStreamElement);
                 }
@@ -132,6 +144,7 @@ public class StreamConsumer implements Closeable, Runnable {
             }
         }
         this.kafkaConsumer.close();
+        this.clusterSource.consumerStopped();
         logger.info("Closed StreamConsumer");
     }
 
@@ -178,15 +191,15 @@ public class StreamConsumer implements Closeable, Runnable {
 
                     List<String> topicsToSubscribe = new LinkedList<>();
                     for (String topic : topicSet) {
-                        if (!topic.startsWith("__") && !topic.contains("changelog") && !topic.contains("metrics")) {
+                        if (StreamConsumer.this.clusterSource.accepts(topic) && StreamConsumer.this.kafkaRestProxy.ownsTopic(StreamConsumer.this.clusterSource.getBufferTopic(topic))) { // in a sharded proxy cluster, only the topics owned by this node are consumed
                             topicsToSubscribe.add(topic);
                         }
                     }
 
                     if (haveTopicsChanged(topicsToSubscribe)) {
-                        StreamConsumer.this.kafkaConsumer.subscribe(topicsToSubscribe);
+                        StreamConsumer.this.kafkaConsumer.subscribe(topicsToSubscribe, new ReplayingRebalanceListener());
                         this.currentlySubscribeTopics = topicsToSubscribe;
-                        StringBuilder sb = new StringBuilder("New subscription list: ");
+                        StringBuilder sb = new StringBuilder("New subscription list of cluster ").append(StreamConsumer.this.clusterSource.name).append(": ");
                         for (String topic : topicsToSubscribe) {
                             sb.append(topic).append(" ");
                         }
@@ -222,4 +235,39 @@ public class StreamConsumer implements Closeable, Runnable {
             return false;
         }
     }
+
+    /**
+     * Rebalance listener which replays the partitions of the topics which are not in the buffer (e.g., after a topic has moved back to this node of a sharded proxy cluster) from the beginning.
+     * Otherwise the consumer would resume from the committed offset and the buffer would miss the history of the topic.
+     */
+    private class ReplayingRebalanceListener implements ConsumerRebalanceListener {
+
+        /**
+         * Does nothing since the offsets are committed automatically.
+         *
+         * @param partitions Revoked partitions
+         */
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        }
+
+        /**
+         * Seeks to the beginning of the assigned partitions whose topic is not in the buffer.
+         *
+         * @param partitions Assigned partitions
+         */
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            List<TopicPartition> partitionsToReplay = new LinkedList<>();
+            for (TopicPartition partition : partitions) {
+                if (!StreamConsumer.this.kafkaRestProxy.getTopics().contains(StreamConsumer.this.clusterSource.getBufferTopic(partition.topic()))) {
+                    partitionsToReplay.add(partition);
+                }
+            }
+            if (!partitionsToReplay.isEmpty()) {
+                StreamConsumer.this.kafkaConsumer.seekToBeginning(partitionsToReplay);
+                logger.info("Replay {} partitions of topics which are not in the buffer from the beginning: {}", partitionsToReplay.size(), partitionsToReplay);
+            }
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ErrorCode;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Registry of the payload decoders per topic which are configured with decoder.topics (e.g., topicA=json,topicB=protobuf:package.MessageType).
+ * Protobuf message types are resolved from the descriptor set file decoder.protobufDescriptorFile (protoc --include_imports --descriptor_set_out=...).
+ */
+public class DecoderRegistry {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DecoderRegistry.class);
+
+    /**
+     * Payload decoders per topic
+     */
+    private final Map<String, PayloadDecoder> decoders;
+
+    /**
+     * DecoderRegistry constructor.
+     *
+     * @param properties Properties
+     */
+    public DecoderRegistry(Properties properties) {
+        this.decoders = new HashMap<>();
+        String descriptorFilePath = PropertyReadHelper.readStringOrDie(properties, "decoder.protobufDescriptorFile").trim();
+        Map<String, Descriptors.Descriptor> messageTypes = null;
+
+        for (String topicDecoder : PropertyReadHelper.readListOfStringsOrDie(properties, "decoder.topics")) {
+            topicDecoder = topicDecoder.trim();
+            if (topicDecoder.isEmpty()) {
+                continue;
+            }
+            int separator = topicDecoder.indexOf('=');
+            if (separator < 1) {
+                logger.error("Decoder {} has to have the format topic=decoder.", topicDecoder);
+                ShutdownHelper.shutdown(ErrorCode.PropertyException);
+                return;
+            }
+            String topic = topicDecoder.substring(0, separator);
+            String decoder = topicDecoder.substring(separator + 1);
+
+            if (decoder.equals("json")) {
+                this.decoders.put(topic, new JsonPassthroughDecoder());
+            } else if (decoder.startsWith("protobuf:")) {
+                if (messageTypes == null) {
+                    messageTypes = loadMessageTypes(descriptorFilePath);
+                }
+                String messageType = decoder.substring("protobuf:".length());
+                Descriptors.Descriptor descriptor = messageTypes.get(messageType);
+                if (descriptor == null) {
+                    logger.error("Protobuf message type {} of topic {} is not in {}.", messageType, topic, descriptorFilePath);
+                    ShutdownHelper.shutdown(ErrorCode.PropertyException);
+                    return;
+                }
+                this.decoders.put(topic, new ProtobufDecoder(descriptor));
+            } else {
+                logger.error("Unknown decoder {} for topic {} (supported: json, protobuf:<message type>).", decoder, topic);
+                ShutdownHelper.shutdown(ErrorCode.PropertyException);
+                return;
+            }
+            logger.info("Registered decoder {} for topic {}", decoder, topic);
+        }
+    }
+
+    /**
+     * Returns the payload decoder of a topic.
+     *
+     * @param topic Topic
+     * @return Payload decoder or null if there is no decoder for the topic
+     */
+    public PayloadDecoder getDecoder(String topic) {
+        return this.decoders.get(topic);
+    }
+
+    /**
+     * Loads all message types of a descriptor set file.
+     *
+     * @param descriptorFilePath Path of the descriptor set file
+     * @return Message types by their full names
+     */
+    private static Map<String, Descriptors.Descriptor> loadMessageTypes(String descriptorFilePath) {
+        Map<String, Descriptors.Descriptor> messageTypes = new HashMap<>();
+        try (InputStream in = new FileInputStream(descriptorFilePath)) {
+            DescriptorProtos.FileDescriptorSet fileDescriptorSet = DescriptorProtos.FileDescriptorSet.parseFrom(in);
+            Map<String, DescriptorProtos.FileDescriptorProto> fileDescriptorProtos = new HashMap<>();
+            for (DescriptorProtos.FileDescriptorProto fileDescriptorProto : fileDescriptorSet.getFileList()) {
+                fileDescriptorProtos.put(fileDescriptorProto.getName(), fileDescriptorProto);
+            }
+            Map<String, Descriptors.FileDescriptor> fileDescriptors = new HashMap<>();
+            for (String name : fileDescriptorProtos.keySet()) {
+                for (Descriptors.Descriptor descriptor : buildFileDescriptor(name, fileDescriptorProtos, fileDescriptors).getMessageTypes()) {
+                    addMessageTypes(descriptor, messageTypes);
+                }
+            }
+        } catch (IOException | Descriptors.DescriptorValidationException | IllegalArgumentException e) {
+            logger.error("Unable to load protobuf descriptor set file {}", descriptorFilePath, e);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+        return messageTypes;
+    }
+
+    /**
+     * Builds a file descriptor after its dependencies (which have to be contained in the descriptor set file).
+     *
+     * @param name                 Name of the file
+     * @param fileDescriptorProtos File descriptor protos by their names
+     * @param fileDescriptors      Already built file descriptors by their names
+     * @return File descriptor
+     * @throws Descriptors.DescriptorValidationException Thrown if a file descriptor is invalid or a dependency is missing
+     */
+    private static Descriptors.FileDescriptor buildFileDescriptor(String name, Map<String, DescriptorProtos.FileDescriptorProto> fileDescriptorProtos, Map<String, Descriptors.FileDescriptor> fileDescriptors) throws Descriptors.DescriptorValidationException {
+        Descriptors.FileDescriptor fileDescriptor = fileDescriptors.get(name);
+        if (fileDescriptor == null) {
+            DescriptorProtos.FileDescriptorProto fileDescriptorProto = fileDescriptorProtos.get(name);
+            if (fileDescriptorProto == null) {
+                throw new IllegalArgumentException("Dependency " + name + " is not in the descriptor set file (use protoc --include_imports).");
+            }
+            Descriptors.FileDescriptor[] dependencies = new Descriptors.FileDescriptor[fileDescriptorProto.getDependencyCount()];
+            for (int i = 0; i < dependencies.length; ++i) {
+                dependencies[i] = buildFileDescriptor(fileDescriptorProto.getDependency(i), fileDescriptorProtos, fileDescriptors);
+            }
+            fileDescriptor = Descriptors.FileDescriptor.buildFrom(fileDescriptorProto, dependencies);
+            fileDescriptors.put(name, fileDescriptor);
+        }
+        return fileDescriptor;
+    }
+
+    /**
+     * Adds a message type and its nested message types.
+     *
+     * @param descriptor   Descriptor of the message type
+     * @param messageTypes Message types by their full names
+     */
+    private static void addMessageTypes(Descriptors.Descriptor descriptor, Map<String, Descriptors.Descriptor> messageTypes) {
+        messageTypes.put(descriptor.getFullName(), descriptor);
+        for (Descriptors.Descriptor nestedDescriptor : descriptor.getNestedTypes()) {
+            addMessageTypes(nestedDescriptor, messageTypes);
+        }
+    }
+}
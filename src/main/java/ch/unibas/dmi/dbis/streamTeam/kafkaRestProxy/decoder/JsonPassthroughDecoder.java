@@ -0,0 +1,63 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decoder for topics whose contents already are UTF-8 encoded JSON documents.
+ * The contents are only validated (strict parsing) and embedded as they are such that an invalid content cannot break the JSON response.
+ */
+public class JsonPassthroughDecoder implements PayloadDecoder {
+
+    /**
+     * Type adapter for validating JSON documents (thread-safe)
+     */
+    private static final TypeAdapter<JsonElement> jsonElementAdapter = new Gson().getAdapter(JsonElement.class);
+
+    /**
+     * Validates the content and returns it as string.
+     *
+     * @param content Content of the data stream element
+     * @return JSON representation of the content
+     * @throws DecodingException Thrown if the content is not a valid JSON document
+     */
+    @Override
+    public String decodeToJson(byte[] content) throws DecodingException {
+        String json = new String(content, StandardCharsets.UTF_8).trim();
+        try {
+            JsonReader jsonReader = new JsonReader(new StringReader(json));
+            jsonReader.setLenient(false);
+            jsonElementAdapter.read(jsonReader);
+            if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                throw new DecodingException("Content contains more than one JSON document.", null);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new DecodingException("Content is not a valid JSON document.", e);
+        }
+        return json;
+    }
+}
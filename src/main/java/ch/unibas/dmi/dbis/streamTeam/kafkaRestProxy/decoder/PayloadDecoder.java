@@ -0,0 +1,51 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+/**
+ * Decodes the content of a data stream element into its JSON representation (/consume?...&fmt=json).
+ */
+public interface PayloadDecoder {
+
+    /**
+     * Decodes the content of a data stream element.
+     *
+     * @param content Content of the data stream element
+     * @return JSON representation of the content
+     * @throws DecodingException Thrown if the content cannot be decoded
+     */
+    String decodeToJson(byte[] content) throws DecodingException;
+
+    /**
+     * Decodes the content of a data stream element and returns null instead of throwing an exception (the content is then rendered base64-encoded).
+     * A null content (tombstone) is not decoded.
+     *
+     * @param content Content of the data stream element or null
+     * @return JSON representation of the content or null if the content is null or cannot be decoded
+     */
+    default String decodeToJsonOrNull(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        try {
+            return decodeToJson(content);
+        } catch (DecodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+
+/**
+ * Decoder for topics whose contents are serialized protobuf messages of a message type from a descriptor set file (no generated classes required).
+ */
+public class ProtobufDecoder implements PayloadDecoder {
+
+    /**
+     * Descriptor of the message type
+     */
+    private final Descriptors.Descriptor descriptor;
+
+    /**
+     * Printer for the JSON representation (thread-safe)
+     */
+    private final JsonFormat.Printer printer;
+
+    /**
+     * ProtobufDecoder constructor.
+     *
+     * @param descriptor Descriptor of the message type
+     */
+    public ProtobufDecoder(Descriptors.Descriptor descriptor) {
+        this.descriptor = descriptor;
+        this.printer = JsonFormat.printer().omittingInsignificantWhitespace();
+    }
+
+    /**
+     * Parses the content as protobuf message and prints its JSON representation.
+     *
+     * @param content Content of the data stream element
+     * @return JSON representation of the content
+     * @throws DecodingException Thrown if the content is not a valid message of the message type
+     */
+    @Override
+    public String decodeToJson(byte[] content) throws DecodingException {
+        try {
+            DynamicMessage message = DynamicMessage.parseFrom(this.descriptor, content);
+            return this.printer.print(message);
+        } catch (InvalidProtocolBufferException e) {
+            throw new DecodingException("Unable to decode " + this.descriptor.getFullName() + " message.", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.embedded;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+
+/**
+ * Receives the data stream elements of an embedded subscription (see KafkaRestProxy.subscribe()).
+ */
+public interface DataStreamListener {
+
+    /**
+     * Called for every new data stream element of the subscription on the thread which ingests it.
+     * Has to return quickly (hand expensive work over to an own executor) and must not modify the content which is shared with the buffer.
+     *
+     * @param dataStreamElement Data stream element
+     */
+    void onDataStreamElement(DataStreamElement dataStreamElement);
+}
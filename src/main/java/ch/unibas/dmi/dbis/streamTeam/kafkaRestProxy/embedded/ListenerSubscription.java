@@ -0,0 +1,124 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.embedded;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushHub;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+
+/**
+ * Subscription of an in-process DataStreamListener to a topic and key (or to all keys of a topic) which is served by the PushHub without encoding frames.
+ * Closing the subscription unsubscribes the listener.
+ */
+public class ListenerSubscription implements PushSubscriber, Closeable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ListenerSubscription.class);
+
+    /**
+     * PushHub
+     */
+    private final PushHub pushHub;
+
+    /**
+     * Topic
+     */
+    private final String topic;
+
+    /**
+     * Key or the dedicated all-key
+     */
+    private final String key;
+
+    /**
+     * Listener
+     */
+    private final DataStreamListener listener;
+
+    /**
+     * True after the subscription has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * ListenerSubscription constructor.
+     *
+     * @param pushHub  PushHub
+     * @param topic    Topic
+     * @param key      Key or the dedicated all-key
+     * @param listener Listener
+     */
+    public ListenerSubscription(PushHub pushHub, String topic, String key, DataStreamListener listener) {
+        this.pushHub = pushHub;
+        this.topic = topic;
+        this.key = key;
+        this.listener = listener;
+        this.closed = false;
+    }
+
+    /**
+     * Subscribes the listener to the PushHub.
+     */
+    public void start() {
+        this.pushHub.subscribe(this, this.topic, this.key);
+    }
+
+    /**
+     * Returns false since the listener receives the data stream elements directly.
+     *
+     * @return False
+     */
+    @Override
+    public boolean usesFrame() {
+        return false;
+    }
+
+    /**
+     * Passes a new data stream element to the listener (called from the ingest path). Exceptions of the listener are logged such that they do not affect the ingestion.
+     *
+     * @param dataStreamElement Data stream element
+     * @param frame             Binary WebSocket frame (not used, null)
+     */
+    @Override
+    public void offer(DataStreamElement dataStreamElement, byte[] frame) {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.listener.onDataStreamElement(dataStreamElement);
+        } catch (RuntimeException e) {
+            logger.error("Caught exception in listener of the subscription to topic {} and key {}.", this.topic, this.key, e);
+        }
+    }
+
+    /**
+     * Unsubscribes the listener. A data stream element which is ingested concurrently may still be passed to the listener.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.pushHub.unsubscribe(this, this.topic, this.key);
+    }
+}
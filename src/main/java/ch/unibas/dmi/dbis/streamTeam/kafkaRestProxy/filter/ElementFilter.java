@@ -0,0 +1,127 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled filter (conjunction of field predicates) and field projection which is evaluated on decoded contents while iterating the buffer (immutable and thread-safe).
+ */
+public class ElementFilter {
+
+    /**
+     * Predicates (all have to match)
+     */
+    private final FieldPredicate[] predicates;
+
+    /**
+     * Paths of the projected fields or null if the decoded contents are not projected
+     */
+    private final String[][] projection;
+
+    /**
+     * ElementFilter constructor.
+     *
+     * @param predicates Predicates (all have to match)
+     * @param projection Paths of the projected fields or null if the decoded contents are not projected
+     */
+    private ElementFilter(FieldPredicate[] predicates, String[][] projection) {
+        this.predicates = predicates;
+        this.projection = projection;
+    }
+
+    /**
+     * Compiles a filter and a field projection.
+     *
+     * @param filter Comma-separated filter clauses (e.g., team==A,position.x>=52.5) or null
+     * @param fields Comma-separated (nested) fields of the projection (e.g., team,position.x) or null
+     * @return Compiled filter
+     * @throws IllegalArgumentException Thrown if a filter clause or a field is invalid
+     */
+    public static ElementFilter compile(String filter, String fields) throws IllegalArgumentException {
+        List<FieldPredicate> predicates = new ArrayList<>();
+        if (filter != null) {
+            for (String clause : filter.split(",")) {
+                if (!clause.trim().isEmpty()) {
+                    predicates.add(FieldPredicate.compile(clause));
+                }
+            }
+        }
+        String[][] projection = null;
+        if (fields != null) {
+            List<String[]> paths = new ArrayList<>();
+            for (String field : fields.split(",")) {
+                String trimmedField = field.trim();
+                if (!trimmedField.isEmpty()) {
+                    paths.add(trimmedField.split("\\."));
+                }
+            }
+            if (paths.isEmpty()) {
+                throw new IllegalArgumentException("fields has to contain at least one field.");
+            }
+            projection = paths.toArray(new String[paths.size()][]);
+        }
+        return new ElementFilter(predicates.toArray(new FieldPredicate[predicates.size()]), projection);
+    }
+
+    /**
+     * Evaluates the filter on a decoded content and projects it.
+     *
+     * @param decodedJson Decoded content (JSON) or null if the content could not be decoded
+     * @return Projected content (JSON) or null if the decoded content does not match the filter (contents which could not be decoded never match)
+     */
+    public String apply(String decodedJson) {
+        if (decodedJson == null) {
+            return null;
+        }
+        JsonElement content;
+        try {
+            content = JsonParser.parseString(decodedJson);
+        } catch (JsonParseException e) {
+            return null;
+        }
+        for (FieldPredicate predicate : this.predicates) {
+            if (!predicate.matches(content)) {
+                return null;
+            }
+        }
+        if (this.projection == null) {
+            return decodedJson;
+        }
+        JsonObject projectedContent = new JsonObject();
+        for (String[] path : this.projection) {
+            JsonPaths.copy(content, projectedContent, path);
+        }
+        return projectedContent.toString();
+    }
+
+    /**
+     * Checks if the decoded contents are projected.
+     *
+     * @return True if the decoded contents are projected
+     */
+    public boolean isProjecting() {
+        return this.projection != null;
+    }
+}
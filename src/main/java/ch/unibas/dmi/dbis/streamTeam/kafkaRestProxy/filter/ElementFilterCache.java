@@ -0,0 +1,69 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled filters per query string (filter and fields parameter) such that repeated (polling) queries are not parsed again.
+ */
+public class ElementFilterCache {
+
+    /**
+     * Compiled filters by query string in access order
+     */
+    private final LinkedHashMap<String, ElementFilter> compiledFilters;
+
+    /**
+     * ElementFilterCache constructor.
+     *
+     * @param capacity Maximum number of cached compiled filters
+     */
+    public ElementFilterCache(int capacity) {
+        this.compiledFilters = new LinkedHashMap<String, ElementFilter>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ElementFilter> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled filter for a filter and a field projection (compiles and caches it if it is not cached yet).
+     *
+     * @param filter Comma-separated filter clauses or null
+     * @param fields Comma-separated (nested) fields of the projection or null
+     * @return Compiled filter
+     * @throws IllegalArgumentException Thrown if a filter clause or a field is invalid
+     */
+    public ElementFilter get(String filter, String fields) throws IllegalArgumentException {
+        String queryString = filter + "|" + fields;
+        synchronized (this.compiledFilters) {
+            ElementFilter compiledFilter = this.compiledFilters.get(queryString);
+            if (compiledFilter != null) {
+                return compiledFilter;
+            }
+        }
+        ElementFilter compiledFilter = ElementFilter.compile(filter, fields); // compiled outside the lock (a concurrent duplicate compilation is harmless)
+        synchronized (this.compiledFilters) {
+            this.compiledFilters.put(queryString, compiledFilter);
+        }
+        return compiledFilter;
+    }
+}
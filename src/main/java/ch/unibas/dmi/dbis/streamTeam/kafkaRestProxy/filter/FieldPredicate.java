@@ -0,0 +1,163 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Compiled predicate on a (nested) field of a decoded content, e.g., team==A or position.x>=52.5 (immutable and thread-safe).
+ */
+class FieldPredicate {
+
+    /**
+     * Comparison operators.
+     */
+    enum Operator {
+        EQUAL("=="), NOT_EQUAL("!="), GREATER_OR_EQUAL(">="), LESS_OR_EQUAL("<="), GREATER(">"), LESS("<");
+
+        /**
+         * Symbol of the operator in a filter clause
+         */
+        private final String symbol;
+
+        /**
+         * Operator constructor.
+         *
+         * @param symbol Symbol of the operator in a filter clause
+         */
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * Path of the field (field names of the nested objects)
+     */
+    private final String[] path;
+
+    /**
+     * Operator
+     */
+    private final Operator operator;
+
+    /**
+     * Value
+     */
+    private final String value;
+
+    /**
+     * Numeric value or NaN if the value is not a number
+     */
+    private final double numericValue;
+
+    /**
+     * FieldPredicate constructor.
+     *
+     * @param path     Path of the field (field names of the nested objects)
+     * @param operator Operator
+     * @param value    Value
+     */
+    private FieldPredicate(String[] path, Operator operator, String value) {
+        this.path = path;
+        this.operator = operator;
+        this.value = value;
+        double parsedValue;
+        try {
+            parsedValue = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            parsedValue = Double.NaN;
+        }
+        this.numericValue = parsedValue;
+    }
+
+    /**
+     * Compiles a filter clause (field, operator and value, e.g., position.x>=52.5).
+     *
+     * @param clause Filter clause
+     * @return Compiled predicate
+     * @throws IllegalArgumentException Thrown if the clause has no operator, no field or a range operator with a non-numeric value
+     */
+    static FieldPredicate compile(String clause) throws IllegalArgumentException {
+        for (int i = 0; i < clause.length(); ++i) {
+            for (Operator operator : Operator.values()) { // two-character operators are checked before the one-character operators
+                if (clause.startsWith(operator.symbol, i)) {
+                    String field = clause.substring(0, i).trim();
+                    String value = clause.substring(i + operator.symbol.length()).trim();
+                    if (field.isEmpty()) {
+                        throw new IllegalArgumentException("filter clause " + clause + " has no field.");
+                    }
+                    FieldPredicate predicate = new FieldPredicate(field.split("\\."), operator, value);
+                    if (operator != Operator.EQUAL && operator != Operator.NOT_EQUAL && Double.isNaN(predicate.numericValue)) {
+                        throw new IllegalArgumentException("filter clause " + clause + " requires a number.");
+                    }
+                    return predicate;
+                }
+            }
+        }
+        throw new IllegalArgumentException("filter clause " + clause + " has no operator (==, !=, >=, <=, > or <).");
+    }
+
+    /**
+     * Checks if a decoded content matches the predicate (a missing field or a non-numeric field in a range comparison does not match).
+     *
+     * @param content Decoded content
+     * @return True if the decoded content matches
+     */
+    boolean matches(JsonElement content) {
+        JsonElement field = JsonPaths.get(content, this.path);
+        if (field == null || !field.isJsonPrimitive()) {
+            return this.operator == Operator.NOT_EQUAL && field == null;
+        }
+        JsonPrimitive primitive = field.getAsJsonPrimitive();
+        switch (this.operator) {
+            case EQUAL:
+                return equalsValue(primitive);
+            case NOT_EQUAL:
+                return !equalsValue(primitive);
+            default:
+                if (!primitive.isNumber()) {
+                    return false;
+                }
+                double number = primitive.getAsDouble();
+                switch (this.operator) {
+                    case GREATER_OR_EQUAL:
+                        return number >= this.numericValue;
+                    case LESS_OR_EQUAL:
+                        return number <= this.numericValue;
+                    case GREATER:
+                        return number > this.numericValue;
+                    default:
+                        return number < this.numericValue;
+                }
+        }
+    }
+
+    /**
+     * Checks if a primitive equals the value (numerically if both are numbers).
+     *
+     * @param primitive Primitive
+     * @return True if the primitive equals the value
+     */
+    private boolean equalsValue(JsonPrimitive primitive) {
+        if (primitive.isNumber() && !Double.isNaN(this.numericValue)) {
+            return primitive.getAsDouble() == this.numericValue;
+        }
+        return primitive.getAsString().equals(this.value);
+    }
+}
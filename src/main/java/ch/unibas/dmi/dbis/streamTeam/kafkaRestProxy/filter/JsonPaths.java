@@ -0,0 +1,69 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Helper for accessing nested fields of decoded contents with paths (field names of the nested objects, e.g., position.x).
+ */
+class JsonPaths {
+
+    /**
+     * Returns a nested field.
+     *
+     * @param content Decoded content
+     * @param path    Path of the field
+     * @return Field or null if the path does not exist
+     */
+    static JsonElement get(JsonElement content, String[] path) {
+        JsonElement current = content;
+        for (String name : path) {
+            if (current == null || !current.isJsonObject()) {
+                return null;
+            }
+            current = current.getAsJsonObject().get(name);
+        }
+        return current;
+    }
+
+    /**
+     * Copies a nested field (if it exists) from the source to the target and creates the enclosing objects in the target.
+     *
+     * @param source Decoded content
+     * @param target Projected content
+     * @param path   Path of the field
+     */
+    static void copy(JsonElement source, JsonObject target, String[] path) {
+        JsonElement field = get(source, path);
+        if (field == null) {
+            return;
+        }
+        JsonObject current = target;
+        for (int i = 0; i < path.length - 1; ++i) {
+            JsonElement child = current.get(path[i]);
+            if (child == null || !child.isJsonObject()) {
+                child = new JsonObject();
+                current.add(path[i], child);
+            }
+            current = child.getAsJsonObject();
+        }
+        current.add(path[path.length - 1], field);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushHub;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * gRPC server of the typed API (see src/main/proto/kafkaRestProxy.proto) on its own port.
+ * The calls run on a dedicated fixed-size executor such that they never compete with the Jetty threads of the REST API.
+ */
+public class GrpcServer implements Closeable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(GrpcServer.class);
+
+    /**
+     * gRPC server
+     */
+    private final Server server;
+
+    /**
+     * Executor of the gRPC calls and subscriptions
+     */
+    private final ExecutorService executor;
+
+    /**
+     * GrpcServer constructor which starts the gRPC server.
+     *
+     * @param properties     Properties
+     * @param kafkaRestProxy KafkaRestProxy
+     * @param pushHub        PushHub for the Subscribe calls
+     * @throws IOException Thrown if unable to bind the port
+     */
+    public GrpcServer(Properties properties, KafkaRestProxy kafkaRestProxy, PushHub pushHub) throws IOException {
+        int port = PropertyReadHelper.readIntOrDie(properties, "grpc.port");
+        int threads = PropertyReadHelper.readIntOrDie(properties, "grpc.threads");
+        int subscriptionQueueSize = PropertyReadHelper.readIntOrDie(properties, "grpc.subscriptionQueueSize");
+        int maxInboundMessageBytes = PropertyReadHelper.readIntOrDie(properties, "grpc.maxInboundMessageBytes");
+
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "grpc-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = ServerBuilder.forPort(port)
+                .executor(this.executor)
+                .maxInboundMessageSize(maxInboundMessageBytes)
+                .addService(new KafkaRestProxyGrpcService(kafkaRestProxy, pushHub, this.executor, subscriptionQueueSize))
+                .build()
+                .start();
+        logger.info("Started gRPC server on port {} with {} threads", port, threads);
+    }
+
+    /**
+     * Stops the gRPC server (cancels the running subscriptions) and its executor.
+     */
+    @Override
+    public void close() {
+        this.server.shutdownNow();
+        try {
+            this.server.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.executor.shutdownNow();
+        logger.info("Stopped gRPC server");
+    }
+}
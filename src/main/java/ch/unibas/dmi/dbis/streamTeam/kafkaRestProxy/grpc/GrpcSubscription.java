@@ -0,0 +1,236 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.StreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushHub;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushSubscriber;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Server-streaming Subscribe call of the gRPC API.
+ * The ingest path only enqueues the data stream elements, they are sent on the gRPC executor as long as the transport is ready (flow control).
+ * Up to queueSize data stream elements are queued; if the client does not keep up, only the latest data stream element per key is kept (conflation) until the backlog has been sent.
+ */
+class GrpcSubscription implements PushSubscriber, Runnable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(GrpcSubscription.class);
+
+    /**
+     * PushHub
+     */
+    private final PushHub pushHub;
+
+    /**
+     * Topic of the subscription
+     */
+    private final String topic;
+
+    /**
+     * Key (or dedicated all-key) of the subscription
+     */
+    private final String key;
+
+    /**
+     * Response stream of the call
+     */
+    private final ServerCallStreamObserver<StreamElement> responseObserver;
+
+    /**
+     * gRPC executor on which the data stream elements are sent
+     */
+    private final Executor executor;
+
+    /**
+     * Maximum number of queued data stream elements (and of conflated keys)
+     */
+    private final int queueSize;
+
+    /**
+     * Queued data stream elements in ingest order (guarded by this)
+     */
+    private final ArrayDeque<DataStreamElement> queue;
+
+    /**
+     * Latest data stream element per key which arrived while the queue was full (guarded by this)
+     */
+    private final LinkedHashMap<String, DataStreamElement> conflated;
+
+    /**
+     * True if a run is scheduled or running on the executor (guarded by this)
+     */
+    private boolean scheduled;
+
+    /**
+     * True if the call has been cancelled (guarded by this)
+     */
+    private boolean cancelled;
+
+    /**
+     * GrpcSubscription constructor.
+     *
+     * @param pushHub          PushHub
+     * @param topic            Topic
+     * @param key              Key or the dedicated all-key
+     * @param responseObserver Response stream of the call
+     * @param executor         gRPC executor
+     * @param queueSize        Maximum number of queued data stream elements
+     */
+    GrpcSubscription(PushHub pushHub, String topic, String key, ServerCallStreamObserver<StreamElement> responseObserver, Executor executor, int queueSize) {
+        this.pushHub = pushHub;
+        this.topic = topic;
+        this.key = key;
+        this.responseObserver = responseObserver;
+        this.executor = executor;
+        this.queueSize = queueSize;
+        this.queue = new ArrayDeque<>();
+        this.conflated = new LinkedHashMap<>();
+        this.scheduled = false;
+        this.cancelled = false;
+    }
+
+    /**
+     * Registers the flow control and cancellation handlers and subscribes to the PushHub (has to be called within the Subscribe call).
+     */
+    void start() {
+        this.responseObserver.setOnReadyHandler(this::schedule);
+        this.responseObserver.setOnCancelHandler(this::cancel);
+        this.pushHub.subscribe(this, this.topic, this.key);
+    }
+
+    /**
+     * Returns false since the subscription sends protobuf messages instead of the frames.
+     *
+     * @return False
+     */
+    @Override
+    public boolean usesFrame() {
+        return false;
+    }
+
+    /**
+     * Queues or conflates a new data stream element and schedules the sending (called from the ingest path).
+     *
+     * @param dataStreamElement Data stream element
+     * @param frame             Binary WebSocket frame (not used, null)
+     */
+    @Override
+    public void offer(DataStreamElement dataStreamElement, byte[] frame) {
+        synchronized (this) {
+            if (this.cancelled) {
+                return;
+            }
+            if (this.conflated.isEmpty() && this.queue.size() < this.queueSize) {
+                this.queue.add(dataStreamElement);
+            } else if (this.conflated.size() < this.queueSize || this.conflated.containsKey(dataStreamElement.key)) {
+                this.conflated.put(dataStreamElement.key, dataStreamElement); // replaces the older data stream element of the key but keeps its position
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Schedules a run on the executor if there are queued data stream elements and no run is scheduled yet.
+     */
+    private void schedule() {
+        if (markScheduled()) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) { // executor is shut down
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * Marks a run as scheduled if there are queued data stream elements and no run is scheduled yet.
+     *
+     * @return True if the caller has to run (or schedule a run)
+     */
+    private synchronized boolean markScheduled() {
+        if (this.scheduled || this.cancelled || (this.queue.isEmpty() && this.conflated.isEmpty())) {
+            return false;
+        }
+        this.scheduled = true;
+        return true;
+    }
+
+    /**
+     * Sends queued data stream elements as long as the transport is ready.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (!this.responseObserver.isReady()) {
+                    synchronized (this) {
+                        this.scheduled = false;
+                    }
+                    if (this.responseObserver.isReady() && markScheduled()) {
+                        continue; // the onReady handler may have run before scheduled was reset
+                    }
+                    return;
+                }
+                StreamElement message;
+                synchronized (this) {
+                    DataStreamElement dataStreamElement = this.queue.poll();
+                    boolean isConflated = false;
+                    if (dataStreamElement == null && !this.conflated.isEmpty()) {
+                        Iterator<DataStreamElement> iterator = this.conflated.values().iterator();
+                        dataStreamElement = iterator.next();
+                        iterator.remove();
+                        isConflated = true;
+                    }
+                    if (dataStreamElement == null || this.cancelled) {
+                        this.scheduled = false;
+                        return;
+                    }
+                    message = KafkaRestProxyGrpcService.toMessage(dataStreamElement, isConflated);
+                }
+                this.responseObserver.onNext(message);
+            }
+        } catch (RuntimeException e) { // e.g., the call has been cancelled concurrently
+            logger.debug("Unable to send a data stream element of subscription {}/{}.", this.topic, this.key, e);
+            cancel();
+        }
+    }
+
+    /**
+     * Unsubscribes from the PushHub and discards the backlog.
+     */
+    private void cancel() {
+        synchronized (this) {
+            this.cancelled = true;
+            this.queue.clear();
+            this.conflated.clear();
+        }
+        this.pushHub.unsubscribe(this, this.topic, this.key);
+    }
+}
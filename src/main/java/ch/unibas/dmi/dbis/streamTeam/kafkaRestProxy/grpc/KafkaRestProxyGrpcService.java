@@ -0,0 +1,198 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ConsumeRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ConsumeResponse;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.KafkaRestProxyServiceGrpc;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListKeysRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListKeysResponse;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListTopicsRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListTopicsResponse;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.StreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.SubscribeRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push.PushHub;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Implementation of the gRPC API which serves the same buffer as the RequestHandler.
+ * The contents are sent as bytes fields which wrap the buffered arrays without copying (the buffer never modifies a content array).
+ */
+class KafkaRestProxyGrpcService extends KafkaRestProxyServiceGrpc.KafkaRestProxyServiceImplBase {
+
+    /**
+     * KafkaRestProxy
+     */
+    private final KafkaRestProxy kafkaRestProxy;
+
+    /**
+     * PushHub for the Subscribe calls
+     */
+    private final PushHub pushHub;
+
+    /**
+     * gRPC executor
+     */
+    private final Executor executor;
+
+    /**
+     * Maximum number of queued data stream elements per Subscribe call
+     */
+    private final int subscriptionQueueSize;
+
+    /**
+     * KafkaRestProxyGrpcService constructor.
+     *
+     * @param kafkaRestProxy        KafkaRestProxy
+     * @param pushHub               PushHub for the Subscribe calls
+     * @param executor              gRPC executor
+     * @param subscriptionQueueSize Maximum number of queued data stream elements per Subscribe call
+     */
+    KafkaRestProxyGrpcService(KafkaRestProxy kafkaRestProxy, PushHub pushHub, Executor executor, int subscriptionQueueSize) {
+        this.kafkaRestProxy = kafkaRestProxy;
+        this.pushHub = pushHub;
+        this.executor = executor;
+        this.subscriptionQueueSize = subscriptionQueueSize;
+    }
+
+    /**
+     * Lists the topics.
+     *
+     * @param request          Request
+     * @param responseObserver Response stream
+     */
+    @Override
+    public void listTopics(ListTopicsRequest request, StreamObserver<ListTopicsResponse> responseObserver) {
+        responseObserver.onNext(ListTopicsResponse.newBuilder().addAllTopics(this.kafkaRestProxy.getTopics()).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Lists the keys of a topic.
+     *
+     * @param request          Request
+     * @param responseObserver Response stream
+     */
+    @Override
+    public void listKeys(ListKeysRequest request, StreamObserver<ListKeysResponse> responseObserver) {
+        if (request.getTopic().isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("topic is missing.").asRuntimeException());
+            return;
+        }
+        if (request.getMax() < 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("max has to be greater than or equal to 0.").asRuntimeException());
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        boolean hasMore = this.kafkaRestProxy.getKeys(request.getTopic(), request.getPrefix(), request.getAfter().isEmpty() ? null : request.getAfter(), request.getMax() == 0 ? Integer.MAX_VALUE : request.getMax(), keys);
+        ListKeysResponse.Builder response = ListKeysResponse.newBuilder().addAllKeys(keys);
+        if (hasMore) {
+            response.setAfter(keys.get(keys.size() - 1));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Returns the latest data stream elements of a topic or topic-key-combination.
+     *
+     * @param request          Request
+     * @param responseObserver Response stream
+     */
+    @Override
+    public void consume(ConsumeRequest request, StreamObserver<ConsumeResponse> responseObserver) {
+        if (request.getTopic().isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("topic is missing.").asRuntimeException());
+            return;
+        }
+        if (request.getLimit() < 1) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("limit has to be greater than 0.").asRuntimeException());
+            return;
+        }
+        String key = request.getKey().isEmpty() ? null : request.getKey();
+        long from = request.getFrom() == 0 ? Long.MIN_VALUE : toTimestamp(request.getFrom());
+        long to = request.getTo() == 0 ? Long.MAX_VALUE : toTimestamp(request.getTo());
+        this.kafkaRestProxy.countRead(request.getTopic(), key);
+
+        List<DataStreamElement> dataStreamElements = new ArrayList<>();
+        long cursor = this.kafkaRestProxy.collectDataStreamElements(request.getTopic(), key, request.getLimit(), from, to, request.getCursor(), dataStreamElements);
+        ConsumeResponse.Builder response = ConsumeResponse.newBuilder().setCursor(cursor);
+        for (DataStreamElement dataStreamElement : dataStreamElements) {
+            response.addElements(toMessage(dataStreamElement, false));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Streams the new data stream elements of a topic or topic-key-combination until the client cancels the call.
+     *
+     * @param request          Request
+     * @param responseObserver Response stream
+     */
+    @Override
+    public void subscribe(SubscribeRequest request, StreamObserver<StreamElement> responseObserver) {
+        if (request.getTopic().isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("topic is missing.").asRuntimeException());
+            return;
+        }
+        String key = request.getKey().isEmpty() ? this.pushHub.getDedicatedAllKey() : request.getKey();
+        GrpcSubscription subscription = new GrpcSubscription(this.pushHub, request.getTopic(), key, (ServerCallStreamObserver<StreamElement>) responseObserver, this.executor, this.subscriptionQueueSize);
+        subscription.start();
+    }
+
+    /**
+     * Converts a timestamp parameter. Negative values are relative to the current time (as for the REST API).
+     *
+     * @param value Value of the parameter
+     * @return Timestamp in ms
+     */
+    private static long toTimestamp(long value) {
+        return value < 0 ? System.currentTimeMillis() + value : value;
+    }
+
+    /**
+     * Converts a data stream element into its protobuf message (without content if the data stream element has no content).
+     *
+     * @param dataStreamElement Data stream element
+     * @param conflated         True if older data stream elements of the same key have been dropped
+     * @return Protobuf message
+     */
+    static StreamElement toMessage(DataStreamElement dataStreamElement, boolean conflated) {
+        StreamElement.Builder message = StreamElement.newBuilder()
+                .setTopic(dataStreamElement.topic)
+                .setKey(dataStreamElement.key)
+                .setPartition(dataStreamElement.partition)
+                .setOffset(dataStreamElement.offset)
+                .setTimestamp(dataStreamElement.timestamp)
+                .setConflated(conflated);
+        if (dataStreamElement.content != null) { // the content of a tombstone stays unset
+            message.setContent(UnsafeByteOperations.unsafeWrap(dataStreamElement.content));
+        }
+        return message.build();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer;
+
+/**
+ * Acknowledgment modes of the /produce REST API call (?ack=...).
+ */
+public enum AckMode {
+    /**
+     * Fire-and-forget: the REST API call returns (202) as soon as the records are handed over to the KafkaProducer
+     */
+    NONE,
+    /**
+     * The REST API call returns after Kafka has acknowledged the records, the response is written by the KafkaProducer callback without occupying a Jetty thread
+     */
+    ASYNC,
+    /**
+     * The REST API call returns after Kafka has acknowledged the records, the Jetty thread waits for the acknowledgments
+     */
+    SYNC;
+
+    /**
+     * Parses an acknowledgment mode (case-insensitive).
+     *
+     * @param value Value (none, async or sync)
+     * @return Acknowledgment mode
+     * @throws IllegalArgumentException Thrown if the value is not an acknowledgment mode
+     */
+    public static AckMode parse(String value) throws IllegalArgumentException {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
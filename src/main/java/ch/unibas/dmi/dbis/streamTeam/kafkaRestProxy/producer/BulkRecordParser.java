@@ -0,0 +1,93 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the body of a /produce/bulk REST API call: one JSON object per line with the key (k), the base64-encoded value (v) and optionally the partition (p), e.g., {"k":"player1","v":"AAEC"}.
+ */
+public class BulkRecordParser {
+
+    /**
+     * Parses the records of a bulk body.
+     *
+     * @param topic      Topic of the records
+     * @param body       Body
+     * @param maxRecords Maximum number of records
+     * @return Records
+     * @throws IOException              Thrown if unable to read the body
+     * @throws IllegalArgumentException Thrown if a line is not a valid record or if the body contains more than maxRecords records
+     */
+    public static List<ProducerRecord<String, byte[]>> parse(String topic, Reader body, int maxRecords) throws IOException, IllegalArgumentException {
+        List<ProducerRecord<String, byte[]>> records = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(body);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (records.size() == maxRecords) {
+                throw new IllegalArgumentException("body contains more than " + maxRecords + " records.");
+            }
+            records.add(parseRecord(topic, line, lineNumber));
+        }
+        return records;
+    }
+
+    /**
+     * Parses a single record.
+     *
+     * @param topic      Topic of the record
+     * @param line       Line with the JSON object of the record
+     * @param lineNumber Line number (for the error message)
+     * @return Record
+     * @throws IllegalArgumentException Thrown if the line is not a valid record
+     */
+    private static ProducerRecord<String, byte[]> parseRecord(String topic, String line, int lineNumber) throws IllegalArgumentException {
+        try {
+            JsonElement element = JsonParser.parseString(line);
+            if (!element.isJsonObject()) {
+                throw new IllegalArgumentException("line " + lineNumber + " is not a JSON object.");
+            }
+            JsonObject object = element.getAsJsonObject();
+            JsonElement key = object.get("k");
+            JsonElement value = object.get("v");
+            JsonElement partition = object.get("p");
+            if (value == null || !value.isJsonPrimitive()) {
+                throw new IllegalArgumentException("line " + lineNumber + " has no value (v).");
+            }
+            return new ProducerRecord<>(topic, partition == null ? null : partition.getAsInt(), key == null || key.isJsonNull() ? null : key.getAsString(), Base64.decodeBase64(value.getAsString()));
+        } catch (JsonParseException | NumberFormatException | UnsupportedOperationException e) {
+            throw new IllegalArgumentException("line " + lineNumber + " is not a valid record.");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Produces the records of /produce REST API calls with a single shared KafkaProducer (batched and compressed according to the properties).
+ * Acknowledged records can be reflected into the local buffer immediately (read-your-writes). A record is buffered exactly once: whichever of the reflection and the StreamConsumer comes first
+ * registers the topic/partition/offset and the other one skips the record (the StreamConsumer may fetch a record before its acknowledgment arrives).
+ */
+public class RecordProducer implements Closeable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RecordProducer.class);
+
+    /**
+     * Shared KafkaProducer
+     */
+    private final Producer<String, byte[]> kafkaProducer;
+
+    /**
+     * Receives the acknowledged records for the reflection into the local buffer or null if the records are not reflected
+     */
+    private final Consumer<DataStreamElement> reflector;
+
+    /**
+     * Marker of a record which has been reflected but not consumed yet
+     */
+    private static final Boolean REFLECTED = Boolean.TRUE;
+
+    /**
+     * Marker of a record which has been consumed but not reflected yet
+     */
+    private static final Boolean CONSUMED = Boolean.FALSE;
+
+    /**
+     * Records which have been buffered by either the reflection or the StreamConsumer but not yet by the other one (topic/partition/offset in insertion order, bounded)
+     */
+    private final Map<String, Boolean> reflectedRecords;
+
+    /**
+     * Number of records per topic which have been handed over to the KafkaProducer and whose acknowledgments are pending (only consumed records of such topics can be reflected later)
+     */
+    private final ConcurrentHashMap<String, AtomicInteger> pendingAcknowledgments;
+
+    /**
+     * RecordProducer constructor.
+     *
+     * @param properties    Properties
+     * @param kafkaProducer KafkaProducer or null to create the KafkaProducer from the properties
+     * @param reflector     Receives the acknowledged records for the reflection into the local buffer (only used if produce.reflect is true)
+     */
+    public RecordProducer(Properties properties, Producer<String, byte[]> kafkaProducer, Consumer<DataStreamElement> reflector) {
+        this.kafkaProducer = kafkaProducer == null ? createKafkaProducer(properties) : kafkaProducer;
+        this.reflector = PropertyReadHelper.readBooleanOrDie(properties, "produce.reflect") ? reflector : null;
+        int reflectedRecordsCapacity = PropertyReadHelper.readIntOrDie(properties, "produce.reflectedRecords");
+        // https://docs.oracle.com/javase/8/docs/api/java/util/LinkedHashMap.html#removeEldestEntry-java.util.Map.Entry-
+        this.reflectedRecords = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > reflectedRecordsCapacity; // records of topics which are not consumed would otherwise be tracked forever
+            }
+        });
+        this.pendingAcknowledgments = new ConcurrentHashMap<>();
+        logger.info("Initialized RecordProducer (reflect={})", this.reflector != null);
+    }
+
+    /**
+     * Creates the shared KafkaProducer.
+     *
+     * @param properties Properties
+     * @return KafkaProducer
+     */
+    private static KafkaProducer<String, byte[]> createKafkaProducer(Properties properties) {
+        // https://kafka.apache.org/20/documentation.html#producerconfigs
+        Properties props = new Properties();
+        props.put("bootstrap.servers", PropertyReadHelper.readStringOrDie(properties, "kafka.brokerList"));
+        props.put("acks", PropertyReadHelper.readStringOrDie(properties, "produce.acks"));
+        props.put("linger.ms", Integer.toString(PropertyReadHelper.readIntOrDie(properties, "produce.lingerMs")));
+        props.put("batch.size", Integer.toString(PropertyReadHelper.readIntOrDie(properties, "produce.batchSize")));
+        props.put("compression.type", PropertyReadHelper.readStringOrDie(properties, "produce.compressionType"));
+        props.put("max.block.ms", Long.toString(PropertyReadHelper.readLongOrDie(properties, "produce.maxBlockMillis")));
+        props.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        props.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+        return new KafkaProducer<>(props);
+    }
+
+    /**
+     * Sends records of a topic to Kafka.
+     *
+     * @param topic     Topic of the records
+     * @param records   Records
+     * @param awaitAcks False for fire-and-forget (the future is completed immediately), true if the future should be completed when Kafka has acknowledged all records
+     * @return Future which is completed with the RestResult (202 without acknowledgments, 200 with the partitions and offsets or 503 if a record could not be produced)
+     */
+    public CompletableFuture<RestResult> send(String topic, List<ProducerRecord<String, byte[]>> records, boolean awaitAcks) {
+        CompletableFuture<RestResult> future = new CompletableFuture<>();
+        RecordMetadata[] acknowledgments = new RecordMetadata[records.size()];
+        AtomicInteger pending = new AtomicInteger(records.size());
+        AtomicInteger pendingOfTopic = this.reflector == null ? null : this.pendingAcknowledgments.computeIfAbsent(topic, t -> new AtomicInteger(0));
+        try {
+            for (int i = 0; i < records.size(); ++i) {
+                int recordIndex = i;
+                ProducerRecord<String, byte[]> record = records.get(i);
+                if (pendingOfTopic != null) {
+                    pendingOfTopic.incrementAndGet();
+                }
+                try {
+                    this.kafkaProducer.send(record, (metadata, exception) -> {
+                        try {
+                            if (exception != null) {
+                                logger.warn("Unable to produce a record to topic {}.", topic, exception);
+                                future.complete(RestResult.generateServiceUnavailableResult("produce", "unable to produce a record (" + exception.getClass().getSimpleName() + ")."));
+                                return;
+                            }
+                            acknowledgments[recordIndex] = metadata;
+                            reflect(record, metadata);
+                        } finally {
+                            if (pendingOfTopic != null) {
+                                pendingOfTopic.decrementAndGet(); // after the reflection such that a concurrently consumed record is registered as long as it could still be reflected
+                            }
+                        }
+                        if (pending.decrementAndGet() == 0) {
+                            future.complete(RestResult.generateProduceResult(topic, renderAcknowledgments(acknowledgments)));
+                        }
+                    });
+                } catch (KafkaException e) {
+                    if (pendingOfTopic != null) {
+                        pendingOfTopic.decrementAndGet(); // the callback is never called
+                    }
+                    throw e;
+                }
+            }
+        } catch (KafkaException e) { // e.g., buffer full for longer than max.block.ms
+            logger.warn("Unable to hand over a record of topic {} to the KafkaProducer.", topic, e);
+            future.complete(RestResult.generateServiceUnavailableResult("produce", "unable to produce a record (" + e.getClass().getSimpleName() + ")."));
+        }
+        if (!awaitAcks) {
+            future.complete(RestResult.generateProduceAcceptedResult(topic, records.size())); // no-op if a record has already failed
+        }
+        return future;
+    }
+
+    /**
+     * Reflects an acknowledged record into the local buffer (if enabled) unless the StreamConsumer has already consumed it.
+     *
+     * @param record   Record
+     * @param metadata Acknowledgment of the record
+     */
+    private void reflect(ProducerRecord<String, byte[]> record, RecordMetadata metadata) {
+        if (this.reflector != null && record.key() != null && metadata.hasOffset()) { // without key or offset (acks=0), the record cannot be buffered
+            String trackingKey = record.topic() + "/" + metadata.partition() + "/" + metadata.offset();
+            synchronized (this.reflectedRecords) {
+                if (CONSUMED.equals(this.reflectedRecords.remove(trackingKey))) {
+                    return; // already buffered by the StreamConsumer
+                }
+                this.reflectedRecords.put(trackingKey, REFLECTED);
+            }
+            this.reflector.accept(new DataStreamElement(record.value(), record.key(), record.topic(), metadata.partition(), metadata.offset(), metadata.timestamp()));
+        }
+    }
+
+    /**
+     * Checks if a consumed record has already been reflected into the local buffer (and stops tracking it).
+     * Otherwise, the record is registered as consumed if the acknowledgments of records of its topic are pending such that it is not reflected afterwards.
+     *
+     * @param topic     Topic of the record
+     * @param partition Partition of the record
+     * @param offset    Offset of the record
+     * @return True if the record has already been reflected
+     */
+    public boolean consumeReflected(String topic, int partition, long offset) {
+        if (this.reflector == null) {
+            return false;
+        }
+        AtomicInteger pendingOfTopic = this.pendingAcknowledgments.get(topic);
+        boolean reflectable = pendingOfTopic != null && pendingOfTopic.get() > 0;
+        if (!reflectable && this.reflectedRecords.isEmpty()) {
+            return false;
+        }
+        String trackingKey = topic + "/" + partition + "/" + offset;
+        synchronized (this.reflectedRecords) {
+            if (REFLECTED.equals(this.reflectedRecords.remove(trackingKey))) {
+                return true;
+            }
+            if (reflectable) {
+                this.reflectedRecords.put(trackingKey, CONSUMED);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Renders the JSON array of the acknowledgments ([{"p":...,"o":...},...]).
+     *
+     * @param acknowledgments Acknowledgments
+     * @return JSON array
+     */
+    private static String renderAcknowledgments(RecordMetadata[] acknowledgments) {
+        StringBuffer jsonArray = new StringBuffer("[");
+        for (int i = 0; i < acknowledgments.length; ++i) {
+            if (i > 0) {
+                jsonArray.append(",");
+            }
+            jsonArray.append("{\"p\":");
+            jsonArray.append(acknowledgments[i].partition());
+            jsonArray.append(",\"o\":");
+            jsonArray.append(acknowledgments[i].offset());
+            jsonArray.append("}");
+        }
+        jsonArray.append("]");
+        return jsonArray.toString();
+    }
+
+    /**
+     * Flushes the pending records and closes the KafkaProducer.
+     */
+    @Override
+    public void close() {
+        try {
+            this.kafkaProducer.close(5, TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            logger.error("Caught exception while closing the KafkaProducer.", e);
+        }
+        logger.info("Closed RecordProducer");
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary WebSocket frame of a pushed data stream element (big-endian):
+ * flags (1 byte), topic length (2 bytes), topic (UTF-8), key length (2 bytes), key (UTF-8), partition (4 bytes), offset (8 bytes), timestamp (8 bytes), raw content (remaining bytes).
+ * A data stream element without content (tombstone) has no content bytes and the null content flag (such that it can be distinguished from an empty content).
+ */
+public class PushFrame {
+
+    /**
+     * Flag which indicates that older data stream elements of the same topic and key have been dropped because the client has not kept up (conflation)
+     */
+    public static final byte FLAG_CONFLATED = 0x01;
+
+    /**
+     * Flag which indicates that the data stream element has no content (tombstone)
+     */
+    public static final byte FLAG_NULL_CONTENT = 0x02;
+
+    /**
+     * Encodes a data stream element (without the conflation flag).
+     *
+     * @param dataStreamElement Data stream element
+     * @return Frame
+     */
+    public static byte[] encode(DataStreamElement dataStreamElement) {
+        byte[] topic = dataStreamElement.topic.getBytes(StandardCharsets.UTF_8);
+        byte[] key = dataStreamElement.key.getBytes(StandardCharsets.UTF_8);
+        byte[] content = dataStreamElement.content;
+        ByteBuffer frame = ByteBuffer.allocate(1 + 2 + topic.length + 2 + key.length + 4 + 8 + 8 + (content == null ? 0 : content.length));
+        frame.put(content == null ? FLAG_NULL_CONTENT : 0);
+        frame.putShort((short) topic.length);
+        frame.put(topic);
+        frame.putShort((short) key.length);
+        frame.put(key);
+        frame.putInt(dataStreamElement.partition);
+        frame.putLong(dataStreamElement.offset);
+        frame.putLong(dataStreamElement.timestamp);
+        if (content != null) {
+            frame.put(content);
+        }
+        return frame.array();
+    }
+
+    /**
+     * Returns a copy of a frame with the conflation flag.
+     *
+     * @param frame Frame
+     * @return Frame with the conflation flag
+     */
+    static byte[] markConflated(byte[] frame) {
+        byte[] conflatedFrame = frame.clone(); // the original frame is shared by all sessions
+        conflatedFrame[0] |= FLAG_CONFLATED;
+        return conflatedFrame;
+    }
+}
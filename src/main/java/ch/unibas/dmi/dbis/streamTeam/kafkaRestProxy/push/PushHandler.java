@@ -0,0 +1,102 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.websocket.server.WebSocketHandler;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Handler which upgrades WebSocket requests to push.path to PushSessions and passes all other requests to the wrapped handler.
+ */
+public class PushHandler extends WebSocketHandler {
+
+    /**
+     * PushHub
+     */
+    private final PushHub pushHub;
+
+    /**
+     * Path of the WebSocket endpoint
+     */
+    private final String path;
+
+    /**
+     * Time in ms after which an idle session is closed
+     */
+    private final long idleTimeoutMillis;
+
+    /**
+     * Maximum size of a subscription message in bytes
+     */
+    private final int maxTextMessageBytes;
+
+    /**
+     * PushHandler constructor.
+     *
+     * @param handler    Wrapped handler for the REST API calls
+     * @param pushHub    PushHub
+     * @param properties Properties
+     */
+    public PushHandler(Handler handler, PushHub pushHub, Properties properties) {
+        this.pushHub = pushHub;
+        this.path = PropertyReadHelper.readStringOrDie(properties, "push.path");
+        this.idleTimeoutMillis = PropertyReadHelper.readLongOrDie(properties, "push.idleTimeoutMillis");
+        this.maxTextMessageBytes = PropertyReadHelper.readIntOrDie(properties, "push.maxTextMessageBytes");
+        setHandler(handler);
+    }
+
+    /**
+     * Configures the WebSocket factory (called by Jetty on start).
+     *
+     * @param factory WebSocket factory
+     */
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(this.idleTimeoutMillis);
+        factory.getPolicy().setMaxTextMessageSize(this.maxTextMessageBytes);
+        factory.setCreator((servletUpgradeRequest, servletUpgradeResponse) -> this.pushHub.createSession());
+    }
+
+    /**
+     * Upgrades WebSocket requests to the push path and passes all other requests to the wrapped handler.
+     *
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException      Thrown if unable to handle the REST API call
+     * @throws ServletException Thrown if unable to handle the REST API call
+     */
+    @Override
+    public void handle(String target, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException, ServletException {
+        if (target.equals(this.path)) {
+            super.handle(target, request, httpServletRequest, httpServletResponse);
+        } else if (getHandler() != null) {
+            getHandler().handle(target, request, httpServletRequest, httpServletResponse);
+        }
+    }
+}
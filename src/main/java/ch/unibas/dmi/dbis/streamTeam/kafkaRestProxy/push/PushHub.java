@@ -0,0 +1,193 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes ingested data stream elements to the subscribers (WebSocket sessions, gRPC subscriptions and embedded listeners) which have subscribed to their topic and key (or to all keys of their topic).
+ * The frame of a data stream element is encoded at most once (only if a subscriber uses it) and shared by all subscribers. Publishing never blocks the ingest path since every subscriber only enqueues the data stream element.
+ */
+public class PushHub {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PushHub.class);
+
+    /**
+     * Dedicated all-key (subscription to all keys of a topic)
+     */
+    private final String dedicatedAllKey;
+
+    /**
+     * Maximum number of queued frames per session (before conflation starts)
+     */
+    private final int queueSize;
+
+    /**
+     * Maximum number of subscriptions per session
+     */
+    private final int maxSubscriptions;
+
+    /**
+     * Subscribers per topic and key (or dedicated all-key)
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Set<PushSubscriber>>> subscribers;
+
+    /**
+     * Number of open sessions
+     */
+    private final AtomicInteger openSessions;
+
+    /**
+     * PushHub constructor.
+     *
+     * @param properties      Properties
+     * @param dedicatedAllKey Dedicated all-key
+     */
+    public PushHub(Properties properties, String dedicatedAllKey) {
+        this.dedicatedAllKey = dedicatedAllKey;
+        this.queueSize = PropertyReadHelper.readIntOrDie(properties, "push.queueSize");
+        this.maxSubscriptions = PropertyReadHelper.readIntOrDie(properties, "push.maxSubscriptions");
+        this.subscribers = new ConcurrentHashMap<>();
+        this.openSessions = new AtomicInteger(0);
+        logger.info("Initialized PushHub with queues of {} frames per session", this.queueSize);
+    }
+
+    /**
+     * Creates a new session (called by Jetty for every WebSocket upgrade).
+     *
+     * @return Session
+     */
+    PushSession createSession() {
+        return new PushSession(this, this.queueSize, this.maxSubscriptions);
+    }
+
+    /**
+     * Pushes a new data stream element to all subscribers (thread-safe, called from the ingest path).
+     *
+     * @param dataStreamElement Data stream element
+     */
+    public void publish(DataStreamElement dataStreamElement) {
+        ConcurrentHashMap<String, Set<PushSubscriber>> subscribersForTopic = this.subscribers.get(dataStreamElement.topic);
+        if (subscribersForTopic == null) {
+            return;
+        }
+        Set<PushSubscriber> subscribersForKey = subscribersForTopic.get(dataStreamElement.key);
+        Set<PushSubscriber> subscribersForAll = subscribersForTopic.get(this.dedicatedAllKey);
+        if (subscribersForKey == null && subscribersForAll == null) {
+            return;
+        }
+
+        byte[] frame = null;
+        if (subscribersForKey != null) {
+            for (PushSubscriber subscriber : subscribersForKey) {
+                frame = offer(subscriber, dataStreamElement, frame);
+            }
+        }
+        if (subscribersForAll != null) {
+            for (PushSubscriber subscriber : subscribersForAll) {
+                if (subscribersForKey == null || !subscribersForKey.contains(subscriber)) { // a subscriber which has subscribed to the key and to all keys gets the frame only once
+                    frame = offer(subscriber, dataStreamElement, frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * Offers a data stream element to a subscriber and encodes the frame when the first subscriber which uses frames is reached.
+     *
+     * @param subscriber        Subscriber
+     * @param dataStreamElement Data stream element
+     * @param frame             Frame of the data stream element or null if it has not been encoded yet
+     * @return Frame of the data stream element or null if it has still not been encoded
+     */
+    private static byte[] offer(PushSubscriber subscriber, DataStreamElement dataStreamElement, byte[] frame) {
+        if (frame == null && subscriber.usesFrame()) {
+            frame = PushFrame.encode(dataStreamElement);
+        }
+        subscriber.offer(dataStreamElement, frame);
+        return frame;
+    }
+
+    /**
+     * Subscribes a subscriber to a topic and key.
+     *
+     * @param subscriber Subscriber
+     * @param topic      Topic
+     * @param key        Key or the dedicated all-key
+     */
+    public void subscribe(PushSubscriber subscriber, String topic, String key) {
+        this.subscribers.compute(topic, (t, subscribersForTopic) -> {
+            if (subscribersForTopic == null) {
+                subscribersForTopic = new ConcurrentHashMap<>();
+            }
+            subscribersForTopic.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            return subscribersForTopic;
+        });
+    }
+
+    /**
+     * Unsubscribes a subscriber from a topic and key. Empty entries are removed such that arbitrary subscriptions do not allocate memory after they have ended.
+     *
+     * @param subscriber Subscriber
+     * @param topic      Topic
+     * @param key        Key or the dedicated all-key
+     */
+    public void unsubscribe(PushSubscriber subscriber, String topic, String key) {
+        this.subscribers.computeIfPresent(topic, (t, subscribersForTopic) -> {
+            subscribersForTopic.computeIfPresent(key, (k, subscribersForKey) -> {
+                subscribersForKey.remove(subscriber);
+                return subscribersForKey.isEmpty() ? null : subscribersForKey;
+            });
+            return subscribersForTopic.isEmpty() ? null : subscribersForTopic;
+        });
+    }
+
+    /**
+     * Returns the dedicated all-key.
+     *
+     * @return Dedicated all-key
+     */
+    public String getDedicatedAllKey() {
+        return this.dedicatedAllKey;
+    }
+
+    /**
+     * Counts an opened session.
+     */
+    void sessionOpened() {
+        logger.debug("Opened push session ({} open).", this.openSessions.incrementAndGet());
+    }
+
+    /**
+     * Counts a closed session.
+     */
+    void sessionClosed() {
+        logger.debug("Closed push session ({} open).", this.openSessions.decrementAndGet());
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WebSocket session of a push client.
+ * The client subscribes and unsubscribes with text messages ({"op":"sub","t":...,"k":...} and {"op":"unsub","t":...,"k":...}, without k for all keys of the topic) and receives the data stream elements as binary frames (see PushFrame).
+ * At most one frame is written at a time. Further frames are queued up to queueSize; if the client does not keep up, only the latest frame per topic and key is kept (conflation) until the backlog has been sent.
+ */
+public class PushSession implements PushSubscriber, WebSocketListener, WriteCallback {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PushSession.class);
+
+    /**
+     * Callback for the replies to the text messages
+     */
+    private static final WriteCallback replyCallback = new WriteCallback() {
+        @Override
+        public void writeFailed(Throwable x) {
+            logger.debug("Unable to send a push reply.", x);
+        }
+
+        @Override
+        public void writeSuccess() {
+        }
+    };
+
+    /**
+     * PushHub
+     */
+    private final PushHub pushHub;
+
+    /**
+     * Maximum number of queued frames (and of conflated topic-key-combinations)
+     */
+    private final int queueSize;
+
+    /**
+     * Maximum number of subscriptions
+     */
+    private final int maxSubscriptions;
+
+    /**
+     * Subscribed keys per topic (guarded by this)
+     */
+    private final Map<String, Set<String>> subscriptions;
+
+    /**
+     * Number of subscriptions (guarded by this)
+     */
+    private int numberOfSubscriptions;
+
+    /**
+     * Lock for the send state
+     */
+    private final Object sendLock;
+
+    /**
+     * Queued frames in ingest order (guarded by sendLock)
+     */
+    private final ArrayDeque<byte[]> queue;
+
+    /**
+     * Latest frame per topic and key which arrived while the queue was full (guarded by sendLock)
+     */
+    private final LinkedHashMap<String, byte[]> conflated;
+
+    /**
+     * True if a frame is being written (guarded by sendLock)
+     */
+    private boolean sending;
+
+    /**
+     * True while the sending thread is inside sendBytes (guarded by sendLock)
+     */
+    private boolean insideSendBytes;
+
+    /**
+     * True if the write completed inside sendBytes (guarded by sendLock)
+     */
+    private boolean completedInsideSendBytes;
+
+    /**
+     * Number of frames which have been dropped because the conflation map was full (guarded by sendLock)
+     */
+    private long dropped;
+
+    /**
+     * WebSocket session or null if the session is not open
+     */
+    private volatile Session session;
+
+    /**
+     * PushSession constructor.
+     *
+     * @param pushHub          PushHub
+     * @param queueSize        Maximum number of queued frames
+     * @param maxSubscriptions Maximum number of subscriptions
+     */
+    PushSession(PushHub pushHub, int queueSize, int maxSubscriptions) {
+        this.pushHub = pushHub;
+        this.queueSize = queueSize;
+        this.maxSubscriptions = maxSubscriptions;
+        this.subscriptions = new HashMap<>();
+        this.numberOfSubscriptions = 0;
+        this.sendLock = new Object();
+        this.queue = new ArrayDeque<>();
+        this.conflated = new LinkedHashMap<>();
+        this.sending = false;
+        this.insideSendBytes = false;
+        this.completedInsideSendBytes = false;
+        this.dropped = 0;
+    }
+
+    /**
+     * Returns true since the session sends the frames.
+     *
+     * @return True
+     */
+    @Override
+    public boolean usesFrame() {
+        return true;
+    }
+
+    /**
+     * Offers the frame of a data stream element (thread-safe, called from the ingest path). Writes the frame directly if no frame is being written, else queues or conflates it.
+     *
+     * @param dataStreamElement Data stream element
+     * @param frame             Frame of the data stream element
+     */
+    @Override
+    public void offer(DataStreamElement dataStreamElement, byte[] frame) {
+        synchronized (this.sendLock) {
+            if (this.session == null) {
+                return;
+            }
+            if (this.sending) {
+                if (this.conflated.isEmpty() && this.queue.size() < this.queueSize) {
+                    this.queue.add(frame);
+                } else {
+                    String topicKey = dataStreamElement.topic + "/" + dataStreamElement.key;
+                    if (this.conflated.size() < this.queueSize || this.conflated.containsKey(topicKey)) {
+                        this.conflated.put(topicKey, frame); // replaces the older frame of the key but keeps its position
+                    } else {
+                        this.dropped++;
+                    }
+                }
+                return;
+            }
+            this.sending = true;
+        }
+        write(frame);
+    }
+
+    /**
+     * Writes frames until a write does not complete immediately or until there are no more frames.
+     * Writes which complete inside sendBytes are continued here instead of in writeSuccess such that the stack does not grow with the backlog.
+     *
+     * @param frame First frame
+     */
+    private void write(byte[] frame) {
+        while (frame != null) {
+            Session currentSession = this.session;
+            if (currentSession == null) {
+                return;
+            }
+            synchronized (this.sendLock) {
+                this.insideSendBytes = true;
+                this.completedInsideSendBytes = false;
+            }
+            currentSession.getRemote().sendBytes(ByteBuffer.wrap(frame), this);
+            synchronized (this.sendLock) {
+                this.insideSendBytes = false;
+                if (!this.completedInsideSendBytes) {
+                    return; // writeSuccess continues with the next frame
+                }
+                frame = pollNextFrame();
+            }
+        }
+    }
+
+    /**
+     * Returns the next frame or null (and resets the sending flag) if there are no more frames (guarded by sendLock).
+     *
+     * @return Next frame or null
+     */
+    private byte[] pollNextFrame() {
+        byte[] frame = this.queue.poll();
+        if (frame == null && !this.conflated.isEmpty()) {
+            Iterator<byte[]> iterator = this.conflated.values().iterator();
+            frame = PushFrame.markConflated(iterator.next());
+            iterator.remove();
+        }
+        if (frame == null) {
+            this.sending = false;
+        }
+        return frame;
+    }
+
+    /**
+     * Continues with the next frame after a frame has been written.
+     */
+    @Override
+    public void writeSuccess() {
+        byte[] frame;
+        synchronized (this.sendLock) {
+            if (this.insideSendBytes) {
+                this.completedInsideSendBytes = true;
+                return;
+            }
+            frame = pollNextFrame();
+        }
+        write(frame);
+    }
+
+    /**
+     * Discards the backlog after a frame could not be written (the session is closed by Jetty).
+     *
+     * @param x Cause
+     */
+    @Override
+    public void writeFailed(Throwable x) {
+        logger.debug("Unable to push a frame.", x);
+        synchronized (this.sendLock) {
+            this.queue.clear();
+            this.conflated.clear();
+            this.insideSendBytes = false; // write stops after sendBytes since the write has not completed
+            this.sending = false;
+        }
+    }
+
+    /**
+     * Handles a subscribe or unsubscribe message.
+     *
+     * @param message Text message
+     */
+    @Override
+    public void onWebSocketText(String message) {
+        String reply;
+        try {
+            JsonElement element = JsonParser.parseString(message);
+            if (!element.isJsonObject()) {
+                throw new IllegalArgumentException("message has to be a JSON object.");
+            }
+            JsonObject object = element.getAsJsonObject();
+            String op = object.has("op") ? object.get("op").getAsString() : null;
+            String topic = object.has("t") ? object.get("t").getAsString() : null;
+            String key = object.has("k") && !object.get("k").isJsonNull() ? object.get("k").getAsString() : this.pushHub.getDedicatedAllKey();
+            if (topic == null) {
+                throw new IllegalArgumentException("topic (t) is missing.");
+            }
+            if ("sub".equals(op)) {
+                subscribe(topic, key);
+            } else if ("unsub".equals(op)) {
+                unsubscribe(topic, key);
+            } else {
+                throw new IllegalArgumentException("op has to be sub or unsub.");
+            }
+            reply = generateReply(op, topic, key);
+        } catch (JsonParseException | UnsupportedOperationException | IllegalStateException e) {
+            reply = "{\"e\":\"message is not a valid subscription.\"}";
+        } catch (IllegalArgumentException e) {
+            reply = "{\"e\":\"" + e.getMessage() + "\"}";
+        }
+        Session currentSession = this.session;
+        if (currentSession != null) {
+            currentSession.getRemote().sendString(reply, replyCallback);
+        }
+    }
+
+    /**
+     * Subscribes to a topic and key.
+     *
+     * @param topic Topic
+     * @param key   Key or the dedicated all-key
+     * @throws IllegalArgumentException Thrown if the session already has the maximum number of subscriptions
+     */
+    private synchronized void subscribe(String topic, String key) throws IllegalArgumentException {
+        Set<String> keys = this.subscriptions.get(topic);
+        if (keys != null && keys.contains(key)) {
+            return;
+        }
+        if (this.numberOfSubscriptions >= this.maxSubscriptions) {
+            throw new IllegalArgumentException("at most " + this.maxSubscriptions + " subscriptions per session.");
+        }
+        this.subscriptions.computeIfAbsent(topic, t -> new HashSet<>()).add(key);
+        this.numberOfSubscriptions++;
+        this.pushHub.subscribe(this, topic, key);
+    }
+
+    /**
+     * Unsubscribes from a topic and key.
+     *
+     * @param topic Topic
+     * @param key   Key or the dedicated all-key
+     */
+    private synchronized void unsubscribe(String topic, String key) {
+        Set<String> keys = this.subscriptions.get(topic);
+        if (keys == null || !keys.remove(key)) {
+            return;
+        }
+        if (keys.isEmpty()) {
+            this.subscriptions.remove(topic);
+        }
+        this.numberOfSubscriptions--;
+        this.pushHub.unsubscribe(this, topic, key);
+    }
+
+    /**
+     * Unsubscribes from all topics and keys.
+     */
+    private synchronized void unsubscribeAll() {
+        List<String> topics = new ArrayList<>(this.subscriptions.keySet());
+        for (String topic : topics) {
+            for (String key : new ArrayList<>(this.subscriptions.get(topic))) {
+                unsubscribe(topic, key);
+            }
+        }
+    }
+
+    /**
+     * Generates the reply to a subscribe or unsubscribe message ({"op":...,"t":...,"k":...,"n":...,"d":...}) with the number of subscriptions (n) and of dropped frames (d).
+     *
+     * @param op    Operation (sub or unsub)
+     * @param topic Topic
+     * @param key   Key or the dedicated all-key
+     * @return JSON representation of the reply
+     */
+    private String generateReply(String op, String topic, String key) {
+        long droppedFrames;
+        synchronized (this.sendLock) {
+            droppedFrames = this.dropped;
+        }
+        StringBuffer jsonBuffer = new StringBuffer("{\"op\":\"");
+        jsonBuffer.append(op);
+        jsonBuffer.append("\",\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"k\":\"");
+        jsonBuffer.append(key);
+        jsonBuffer.append("\",\"n\":");
+        synchronized (this) {
+            jsonBuffer.append(this.numberOfSubscriptions);
+        }
+        jsonBuffer.append(",\"d\":");
+        jsonBuffer.append(droppedFrames);
+        jsonBuffer.append("}");
+        return jsonBuffer.toString();
+    }
+
+    /**
+     * Rejects binary messages (the client only sends subscriptions).
+     *
+     * @param payload Payload
+     * @param offset  Offset of the message in the payload
+     * @param len     Length of the message
+     */
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        Session currentSession = this.session;
+        if (currentSession != null) {
+            currentSession.getRemote().sendString("{\"e\":\"subscriptions have to be text messages.\"}", replyCallback);
+        }
+    }
+
+    /**
+     * Activates the session.
+     *
+     * @param session WebSocket session
+     */
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        this.pushHub.sessionOpened();
+    }
+
+    /**
+     * Removes all subscriptions and discards the backlog.
+     *
+     * @param statusCode Close status code
+     * @param reason     Close reason
+     */
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        synchronized (this.sendLock) {
+            this.session = null;
+            this.queue.clear();
+            this.conflated.clear();
+        }
+        unsubscribeAll();
+        this.pushHub.sessionClosed();
+    }
+
+    /**
+     * Logs a WebSocket error (Jetty closes the session afterwards).
+     *
+     * @param cause Cause
+     */
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        logger.debug("Push session error.", cause);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+
+/**
+ * Receives the data stream elements of its subscriptions from the PushHub (e.g., a WebSocket session, a gRPC subscription or an embedded listener).
+ */
+public interface PushSubscriber {
+
+    /**
+     * Returns if the subscriber sends the binary WebSocket frames (the PushHub only encodes a frame if at least one of its subscribers uses it).
+     *
+     * @return True if the subscriber uses the frame passed to offer(), false if offer() may be called with null
+     */
+    boolean usesFrame();
+
+    /**
+     * Offers a new data stream element (called from the ingest path, must not block).
+     *
+     * @param dataStreamElement Data stream element
+     * @param frame             Binary WebSocket frame of the data stream element (see PushFrame, shared by all subscribers), or null if the subscriber does not use frames
+     */
+    void offer(DataStreamElement dataStreamElement, byte[] frame);
+}
@@ -0,0 +1,251 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard.ShardRouter;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client admission control which is applied before the wrapped handler accesses the buffer.
+ * Every client (identified by its API key header or else by its IP address) has a token bucket and every REST API call costs 1 + estimated content bytes / admission.costUnitBytes tokens.
+ * REST API calls whose cost reaches admission.bulkCost are bulk reads, of which only admission.maxConcurrentBulk run concurrently such that cheap live reads (e.g., /consume?l=1) are never queued behind them.
+ * Rejected REST API calls get a fast 429 response with a Retry-After header.
+ * In a sharded proxy cluster, the calls are admitted by the node which receives them, calls which are forwarded by another node (with the shared secret) are not charged again.
+ */
+public class AdmissionHandler extends HandlerWrapper {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionHandler.class);
+
+    /**
+     * KafkaRestProxy (for estimating the content sizes)
+     */
+    private final KafkaRestProxy kafkaRestProxy;
+
+    /**
+     * Name of the header which contains the API key
+     */
+    private final String apiKeyHeader;
+
+    /**
+     * Capacity of the token buckets (burst)
+     */
+    private final double burst;
+
+    /**
+     * Refill rate of the token buckets in tokens per second
+     */
+    private final double tokensPerSecond;
+
+    /**
+     * Number of content bytes which cost one token
+     */
+    private final long costUnitBytes;
+
+    /**
+     * Minimum cost of a bulk read
+     */
+    private final double bulkCost;
+
+    /**
+     * Permits for concurrent bulk reads
+     */
+    private final Semaphore bulkPermits;
+
+    /**
+     * Maximum number of clients whose token buckets are kept without cleanup
+     */
+    private final int maxClients;
+
+    /**
+     * Token buckets per client
+     */
+    private final ConcurrentHashMap<String, TokenBucket> tokenBuckets;
+
+    /**
+     * Time of the last cleanup of the token buckets in ns
+     */
+    private volatile long lastCleanupNanos;
+
+    /**
+     * Shared secret of the sharded proxy cluster or null if sharding is disabled or no secret is configured
+     */
+    private final String shardSecret;
+
+    /**
+     * AdmissionHandler constructor.
+     *
+     * @param handler        Wrapped handler
+     * @param kafkaRestProxy KafkaRestProxy (for estimating the content sizes)
+     * @param properties     Properties
+     */
+    public AdmissionHandler(Handler handler, KafkaRestProxy kafkaRestProxy, Properties properties) {
+        setHandler(handler);
+        this.kafkaRestProxy = kafkaRestProxy;
+        this.apiKeyHeader = PropertyReadHelper.readStringOrDie(properties, "admission.apiKeyHeader");
+        this.burst = PropertyReadHelper.readDoubleOrDie(properties, "admission.burst");
+        this.tokensPerSecond = PropertyReadHelper.readDoubleOrDie(properties, "admission.tokensPerSecond");
+        this.costUnitBytes = PropertyReadHelper.readLongOrDie(properties, "admission.costUnitBytes");
+        this.bulkCost = PropertyReadHelper.readDoubleOrDie(properties, "admission.bulkCost");
+        this.bulkPermits = new Semaphore(PropertyReadHelper.readIntOrDie(properties, "admission.maxConcurrentBulk"));
+        this.maxClients = PropertyReadHelper.readIntOrDie(properties, "admission.maxClients");
+        this.tokenBuckets = new ConcurrentHashMap<>();
+        this.lastCleanupNanos = System.nanoTime();
+        String secret = PropertyReadHelper.readBooleanOrDie(properties, "shard.enabled") ? PropertyReadHelper.readStringOrDie(properties, "shard.secret") : "";
+        this.shardSecret = secret.isEmpty() ? null : secret; // without a secret, the forwarded header could be sent by any client
+        logger.info("Initialized AdmissionHandler with {} tokens/s, a burst of {} tokens and at most {} concurrent bulk reads", this.tokensPerSecond, this.burst, this.bulkPermits.availablePermits());
+    }
+
+    /**
+     * Admits or rejects the REST API call.
+     *
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException      Thrown if unable to handle the REST API call
+     * @throws ServletException Thrown if unable to handle the REST API call
+     */
+    @Override
+    public void handle(String target, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException, ServletException {
+        if (this.shardSecret != null && this.shardSecret.equals(request.getHeader(ShardRouter.FORWARDED_HEADER))) {
+            super.handle(target, request, httpServletRequest, httpServletResponse);
+            return;
+        }
+        long nanoTime = System.nanoTime();
+        String apiKey = request.getHeader(this.apiKeyHeader);
+        String client = apiKey == null ? request.getRemoteAddr() : apiKey;
+        double cost = Math.min(estimateCost(target, request), this.burst); // a call must never cost more than a full bucket
+
+        TokenBucket tokenBucket = getTokenBucket(client, nanoTime);
+        long waitNanos = tokenBucket.tryAcquire(cost, nanoTime);
+        if (waitNanos > 0) {
+            reject(target, request, httpServletResponse, "rate limit exceeded.", waitNanos);
+            return;
+        }
+
+        boolean bulk = cost >= this.bulkCost;
+        if (bulk && !this.bulkPermits.tryAcquire()) {
+            tokenBucket.release(cost);
+            reject(target, request, httpServletResponse, "too many concurrent bulk reads.", 0);
+            return;
+        }
+        try {
+            super.handle(target, request, httpServletRequest, httpServletResponse);
+        } finally {
+            if (bulk) {
+                this.bulkPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of a REST API call (1 + estimated content bytes / costUnitBytes). Only /consume and /produce calls have content-dependent costs.
+     *
+     * @param target  The target of the REST API call
+     * @param request Request
+     * @return Cost in tokens
+     */
+    private double estimateCost(String target, Request request) {
+        if (target.startsWith("/produce")) {
+            return 1 + (double) Math.max(request.getContentLengthLong(), 0) / this.costUnitBytes;
+        }
+        String topic = request.getParameter("t");
+        if (!target.equals("/consume") || topic == null) {
+            return 1;
+        }
+        int limit = parseIntOrMax(request.getParameter("l"));
+        limit = Math.min(limit, parseIntOrMax(request.getParameter("maxPoints")));
+        return 1 + (double) this.kafkaRestProxy.estimateContentBytes(topic, limit) / this.costUnitBytes;
+    }
+
+    /**
+     * Parses an integer parameter.
+     *
+     * @param value Value of the parameter or null
+     * @return Integer or Integer.MAX_VALUE if the parameter is missing or invalid (the RequestHandler reports invalid parameters)
+     */
+    private static int parseIntOrMax(String value) {
+        if (value == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            return number < 1 ? Integer.MAX_VALUE : number;
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns the token bucket of a client and creates it if it does not exist yet.
+     * If there are more than maxClients token buckets, the full token buckets (of idle clients) are dropped (at most once per second).
+     *
+     * @param client   Client (API key or IP address)
+     * @param nanoTime Current time in ns (System.nanoTime())
+     * @return Token bucket
+     */
+    private TokenBucket getTokenBucket(String client, long nanoTime) {
+        TokenBucket tokenBucket = this.tokenBuckets.get(client);
+        if (tokenBucket == null) {
+            if (this.tokenBuckets.size() >= this.maxClients && nanoTime - this.lastCleanupNanos > TimeUnit.SECONDS.toNanos(1)) {
+                this.lastCleanupNanos = nanoTime;
+                this.tokenBuckets.values().removeIf(bucket -> bucket.isFull(nanoTime));
+            }
+            tokenBucket = this.tokenBuckets.computeIfAbsent(client, c -> new TokenBucket(this.burst, this.tokensPerSecond, nanoTime));
+        }
+        return tokenBucket;
+    }
+
+    /**
+     * Sends a 429 response with a Retry-After header.
+     *
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletResponse HttpServletResponse
+     * @param info                Information why the REST API call is rejected
+     * @param waitNanos           Time in ns until the REST API call would be admitted (0 if unknown)
+     * @throws IOException Thrown if unable to write the response
+     */
+    private void reject(String target, Request request, HttpServletResponse httpServletResponse, String info, long waitNanos) throws IOException {
+        RestResult restResult = RestResult.generateTooManyRequestsResult(target.startsWith("/") ? target.substring(1) : target, info);
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.addHeader("Retry-After", Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1))));
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        httpServletResponse.getWriter().println(restResult.content);
+        request.setHandled(true);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches the REST API calls to the wrapped handler either on the Jetty thread or on a virtual thread (JDK 21+) and sheds load with fast 503 responses when the server is saturated.
+ * The server is saturated if the number of REST API calls in progress reaches the limit or if the Jetty thread pool is low on threads.
+ */
+public class DispatchHandler extends HandlerWrapper {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DispatchHandler.class);
+
+    /**
+     * Name of the request attribute which the wrapped handler sets if it completes the async processing itself (e.g., when the acknowledgments of a /produce call arrive)
+     */
+    public static final String COMPLETION_DEFERRED_ATTRIBUTE = DispatchHandler.class.getName() + ".completionDeferred";
+
+    /**
+     * Jetty thread pool
+     */
+    private final QueuedThreadPool threadPool;
+
+    /**
+     * Maximum number of REST API calls in progress
+     */
+    private final int maxConcurrentRequests;
+
+    /**
+     * Value of the Retry-After header of the 503 responses in s
+     */
+    private final int retryAfterSeconds;
+
+    /**
+     * Executor which runs the wrapped handler on virtual threads or null if the wrapped handler runs on the Jetty threads
+     */
+    private final ExecutorService virtualThreadExecutor;
+
+    /**
+     * Number of REST API calls in progress
+     */
+    private final AtomicInteger inProgress;
+
+    /**
+     * DispatchHandler constructor.
+     *
+     * @param handler               Wrapped handler
+     * @param threadPool            Jetty thread pool
+     * @param maxConcurrentRequests Maximum number of REST API calls in progress
+     * @param retryAfterSeconds     Value of the Retry-After header of the 503 responses in s
+     * @param virtualThreads        True if the wrapped handler should run on virtual threads (ignored with a warning if the JDK does not support virtual threads)
+     */
+    public DispatchHandler(Handler handler, QueuedThreadPool threadPool, int maxConcurrentRequests, int retryAfterSeconds, boolean virtualThreads) {
+        this(handler, threadPool, maxConcurrentRequests, retryAfterSeconds, virtualThreads ? createVirtualThreadExecutor() : null);
+        if (this.virtualThreadExecutor != null) {
+            ShutdownHelper.addCloseable(this.virtualThreadExecutor::shutdown);
+        }
+    }
+
+    /**
+     * DispatchHandler constructor with an explicit executor for the async dispatching.
+     *
+     * @param handler               Wrapped handler
+     * @param threadPool            Jetty thread pool
+     * @param maxConcurrentRequests Maximum number of REST API calls in progress
+     * @param retryAfterSeconds     Value of the Retry-After header of the 503 responses in s
+     * @param virtualThreadExecutor Executor which runs the wrapped handler (on virtual threads) or null if the wrapped handler runs on the Jetty threads
+     */
+    DispatchHandler(Handler handler, QueuedThreadPool threadPool, int maxConcurrentRequests, int retryAfterSeconds, ExecutorService virtualThreadExecutor) {
+        setHandler(handler);
+        this.threadPool = threadPool;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        this.inProgress = new AtomicInteger(0);
+    }
+
+    /**
+     * Creates an executor which starts a virtual thread per task. Reflection is used such that the code still compiles for and runs on Java 8.
+     *
+     * @return Executor or null if the JDK does not support virtual threads
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("Running the REST API calls on virtual threads.");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not supported by this JDK ({}). Running the REST API calls on the Jetty threads.", System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    /**
+     * Rejects the REST API call if the server is saturated and otherwise dispatches it to the wrapped handler.
+     *
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException      Thrown if unable to handle the REST API call
+     * @throws ServletException Thrown if unable to handle the REST API call
+     */
+    @Override
+    public void handle(String target, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException, ServletException {
+        if (this.inProgress.incrementAndGet() > this.maxConcurrentRequests || this.threadPool.isLowOnThreads()) {
+            this.inProgress.decrementAndGet();
+            reject(target, request, httpServletResponse);
+            return;
+        }
+
+        if (this.virtualThreadExecutor == null || request.getHeader("Upgrade") != null) { // WebSocket upgrades cannot be completed in async mode
+            try {
+                super.handle(target, request, httpServletRequest, httpServletResponse);
+            } finally {
+                this.inProgress.decrementAndGet();
+            }
+        } else {
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(0); // the REST API calls never wait for events
+            request.setHandled(true);
+            try {
+                this.virtualThreadExecutor.execute(() -> {
+                    try {
+                        super.handle(target, request, httpServletRequest, httpServletResponse);
+                    } catch (Exception e) {
+                        logger.error("Caught exception while handling {} on a virtual thread.", target, e);
+                        httpServletResponse.setStatus(500); // INTERNAL SERVER ERROR
+                    } finally {
+                        this.inProgress.decrementAndGet();
+                        if (request.getAttribute(COMPLETION_DEFERRED_ATTRIBUTE) == null) {
+                            asyncContext.complete();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) { // executor is shut down
+                this.inProgress.decrementAndGet();
+                reject(target, request, httpServletResponse);
+                asyncContext.complete();
+            }
+        }
+    }
+
+    /**
+     * Sends a 503 response with a Retry-After header.
+     *
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to write the response
+     */
+    private void reject(String target, Request request, HttpServletResponse httpServletResponse) throws IOException {
+        RestResult restResult = RestResult.generateServiceUnavailableResult(target.startsWith("/") ? target.substring(1) : target, "server is saturated.");
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.addHeader("Retry-After", Integer.toString(this.retryAfterSeconds));
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        httpServletResponse.getWriter().println(restResult.content);
+        request.setHandled(true);
+    }
+}
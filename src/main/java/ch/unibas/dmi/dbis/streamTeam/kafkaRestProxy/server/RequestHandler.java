@@ -19,32 +19,84 @@
 package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
 
 import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.Downsampler;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer.AckMode;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer.BulkRecordParser;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Handler for the REST API calls.
  */
 public class RequestHandler extends AbstractHandler {
 
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RequestHandler.class);
+
     /**
      * KafkaRestProxy
      */
     private KafkaRestProxy kafkaRestProxy;
 
+    /**
+     * Maximum size of the body of a /produce call in bytes
+     */
+    private final int produceMaxBodyBytes;
+
+    /**
+     * Maximum number of records of a /produce/bulk call
+     */
+    private final int produceMaxBulkRecords;
+
+    /**
+     * Time in ms a /produce call with ack=sync waits for the acknowledgments
+     */
+    private final long produceSyncTimeoutMillis;
+
+    /**
+     * Acknowledgment mode of /produce calls without ack parameter
+     */
+    private final AckMode produceDefaultAckMode;
+
     /**
      * RequestHandler constructor
      *
      * @param kafkaRestProxy KafkaRestProxy
+     * @param properties     Properties
      */
-    public RequestHandler(KafkaRestProxy kafkaRestProxy) {
+    public RequestHandler(KafkaRestProxy kafkaRestProxy, Properties properties) {
         this.kafkaRestProxy = kafkaRestProxy;
+        this.produceMaxBodyBytes = PropertyReadHelper.readIntOrDie(properties, "produce.maxBodyBytes");
+        this.produceMaxBulkRecords = PropertyReadHelper.readIntOrDie(properties, "produce.maxBulkRecords");
+        this.produceSyncTimeoutMillis = PropertyReadHelper.readLongOrDie(properties, "produce.syncTimeoutMillis");
+        this.produceDefaultAckMode = AckMode.parse(PropertyReadHelper.readStringOrDie(properties, "produce.defaultAck"));
     }
 
     /**
@@ -63,12 +115,30 @@ public class RequestHandler extends AbstractHandler {
             case "/consume":
                 handleConsume(request, httpServletRequest, httpServletResponse);
                 break;
+            case "/aggregate":
+                handleAggregate(request, httpServletRequest, httpServletResponse);
+                break;
+            case "/latest":
+                handleLatest(request, httpServletRequest, httpServletResponse);
+                break;
+            case "/stats":
+                handleStats(request, httpServletRequest, httpServletResponse);
+                break;
+            case "/clusters":
+                handleClusters(request, httpServletRequest, httpServletResponse);
+                break;
             case "/listTopics":
                 handleListTopics(request, httpServletRequest, httpServletResponse);
                 break;
             case "/listKeys":
                 handleListKeys(request, httpServletRequest, httpServletResponse);
                 break;
+            case "/produce":
+                handleProduce(false, request, httpServletRequest, httpServletResponse);
+                break;
+            case "/produce/bulk":
+                handleProduce(true, request, httpServletRequest, httpServletResponse);
+                break;
             default:
                 handleDefault(target, request, httpServletRequest, httpServletResponse);
                 break;
@@ -92,22 +162,147 @@ public class RequestHandler extends AbstractHandler {
 
         if (request.getParameter("t") == null) {
             restResult = RestResult.generateMissingParameterResult("consume", "topic (t=...)");
+        } else if (request.getParameter("l") == null && request.getParameter("from") == null && request.getParameter("to") == null) {
+            restResult = RestResult.generateMissingParameterResult("consume", "limit (l=...) or time range (from=... and/or to=...)");
         } else {
+            String topic = request.getParameter("t"); // ?t=...
+            String key = request.getParameter("k"); // ?k=... (can be null)
+            int partition = -1;
+            int limit = Integer.MAX_VALUE;
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            restResult = null;
+
             if (request.getParameter("l") != null) {
-                String topic = request.getParameter("t"); // ?t=...
-                String key = request.getParameter("k"); // ?k=... (can be null)
                 try {
-                    int limit = Integer.parseInt(request.getParameter("l")); // ?l=....
+                    limit = Integer.parseInt(request.getParameter("l")); // ?l=....
                     if (limit < 1) {
                         restResult = RestResult.generateWrongParameterValueResult("consume", "limit (l=...) has to be greater than 0.");
-                    } else {
-                        restResult = this.kafkaRestProxy.getDataStreamElementsWithLimit(topic, key, limit);
                     }
                 } catch (NumberFormatException e) {
                     restResult = RestResult.generateWrongParameterValueResult("consume", "limit (l=...) has to be a number (integer).");
                 }
-            } else {
-                restResult = RestResult.generateMissingParameterResult("consume", "limit (l=...)");
+            }
+            if (request.getParameter("p") != null) {
+                try {
+                    partition = Integer.parseInt(request.getParameter("p")); // ?p=...
+                    if (partition < 0) {
+                        restResult = RestResult.generateWrongParameterValueResult("consume", "partition (p=...) has to be at least 0.");
+                    }
+                } catch (NumberFormatException e) {
+                    restResult = RestResult.generateWrongParameterValueResult("consume", "partition (p=...) has to be a number (integer).");
+                }
+            }
+            try {
+                if (request.getParameter("from") != null) {
+                    from = parseTimestamp(request.getParameter("from")); // ?from=...
+                }
+                if (request.getParameter("to") != null) {
+                    to = parseTimestamp(request.getParameter("to")); // ?to=...
+                }
+            } catch (NumberFormatException e) {
+                restResult = RestResult.generateWrongParameterValueResult("consume", "time range (from=... and to=...) has to be a number (long).");
+            }
+
+            Downsampler downsampler = null;
+            if (request.getParameter("stride") != null || request.getParameter("bucket") != null || request.getParameter("maxPoints") != null) {
+                try {
+                    int stride = request.getParameter("stride") == null ? 1 : Integer.parseInt(request.getParameter("stride")); // ?stride=... (can be null)
+                    long bucketMillis = request.getParameter("bucket") == null ? 0 : Long.parseLong(request.getParameter("bucket")); // ?bucket=... (can be null)
+                    int maxPoints = request.getParameter("maxPoints") == null ? Integer.MAX_VALUE : Integer.parseInt(request.getParameter("maxPoints")); // ?maxPoints=... (can be null)
+                    if (stride < 1 || bucketMillis < 0 || maxPoints < 1) {
+                        restResult = RestResult.generateWrongParameterValueResult("consume", "downsampling (stride=..., bucket=... and maxPoints=...) has to be greater than 0.");
+                    } else {
+                        downsampler = new Downsampler(stride, bucketMillis, maxPoints);
+                    }
+                } catch (NumberFormatException e) {
+                    restResult = RestResult.generateWrongParameterValueResult("consume", "downsampling (stride=..., bucket=... and maxPoints=...) has to be a number.");
+                }
+            }
+
+            ElementFilter filter = null;
+            if (request.getParameter("filter") != null || request.getParameter("fields") != null) {
+                try {
+                    filter = this.kafkaRestProxy.getElementFilter(request.getParameter("filter"), request.getParameter("fields")); // ?filter=...&fields=... (can be null)
+                } catch (IllegalArgumentException e) {
+                    restResult = RestResult.generateWrongParameterValueResult("consume", e.getMessage());
+                }
+            }
+
+            if (restResult == null) {
+                this.kafkaRestProxy.countRead(topic, key);
+                boolean deep = "true".equals(request.getParameter("deep")); // ?deep=... (can be null)
+                boolean decode = "json".equals(request.getParameter("fmt")); // ?fmt=... (can be null)
+                restResult = this.kafkaRestProxy.getDataStreamElementsInTimeRange(topic, key, partition, limit, from, to, deep, downsampler, decode, filter);
+            }
+        }
+
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        restResult.writeTo(writer);
+    }
+
+    /**
+     * Parses a timestamp parameter. Negative values are relative to the current time (e.g., from=-10000 for the last 10 seconds).
+     *
+     * @param value Value of the parameter
+     * @return Timestamp in ms
+     * @throws NumberFormatException Thrown if the value is not a number
+     */
+    private static long parseTimestamp(String value) throws NumberFormatException {
+        long timestamp = Long.parseLong(value);
+        return timestamp < 0 ? System.currentTimeMillis() + timestamp : timestamp;
+    }
+
+    /**
+     * Handles an /aggregate call.
+     *
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to handle the REST API call
+     */
+    private void handleAggregate(Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        PrintWriter writer = httpServletResponse.getWriter();
+        RestResult restResult;
+
+        if (request.getParameter("t") == null) {
+            restResult = RestResult.generateMissingParameterResult("aggregate", "topic (t=...)");
+        } else {
+            String topic = request.getParameter("t"); // ?t=...
+            String key = request.getParameter("k"); // ?k=... (can be null)
+            restResult = this.kafkaRestProxy.getAggregates(topic, key);
+        }
+
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        writer.println(restResult.content);
+    }
+
+    /**
+     * Handles a /latest call.
+     *
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to handle the REST API call
+     */
+    private void handleLatest(Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        PrintWriter writer = httpServletResponse.getWriter();
+        RestResult restResult;
+
+        if (request.getParameter("t") == null) {
+            restResult = RestResult.generateMissingParameterResult("latest", "topic (t=...)");
+        } else {
+            String topic = request.getParameter("t"); // ?t=...
+            List<String> keys = request.getParameter("k") == null ? null : Arrays.asList(request.getParameter("k").split(",")); // ?k=...,... (can be null)
+            try {
+                long sinceVersion = request.getParameter("v") == null ? 0 : Long.parseLong(request.getParameter("v")); // ?v=... (can be null)
+                restResult = this.kafkaRestProxy.getLatestDataStreamElements(topic, keys, sinceVersion);
+            } catch (NumberFormatException e) {
+                restResult = RestResult.generateWrongParameterValueResult("latest", "version (v=...) has to be a number (long).");
             }
         }
 
@@ -115,6 +310,49 @@ public class RequestHandler extends AbstractHandler {
         writer.println(restResult.content);
     }
 
+    /**
+     * Handles a /stats call.
+     *
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to handle the REST API call
+     */
+    private void handleStats(Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        PrintWriter writer = httpServletResponse.getWriter();
+        RestResult restResult;
+
+        if (request.getParameter("t") == null) {
+            restResult = RestResult.generateMissingParameterResult("stats", "topic (t=...)");
+        } else {
+            String topic = request.getParameter("t"); // ?t=...
+            restResult = this.kafkaRestProxy.getStats(topic);
+        }
+
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        writer.println(restResult.content);
+    }
+
+    /**
+     * Handles a /clusters call.
+     *
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to handle the REST API call
+     */
+    private void handleClusters(Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        PrintWriter writer = httpServletResponse.getWriter();
+        RestResult restResult = this.kafkaRestProxy.getClusters();
+
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        writer.println(restResult.content);
+    }
+
     /**
      * Handles a /listKeys call.
      *
@@ -126,18 +364,152 @@ public class RequestHandler extends AbstractHandler {
     private void handleListKeys(Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
         httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
         httpServletResponse.setContentType("text/plain;charset=utf-8");
-        PrintWriter writer = httpServletResponse.getWriter();
         RestResult restResult;
 
         if (request.getParameter("t") == null) {
             restResult = RestResult.generateMissingParameterResult("listKeys", "topic (t=...)");
         } else {
             String topic = request.getParameter("t"); // ?t=...
-            restResult = this.kafkaRestProxy.getKeyList(topic);
+            String prefix = request.getParameter("k") == null ? "" : request.getParameter("k"); // ?k=prefix* (can be null)
+            if (prefix.endsWith("*")) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            String after = request.getParameter("after"); // ?after=... (can be null)
+            if (prefix.isEmpty() && after == null && request.getParameter("max") == null) {
+                restResult = this.kafkaRestProxy.getKeyList(topic); // served from the listing snapshot
+            } else {
+                try {
+                    int max = request.getParameter("max") == null ? Integer.MAX_VALUE : Integer.parseInt(request.getParameter("max")); // ?max=... (can be null)
+                    if (max < 1) {
+                        restResult = RestResult.generateWrongParameterValueResult("listKeys", "maximum (max=...) has to be greater than 0.");
+                    } else {
+                        restResult = this.kafkaRestProxy.getKeyList(topic, prefix, after, max);
+                    }
+                } catch (NumberFormatException e) {
+                    restResult = RestResult.generateWrongParameterValueResult("listKeys", "maximum (max=...) has to be a number (integer).");
+                }
+            }
+        }
+
+        writeRestResultBytes(restResult, httpServletResponse);
+    }
+
+    /**
+     * Handles a /produce call (the body is the value of the record) or a /produce/bulk call (the body contains one record per line, see BulkRecordParser).
+     *
+     * @param bulk                True for a /produce/bulk call
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to handle the REST API call
+     */
+    private void handleProduce(boolean bulk, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        String target = bulk ? "produce/bulk" : "produce";
+        RestResult restResult = null;
+        AckMode ackMode = this.produceDefaultAckMode;
+        byte[] body = null;
+
+        if (!"POST".equals(request.getMethod())) {
+            restResult = RestResult.generateMethodNotAllowedResult(target, "POST");
+        } else if ((body = readBody(request, this.produceMaxBodyBytes)) == null) { // read before the parameters such that Jetty does not parse a form-encoded body as parameters
+            restResult = RestResult.generatePayloadTooLargeResult(target, this.produceMaxBodyBytes);
+        } else if (request.getParameter("t") == null) {
+            restResult = RestResult.generateMissingParameterResult(target, "topic (t=...)");
+        } else if (request.getParameter("ack") != null) {
+            try {
+                ackMode = AckMode.parse(request.getParameter("ack")); // ?ack=... (can be null)
+            } catch (IllegalArgumentException e) {
+                restResult = RestResult.generateWrongParameterValueResult(target, "acknowledgment mode (ack=...) has to be none, async or sync.");
+            }
+        }
+
+        List<ProducerRecord<String, byte[]>> records = null;
+        if (restResult == null) {
+            String topic = request.getParameter("t"); // ?t=...
+            if (bulk) {
+                try {
+                    records = BulkRecordParser.parse(topic, new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8), this.produceMaxBulkRecords);
+                    if (records.isEmpty()) {
+                        restResult = RestResult.generateWrongParameterValueResult(target, "body contains no records.");
+                    }
+                } catch (IllegalArgumentException e) {
+                    restResult = RestResult.generateWrongParameterValueResult(target, e.getMessage());
+                }
+            } else {
+                try {
+                    String key = request.getParameter("k"); // ?k=... (can be null)
+                    Integer partition = request.getParameter("p") == null ? null : Integer.valueOf(request.getParameter("p")); // ?p=... (can be null)
+                    records = Collections.singletonList(new ProducerRecord<>(topic, partition, key, body));
+                } catch (NumberFormatException e) {
+                    restResult = RestResult.generateWrongParameterValueResult(target, "partition (p=...) has to be a number (integer).");
+                }
+            }
+        }
+
+        if (restResult == null) {
+            CompletableFuture<RestResult> future = this.kafkaRestProxy.produce(request.getParameter("t"), records, ackMode != AckMode.NONE);
+            if (ackMode == AckMode.ASYNC) {
+                AsyncContext asyncContext;
+                if (request.isAsyncStarted()) { // the DispatchHandler has already started async processing since it dispatches to virtual threads
+                    asyncContext = request.getAsyncContext();
+                    request.setAttribute(DispatchHandler.COMPLETION_DEFERRED_ATTRIBUTE, Boolean.TRUE); // the callback completes the response instead of the DispatchHandler
+                } else {
+                    asyncContext = request.startAsync();
+                    asyncContext.setTimeout(0); // the KafkaProducer invokes every callback (at the latest after request.timeout.ms)
+                }
+                future.thenAccept(asyncRestResult -> {
+                    try {
+                        httpServletResponse.setStatus(asyncRestResult.httpStatusCode);
+                        httpServletResponse.getWriter().println(asyncRestResult.content);
+                    } catch (IOException e) {
+                        logger.warn("Unable to write the response of a /{} call.", target, e);
+                    } finally {
+                        asyncContext.complete();
+                    }
+                });
+                return;
+            }
+            try {
+                restResult = future.get(this.produceSyncTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                restResult = RestResult.generateServiceUnavailableResult(target, "no acknowledgment within " + this.produceSyncTimeoutMillis + " ms.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                restResult = RestResult.generateServiceUnavailableResult(target, "interrupted while waiting for the acknowledgments.");
+            } catch (ExecutionException e) {
+                restResult = RestResult.generateServiceUnavailableResult(target, "unable to produce the records.");
+            }
         }
 
         httpServletResponse.setStatus(restResult.httpStatusCode);
-        writer.println(restResult.content);
+        httpServletResponse.getWriter().println(restResult.content);
+    }
+
+    /**
+     * Reads the body of a REST API call.
+     *
+     * @param request      Request
+     * @param maxBodyBytes Maximum size of the body in bytes
+     * @return Body or null if the body is larger than maxBodyBytes
+     * @throws IOException Thrown if unable to read the body
+     */
+    private static byte[] readBody(Request request, int maxBodyBytes) throws IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(Math.max(request.getContentLength(), 256));
+        InputStream in = request.getInputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > maxBodyBytes) { // chunked bodies have no content length
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
     }
 
     /**
@@ -151,10 +523,22 @@ public class RequestHandler extends AbstractHandler {
     private void handleListTopics(Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException {
         httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
         httpServletResponse.setContentType("text/plain;charset=utf-8");
-        PrintWriter writer = httpServletResponse.getWriter();
         RestResult restResult = this.kafkaRestProxy.getTopicList();
+        writeRestResultBytes(restResult, httpServletResponse);
+    }
+
+    /**
+     * Writes the pre-encoded content of a RestResult which is served repeatedly (e.g., a listing snapshot) directly to the output stream.
+     *
+     * @param restResult          RestResult
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to write the content
+     */
+    private static void writeRestResultBytes(RestResult restResult, HttpServletResponse httpServletResponse) throws IOException {
+        byte[] contentBytes = restResult.getContentBytes();
         httpServletResponse.setStatus(restResult.httpStatusCode);
-        writer.println(restResult.content);
+        httpServletResponse.setContentLength(contentBytes.length);
+        httpServletResponse.getOutputStream().write(contentBytes);
     }
 
     /**
@@ -18,21 +18,50 @@
 
 package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Represents the result of a REST API call.
  */
 public class RestResult {
 
+    /**
+     * Content which is rendered while it is written to the response (for large results).
+     */
+    public interface StreamingContent {
+
+        /**
+         * Renders the content and writes it to the response.
+         *
+         * @param writer Writer of the response
+         * @throws IOException Thrown if unable to write to the response
+         */
+        void writeTo(Writer writer) throws IOException;
+    }
+
     /**
      * HTTP status code
      */
     public final int httpStatusCode;
 
     /**
-     * Content
+     * Content (null for streaming results)
      */
     public final String content;
 
+    /**
+     * Content which is rendered while it is written to the response or null
+     */
+    private final StreamingContent streamingContent;
+
+    /**
+     * UTF-8 encoded content with line separator (lazily encoded and reused for RestResults which are served repeatedly)
+     */
+    private byte[] contentBytes;
+
     /**
      * RestResult constructor.
      *
@@ -40,8 +69,50 @@ public class RestResult {
      * @param content        Content
      */
     private RestResult(int httpStatusCode, String content) {
+        this(httpStatusCode, content, null);
+    }
+
+    /**
+     * RestResult constructor.
+     *
+     * @param httpStatusCode   HTTP status code
+     * @param content          Content (null for streaming results)
+     * @param streamingContent Content which is rendered while it is written to the response or null
+     */
+    private RestResult(int httpStatusCode, String content, StreamingContent streamingContent) {
         this.httpStatusCode = httpStatusCode;
         this.content = content;
+        this.streamingContent = streamingContent;
+        this.contentBytes = null;
+    }
+
+    /**
+     * Writes the content followed by a line separator to the response (streaming results are rendered while they are written).
+     *
+     * @param writer Writer of the response
+     * @throws IOException Thrown if unable to write to the response
+     */
+    public void writeTo(PrintWriter writer) throws IOException {
+        if (this.streamingContent != null) {
+            this.streamingContent.writeTo(writer);
+            writer.println();
+        } else {
+            writer.println(this.content);
+        }
+    }
+
+    /**
+     * Returns the UTF-8 encoded content followed by a line separator (like PrintWriter.println).
+     *
+     * @return UTF-8 encoded content
+     */
+    public byte[] getContentBytes() {
+        byte[] bytes = this.contentBytes;
+        if (bytes == null) { // the race between multiple readers is benign since all of them encode the same content
+            bytes = (this.content + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            this.contentBytes = bytes;
+        }
+        return bytes;
     }
 
     /**
@@ -81,6 +152,165 @@ public class RestResult {
         return new RestResult(httpStatusCode, jsonBuffer.toString());
     }
 
+    /**
+     * Generates a RestResult that contains the data stream elements which are rendered while they are written to the response (sent with chunked transfer encoding).
+     *
+     * @param topic         Topic of the data stream elements
+     * @param key           Key of the data stream elements
+     * @param dataJsonArray Renders the JSON representation of the data stream elements
+     * @return RestResult
+     */
+    public static RestResult generateStreamingDataResult(String topic, String key, StreamingContent dataJsonArray) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"k\":\"");
+        jsonBuffer.append(key);
+        jsonBuffer.append("\",\"d\":");
+        String prefix = jsonBuffer.toString();
+        return new RestResult(httpStatusCode, null, writer -> {
+            writer.write(prefix);
+            dataJsonArray.writeTo(writer);
+            writer.write("}");
+        });
+    }
+
+    /**
+     * Generates a RestResult that indicates that there are no latest data stream elements.
+     *
+     * @param topic Topic of the data stream elements
+     * @return RestResult
+     */
+    public static RestResult generateNoLatestResult(String topic) {
+        int httpStatusCode = 204; // NO CONTENT
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"v\":0,\"d\":null}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that contains the latest data stream element for every key.
+     *
+     * @param topic         Topic of the data stream elements
+     * @param version       Version of the latest update (for incremental calls)
+     * @param dataJsonArray JSON representation of the data stream elements
+     * @return RestResult
+     */
+    public static RestResult generateLatestResult(String topic, long version, String dataJsonArray) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"v\":");
+        jsonBuffer.append(version);
+        jsonBuffer.append(",\"d\":");
+        jsonBuffer.append(dataJsonArray);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that indicates that there are no aggregates.
+     *
+     * @param topic Topic of the aggregates
+     * @return RestResult
+     */
+    public static RestResult generateNoAggregatesResult(String topic) {
+        int httpStatusCode = 204; // NO CONTENT
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"a\":null}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that contains sliding-window aggregates (counts c, byte volumes b and rates r per window).
+     *
+     * @param topic               Topic of the aggregates
+     * @param windowsJsonArray    JSON representation of the window lengths in ms
+     * @param aggregatesJsonArray JSON representation of the aggregates
+     * @return RestResult
+     */
+    public static RestResult generateAggregateResult(String topic, String windowsJsonArray, String aggregatesJsonArray) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"w\":");
+        jsonBuffer.append(windowsJsonArray);
+        jsonBuffer.append(",\"a\":");
+        jsonBuffer.append(aggregatesJsonArray);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that indicates that there are no statistics.
+     *
+     * @param topic Topic of the statistics
+     * @return RestResult
+     */
+    public static RestResult generateNoStatsResult(String topic) {
+        int httpStatusCode = 204; // NO CONTENT
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"i\":null,\"r\":null}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that contains the heavy-hitter statistics of the ingested keys and of the requested keys.
+     *
+     * @param topic           Topic of the statistics
+     * @param ingestStatsJson JSON representation of the ingest statistics
+     * @param readStatsJson   JSON representation of the read statistics or null if there are no read statistics
+     * @return RestResult
+     */
+    public static RestResult generateStatsResult(String topic, String ingestStatsJson, String readStatsJson) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"i\":");
+        jsonBuffer.append(ingestStatsJson);
+        jsonBuffer.append(",\"r\":");
+        jsonBuffer.append(readStatsJson);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that indicates that the records have been handed over to the KafkaProducer (fire-and-forget).
+     *
+     * @param topic   Topic of the records
+     * @param records Number of records
+     * @return RestResult
+     */
+    public static RestResult generateProduceAcceptedResult(String topic, int records) {
+        int httpStatusCode = 202; // ACCEPTED
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"n\":");
+        jsonBuffer.append(records);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that contains the acknowledgments of the produced records.
+     *
+     * @param topic                    Topic of the records
+     * @param acknowledgmentsJsonArray JSON representation of the acknowledgments (partitions and offsets in the order of the records)
+     * @return RestResult
+     */
+    public static RestResult generateProduceResult(String topic, String acknowledgmentsJsonArray) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"d\":");
+        jsonBuffer.append(acknowledgmentsJsonArray);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
     /**
      * Generates a RestResult that indicates that there are no topics.
      *
@@ -92,6 +322,57 @@ public class RestResult {
         return new RestResult(httpStatusCode, jsonBuffer.toString());
     }
 
+    /**
+     * Generates a RestResult that contains the ingest metrics of the clusters.
+     *
+     * @param clustersJsonArray JSON representation of the ingest metrics of the clusters
+     * @return RestResult
+     */
+    public static RestResult generateClustersResult(String clustersJsonArray) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"c\":");
+        jsonBuffer.append(clustersJsonArray);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that contains the health of a node of the sharded proxy cluster.
+     *
+     * @param node           Base URL of the node
+     * @param nodesJsonArray JSON representation of the alive nodes
+     * @param localTopics    Number of topics which are buffered on the node
+     * @return RestResult
+     */
+    public static RestResult generateShardHealthResult(String node, String nodesJsonArray, int localTopics) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"n\":\"");
+        jsonBuffer.append(node);
+        jsonBuffer.append("\",\"a\":");
+        jsonBuffer.append(nodesJsonArray);
+        jsonBuffer.append(",\"t\":");
+        jsonBuffer.append(localTopics);
+        jsonBuffer.append("}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that contains the node of the sharded proxy cluster which owns a topic.
+     *
+     * @param topic Topic
+     * @param owner Base URL of the owning node
+     * @return RestResult
+     */
+    public static RestResult generateShardOwnerResult(String topic, String owner) {
+        int httpStatusCode = 200; // OK
+        StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
+        jsonBuffer.append(topic);
+        jsonBuffer.append("\",\"o\":\"");
+        jsonBuffer.append(owner);
+        jsonBuffer.append("\"}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
     /**
      * Generates a RestResult that contains the topics.
      *
@@ -125,14 +406,20 @@ public class RestResult {
      *
      * @param topic         Topic of the data stream elements
      * @param keysJsonArray JSON representation of the keys
+     * @param after         Last listed key which has to be passed as ?after=... to get the next page, or null if there are no further keys
      * @return RestResult
      */
-    public static RestResult generateListKeysResult(String topic, String keysJsonArray) {
+    public static RestResult generateListKeysResult(String topic, String keysJsonArray, String after) {
         int httpStatusCode = 200; // OK
         StringBuffer jsonBuffer = new StringBuffer("{\"t\":\"");
         jsonBuffer.append(topic);
         jsonBuffer.append("\",\"k\":");
         jsonBuffer.append(keysJsonArray);
+        if (after != null) {
+            jsonBuffer.append(",\"after\":\"");
+            jsonBuffer.append(after);
+            jsonBuffer.append("\"");
+        }
         jsonBuffer.append("}");
         return new RestResult(httpStatusCode, jsonBuffer.toString());
     }
@@ -172,6 +459,74 @@ public class RestResult {
         return new RestResult(httpStatusCode, jsonBuffer.toString());
     }
 
+    /**
+     * Generates a RestResult that indicates that the client has sent too many (or too expensive) REST API calls.
+     *
+     * @param target Target of the REST API call
+     * @param info   Information why the REST API call is rejected
+     * @return RestResult
+     */
+    public static RestResult generateTooManyRequestsResult(String target, String info) {
+        int httpStatusCode = 429; // TOO MANY REQUESTS
+        StringBuffer jsonBuffer = new StringBuffer("{\"e\":\"Too many requests for target ");
+        jsonBuffer.append(target);
+        jsonBuffer.append(": ");
+        jsonBuffer.append(info);
+        jsonBuffer.append("\"}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that indicates that the REST API call cannot be handled at the moment.
+     *
+     * @param target Target of the REST API call
+     * @param info   Information why the REST API call cannot be handled
+     * @return RestResult
+     */
+    public static RestResult generateServiceUnavailableResult(String target, String info) {
+        int httpStatusCode = 503; // SERVICE UNAVAILABLE
+        StringBuffer jsonBuffer = new StringBuffer("{\"e\":\"Service unavailable for target ");
+        jsonBuffer.append(target);
+        jsonBuffer.append(": ");
+        jsonBuffer.append(info);
+        jsonBuffer.append("\"}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that indicates that the body of the REST API call is too large.
+     *
+     * @param target       Target of the REST API call
+     * @param maxBodyBytes Maximum size of the body in bytes
+     * @return RestResult
+     */
+    public static RestResult generatePayloadTooLargeResult(String target, int maxBodyBytes) {
+        int httpStatusCode = 413; // PAYLOAD TOO LARGE
+        StringBuffer jsonBuffer = new StringBuffer("{\"e\":\"Payload too large for target ");
+        jsonBuffer.append(target);
+        jsonBuffer.append(": body exceeds ");
+        jsonBuffer.append(maxBodyBytes);
+        jsonBuffer.append(" bytes.\"}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
+    /**
+     * Generates a RestResult that indicates that the REST API call does not support the HTTP method.
+     *
+     * @param target Target of the REST API call
+     * @param method Supported HTTP method
+     * @return RestResult
+     */
+    public static RestResult generateMethodNotAllowedResult(String target, String method) {
+        int httpStatusCode = 405; // METHOD NOT ALLOWED
+        StringBuffer jsonBuffer = new StringBuffer("{\"e\":\"Method not allowed for target ");
+        jsonBuffer.append(target);
+        jsonBuffer.append(". Requires: ");
+        jsonBuffer.append(method);
+        jsonBuffer.append("\"}");
+        return new RestResult(httpStatusCode, jsonBuffer.toString());
+    }
+
     /**
      * Generates a RestResult that indicates that the REST API call is not implemented.
      *
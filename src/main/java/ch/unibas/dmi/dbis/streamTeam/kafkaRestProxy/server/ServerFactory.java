@@ -0,0 +1,156 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Creates the Jetty server with its bounded thread pool and its connectors: HTTP/1.1 (optionally with HTTP/2 without TLS, h2c) on jetty.port, optionally the same protocols on a Unix domain socket for co-located clients
+ * and optionally a TLS connector with HTTP/2 (h2, negotiated with ALPN) and HTTP/1.1 fallback.
+ * With HTTP/2, all concurrent REST API calls of a client are multiplexed over one connection instead of being queued behind the per-host connection limit of HTTP/1.1.
+ */
+public class ServerFactory {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ServerFactory.class);
+
+    /**
+     * Creates the Jetty server (not started yet).
+     *
+     * @param properties Properties
+     * @param handler    Handler for the REST API calls
+     * @return Jetty server
+     */
+    public static Server createServer(Properties properties, Handler handler) {
+        int maxThreads = PropertyReadHelper.readIntOrDie(properties, "server.maxThreads");
+        int minThreads = PropertyReadHelper.readIntOrDie(properties, "server.minThreads");
+        int idleTimeoutMillis = PropertyReadHelper.readIntOrDie(properties, "server.idleTimeoutMillis");
+        int queueSize = PropertyReadHelper.readIntOrDie(properties, "server.queueSize");
+        QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, idleTimeoutMillis, new BlockingArrayQueue<>(queueSize));
+        threadPool.setName("jetty");
+        Server server = new Server(threadPool);
+        int acceptors = PropertyReadHelper.readIntOrDie(properties, "server.acceptors");
+        int selectors = PropertyReadHelper.readIntOrDie(properties, "server.selectors");
+
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+        HttpConnectionFactory http11ConnectionFactory = new HttpConnectionFactory(httpConfiguration);
+        ServerConnector connector;
+        if (PropertyReadHelper.readBooleanOrDie(properties, "http2.h2c.enabled")) {
+            HTTP2CServerConnectionFactory h2cConnectionFactory = new HTTP2CServerConnectionFactory(httpConfiguration);
+            configureHttp2(h2cConnectionFactory, properties);
+            connector = new ServerConnector(server, acceptors, selectors, http11ConnectionFactory, h2cConnectionFactory);
+        } else {
+            connector = new ServerConnector(server, acceptors, selectors, http11ConnectionFactory);
+        }
+        connector.setPort(PropertyReadHelper.readIntOrDie(properties, "jetty.port"));
+        server.addConnector(connector);
+        logger.info("Added connector on port {} with protocols {}", connector.getPort(), connector.getProtocols());
+
+        if (PropertyReadHelper.readBooleanOrDie(properties, "jetty.unixSocket.enabled")) {
+            // Co-located clients skip the TCP/IP stack (no checksums, no loopback routing, no Nagle/delayed ACK interplay)
+            String unixSocketPath = PropertyReadHelper.readStringOrDie(properties, "jetty.unixSocket.path");
+            try {
+                if (Files.deleteIfExists(Paths.get(unixSocketPath))) {
+                    logger.info("Removed stale Unix domain socket {}", unixSocketPath);
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to remove stale Unix domain socket {}", unixSocketPath, e);
+            }
+            ConnectionFactory[] unixSocketConnectionFactories;
+            if (PropertyReadHelper.readBooleanOrDie(properties, "http2.h2c.enabled")) {
+                HTTP2CServerConnectionFactory h2cConnectionFactory = new HTTP2CServerConnectionFactory(httpConfiguration);
+                configureHttp2(h2cConnectionFactory, properties);
+                unixSocketConnectionFactories = new ConnectionFactory[]{new HttpConnectionFactory(httpConfiguration), h2cConnectionFactory};
+            } else {
+                unixSocketConnectionFactories = new ConnectionFactory[]{new HttpConnectionFactory(httpConfiguration)};
+            }
+            UnixSocketConnector unixSocketConnector = new UnixSocketConnector(server, selectors, unixSocketConnectionFactories);
+            unixSocketConnector.setUnixSocket(unixSocketPath);
+            server.addConnector(unixSocketConnector);
+            logger.info("Added connector on Unix domain socket {} with protocols {}", unixSocketPath, unixSocketConnector.getProtocols());
+        }
+
+        if (PropertyReadHelper.readBooleanOrDie(properties, "http2.tls.enabled")) {
+            HttpConfiguration httpsConfiguration = new HttpConfiguration(httpConfiguration);
+            httpsConfiguration.addCustomizer(new SecureRequestCustomizer());
+
+            HTTP2ServerConnectionFactory h2ConnectionFactory = new HTTP2ServerConnectionFactory(httpsConfiguration);
+            configureHttp2(h2ConnectionFactory, properties);
+            ALPNServerConnectionFactory alpnConnectionFactory = new ALPNServerConnectionFactory();
+            alpnConnectionFactory.setDefaultProtocol(HttpVersion.HTTP_1_1.asString()); // clients without ALPN fall back to HTTP/1.1
+
+            SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+            sslContextFactory.setKeyStorePath(PropertyReadHelper.readStringOrDie(properties, "http2.tls.keyStorePath"));
+            sslContextFactory.setKeyStorePassword(PropertyReadHelper.readStringOrDie(properties, "http2.tls.keyStorePassword"));
+            sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR); // prefer the cipher suites which are allowed by HTTP/2
+            SslConnectionFactory sslConnectionFactory = new SslConnectionFactory(sslContextFactory, alpnConnectionFactory.getProtocol());
+
+            ServerConnector tlsConnector = new ServerConnector(server, acceptors, selectors, sslConnectionFactory, alpnConnectionFactory, h2ConnectionFactory, new HttpConnectionFactory(httpsConfiguration));
+            tlsConnector.setPort(PropertyReadHelper.readIntOrDie(properties, "http2.tls.port"));
+            server.addConnector(tlsConnector);
+            logger.info("Added TLS connector on port {} with protocols {}", tlsConnector.getPort(), tlsConnector.getProtocols());
+        }
+
+        int maxConcurrentRequests = PropertyReadHelper.readIntOrDie(properties, "server.maxConcurrentRequests");
+        int retryAfterSeconds = PropertyReadHelper.readIntOrDie(properties, "server.retryAfterSeconds");
+        boolean virtualThreads = PropertyReadHelper.readBooleanOrDie(properties, "server.virtualThreads");
+        server.setHandler(new DispatchHandler(handler, threadPool, maxConcurrentRequests, retryAfterSeconds, virtualThreads));
+        logger.info("Created Jetty server with {}-{} threads, a queue of {} jobs and at most {} concurrent REST API calls", minThreads, maxThreads, queueSize, maxConcurrentRequests);
+
+        return server;
+    }
+
+    /**
+     * Configures the concurrent-stream limit and the flow control windows of an HTTP/2 connection factory.
+     *
+     * @param connectionFactory HTTP/2 connection factory
+     * @param properties        Properties
+     */
+    private static void configureHttp2(AbstractHTTP2ServerConnectionFactory connectionFactory, Properties properties) {
+        connectionFactory.setMaxConcurrentStreams(PropertyReadHelper.readIntOrDie(properties, "http2.maxConcurrentStreams"));
+        connectionFactory.setInitialStreamRecvWindow(PropertyReadHelper.readIntOrDie(properties, "http2.initialStreamRecvWindow"));
+        connectionFactory.setInitialSessionRecvWindow(PropertyReadHelper.readIntOrDie(properties, "http2.initialSessionRecvWindow"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+/**
+ * Token bucket which limits the cost of the REST API calls of a client (refilled continuously with a fixed rate up to its capacity).
+ */
+class TokenBucket {
+
+    /**
+     * Maximum number of tokens (burst)
+     */
+    private final double capacity;
+
+    /**
+     * Refill rate in tokens per ns
+     */
+    private final double tokensPerNano;
+
+    /**
+     * Current number of tokens
+     */
+    private double tokens;
+
+    /**
+     * Time of the last refill in ns
+     */
+    private long lastRefillNanos;
+
+    /**
+     * TokenBucket constructor (the bucket starts full).
+     *
+     * @param capacity        Maximum number of tokens (burst)
+     * @param tokensPerSecond Refill rate in tokens per second
+     * @param nanoTime        Current time in ns (System.nanoTime())
+     */
+    TokenBucket(double capacity, double tokensPerSecond, long nanoTime) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoTime;
+    }
+
+    /**
+     * Refills the bucket according to the elapsed time.
+     *
+     * @param nanoTime Current time in ns (System.nanoTime())
+     */
+    private void refill(long nanoTime) {
+        this.tokens = Math.min(this.capacity, this.tokens + (nanoTime - this.lastRefillNanos) * this.tokensPerNano);
+        this.lastRefillNanos = nanoTime;
+    }
+
+    /**
+     * Takes tokens from the bucket if it contains enough tokens.
+     *
+     * @param cost     Number of tokens
+     * @param nanoTime Current time in ns (System.nanoTime())
+     * @return 0 if the tokens have been taken, otherwise the time in ns until the bucket contains enough tokens
+     */
+    synchronized long tryAcquire(double cost, long nanoTime) {
+        refill(nanoTime);
+        if (this.tokens >= cost) {
+            this.tokens -= cost;
+            return 0;
+        }
+        return (long) Math.ceil((cost - this.tokens) / this.tokensPerNano);
+    }
+
+    /**
+     * Returns tokens to the bucket (e.g., if the REST API call is rejected after the tokens have been taken).
+     *
+     * @param cost Number of tokens
+     */
+    synchronized void release(double cost) {
+        this.tokens = Math.min(this.capacity, this.tokens + cost);
+    }
+
+    /**
+     * Checks if the bucket is full, i.e., if the client has been idle long enough that its bucket can be dropped.
+     *
+     * @param nanoTime Current time in ns (System.nanoTime())
+     * @return True if the bucket is full
+     */
+    synchronized boolean isFull(long nanoTime) {
+        refill(nanoTime);
+        return this.tokens >= this.capacity;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring which assigns every topic to one node.
+ * Every node is placed on the ring with a number of virtual nodes such that the topics are spread evenly and a membership change only moves the topics of the joining or leaving node.
+ */
+public class ConsistentHashRing {
+
+    /**
+     * Nodes (sorted such that all nodes with the same membership build the same ring)
+     */
+    private final List<String> nodes;
+
+    /**
+     * Sorted positions of the virtual nodes on the ring
+     */
+    private final long[] positions;
+
+    /**
+     * Index of the node (in nodes) per position
+     */
+    private final int[] owners;
+
+    /**
+     * ConsistentHashRing constructor.
+     *
+     * @param nodes        Nodes (at least one)
+     * @param virtualNodes Number of virtual nodes per node
+     */
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        List<String> sortedNodes = new ArrayList<>(nodes);
+        Collections.sort(sortedNodes);
+        this.nodes = Collections.unmodifiableList(sortedNodes);
+
+        long[] entries = new long[sortedNodes.size() * virtualNodes];
+        int[] entryOwners = new int[entries.length];
+        for (int n = 0; n < sortedNodes.size(); ++n) {
+            for (int v = 0; v < virtualNodes; ++v) {
+                entries[n * virtualNodes + v] = hash(sortedNodes.get(n) + "#" + v);
+                entryOwners[n * virtualNodes + v] = n;
+            }
+        }
+
+        // Sort the positions and their owners together
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> entries[a] != entries[b] ? Long.compare(entries[a], entries[b]) : Integer.compare(entryOwners[a], entryOwners[b]));
+        this.positions = new long[entries.length];
+        this.owners = new int[entries.length];
+        for (int i = 0; i < order.length; ++i) {
+            this.positions[i] = entries[order[i]];
+            this.owners[i] = entryOwners[order[i]];
+        }
+    }
+
+    /**
+     * Returns the node which owns a topic (the node of the first virtual node at or after the position of the topic).
+     *
+     * @param topic Topic
+     * @return Node
+     */
+    public String getOwner(String topic) {
+        int index = Arrays.binarySearch(this.positions, hash(topic));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index == this.positions.length) {
+            index = 0; // wrap around
+        }
+        return this.nodes.get(this.owners[index]);
+    }
+
+    /**
+     * Returns the nodes of the ring.
+     *
+     * @return Nodes (sorted)
+     */
+    public List<String> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Hashes a string to a position on the ring (64-bit FNV-1a followed by the murmur3 finalizer for a uniform distribution of similar strings).
+     *
+     * @param string String
+     * @return Position
+     */
+    static long hash(String string) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); ++i) {
+            h ^= string.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handler which routes the topic-scoped REST API calls (/consume, /latest, /aggregate, /stats and /listKeys) to the node of the sharded proxy cluster which owns the topic.
+ * Calls for topics of other nodes are either forwarded (shard.mode=forward, the response is streamed back) or redirected with 307 (shard.mode=redirect).
+ * /listTopics is answered with the merged topics of all alive nodes, /shard/health and /shard/owner?t=... expose the membership and the routing table.
+ * /produce calls are always handled by the receiving node since the records are written to Kafka and thus reach the owner anyway.
+ */
+public class ShardHandler extends HandlerWrapper implements Closeable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ShardHandler.class);
+
+    /**
+     * KafkaRestProxy (for the local topics)
+     */
+    private final KafkaRestProxy kafkaRestProxy;
+
+    /**
+     * ShardRouter
+     */
+    private final ShardRouter shardRouter;
+
+    /**
+     * True if calls for topics of other nodes are redirected, false if they are forwarded
+     */
+    private final boolean redirect;
+
+    /**
+     * Connect and read timeout of forwarded calls in ms
+     */
+    private final int forwardTimeoutMillis;
+
+    /**
+     * Executor which queries the other nodes for /listTopics (one thread per other node, the blocking calls must not run in the common pool)
+     */
+    private final ExecutorService topicListExecutor;
+
+    /**
+     * ShardHandler constructor.
+     *
+     * @param handler        Wrapped handler
+     * @param kafkaRestProxy KafkaRestProxy (for the local topics)
+     * @param shardRouter    ShardRouter
+     * @param properties     Properties
+     */
+    public ShardHandler(Handler handler, KafkaRestProxy kafkaRestProxy, ShardRouter shardRouter, Properties properties) {
+        setHandler(handler);
+        this.kafkaRestProxy = kafkaRestProxy;
+        this.shardRouter = shardRouter;
+        String mode = PropertyReadHelper.readStringOrDie(properties, "shard.mode");
+        if (!mode.equals("forward") && !mode.equals("redirect")) {
+            throw new IllegalArgumentException("shard.mode has to be forward or redirect: " + mode);
+        }
+        this.redirect = mode.equals("redirect");
+        this.forwardTimeoutMillis = PropertyReadHelper.readIntOrDie(properties, "shard.forwardTimeoutMillis");
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        this.topicListExecutor = Executors.newFixedThreadPool(Math.max(1, shardRouter.getNumberOfNodes() - 1), runnable -> {
+            Thread thread = new Thread(runnable, "shard-topics-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Initialized ShardHandler for {} in {} mode", shardRouter.getSelf(), mode);
+    }
+
+    /**
+     * Handles the shard endpoints and routes the topic-scoped REST API calls.
+     *
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletRequest  HttpServletRequest
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException      Thrown if unable to handle the REST API call
+     * @throws ServletException Thrown if unable to handle the REST API call
+     */
+    @Override
+    public void handle(String target, Request request, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws IOException, ServletException {
+        boolean forwarded = this.shardRouter.getSecret().equals(request.getHeader(ShardRouter.FORWARDED_HEADER));
+        switch (target) {
+            case "/shard/health":
+                writeRestResult(generateHealthResult(), request, httpServletResponse);
+                return;
+            case "/shard/owner":
+                writeRestResult(generateOwnerResult(request.getParameter("t")), request, httpServletResponse);
+                return;
+            case "/listTopics":
+                if (!forwarded && "GET".equals(request.getMethod())) {
+                    writeRestResult(gatherTopicList(), request, httpServletResponse);
+                    return;
+                }
+                break;
+            case "/consume":
+            case "/latest":
+            case "/aggregate":
+            case "/stats":
+            case "/listKeys":
+                String topic = request.getParameter("t");
+                if (!forwarded && topic != null && "GET".equals(request.getMethod())) {
+                    String owner = this.shardRouter.getOwner(topic);
+                    if (!owner.equals(this.shardRouter.getSelf())) {
+                        if (this.redirect) {
+                            redirect(owner, target, request, httpServletResponse);
+                        } else {
+                            forward(owner, target, request, httpServletResponse);
+                        }
+                        return;
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        super.handle(target, request, httpServletRequest, httpServletResponse);
+    }
+
+    /**
+     * Generates the RestResult for a /shard/health call ({"n":...,"a":[...],"t":...}) where n is this node, a the alive nodes and t the number of local topics.
+     *
+     * @return RestResult
+     */
+    private RestResult generateHealthResult() {
+        StringBuffer nodesJsonArray = new StringBuffer();
+        appendJsonArray(nodesJsonArray, this.shardRouter.getAliveNodes());
+        return RestResult.generateShardHealthResult(this.shardRouter.getSelf(), nodesJsonArray.toString(), this.kafkaRestProxy.getTopics().size());
+    }
+
+    /**
+     * Generates the RestResult for a /shard/owner call ({"t":...,"o":...}) where o is the node which owns the topic.
+     *
+     * @param topic Topic (?t=...) or null
+     * @return RestResult
+     */
+    private RestResult generateOwnerResult(String topic) {
+        if (topic == null) {
+            return RestResult.generateMissingParameterResult("shard/owner", "topic (t=...)");
+        }
+        return RestResult.generateShardOwnerResult(topic, this.shardRouter.getOwner(topic));
+    }
+
+    /**
+     * Generates the RestResult for a /listTopics call with the merged topics of all alive nodes (the other nodes are queried in parallel).
+     * Nodes which do not answer within the forward timeout are skipped.
+     *
+     * @return RestResult
+     */
+    private RestResult gatherTopicList() {
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        for (String node : this.shardRouter.getAliveNodes()) {
+            if (!node.equals(this.shardRouter.getSelf())) {
+                futures.add(CompletableFuture.supplyAsync(() -> fetchTopics(node), this.topicListExecutor));
+            }
+        }
+        TreeSet<String> topics = new TreeSet<>(this.kafkaRestProxy.getTopics());
+        for (CompletableFuture<List<String>> future : futures) {
+            topics.addAll(future.join());
+        }
+        if (topics.isEmpty()) {
+            return RestResult.generateNoTopicsResult();
+        }
+        StringBuffer topicsJsonArray = new StringBuffer();
+        appendJsonArray(topicsJsonArray, topics);
+        return RestResult.generateListTopicsResult(topicsJsonArray.toString());
+    }
+
+    /**
+     * Fetches the local topics of another node.
+     *
+     * @param node Base URL of the node
+     * @return Topics (empty if the node did not answer)
+     */
+    private List<String> fetchTopics(String node) {
+        try {
+            HttpURLConnection connection = openConnection(node + "/listTopics");
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+                return Collections.emptyList();
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                copy(in, body);
+            }
+            return parseQuotedStrings(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Unable to fetch the topics of {}.", node, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Extracts the topics from the content of a /listTopics call ({"t":["...",...]}). Topics never contain quotes.
+     *
+     * @param content Content of a /listTopics call
+     * @return Topics
+     */
+    private static List<String> parseQuotedStrings(String content) {
+        List<String> strings = new ArrayList<>();
+        int start = content.indexOf('[');
+        while (start >= 0) {
+            int open = content.indexOf('"', start);
+            int close = open < 0 ? -1 : content.indexOf('"', open + 1);
+            if (close < 0) {
+                break;
+            }
+            strings.add(content.substring(open + 1, close));
+            start = close + 1;
+        }
+        return strings;
+    }
+
+    /**
+     * Redirects a REST API call to the owning node (307 such that the method is kept).
+     *
+     * @param owner               Base URL of the owning node
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletResponse HttpServletResponse
+     */
+    private void redirect(String owner, String target, Request request, HttpServletResponse httpServletResponse) {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setHeader("Location", getUrl(owner, target, request));
+        httpServletResponse.setStatus(307); // TEMPORARY REDIRECT
+        request.setHandled(true);
+    }
+
+    /**
+     * Forwards a REST API call to the owning node and streams its response back. If the owning node is not reachable, the call is answered with 503 and a Retry-After header
+     * (the health checks will move the topic to another node).
+     *
+     * @param owner               Base URL of the owning node
+     * @param target              The target of the REST API call
+     * @param request             Request
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to write the response
+     */
+    private void forward(String owner, String target, Request request, HttpServletResponse httpServletResponse) throws IOException {
+        HttpURLConnection connection;
+        int status;
+        try {
+            connection = openConnection(getUrl(owner, target, request));
+            Enumeration<String> headerNames = request.getHeaderNames();
+            while (headerNames.hasMoreElements()) {
+                String headerName = headerNames.nextElement();
+                if (!isHopByHopHeader(headerName)) {
+                    connection.setRequestProperty(headerName, request.getHeader(headerName));
+                }
+            }
+            connection.setRequestProperty(ShardRouter.FORWARDED_HEADER, this.shardRouter.getSecret());
+            status = connection.getResponseCode();
+        } catch (IOException e) {
+            logger.warn("Unable to forward {} to {}.", target, owner, e);
+            RestResult restResult = RestResult.generateServiceUnavailableResult(target.substring(1), "owner " + owner + " of the topic is not reachable.");
+            httpServletResponse.addHeader("Retry-After", "1");
+            writeRestResult(restResult, request, httpServletResponse);
+            return;
+        }
+
+        httpServletResponse.setStatus(status);
+        copyResponseHeader(connection, httpServletResponse, "Access-Control-Allow-Origin");
+        copyResponseHeader(connection, httpServletResponse, "Content-Type");
+        copyResponseHeader(connection, httpServletResponse, "Content-Encoding");
+        copyResponseHeader(connection, httpServletResponse, "Retry-After");
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            try (InputStream body = in) {
+                copy(body, httpServletResponse.getOutputStream()); // streamed such that large /consume responses are never materialized on this node
+            }
+        }
+        request.setHandled(true);
+    }
+
+    /**
+     * Checks if a request header must not be forwarded.
+     *
+     * @param headerName Name of the header
+     * @return True if the header is connection-specific (or set by the forwarding connection)
+     */
+    private static boolean isHopByHopHeader(String headerName) {
+        return headerName.equalsIgnoreCase("Host") || headerName.equalsIgnoreCase("Connection") || headerName.equalsIgnoreCase("Content-Length")
+                || headerName.equalsIgnoreCase("Transfer-Encoding") || headerName.equalsIgnoreCase(ShardRouter.FORWARDED_HEADER);
+    }
+
+    /**
+     * Copies a response header of the forwarded call if it is set.
+     *
+     * @param connection          Connection of the forwarded call
+     * @param httpServletResponse HttpServletResponse
+     * @param headerName          Name of the header
+     */
+    private static void copyResponseHeader(HttpURLConnection connection, HttpServletResponse httpServletResponse, String headerName) {
+        String value = connection.getHeaderField(headerName);
+        if (value != null) {
+            httpServletResponse.setHeader(headerName, value);
+        }
+    }
+
+    /**
+     * Returns the URL of a REST API call on another node.
+     *
+     * @param node    Base URL of the node
+     * @param target  The target of the REST API call
+     * @param request Request
+     * @return URL with the query string of the REST API call
+     */
+    private static String getUrl(String node, String target, Request request) {
+        String queryString = request.getQueryString();
+        return queryString == null ? node + target : node + target + "?" + queryString;
+    }
+
+    /**
+     * Opens a connection to another node with the forward timeout and the forwarded header.
+     *
+     * @param url URL
+     * @return Connection
+     * @throws IOException Thrown if unable to open the connection
+     */
+    private HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(this.forwardTimeoutMillis);
+        connection.setReadTimeout(this.forwardTimeoutMillis);
+        connection.setRequestProperty(ShardRouter.FORWARDED_HEADER, this.shardRouter.getSecret());
+        return connection;
+    }
+
+    /**
+     * Copies a stream.
+     *
+     * @param in  Input stream
+     * @param out Output stream
+     * @throws IOException Thrown if unable to read or write
+     */
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+    }
+
+    /**
+     * Reads and closes a stream such that the connection can be reused.
+     *
+     * @param in Input stream or null
+     * @throws IOException Thrown if unable to read
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in != null) {
+            try (InputStream body = in) {
+                copy(body, new ByteArrayOutputStream());
+            }
+        }
+    }
+
+    /**
+     * Appends a JSON array of strings.
+     *
+     * @param jsonBuffer JSON buffer
+     * @param strings    Strings
+     */
+    private static void appendJsonArray(StringBuffer jsonBuffer, Iterable<String> strings) {
+        jsonBuffer.append("[");
+        boolean isFirst = true;
+        for (String string : strings) {
+            if (isFirst) {
+                isFirst = false;
+            } else {
+                jsonBuffer.append(",");
+            }
+            jsonBuffer.append("\"");
+            jsonBuffer.append(string);
+            jsonBuffer.append("\"");
+        }
+        jsonBuffer.append("]");
+    }
+
+    /**
+     * Writes a RestResult.
+     *
+     * @param restResult          RestResult
+     * @param request             Request
+     * @param httpServletResponse HttpServletResponse
+     * @throws IOException Thrown if unable to write the response
+     */
+    private static void writeRestResult(RestResult restResult, Request request, HttpServletResponse httpServletResponse) throws IOException {
+        httpServletResponse.addHeader("Access-Control-Allow-Origin", "*");
+        httpServletResponse.setContentType("text/plain;charset=utf-8");
+        httpServletResponse.setStatus(restResult.httpStatusCode);
+        httpServletResponse.getWriter().println(restResult.content);
+        request.setHandled(true);
+    }
+
+    /**
+     * Stops the executor which queries the other nodes for /listTopics.
+     */
+    @Override
+    public void close() {
+        this.topicListExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the membership of the sharded proxy cluster and routes topics to their owning nodes.
+ * The configured nodes (shard.nodes) are health-checked periodically; a node leaves the ring after shard.failureThreshold failed checks and rejoins after one successful check.
+ * The ring and the owners of the requested topics (cached routing table) are replaced together as one immutable routing on every membership change, after which the listener rebalances the local topics.
+ */
+public class ShardRouter implements Closeable, Runnable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    /**
+     * Header which marks calls between the nodes (its value is the shared secret); such calls are never forwarded again
+     */
+    public static final String FORWARDED_HEADER = "X-Shard-Forwarded";
+
+    /**
+     * Base URL of this node (e.g., http://10.34.58.70:5555)
+     */
+    private final String self;
+
+    /**
+     * Base URLs of all configured nodes (including this node)
+     */
+    private final List<String> nodes;
+
+    /**
+     * Number of virtual nodes per node on the ring
+     */
+    private final int virtualNodes;
+
+    /**
+     * Interval of the health checks in ms
+     */
+    private final long healthIntervalMillis;
+
+    /**
+     * Connect and read timeout of the health checks in ms
+     */
+    private final int healthTimeoutMillis;
+
+    /**
+     * Number of consecutive failed health checks after which a node leaves the ring
+     */
+    private final int failureThreshold;
+
+    /**
+     * Shared secret of the nodes (value of the forwarded header)
+     */
+    private final String secret;
+
+    /**
+     * Maximum number of cached topic owners
+     */
+    private final int cachedTopics;
+
+    /**
+     * Consecutive failed health checks per node
+     */
+    private final Map<String, Integer> failures;
+
+    /**
+     * Current routing (ring and cached owners, replaced as a unit such that a cached owner always stems from the current ring)
+     */
+    private volatile Routing routing;
+
+    /**
+     * Listener which is called after a membership change (rebalances the local topics)
+     */
+    private final Runnable membershipListener;
+
+    /**
+     * Flag that indicates if the ShardRouter should continue checking the nodes or not
+     */
+    private volatile boolean runFlag;
+
+    /**
+     * ShardRouter constructor. Checks all nodes once such that the initial ring contains the nodes which are already running.
+     *
+     * @param properties         Properties
+     * @param membershipListener Listener which is called after a membership change
+     * @throws IllegalArgumentException Thrown if shard.secret is empty
+     */
+    public ShardRouter(Properties properties, Runnable membershipListener) {
+        this.self = normalize(PropertyReadHelper.readStringOrDie(properties, "shard.self"));
+        this.nodes = new ArrayList<>();
+        for (String node : PropertyReadHelper.readListOfStringsOrDie(properties, "shard.nodes")) {
+            if (!node.trim().isEmpty()) {
+                this.nodes.add(normalize(node));
+            }
+        }
+        if (!this.nodes.contains(this.self)) {
+            this.nodes.add(this.self);
+        }
+        this.virtualNodes = PropertyReadHelper.readIntOrDie(properties, "shard.virtualNodes");
+        this.healthIntervalMillis = PropertyReadHelper.readLongOrDie(properties, "shard.healthIntervalMillis");
+        this.healthTimeoutMillis = PropertyReadHelper.readIntOrDie(properties, "shard.healthTimeoutMillis");
+        this.failureThreshold = PropertyReadHelper.readIntOrDie(properties, "shard.failureThreshold");
+        this.secret = PropertyReadHelper.readStringOrDie(properties, "shard.secret");
+        if (this.secret.isEmpty()) { // otherwise any client could mark its calls as forwarded with an empty header and bypass the routing
+            throw new IllegalArgumentException("shard.secret has to be set if shard.enabled=true");
+        }
+        this.cachedTopics = PropertyReadHelper.readIntOrDie(properties, "shard.cachedTopics");
+        this.failures = new HashMap<>();
+        this.membershipListener = membershipListener;
+        this.runFlag = true;
+
+        TreeSet<String> alive = new TreeSet<>();
+        for (String node : this.nodes) {
+            if (node.equals(this.self) || isHealthy(node)) {
+                alive.add(node);
+                this.failures.put(node, 0);
+            } else {
+                this.failures.put(node, this.failureThreshold);
+            }
+        }
+        this.routing = new Routing(new ConsistentHashRing(alive, this.virtualNodes), this.cachedTopics);
+        logger.info("Initialized ShardRouter for {} with {} of {} nodes alive: {}", this.self, alive.size(), this.nodes.size(), alive);
+    }
+
+    /**
+     * Removes a trailing slash from a base URL.
+     *
+     * @param node Base URL
+     * @return Base URL without trailing slash
+     */
+    private static String normalize(String node) {
+        node = node.trim();
+        return node.endsWith("/") ? node.substring(0, node.length() - 1) : node;
+    }
+
+    /**
+     * Returns the node which owns a topic (cached until the next membership change).
+     *
+     * @param topic Topic
+     * @return Base URL of the owning node
+     */
+    public String getOwner(String topic) {
+        return this.routing.getOwner(topic);
+    }
+
+    /**
+     * Checks if this node owns a topic.
+     *
+     * @param topic Topic
+     * @return True if this node owns the topic
+     */
+    public boolean isOwner(String topic) {
+        return getOwner(topic).equals(this.self);
+    }
+
+    /**
+     * Returns the base URL of this node.
+     *
+     * @return Base URL
+     */
+    public String getSelf() {
+        return this.self;
+    }
+
+    /**
+     * Returns the number of configured nodes (including this node).
+     *
+     * @return Number of configured nodes
+     */
+    public int getNumberOfNodes() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Returns the nodes which are currently in the ring.
+     *
+     * @return Base URLs of the alive nodes (sorted)
+     */
+    public List<String> getAliveNodes() {
+        return this.routing.ring.getNodes();
+    }
+
+    /**
+     * Returns the shared secret of the nodes.
+     *
+     * @return Shared secret
+     */
+    public String getSecret() {
+        return this.secret;
+    }
+
+    /**
+     * Periodically checks the other nodes and replaces the ring if the membership has changed.
+     */
+    @Override
+    public void run() {
+        while (this.runFlag) {
+            try {
+                Thread.sleep(this.healthIntervalMillis);
+            } catch (InterruptedException e) {
+                logger.trace("InterruptedException in ShardRouter.", e);
+            }
+
+            TreeSet<String> alive = new TreeSet<>();
+            for (String node : this.nodes) {
+                if (node.equals(this.self)) {
+                    alive.add(node);
+                    continue;
+                }
+                int nodeFailures = isHealthy(node) ? 0 : Math.min(this.failures.get(node) + 1, this.failureThreshold);
+                this.failures.put(node, nodeFailures);
+                if (nodeFailures < this.failureThreshold) {
+                    alive.add(node);
+                }
+            }
+
+            List<String> ringNodes = this.routing.ring.getNodes();
+            if (!alive.equals(new TreeSet<>(ringNodes))) {
+                logger.info("Shard membership changed from {} to {}.", ringNodes, alive);
+                this.routing = new Routing(new ConsistentHashRing(alive, this.virtualNodes), this.cachedTopics);
+                this.membershipListener.run();
+            }
+        }
+    }
+
+    /**
+     * Checks if a node answers its health check.
+     *
+     * @param node Base URL of the node
+     * @return True if the node answered with 200
+     */
+    private boolean isHealthy(String node) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(node + "/shard/health").openConnection();
+            connection.setConnectTimeout(this.healthTimeoutMillis);
+            connection.setReadTimeout(this.healthTimeoutMillis);
+            connection.setRequestProperty(FORWARDED_HEADER, this.secret);
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (in != null) {
+                byte[] chunk = new byte[1024];
+                while (in.read(chunk) != -1) {
+                    // drain such that the connection can be reused
+                }
+                in.close();
+            }
+            return status == 200;
+        } catch (IOException e) {
+            logger.debug("Health check of {} failed.", node, e);
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stops the health checks.
+     */
+    @Override
+    public void close() {
+        this.runFlag = false;
+    }
+
+    /**
+     * Ring with the owners of the requested topics which have been computed on this ring (immutable except for the bounded cache).
+     */
+    private static class Routing {
+
+        /**
+         * Ring
+         */
+        private final ConsistentHashRing ring;
+
+        /**
+         * Owner per topic on the ring
+         */
+        private final ConcurrentHashMap<String, String> owners;
+
+        /**
+         * Maximum number of cached topic owners
+         */
+        private final int cachedTopics;
+
+        /**
+         * Routing constructor.
+         *
+         * @param ring         Ring
+         * @param cachedTopics Maximum number of cached topic owners
+         */
+        private Routing(ConsistentHashRing ring, int cachedTopics) {
+            this.ring = ring;
+            this.owners = new ConcurrentHashMap<>();
+            this.cachedTopics = cachedTopics;
+        }
+
+        /**
+         * Returns the node which owns a topic on the ring (cached).
+         *
+         * @param topic Topic
+         * @return Base URL of the owning node
+         */
+        private String getOwner(String topic) {
+            String owner = this.owners.get(topic);
+            if (owner == null) {
+                owner = this.ring.getOwner(topic);
+                if (this.owners.size() < this.cachedTopics) { // arbitrary topic parameters must not grow the cache without bound
+                    this.owners.put(topic, owner);
+                }
+            }
+            return owner;
+        }
+    }
+}
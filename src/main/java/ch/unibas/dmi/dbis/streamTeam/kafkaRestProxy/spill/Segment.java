@@ -0,0 +1,317 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only segment file which stores spilled data stream elements of a topic in ingestion order.
+ * Record format: [int partition][long offset][long timestamp][int key length (-1 for null)][key bytes][int content length (-1 for null, e.g., tombstones)][content bytes].
+ * A sparse in-memory index stores the file position and the monotonic maximum timestamp every indexIntervalBytes, which enables skipping records that are older than the start of a time range.
+ * Only the SpillStore writer thread appends; readers map the committed part of the file read-only.
+ */
+class Segment {
+
+    /**
+     * Size of the fixed part of a record in bytes
+     */
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    /**
+     * Segment file
+     */
+    private final File file;
+
+    /**
+     * Channel for appending records
+     */
+    private final FileChannel channel;
+
+    /**
+     * Minimum number of bytes between two index entries
+     */
+    private final int indexIntervalBytes;
+
+    /**
+     * Creation time of the segment in ms
+     */
+    final long creationTime;
+
+    /**
+     * Number of bytes which have been written and are visible for readers
+     */
+    private volatile long size;
+
+    /**
+     * Maximum timestamp of all data stream elements up to the end of the segment (including the previous segments)
+     */
+    private volatile long maxTimestamp;
+
+    /**
+     * File positions of the index entries
+     */
+    private long[] indexPositions;
+
+    /**
+     * Monotonic maximum timestamps of the index entries (maximum timestamp of all records before the indexed record)
+     */
+    private long[] indexMaxTimestamps;
+
+    /**
+     * Number of index entries
+     */
+    private int indexSize;
+
+    /**
+     * Segment constructor.
+     *
+     * @param file                 Segment file (created)
+     * @param indexIntervalBytes   Minimum number of bytes between two index entries
+     * @param previousMaxTimestamp Maximum timestamp of all data stream elements in the previous segments
+     * @throws IOException Thrown if the segment file cannot be created
+     */
+    Segment(File file, int indexIntervalBytes, long previousMaxTimestamp) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.creationTime = System.currentTimeMillis();
+        this.size = 0;
+        this.maxTimestamp = previousMaxTimestamp;
+        this.indexPositions = new long[16];
+        this.indexMaxTimestamps = new long[16];
+        this.indexSize = 0;
+    }
+
+    /**
+     * Appends a data stream element (only called by the writer thread).
+     *
+     * @param dataStreamElement Data stream element
+     * @throws IOException Thrown if the record cannot be written
+     */
+    void append(DataStreamElement dataStreamElement) throws IOException {
+        byte[] keyBytes = dataStreamElement.key == null ? null : dataStreamElement.key.getBytes(StandardCharsets.UTF_8);
+        int keyLength = keyBytes == null ? 0 : keyBytes.length;
+        int contentLength = dataStreamElement.content == null ? 0 : dataStreamElement.content.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyLength + contentLength);
+        record.putInt(dataStreamElement.partition);
+        record.putLong(dataStreamElement.offset);
+        record.putLong(dataStreamElement.timestamp);
+        record.putInt(keyBytes == null ? -1 : keyLength);
+        if (keyBytes != null) {
+            record.put(keyBytes);
+        }
+        record.putInt(dataStreamElement.content == null ? -1 : contentLength);
+        if (dataStreamElement.content != null) {
+            record.put(dataStreamElement.content);
+        }
+        record.flip();
+
+        long position = this.size;
+        synchronized (this) {
+            if (this.indexSize == 0 || position - this.indexPositions[this.indexSize - 1] >= this.indexIntervalBytes) {
+                if (this.indexSize == this.indexPositions.length) {
+                    this.indexPositions = Arrays.copyOf(this.indexPositions, this.indexSize * 2);
+                    this.indexMaxTimestamps = Arrays.copyOf(this.indexMaxTimestamps, this.indexSize * 2);
+                }
+                this.indexPositions[this.indexSize] = position;
+                this.indexMaxTimestamps[this.indexSize] = this.maxTimestamp;
+                this.indexSize++;
+            }
+        }
+        while (record.hasRemaining()) {
+            this.channel.write(record, position + record.position());
+        }
+        this.maxTimestamp = Math.max(this.maxTimestamp, dataStreamElement.timestamp);
+        this.size = position + record.limit();
+    }
+
+    /**
+     * Returns the number of bytes which have been written.
+     *
+     * @return Size in bytes
+     */
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the maximum timestamp of all data stream elements up to the end of the segment.
+     *
+     * @return Maximum timestamp
+     */
+    long getMaxTimestamp() {
+        return this.maxTimestamp;
+    }
+
+    /**
+     * Returns the file position from which a reader has to scan to find all records with a timestamp of at least from.
+     *
+     * @param from Start of the time range
+     * @return File position
+     */
+    private synchronized long getStartPosition(long from) {
+        int low = 0;
+        int high = this.indexSize;
+        while (low < high) { // find the first index entry whose preceding records may contain a timestamp >= from
+            int middle = (low + high) >>> 1;
+            if (this.indexMaxTimestamps[middle] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == 0 ? 0 : this.indexPositions[low - 1];
+    }
+
+    /**
+     * Adds the latest matching data stream elements of the segment (latest first) to the result.
+     *
+     * @param topic         Topic
+     * @param keyBytes      UTF-8 bytes of the key or null for all keys
+     * @param limit         Maximum number of data stream elements in the result
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param oldestOffsets Offset of the oldest buffered data stream element per partition (only older data stream elements match)
+     * @param result        Result
+     * @throws IOException Thrown if the segment cannot be mapped (e.g., since it has been deleted)
+     */
+    void read(String topic, byte[] keyBytes, int limit, long from, long to, Map<Integer, Long> oldestOffsets, List<DataStreamElement> result) throws IOException {
+        long committedSize = this.size;
+        if (committedSize == 0) {
+            return;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel readChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            mapped = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, committedSize);
+        }
+
+        // Scan forward and remember the positions of the matching records since the latest records have to be returned first
+        int[] matches = new int[64];
+        int numberOfMatches = 0;
+        int position = (int) getStartPosition(from);
+        while (position < committedSize) {
+            int partition = mapped.getInt(position);
+            long offset = mapped.getLong(position + 4);
+            long timestamp = mapped.getLong(position + 12);
+            int keyLength = mapped.getInt(position + 20);
+            int keyStart = position + 24;
+            int contentLengthPosition = keyStart + Math.max(keyLength, 0);
+            int contentLength = mapped.getInt(contentLengthPosition);
+
+            Long oldestOffset = oldestOffsets.get(partition);
+            if (timestamp >= from && timestamp <= to && (oldestOffset == null || offset < oldestOffset) && keyMatches(mapped, keyStart, keyLength, keyBytes)) {
+                if (numberOfMatches == matches.length) {
+                    matches = Arrays.copyOf(matches, numberOfMatches * 2);
+                }
+                matches[numberOfMatches++] = position;
+            }
+            position = contentLengthPosition + Integer.BYTES + Math.max(contentLength, 0);
+        }
+
+        for (int i = numberOfMatches - 1; i >= 0 && result.size() < limit; --i) {
+            result.add(decode(mapped, matches[i], topic));
+        }
+    }
+
+    /**
+     * Checks if the key of a record matches.
+     *
+     * @param mapped    Mapped segment
+     * @param keyStart  Position of the key bytes
+     * @param keyLength Length of the key (-1 for null)
+     * @param keyBytes  UTF-8 bytes of the key or null for all keys
+     * @return True if the key matches
+     */
+    private static boolean keyMatches(MappedByteBuffer mapped, int keyStart, int keyLength, byte[] keyBytes) {
+        if (keyBytes == null) {
+            return true;
+        }
+        if (keyLength != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; ++i) {
+            if (mapped.get(keyStart + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the record at the given position.
+     *
+     * @param mapped   Mapped segment
+     * @param position Position of the record
+     * @param topic    Topic
+     * @return Data stream element
+     */
+    private static DataStreamElement decode(MappedByteBuffer mapped, int position, String topic) {
+        ByteBuffer record = mapped.duplicate();
+        record.position(position);
+        int partition = record.getInt();
+        long offset = record.getLong();
+        long timestamp = record.getLong();
+        int keyLength = record.getInt();
+        String key = null;
+        if (keyLength >= 0) {
+            byte[] keyBytes = new byte[keyLength];
+            record.get(keyBytes);
+            key = new String(keyBytes, StandardCharsets.UTF_8);
+        }
+        int contentLength = record.getInt();
+        byte[] content = null;
+        if (contentLength >= 0) {
+            content = new byte[contentLength];
+            record.get(content);
+        }
+        return new DataStreamElement(content, key, topic, partition, offset, timestamp);
+    }
+
+    /**
+     * Closes the channel and deletes the segment file.
+     */
+    void delete() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            // ignore since the file is deleted anyway
+        }
+        this.file.delete();
+    }
+
+    /**
+     * Closes the channel.
+     *
+     * @throws IOException Thrown if the channel cannot be closed
+     */
+    void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tiered local storage for data stream elements which are evicted from the partition ring buffers of the topics (every data stream element is evicted exactly once).
+ * The evicted data stream elements are handed over to a writer thread via a bounded queue (data stream elements are dropped if the queue is full such that the ingest thread never blocks)
+ * and appended to per-topic segment files which are rolled and deleted by size and age.
+ */
+public class SpillStore implements Closeable, Runnable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SpillStore.class);
+
+    /**
+     * Directory of the segment files
+     */
+    private final File directory;
+
+    /**
+     * Size in bytes after which a new segment is started
+     */
+    private final long segmentBytes;
+
+    /**
+     * Maximum size of all segments of a topic in bytes
+     */
+    private final long maxBytesPerTopic;
+
+    /**
+     * Retention time of a segment in ms
+     */
+    private final long retentionMillis;
+
+    /**
+     * Minimum number of bytes between two index entries
+     */
+    private final int indexIntervalBytes;
+
+    /**
+     * Queue of evicted data stream elements which have to be written
+     */
+    private final BlockingQueue<DataStreamElement> queue;
+
+    /**
+     * Spilled data stream elements per topic
+     */
+    private final ConcurrentHashMap<String, TopicSpill> topicSpills;
+
+    /**
+     * Number of data stream elements which have been dropped since the queue was full
+     */
+    private final AtomicLong droppedDataStreamElements;
+
+    /**
+     * Flag that indicates if the writer thread should continue writing or not
+     */
+    private volatile boolean runFlag;
+
+    /**
+     * SpillStore constructor.
+     *
+     * @param properties Properties
+     */
+    public SpillStore(Properties properties) {
+        logger.info("Initializing SpillStore");
+
+        this.directory = new File(PropertyReadHelper.readStringOrDie(properties, "spill.directory"));
+        this.segmentBytes = PropertyReadHelper.readLongOrDie(properties, "spill.segmentBytes");
+        this.maxBytesPerTopic = PropertyReadHelper.readLongOrDie(properties, "spill.maxBytesPerTopic");
+        this.retentionMillis = PropertyReadHelper.readLongOrDie(properties, "spill.retentionMillis");
+        this.indexIntervalBytes = PropertyReadHelper.readIntOrDie(properties, "spill.indexIntervalBytes");
+        this.queue = new ArrayBlockingQueue<>(PropertyReadHelper.readIntOrDie(properties, "spill.queueSize"));
+        this.topicSpills = new ConcurrentHashMap<>();
+        this.droppedDataStreamElements = new AtomicLong(0);
+        this.runFlag = true;
+
+        // Segments of a previous run are deleted since the StreamConsumer consumes all topics from the beginning again
+        deleteRecursively(this.directory);
+        this.directory.mkdirs();
+    }
+
+    /**
+     * Hands an evicted data stream element over to the writer thread without blocking.
+     *
+     * @param dataStreamElement Evicted data stream element
+     */
+    public void spill(DataStreamElement dataStreamElement) {
+        if (!this.queue.offer(dataStreamElement)) {
+            if (this.droppedDataStreamElements.incrementAndGet() % 10000 == 1) {
+                logger.warn("Spill queue is full. Dropped {} data stream elements so far.", this.droppedDataStreamElements.get());
+            }
+        }
+    }
+
+    /**
+     * Reads the latest spilled data stream elements (latest first) which match the key and the time range.
+     *
+     * @param topic         Topic
+     * @param key           Key or null for all keys
+     * @param limit         Maximum number of data stream elements
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param oldestOffsets Offset of the oldest buffered data stream element per partition (only older data stream elements are read)
+     * @return Data stream elements (latest first)
+     */
+    public List<DataStreamElement> read(String topic, String key, int limit, long from, long to, Map<Integer, Long> oldestOffsets) {
+        TopicSpill topicSpill = this.topicSpills.get(topic);
+        if (topicSpill == null) {
+            return Collections.emptyList();
+        }
+        List<DataStreamElement> result = new ArrayList<>();
+        topicSpill.read(key, limit, from, to, oldestOffsets, result);
+        return result;
+    }
+
+    /**
+     * Continuously writes the evicted data stream elements to the segments and enforces the retention.
+     */
+    @Override
+    public void run() {
+        long nextRetentionCheck = 0;
+        while (this.runFlag) {
+            try {
+                DataStreamElement dataStreamElement = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (dataStreamElement != null) {
+                    TopicSpill topicSpill = this.topicSpills.computeIfAbsent(dataStreamElement.topic, topic -> new TopicSpill(topic, new File(this.directory, topic)));
+                    topicSpill.append(dataStreamElement, this.segmentBytes, this.indexIntervalBytes);
+                }
+                if (System.currentTimeMillis() >= nextRetentionCheck) {
+                    for (TopicSpill topicSpill : this.topicSpills.values()) {
+                        topicSpill.enforceRetention(this.maxBytesPerTopic, this.retentionMillis);
+                    }
+                    nextRetentionCheck = System.currentTimeMillis() + 1000;
+                }
+            } catch (InterruptedException e) {
+                logger.trace("InterruptedException in SpillStore.", e);
+            } catch (IOException e) {
+                logger.error("Unable to spill data stream element.", e);
+            }
+        }
+        for (TopicSpill topicSpill : this.topicSpills.values()) {
+            topicSpill.close();
+        }
+        logger.info("Closed SpillStore");
+    }
+
+    /**
+     * Deletes a file or a directory with all its content.
+     *
+     * @param file File or directory
+     */
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Stops the writer thread.
+     */
+    @Override
+    public void close() {
+        this.runFlag = false;
+    }
+}
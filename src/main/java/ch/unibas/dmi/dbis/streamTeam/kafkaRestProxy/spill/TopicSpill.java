@@ -0,0 +1,153 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Spilled data stream elements of a single topic, stored in a sequence of segments (oldest first).
+ */
+class TopicSpill {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(TopicSpill.class);
+
+    /**
+     * Topic
+     */
+    private final String topic;
+
+    /**
+     * Directory of the segment files of the topic
+     */
+    private final File directory;
+
+    /**
+     * Segments (oldest first, the last segment is the active segment)
+     */
+    private final CopyOnWriteArrayList<Segment> segments;
+
+    /**
+     * Number of the next segment file
+     */
+    private long nextSegmentNumber;
+
+    /**
+     * TopicSpill constructor.
+     *
+     * @param topic     Topic
+     * @param directory Directory of the segment files of the topic (created)
+     */
+    TopicSpill(String topic, File directory) {
+        this.topic = topic;
+        this.directory = directory;
+        this.segments = new CopyOnWriteArrayList<>();
+        this.nextSegmentNumber = 0;
+        directory.mkdirs();
+    }
+
+    /**
+     * Appends a data stream element to the active segment and rolls the active segment if it is full (only called by the writer thread).
+     *
+     * @param dataStreamElement  Data stream element
+     * @param segmentBytes       Size in bytes after which a new segment is started
+     * @param indexIntervalBytes Minimum number of bytes between two index entries
+     * @throws IOException Thrown if the data stream element cannot be written
+     */
+    void append(DataStreamElement dataStreamElement, long segmentBytes, int indexIntervalBytes) throws IOException {
+        Segment activeSegment = this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+        if (activeSegment == null || activeSegment.size() >= segmentBytes) {
+            long previousMaxTimestamp = activeSegment == null ? Long.MIN_VALUE : activeSegment.getMaxTimestamp();
+            File file = new File(this.directory, String.format("%020d.segment", this.nextSegmentNumber++));
+            activeSegment = new Segment(file, indexIntervalBytes, previousMaxTimestamp);
+            this.segments.add(activeSegment);
+            logger.debug("Rolled segment {} for topic {}.", file, this.topic);
+        }
+        activeSegment.append(dataStreamElement);
+    }
+
+    /**
+     * Deletes the oldest segments as long as the topic exceeds the maximum size or the segments exceed the retention time (only called by the writer thread).
+     *
+     * @param maxBytes        Maximum size of all segments of the topic in bytes
+     * @param retentionMillis Retention time in ms (a segment is deleted if it has not been written for this time)
+     */
+    void enforceRetention(long maxBytes, long retentionMillis) {
+        long totalBytes = 0;
+        for (Segment segment : this.segments) {
+            totalBytes += segment.size();
+        }
+        long now = System.currentTimeMillis();
+        while (this.segments.size() > 1 && (totalBytes > maxBytes || this.segments.get(1).creationTime < now - retentionMillis)) {
+            Segment oldestSegment = this.segments.remove(0);
+            totalBytes -= oldestSegment.size();
+            oldestSegment.delete();
+        }
+    }
+
+    /**
+     * Reads the latest matching data stream elements (latest first) from the segments.
+     *
+     * @param key           Key or null for all keys
+     * @param limit         Maximum number of data stream elements
+     * @param from          Start of the time range (inclusive)
+     * @param to            End of the time range (inclusive)
+     * @param oldestOffsets Offset of the oldest buffered data stream element per partition (only older data stream elements are read)
+     * @param result        List to which the data stream elements are added
+     */
+    void read(String key, int limit, long from, long to, Map<Integer, Long> oldestOffsets, List<DataStreamElement> result) {
+        byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        Object[] segmentSnapshot = this.segments.toArray();
+        for (int i = segmentSnapshot.length - 1; i >= 0 && result.size() < limit; --i) {
+            Segment segment = (Segment) segmentSnapshot[i];
+            if (segment.getMaxTimestamp() < from) {
+                break; // all older segments only contain older data stream elements
+            }
+            try {
+                segment.read(this.topic, keyBytes, limit, from, to, oldestOffsets, result);
+            } catch (IOException e) {
+                logger.debug("Unable to read segment of topic {} (probably deleted).", this.topic, e);
+            }
+        }
+    }
+
+    /**
+     * Closes all segments.
+     */
+    void close() {
+        for (Segment segment : this.segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                logger.error("Caught exception while closing a segment of topic {}.", this.topic, e);
+            }
+        }
+    }
+}
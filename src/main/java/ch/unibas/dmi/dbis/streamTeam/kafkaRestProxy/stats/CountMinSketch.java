@@ -0,0 +1,91 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats;
+
+/**
+ * Count-min sketch which estimates the frequencies of keys in constant memory (depth x width counters).
+ * The estimates never underestimate and overestimate by at most e / width * total count with probability 1 - exp(-depth).
+ * Not thread-safe (synchronized by the HeavyHitters which owns the sketch).
+ */
+class CountMinSketch {
+
+    /**
+     * Counters (one row per hash function)
+     */
+    private final long[][] counters;
+
+    /**
+     * Width of a row (power of two such that the column can be computed with a bit mask)
+     */
+    private final int width;
+
+    /**
+     * CountMinSketch constructor.
+     *
+     * @param depth Number of hash functions
+     * @param width Number of counters per hash function (rounded up to the next power of two)
+     */
+    CountMinSketch(int depth, int width) {
+        int roundedWidth = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.width = roundedWidth;
+        this.counters = new long[depth][roundedWidth];
+    }
+
+    /**
+     * Returns the width of a row.
+     *
+     * @return Width
+     */
+    int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Increments the counters of a key and returns the new frequency estimate.
+     *
+     * @param key Key
+     * @return Frequency estimate
+     */
+    long addAndEstimate(String key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < this.counters.length; ++row) {
+            int column = mix(hash, row) & (this.width - 1);
+            estimate = Math.min(estimate, ++this.counters[row][column]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Derives the hash of a row from the hash of the key (murmur3 finalizer with a row-specific seed).
+     *
+     * @param hash Hash of the key
+     * @param row  Row
+     * @return Hash for the row
+     */
+    private static int mix(int hash, int row) {
+        int h = hash ^ (0x9E3779B9 * (row + 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
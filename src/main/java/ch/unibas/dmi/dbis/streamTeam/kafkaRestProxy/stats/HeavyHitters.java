@@ -0,0 +1,151 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Tracks the approximately most frequent keys of a stream of key occurrences in constant memory.
+ * The frequencies are estimated with a count-min sketch and the top-K keys are kept in a min-heap ordered by their estimates.
+ */
+class HeavyHitters {
+
+    /**
+     * Candidate for the top-K keys.
+     */
+    private static class Candidate {
+
+        /**
+         * Key
+         */
+        private final String key;
+
+        /**
+         * Frequency estimate
+         */
+        private long estimate;
+
+        /**
+         * Candidate constructor.
+         *
+         * @param key      Key
+         * @param estimate Frequency estimate
+         */
+        private Candidate(String key, long estimate) {
+            this.key = key;
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * Count-min sketch for the frequency estimates
+     */
+    private final CountMinSketch sketch;
+
+    /**
+     * Maximum number of tracked keys
+     */
+    private final int k;
+
+    /**
+     * Min-heap of the top-K candidates (the candidate with the smallest estimate is at the head)
+     */
+    private final PriorityQueue<Candidate> heap;
+
+    /**
+     * Top-K candidates by key
+     */
+    private final HashMap<String, Candidate> candidates;
+
+    /**
+     * Total number of key occurrences
+     */
+    private long total;
+
+    /**
+     * HeavyHitters constructor.
+     *
+     * @param depth Depth of the count-min sketch
+     * @param width Width of the count-min sketch
+     * @param k     Maximum number of tracked keys
+     */
+    HeavyHitters(int depth, int width, int k) {
+        this.sketch = new CountMinSketch(depth, width);
+        this.k = k;
+        this.heap = new PriorityQueue<>(k, (a, b) -> Long.compare(a.estimate, b.estimate));
+        this.candidates = new HashMap<>(k * 2);
+        this.total = 0;
+    }
+
+    /**
+     * Counts an occurrence of a key.
+     *
+     * @param key Key
+     */
+    synchronized void add(String key) {
+        this.total++;
+        long estimate = this.sketch.addAndEstimate(key);
+        Candidate candidate = this.candidates.get(key);
+        if (candidate != null) {
+            this.heap.remove(candidate); // re-insert such that the heap order reflects the new estimate
+            candidate.estimate = estimate;
+            this.heap.add(candidate);
+        } else if (this.heap.size() < this.k) {
+            candidate = new Candidate(key, estimate);
+            this.candidates.put(key, candidate);
+            this.heap.add(candidate);
+        } else if (this.heap.peek().estimate < estimate) {
+            Candidate evicted = this.heap.poll();
+            this.candidates.remove(evicted.key);
+            candidate = new Candidate(key, estimate);
+            this.candidates.put(key, candidate);
+            this.heap.add(candidate);
+        }
+    }
+
+    /**
+     * Appends the JSON representation of the heavy hitters ({"n":...,"e":...,"top":[{"k":...,"c":...},...]}) where n is the total number of occurrences,
+     * e the maximum expected overestimation and top the tracked keys with their estimates (most frequent first).
+     *
+     * @param jsonBuffer JSON buffer
+     */
+    synchronized void appendJson(StringBuffer jsonBuffer) {
+        List<Candidate> sorted = new ArrayList<>(this.heap);
+        sorted.sort((a, b) -> Long.compare(b.estimate, a.estimate));
+        jsonBuffer.append("{\"n\":");
+        jsonBuffer.append(this.total);
+        jsonBuffer.append(",\"e\":");
+        jsonBuffer.append((long) Math.ceil(Math.E * this.total / this.sketch.getWidth()));
+        jsonBuffer.append(",\"top\":[");
+        for (int i = 0; i < sorted.size(); ++i) {
+            if (i > 0) {
+                jsonBuffer.append(",");
+            }
+            jsonBuffer.append("{\"k\":\"");
+            jsonBuffer.append(sorted.get(i).key);
+            jsonBuffer.append("\",\"c\":");
+            jsonBuffer.append(sorted.get(i).estimate);
+            jsonBuffer.append("}");
+        }
+        jsonBuffer.append("]}");
+    }
+}
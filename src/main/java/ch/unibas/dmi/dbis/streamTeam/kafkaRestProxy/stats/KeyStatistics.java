@@ -0,0 +1,135 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Approximate heavy-hitter statistics per topic for the ingested keys and for the keys requested with /consume.
+ * The memory per topic is constant (two count-min sketches with top-K heaps), regardless of the number of keys.
+ */
+public class KeyStatistics {
+
+    /**
+     * Depth of the count-min sketches
+     */
+    private final int sketchDepth;
+
+    /**
+     * Width of the count-min sketches
+     */
+    private final int sketchWidth;
+
+    /**
+     * Number of tracked top keys
+     */
+    private final int topK;
+
+    /**
+     * Heavy hitters of the ingested keys per topic
+     */
+    private final ConcurrentHashMap<String, HeavyHitters> ingestHeavyHitters;
+
+    /**
+     * Heavy hitters of the requested keys per topic
+     */
+    private final ConcurrentHashMap<String, HeavyHitters> readHeavyHitters;
+
+    /**
+     * KeyStatistics constructor.
+     *
+     * @param properties Properties
+     */
+    public KeyStatistics(Properties properties) {
+        this.sketchDepth = PropertyReadHelper.readIntOrDie(properties, "stats.sketchDepth");
+        this.sketchWidth = PropertyReadHelper.readIntOrDie(properties, "stats.sketchWidth");
+        this.topK = PropertyReadHelper.readIntOrDie(properties, "stats.topK");
+        this.ingestHeavyHitters = new ConcurrentHashMap<>();
+        this.readHeavyHitters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Counts an ingested data stream element (thread-safe).
+     *
+     * @param topic Topic of the data stream element
+     * @param key   Key of the data stream element
+     */
+    public void countIngest(String topic, String key) {
+        HeavyHitters heavyHitters = this.ingestHeavyHitters.get(topic);
+        if (heavyHitters == null) {
+            heavyHitters = this.ingestHeavyHitters.computeIfAbsent(topic, t -> new HeavyHitters(this.sketchDepth, this.sketchWidth, this.topK));
+        }
+        heavyHitters.add(key);
+    }
+
+    /**
+     * Counts a /consume call (thread-safe). Calls for topics without ingested data stream elements are ignored such that arbitrary topic parameters cannot allocate sketches.
+     *
+     * @param topic Topic of the /consume call
+     * @param key   Key (or key pattern) of the /consume call
+     */
+    public void countRead(String topic, String key) {
+        HeavyHitters heavyHitters = this.readHeavyHitters.get(topic);
+        if (heavyHitters == null) {
+            if (!this.ingestHeavyHitters.containsKey(topic)) {
+                return;
+            }
+            heavyHitters = this.readHeavyHitters.computeIfAbsent(topic, t -> new HeavyHitters(this.sketchDepth, this.sketchWidth, this.topK));
+        }
+        heavyHitters.add(key);
+    }
+
+    /**
+     * Returns the JSON representation of the ingest statistics of a topic.
+     *
+     * @param topic Topic
+     * @return JSON representation or null if there are no ingest statistics for the topic
+     */
+    public String getIngestStatsJson(String topic) {
+        return getStatsJson(this.ingestHeavyHitters.get(topic));
+    }
+
+    /**
+     * Returns the JSON representation of the read statistics of a topic.
+     *
+     * @param topic Topic
+     * @return JSON representation or null if there are no read statistics for the topic
+     */
+    public String getReadStatsJson(String topic) {
+        return getStatsJson(this.readHeavyHitters.get(topic));
+    }
+
+    /**
+     * Returns the JSON representation of heavy hitters.
+     *
+     * @param heavyHitters Heavy hitters or null
+     * @return JSON representation or null
+     */
+    private static String getStatsJson(HeavyHitters heavyHitters) {
+        if (heavyHitters == null) {
+            return null;
+        }
+        StringBuffer jsonBuffer = new StringBuffer();
+        heavyHitters.appendJson(jsonBuffer);
+        return jsonBuffer.toString();
+    }
+}
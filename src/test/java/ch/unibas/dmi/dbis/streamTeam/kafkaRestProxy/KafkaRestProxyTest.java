@@ -0,0 +1,109 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.LoadTestConsumer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the /consume reads of the KafkaRestProxy across and within the partitions.
+ */
+public class KafkaRestProxyTest {
+
+    /**
+     * KafkaRestProxy with data stream elements in the partitions 0 and 1 of the topic "topic"
+     */
+    private static KafkaRestProxy kafkaRestProxy;
+
+    /**
+     * Creates the KafkaRestProxy and adds the data stream elements.
+     */
+    @BeforeClass
+    public static void initialize() {
+        ShutdownHelper.initialize();
+        kafkaRestProxy = new KafkaRestProxy(TestHelper.createEmbeddedProperties(), new LoadTestConsumer());
+        add("key0", 0, 0, 1000);
+        add("key1", 1, 0, 2000);
+        add("key0", 0, 1, 3000);
+        add("key1", 1, 1, 4000);
+    }
+
+    /**
+     * Reads of all keys merge the partitions latest first.
+     */
+    @Test
+    public void readsAllPartitions() {
+        RestResult restResult = kafkaRestProxy.getDataStreamElementsInTimeRange("topic", null, -1, 10, Long.MIN_VALUE, Long.MAX_VALUE, false, null, false, null);
+        assertEquals(200, restResult.httpStatusCode);
+        String content = restResult.content;
+        int latest = content.indexOf("\"p\":1,\"o\":1");
+        int second = content.indexOf("\"p\":0,\"o\":1");
+        int third = content.indexOf("\"p\":1,\"o\":0");
+        int oldest = content.indexOf("\"p\":0,\"o\":0");
+        assertTrue(latest >= 0 && latest < second && second < third && third < oldest);
+    }
+
+    /**
+     * Partition-scoped reads (?p=...) only return the data stream elements of the partition.
+     */
+    @Test
+    public void readsSinglePartition() {
+        RestResult restResult = kafkaRestProxy.getDataStreamElementsInTimeRange("topic", null, 0, 10, Long.MIN_VALUE, Long.MAX_VALUE, false, null, false, null);
+        assertEquals(200, restResult.httpStatusCode);
+        assertTrue(restResult.content.contains("\"p\":0,\"o\":1"));
+        assertTrue(restResult.content.contains("\"p\":0,\"o\":0"));
+        assertFalse(restResult.content.contains("\"p\":1"));
+
+        RestResult limited = kafkaRestProxy.getDataStreamElementsInTimeRange("topic", null, 1, 1, Long.MIN_VALUE, Long.MAX_VALUE, false, null, false, null);
+        assertTrue(limited.content.contains("\"p\":1,\"o\":1"));
+        assertFalse(limited.content.contains("\"p\":1,\"o\":0"));
+
+        assertEquals(204, kafkaRestProxy.getDataStreamElementsInTimeRange("topic", null, 5, 10, Long.MIN_VALUE, Long.MAX_VALUE, false, null, false, null).httpStatusCode);
+    }
+
+    /**
+     * Partition-scoped reads cannot be combined with a key or with deep reads.
+     */
+    @Test
+    public void rejectsInvalidPartitionReads() {
+        assertEquals(422, kafkaRestProxy.getDataStreamElementsInTimeRange("topic", "key0", 0, 10, Long.MIN_VALUE, Long.MAX_VALUE, false, null, false, null).httpStatusCode);
+        assertEquals(422, kafkaRestProxy.getDataStreamElementsInTimeRange("topic", null, 0, 10, Long.MIN_VALUE, Long.MAX_VALUE, true, null, false, null).httpStatusCode);
+    }
+
+    /**
+     * Adds a data stream element to the topic "topic".
+     *
+     * @param key       Key
+     * @param partition Partition
+     * @param offset    Offset
+     * @param timestamp Timestamp
+     */
+    private static void add(String key, int partition, long offset, long timestamp) {
+        kafkaRestProxy.addToBuffer(new DataStreamElement("content".getBytes(StandardCharsets.UTF_8), key, "topic", partition, offset, timestamp));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Helper methods of the unit tests.
+ */
+public class TestHelper {
+
+    /**
+     * Creates the properties of a KafkaRestProxy which runs in the test JVM without any network listener and without a Kafka cluster
+     * (kafkaRestProxy.properties with the Jetty server, the gRPC server, deep reads and the admission control disabled).
+     *
+     * @return Properties
+     */
+    public static Properties createEmbeddedProperties() {
+        Properties properties = new Properties();
+        try (InputStream in = TestHelper.class.getResourceAsStream("/kafkaRestProxy.properties")) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load kafkaRestProxy.properties", e);
+        }
+        properties.setProperty("jetty.enabled", "false");
+        properties.setProperty("grpc.enabled", "false");
+        properties.setProperty("deepRead.enabled", "false");
+        properties.setProperty("admission.enabled", "false");
+        properties.setProperty("kafka.subscriptionInterval", "20");
+        properties.setProperty("kafka.pollTimeout", "20");
+        return properties;
+    }
+
+    /**
+     * Waits until the condition holds.
+     *
+     * @param condition     Condition
+     * @param timeoutMillis Maximum time to wait in ms
+     * @return True if the condition holds, false if it still does not hold after the timeout
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    public static boolean waitUntil(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
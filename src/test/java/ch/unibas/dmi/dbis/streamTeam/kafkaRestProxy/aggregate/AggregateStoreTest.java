@@ -0,0 +1,100 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.aggregate;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the AggregateStore.
+ */
+public class AggregateStoreTest {
+
+    /**
+     * Creates an AggregateStore with a single window which is long enough that no data stream element of a test expires.
+     *
+     * @return AggregateStore
+     */
+    private static AggregateStore createAggregateStore() {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("aggregate.bucketMillis", "60000");
+        properties.setProperty("aggregate.windows", "600000");
+        return new AggregateStore(properties);
+    }
+
+    /**
+     * Data stream elements are counted for their key and for the dedicated all-key.
+     */
+    @Test
+    public void countsPerKeyAndForAll() {
+        AggregateStore aggregateStore = createAggregateStore();
+        aggregateStore.add(new DataStreamElement(new byte[10], "a", "topic", 0, 0, 0));
+        aggregateStore.add(new DataStreamElement(new byte[20], "b", "topic", 0, 1, 0));
+        aggregateStore.add(new DataStreamElement(new byte[30], "a", "topic", 0, 2, 0));
+        aggregateStore.add(new DataStreamElement(new byte[40], "a", "otherTopic", 0, 0, 0));
+
+        assertEquals("[600000]", aggregateStore.getWindowsJsonArray());
+
+        StringBuffer aggregatesJsonArray = new StringBuffer();
+        assertEquals(3, aggregateStore.appendAggregatesJson(aggregatesJsonArray, "topic", "all", true, Arrays.asList("a", "b")));
+        String aggregatesJson = aggregatesJsonArray.toString();
+        assertTrue(aggregatesJson, aggregatesJson.startsWith("{\"k\":\"all\",\"c\":[3],\"b\":[60],\"r\":["));
+        assertTrue(aggregatesJson, aggregatesJson.contains("{\"k\":\"a\",\"c\":[2],\"b\":[40],\"r\":["));
+        assertTrue(aggregatesJson, aggregatesJson.contains("{\"k\":\"b\",\"c\":[1],\"b\":[20],\"r\":["));
+    }
+
+    /**
+     * Unknown topics and keys are skipped.
+     */
+    @Test
+    public void skipsUnknownTopicsAndKeys() {
+        AggregateStore aggregateStore = createAggregateStore();
+        aggregateStore.add(new DataStreamElement(new byte[10], "a", "topic", 0, 0, 0));
+
+        StringBuffer aggregatesJsonArray = new StringBuffer();
+        assertEquals(0, aggregateStore.appendAggregatesJson(aggregatesJsonArray, "unknownTopic", "all", true, Collections.singletonList("a")));
+        assertEquals(0, aggregateStore.appendAggregatesJson(aggregatesJsonArray, "topic", "all", false, Collections.singletonList("unknownKey")));
+        assertEquals("", aggregatesJsonArray.toString());
+    }
+
+    /**
+     * A data stream element without content (tombstone) is counted with 0 bytes.
+     */
+    @Test
+    public void countsNullContentWithZeroBytes() {
+        AggregateStore aggregateStore = createAggregateStore();
+        aggregateStore.add(new DataStreamElement(new byte[10], "a", "topic", 0, 0, 0));
+        aggregateStore.add(new DataStreamElement(null, "a", "topic", 0, 1, 0));
+
+        StringBuffer aggregatesJsonArray = new StringBuffer();
+        assertEquals(2, aggregateStore.appendAggregatesJson(aggregatesJsonArray, "topic", "all", true, Collections.singletonList("a")));
+        String aggregatesJson = aggregatesJsonArray.toString();
+        assertTrue(aggregatesJson, aggregatesJson.startsWith("{\"k\":\"all\",\"c\":[2],\"b\":[10],\"r\":["));
+        assertTrue(aggregatesJson, aggregatesJson.contains("{\"k\":\"a\",\"c\":[2],\"b\":[10],\"r\":["));
+    }
+}
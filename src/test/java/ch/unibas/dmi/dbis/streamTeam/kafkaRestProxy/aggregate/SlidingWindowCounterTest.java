@@ -0,0 +1,86 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.aggregate;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the SlidingWindowCounter with explicit ingest and query times.
+ */
+public class SlidingWindowCounterTest {
+
+    /**
+     * Creation time of the counters in ms
+     */
+    private static final long CREATION_TIME = 1000000L;
+
+    /**
+     * Each window covers its buckets including the partial current bucket and the rate is based on the covered time.
+     */
+    @Test
+    public void aggregatesWindows() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(3, 1000, CREATION_TIME);
+        counter.add(CREATION_TIME + 100, 10);
+        counter.add(CREATION_TIME + 500, 20);
+        counter.add(CREATION_TIME + 1200, 5);
+
+        String[] windows = appendWindows(counter, CREATION_TIME + 1500, new long[]{1000, 3000});
+        assertEquals("1,3", windows[0]);
+        assertEquals("5,35", windows[1]);
+        assertEquals("1.996,1.999", windows[2]);
+    }
+
+    /**
+     * Buckets which fall out of the ring are cleared.
+     */
+    @Test
+    public void clearsExpiredBuckets() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(3, 1000, CREATION_TIME);
+        counter.add(CREATION_TIME, 10);
+        counter.add(CREATION_TIME + 2000, 20);
+
+        String[] windows = appendWindows(counter, CREATION_TIME + 3000, new long[]{3000});
+        assertEquals("1", windows[0]);
+        assertEquals("20", windows[1]);
+
+        windows = appendWindows(counter, CREATION_TIME + 10000, new long[]{3000});
+        assertEquals("0", windows[0]);
+        assertEquals("0", windows[1]);
+        assertEquals("0.0", windows[2]);
+    }
+
+    /**
+     * Returns the counts, the byte volumes and the rates of the windows.
+     *
+     * @param counter      Counter
+     * @param time         Query time in ms
+     * @param windowMillis Lengths of the windows in ms
+     * @return Counts, byte volumes and rates (JSON arrays without brackets)
+     */
+    private static String[] appendWindows(SlidingWindowCounter counter, long time, long[] windowMillis) {
+        StringBuffer countsJson = new StringBuffer();
+        StringBuffer bytesJson = new StringBuffer();
+        StringBuffer ratesJson = new StringBuffer();
+        counter.appendWindows(time, windowMillis, countsJson, bytesJson, ratesJson);
+        return new String[]{countsJson.toString(), bytesJson.toString(), ratesJson.toString()};
+    }
+}
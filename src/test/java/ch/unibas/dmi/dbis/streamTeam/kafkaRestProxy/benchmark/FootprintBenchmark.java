@@ -0,0 +1,184 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.DataStreamBuffer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ErrorCode;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Heap-based footprint benchmark which reports the bytes per buffered data stream element for varying key counts.
+ * All data stream elements share the same content array such that only the per-element overhead is measured.
+ * The overhead of the buffer is compared to the overhead of the former representation (LinkedList per key and for the dedicated all-key with DataStreamElement objects and a topic and a key string per record).
+ */
+public class FootprintBenchmark {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(FootprintBenchmark.class);
+
+    /**
+     * Runs the footprint benchmark.
+     *
+     * @param args Parameters
+     */
+    public static void main(String[] args) {
+        ShutdownHelper.initialize();
+
+        String propertiesFilePath = "/loadTest.properties";
+        Properties properties = new Properties();
+        try {
+            InputStream in = FootprintBenchmark.class.getResourceAsStream(propertiesFilePath);
+            properties.load(in);
+        } catch (IOException e) {
+            logger.error("Unable to load {}", propertiesFilePath, e);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+
+        int bufferSize = PropertyReadHelper.readIntOrDie(properties, "footprint.bufferSize");
+        int payloadSize = PropertyReadHelper.readIntOrDie(properties, "footprint.payloadSize");
+        List<String> keyCounts = PropertyReadHelper.readListOfStringsOrDie(properties, "footprint.keyCounts");
+
+        byte[] sharedContent = new byte[payloadSize];
+        logger.info("Footprint with bufferSize={} (shared content, i.e., without payload bytes):", bufferSize);
+        for (String keyCountString : keyCounts) {
+            int keyCount = Integer.parseInt(keyCountString.trim());
+            long elements = (long) keyCount * bufferSize;
+
+            long before = usedHeap();
+            Object legacyBuffer = fillLegacyBuffer(keyCount, bufferSize, sharedContent);
+            long legacyBytes = usedHeap() - before;
+            keepAlive(legacyBuffer);
+            legacyBuffer = null;
+
+            before = usedHeap();
+            DataStreamBuffer dataStreamBuffer = fillDataStreamBuffer(keyCount, bufferSize, sharedContent);
+            long bufferBytes = usedHeap() - before;
+            keepAlive(dataStreamBuffer);
+            dataStreamBuffer = null;
+
+            logger.info("keys={} elements={}: DataStreamBuffer {} bytes/element ({} MB), former LinkedList representation {} bytes/element ({} MB)", keyCount, elements, String.format("%.1f", (double) bufferBytes / elements), bufferBytes >> 20, String.format("%.1f", (double) legacyBytes / elements), legacyBytes >> 20);
+        }
+    }
+
+    /**
+     * Fills a DataStreamBuffer with bufferSize data stream elements per key.
+     *
+     * @param keyCount      Number of keys
+     * @param bufferSize    The number of data stream elements that are buffered for each key
+     * @param sharedContent Content of all data stream elements
+     * @return DataStreamBuffer
+     */
+    private static DataStreamBuffer fillDataStreamBuffer(int keyCount, int bufferSize, byte[] sharedContent) {
+        DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(bufferSize);
+        for (int i = 0; i < bufferSize; ++i) {
+            for (int k = 0; k < keyCount; ++k) {
+                dataStreamBuffer.add(createDataStreamElement(k, i, sharedContent));
+            }
+        }
+        return dataStreamBuffer;
+    }
+
+    /**
+     * Fills the former buffer representation with bufferSize data stream elements per key.
+     *
+     * @param keyCount      Number of keys
+     * @param bufferSize    The number of data stream elements that are buffered for each key
+     * @param sharedContent Content of all data stream elements
+     * @return Former buffer representation
+     */
+    private static Map<String, LinkedList<DataStreamElement>> fillLegacyBuffer(int keyCount, int bufferSize, byte[] sharedContent) {
+        Map<String, LinkedList<DataStreamElement>> mapForTopic = new HashMap<>();
+        LinkedList<DataStreamElement> listForAll = new LinkedList<>();
+        for (int i = 0; i < bufferSize; ++i) {
+            for (int k = 0; k < keyCount; ++k) {
+                DataStreamElement dataStreamElement = createDataStreamElement(k, i, sharedContent);
+                LinkedList<DataStreamElement> listForKey = mapForTopic.computeIfAbsent(dataStreamElement.key, key -> new LinkedList<>());
+                if (listForKey.size() == bufferSize) {
+                    listForKey.removeLast();
+                }
+                listForKey.addFirst(dataStreamElement);
+                if (listForAll.size() == bufferSize) {
+                    listForAll.removeLast();
+                }
+                listForAll.addFirst(dataStreamElement);
+            }
+        }
+        mapForTopic.put("_ALL", listForAll);
+        return mapForTopic;
+    }
+
+    /**
+     * Creates a data stream element with new topic and key strings (like the Kafka deserializer does for every record).
+     *
+     * @param keyIndex      Index of the key
+     * @param offset        Offset
+     * @param sharedContent Content
+     * @return Data stream element
+     */
+    private static DataStreamElement createDataStreamElement(int keyIndex, long offset, byte[] sharedContent) {
+        String topic = new String(SyntheticRecordSource.getTopicName(0).toCharArray());
+        String key = SyntheticRecordSource.getKeyName(keyIndex);
+        return new DataStreamElement(sharedContent, key, topic, 0, offset, offset);
+    }
+
+    /**
+     * Returns the used heap after garbage collection.
+     *
+     * @return Used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; ++i) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                logger.trace("InterruptedException while waiting for the garbage collection.", e);
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Prevents that the JIT considers the object unreachable before the heap has been measured.
+     *
+     * @param object Object
+     */
+    private static void keepAlive(Object object) {
+        if (object.hashCode() == System.nanoTime()) {
+            logger.trace("Unlikely hash code.");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+
+/**
+ * Client thread which sends a weighted mix of /consume, /listKeys and /listTopics requests to the KafkaRestProxy until the deadline is reached.
+ */
+public class HttpLoadClient implements Runnable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(HttpLoadClient.class);
+
+    /**
+     * Base URL of the KafkaRestProxy (e.g., http://localhost:5555)
+     */
+    private final String baseUrl;
+
+    /**
+     * Number of topics
+     */
+    private final int numberOfTopics;
+
+    /**
+     * Number of distinct keys per topic
+     */
+    private final int keyCardinality;
+
+    /**
+     * Weight of /consume requests
+     */
+    private final int consumeWeight;
+
+    /**
+     * Weight of /listKeys requests
+     */
+    private final int listKeysWeight;
+
+    /**
+     * Weight of /listTopics requests
+     */
+    private final int listTopicsWeight;
+
+    /**
+     * Limit (?l=...) of the /consume requests
+     */
+    private final int consumeLimit;
+
+    /**
+     * Probability that a /consume request targets a single key instead of the dedicated all-key
+     */
+    private final double consumeKeyProbability;
+
+    /**
+     * Deadline (System.nanoTime())
+     */
+    private final long deadline;
+
+    /**
+     * Latencies of the /consume requests (in µs)
+     */
+    public final LatencyRecorder consumeLatencies;
+
+    /**
+     * Latencies of the /listKeys requests (in µs)
+     */
+    public final LatencyRecorder listKeysLatencies;
+
+    /**
+     * Latencies of the /listTopics requests (in µs)
+     */
+    public final LatencyRecorder listTopicsLatencies;
+
+    /**
+     * Random number generator
+     */
+    private final Random random;
+
+    /**
+     * HttpLoadClient constructor.
+     *
+     * @param baseUrl               Base URL of the KafkaRestProxy
+     * @param numberOfTopics        Number of topics
+     * @param keyCardinality        Number of distinct keys per topic
+     * @param consumeWeight         Weight of /consume requests
+     * @param listKeysWeight        Weight of /listKeys requests
+     * @param listTopicsWeight      Weight of /listTopics requests
+     * @param consumeLimit          Limit (?l=...) of the /consume requests
+     * @param consumeKeyProbability Probability that a /consume request targets a single key
+     * @param deadline              Deadline (System.nanoTime())
+     * @param seed                  Seed for the random number generator
+     */
+    public HttpLoadClient(String baseUrl, int numberOfTopics, int keyCardinality, int consumeWeight, int listKeysWeight, int listTopicsWeight, int consumeLimit, double consumeKeyProbability, long deadline, long seed) {
+        this.baseUrl = baseUrl;
+        this.numberOfTopics = numberOfTopics;
+        this.keyCardinality = keyCardinality;
+        this.consumeWeight = consumeWeight;
+        this.listKeysWeight = listKeysWeight;
+        this.listTopicsWeight = listTopicsWeight;
+        this.consumeLimit = consumeLimit;
+        this.consumeKeyProbability = consumeKeyProbability;
+        this.deadline = deadline;
+        this.consumeLatencies = new LatencyRecorder();
+        this.listKeysLatencies = new LatencyRecorder();
+        this.listTopicsLatencies = new LatencyRecorder();
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sends requests until the deadline is reached.
+     */
+    @Override
+    public void run() {
+        int totalWeight = this.consumeWeight + this.listKeysWeight + this.listTopicsWeight;
+        while (System.nanoTime() < this.deadline) {
+            int choice = this.random.nextInt(totalWeight);
+            String topic = SyntheticRecordSource.getTopicName(this.random.nextInt(this.numberOfTopics));
+            if (choice < this.consumeWeight) {
+                StringBuilder path = new StringBuilder("/consume?t=").append(topic).append("&l=").append(this.consumeLimit);
+                if (this.random.nextDouble() < this.consumeKeyProbability) {
+                    path.append("&k=").append(SyntheticRecordSource.getKeyName(this.random.nextInt(this.keyCardinality)));
+                }
+                timedGet(path.toString(), this.consumeLatencies);
+            } else if (choice < this.consumeWeight + this.listKeysWeight) {
+                timedGet("/listKeys?t=" + topic, this.listKeysLatencies);
+            } else {
+                timedGet("/listTopics", this.listTopicsLatencies);
+            }
+        }
+    }
+
+    /**
+     * Sends a GET request and records its latency.
+     *
+     * @param path     Path (including the query string)
+     * @param recorder LatencyRecorder
+     */
+    private void timedGet(String path, LatencyRecorder recorder) {
+        long start = System.nanoTime();
+        try {
+            get(this.baseUrl + path);
+            recorder.record((System.nanoTime() - start) / 1000);
+        } catch (IOException e) {
+            logger.debug("Request {} failed.", path, e);
+            recorder.recordError();
+        }
+    }
+
+    /**
+     * Sends a GET request and reads the whole response.
+     *
+     * @param url URL
+     * @return Response body
+     * @throws IOException Thrown if the request fails
+     */
+    public static byte[] get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int status = connection.getResponseCode();
+        if (status >= 500) {
+            throw new IOException("HTTP status " + status + " for " + url);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                body.write(chunk, 0, read);
+            }
+            in.close(); // keeps the connection alive for the next request
+        }
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Records latency samples and calculates percentiles (not thread-safe, every client thread uses its own recorders which are merged at the end).
+ */
+public class LatencyRecorder {
+
+    /**
+     * Latency samples
+     */
+    private long[] samples;
+
+    /**
+     * Number of recorded samples
+     */
+    private int size;
+
+    /**
+     * Number of failed requests
+     */
+    private long errors;
+
+    /**
+     * LatencyRecorder constructor.
+     */
+    public LatencyRecorder() {
+        this.samples = new long[1024];
+        this.size = 0;
+        this.errors = 0;
+    }
+
+    /**
+     * Records a latency sample.
+     *
+     * @param latency Latency
+     */
+    public void record(long latency) {
+        if (this.size == this.samples.length) {
+            this.samples = Arrays.copyOf(this.samples, this.samples.length * 2);
+        }
+        this.samples[this.size++] = latency;
+    }
+
+    /**
+     * Records a failed request.
+     */
+    public void recordError() {
+        this.errors++;
+    }
+
+    /**
+     * Adds all samples of another recorder to this recorder.
+     *
+     * @param other Other recorder
+     */
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.size; ++i) {
+            record(other.samples[i]);
+        }
+        this.errors += other.errors;
+    }
+
+    /**
+     * Returns the number of recorded samples.
+     *
+     * @return Number of recorded samples
+     */
+    public int getCount() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     *
+     * @return Number of failed requests
+     */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Returns a percentile of the recorded samples.
+     *
+     * @param percentile Percentile (e.g., 99.9)
+     * @return Percentile or 0 if there are no samples
+     */
+    public long getPercentile(double percentile) {
+        if (this.size == 0) {
+            return 0;
+        }
+        long[] sortedSamples = Arrays.copyOf(this.samples, this.size);
+        Arrays.sort(sortedSamples);
+        int index = (int) Math.ceil(percentile / 100.0 * this.size) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, this.size - 1))];
+    }
+
+    /**
+     * Returns the maximum of the recorded samples.
+     *
+     * @return Maximum or 0 if there are no samples
+     */
+    public long getMax() {
+        return getPercentile(100.0);
+    }
+}
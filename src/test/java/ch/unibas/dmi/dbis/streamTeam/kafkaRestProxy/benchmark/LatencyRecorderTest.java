@@ -0,0 +1,75 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the LatencyRecorder of the load test.
+ */
+public class LatencyRecorderTest {
+
+    /**
+     * The percentiles are nearest-rank percentiles of all samples.
+     */
+    @Test
+    public void computesNearestRankPercentiles() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder();
+        for (int i = 2000; i >= 1; --i) {
+            latencyRecorder.record(i);
+        }
+        assertEquals(2000, latencyRecorder.getCount());
+        assertEquals(1000, latencyRecorder.getPercentile(50.0));
+        assertEquals(1980, latencyRecorder.getPercentile(99.0));
+        assertEquals(1, latencyRecorder.getPercentile(0.0));
+        assertEquals(2000, latencyRecorder.getMax());
+    }
+
+    /**
+     * An empty recorder reports 0.
+     */
+    @Test
+    public void reportsZeroWithoutSamples() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder();
+        assertEquals(0, latencyRecorder.getPercentile(99.0));
+        assertEquals(0, latencyRecorder.getMax());
+    }
+
+    /**
+     * Merging adds the samples and the errors of the other recorder.
+     */
+    @Test
+    public void mergesSamplesAndErrors() {
+        LatencyRecorder first = new LatencyRecorder();
+        first.record(5);
+        first.recordError();
+        LatencyRecorder second = new LatencyRecorder();
+        second.record(7);
+        second.record(3);
+        second.recordError();
+        second.recordError();
+
+        first.merge(second);
+        assertEquals(3, first.getCount());
+        assertEquals(3, first.getErrors());
+        assertEquals(3, first.getPercentile(1.0));
+        assertEquals(7, first.getMax());
+    }
+}
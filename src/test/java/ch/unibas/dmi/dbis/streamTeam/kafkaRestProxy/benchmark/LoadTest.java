@@ -0,0 +1,280 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ErrorCode;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Self-contained load test which runs the KafkaRestProxy without a Kafka cluster.
+ * The StreamConsumer is fed by a LoadTestConsumer (MockConsumer) which receives the records of a RecordSource with a configurable rate,
+ * while multiple HttpLoadClients send a configurable mix of /consume, /listKeys and /listTopics requests.
+ * At the end, the throughput, the latency percentiles, the ingest lag and heap/GC statistics are reported.
+ */
+public class LoadTest {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    /**
+     * Runs the load test.
+     *
+     * @param args Parameters
+     */
+    public static void main(String[] args) {
+        ShutdownHelper.initialize();
+
+        Properties properties = new Properties();
+        loadProperties(properties, "/kafkaRestProxy.properties");
+        loadProperties(properties, "/loadTest.properties"); // overrides the proxy properties where necessary
+
+        int port = PropertyReadHelper.readIntOrDie(properties, "jetty.port");
+        int numberOfTopics = PropertyReadHelper.readIntOrDie(properties, "loadTest.topics");
+        int keyCardinality = PropertyReadHelper.readIntOrDie(properties, "loadTest.keyCardinality");
+        long recordsPerSecond = PropertyReadHelper.readLongOrDie(properties, "loadTest.recordsPerSecond");
+        String recordSourceClass = PropertyReadHelper.readStringOrDie(properties, "loadTest.recordSource");
+        int clientThreads = PropertyReadHelper.readIntOrDie(properties, "loadTest.clientThreads");
+        long warmupMillis = PropertyReadHelper.readLongOrDie(properties, "loadTest.warmupMillis");
+        long durationMillis = PropertyReadHelper.readLongOrDie(properties, "loadTest.durationMillis");
+        int consumeWeight = PropertyReadHelper.readIntOrDie(properties, "loadTest.mix.consume");
+        int listKeysWeight = PropertyReadHelper.readIntOrDie(properties, "loadTest.mix.listKeys");
+        int listTopicsWeight = PropertyReadHelper.readIntOrDie(properties, "loadTest.mix.listTopics");
+        int consumeLimit = PropertyReadHelper.readIntOrDie(properties, "loadTest.consumeLimit");
+        double consumeKeyProbability = PropertyReadHelper.readDoubleOrDie(properties, "loadTest.consumeKeyProbability");
+        long lagProbeInterval = PropertyReadHelper.readLongOrDie(properties, "loadTest.lagProbeInterval");
+
+        RecordSource recordSource = null;
+        try {
+            recordSource = (RecordSource) Class.forName(recordSourceClass).getConstructor(Properties.class).newInstance(properties);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.error("Unable to instantiate record source {}", recordSourceClass, e);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+
+        // Start the KafkaRestProxy (the constructor returns after all components have been started)
+        LoadTestConsumer consumer = new LoadTestConsumer();
+        new KafkaRestProxy(properties, consumer);
+
+        RecordGenerator recordGenerator = new RecordGenerator(consumer, recordSource, recordsPerSecond);
+        Thread recordGeneratorThread = new Thread(recordGenerator, "RecordGenerator");
+        recordGeneratorThread.start();
+
+        String baseUrl = "http://localhost:" + port;
+        waitForServer(baseUrl);
+
+        logger.info("Warm up for {} ms.", warmupMillis);
+        runClients(baseUrl, clientThreads, numberOfTopics, keyCardinality, consumeWeight, listKeysWeight, listTopicsWeight, consumeLimit, consumeKeyProbability, warmupMillis, lagProbeInterval);
+
+        long gcCountBefore = 0;
+        long gcTimeBefore = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCountBefore += gcBean.getCollectionCount();
+            gcTimeBefore += gcBean.getCollectionTime();
+        }
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            memoryPool.resetPeakUsage();
+        }
+        long generatedRecordsBefore = recordGenerator.getGeneratedRecords();
+
+        logger.info("Run load test with {} client threads for {} ms.", clientThreads, durationMillis);
+        long start = System.nanoTime();
+        List<LatencyRecorder> results = runClients(baseUrl, clientThreads, numberOfTopics, keyCardinality, consumeWeight, listKeysWeight, listTopicsWeight, consumeLimit, consumeKeyProbability, durationMillis, lagProbeInterval);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long gcCount = -gcCountBefore;
+        long gcTime = -gcTimeBefore;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gcBean.getCollectionCount();
+            gcTime += gcBean.getCollectionTime();
+        }
+        long peakHeap = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                peakHeap += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long generatedRecords = recordGenerator.getGeneratedRecords() - generatedRecordsBefore;
+
+        logger.info("===== Load test results ({} s) =====", String.format("%.1f", seconds));
+        logger.info("Ingest: {} records/s (target {} records/s)", String.format("%.0f", generatedRecords / seconds), recordsPerSecond);
+        report("/consume", results.get(0), seconds);
+        report("/listKeys", results.get(1), seconds);
+        report("/listTopics", results.get(2), seconds);
+        LatencyRecorder lag = results.get(3);
+        logger.info("Ingest lag: samples={} p50={}ms p99={}ms max={}ms", lag.getCount(), lag.getPercentile(50), lag.getPercentile(99), lag.getMax());
+        logger.info("Heap: used={}MB committed={}MB peak={}MB max={}MB", heapUsage.getUsed() >> 20, heapUsage.getCommitted() >> 20, peakHeap >> 20, heapUsage.getMax() >> 20);
+        logger.info("GC: collections={} time={}ms", gcCount, gcTime);
+
+        recordGenerator.close();
+        System.exit(0); // the shutdown hook stops the StreamConsumer and the Jetty server
+    }
+
+    /**
+     * Runs the client threads and the lag probe for the given duration.
+     *
+     * @param baseUrl               Base URL of the KafkaRestProxy
+     * @param clientThreads         Number of client threads
+     * @param numberOfTopics        Number of topics
+     * @param keyCardinality        Number of distinct keys per topic
+     * @param consumeWeight         Weight of /consume requests
+     * @param listKeysWeight        Weight of /listKeys requests
+     * @param listTopicsWeight      Weight of /listTopics requests
+     * @param consumeLimit          Limit (?l=...) of the /consume requests
+     * @param consumeKeyProbability Probability that a /consume request targets a single key
+     * @param durationMillis        Duration in ms
+     * @param lagProbeInterval      Interval in which the ingest lag is probed (in ms)
+     * @return Merged latencies of the /consume, /listKeys and /listTopics requests (in µs) and the ingest lag samples (in ms)
+     */
+    private static List<LatencyRecorder> runClients(String baseUrl, int clientThreads, int numberOfTopics, int keyCardinality, int consumeWeight, int listKeysWeight, int listTopicsWeight, int consumeLimit, double consumeKeyProbability, long durationMillis, long lagProbeInterval) {
+        long deadline = System.nanoTime() + durationMillis * 1000000;
+
+        List<HttpLoadClient> clients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clientThreads; ++i) {
+            HttpLoadClient client = new HttpLoadClient(baseUrl, numberOfTopics, keyCardinality, consumeWeight, listKeysWeight, listTopicsWeight, consumeLimit, consumeKeyProbability, deadline, i);
+            clients.add(client);
+            Thread thread = new Thread(client, "HttpLoadClient-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        LatencyRecorder lag = new LatencyRecorder();
+        String lagProbeUrl = baseUrl + "/consume?t=" + SyntheticRecordSource.getTopicName(0) + "&l=1";
+        while (System.nanoTime() < deadline) {
+            try {
+                long generationTime = extractGenerationTime(HttpLoadClient.get(lagProbeUrl));
+                if (generationTime > 0) {
+                    lag.record(System.currentTimeMillis() - generationTime);
+                }
+                Thread.sleep(lagProbeInterval);
+            } catch (IOException e) {
+                lag.recordError();
+            } catch (InterruptedException e) {
+                logger.trace("InterruptedException in lag probe.", e);
+            }
+        }
+
+        LatencyRecorder consume = new LatencyRecorder();
+        LatencyRecorder listKeys = new LatencyRecorder();
+        LatencyRecorder listTopics = new LatencyRecorder();
+        for (int i = 0; i < clientThreads; ++i) {
+            try {
+                threads.get(i).join();
+            } catch (InterruptedException e) {
+                logger.trace("InterruptedException while joining client threads.", e);
+            }
+            consume.merge(clients.get(i).consumeLatencies);
+            listKeys.merge(clients.get(i).listKeysLatencies);
+            listTopics.merge(clients.get(i).listTopicsLatencies);
+        }
+
+        List<LatencyRecorder> results = new ArrayList<>();
+        results.add(consume);
+        results.add(listKeys);
+        results.add(listTopics);
+        results.add(lag);
+        return results;
+    }
+
+    /**
+     * Extracts the generation time from the first data stream element of a /consume response.
+     *
+     * @param response Response of a /consume request
+     * @return Generation time (in ms) or 0 if the response contains no data stream element
+     */
+    private static long extractGenerationTime(byte[] response) {
+        String content = new String(response, StandardCharsets.UTF_8);
+        int valueStart = content.indexOf("\"v\":\"");
+        if (valueStart < 0) {
+            return 0;
+        }
+        valueStart += 5;
+        int valueEnd = content.indexOf('"', valueStart);
+        byte[] value = Base64.decodeBase64(content.substring(valueStart, valueEnd));
+        return value.length >= Long.BYTES ? ByteBuffer.wrap(value).getLong() : 0;
+    }
+
+    /**
+     * Waits until the Jetty server answers requests.
+     *
+     * @param baseUrl Base URL of the KafkaRestProxy
+     */
+    static void waitForServer(String baseUrl) {
+        while (true) {
+            try {
+                HttpLoadClient.get(baseUrl + "/listTopics");
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e2) {
+                    logger.trace("InterruptedException while waiting for the server.", e2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs the throughput and the latency percentiles of an endpoint.
+     *
+     * @param endpoint  Endpoint
+     * @param latencies Latencies (in µs)
+     * @param seconds   Duration of the load test in seconds
+     */
+    private static void report(String endpoint, LatencyRecorder latencies, double seconds) {
+        logger.info("{}: {} req/s, errors={}, p50={}us p99={}us p999={}us max={}us", endpoint, String.format("%.0f", latencies.getCount() / seconds), latencies.getErrors(), latencies.getPercentile(50), latencies.getPercentile(99), latencies.getPercentile(99.9), latencies.getMax());
+    }
+
+    /**
+     * Loads a properties file from the classpath into the properties object.
+     *
+     * @param properties         Properties object
+     * @param propertiesFilePath Path of the properties file
+     */
+    static void loadProperties(Properties properties, String propertiesFilePath) {
+        try {
+            InputStream in = LoadTest.class.getResourceAsStream(propertiesFilePath);
+            properties.load(in);
+        } catch (IOException e) {
+            logger.error("Unable to load {}", propertiesFilePath, e);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.consumer.internals.NoOpConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * MockConsumer which blocks in poll() until records are available or the timeout is over (like the KafkaConsumer does).
+ * Without blocking the StreamConsumer would spin on the consumer monitor and compete with the RecordGenerator.
+ * Unlike the MockConsumer, it calls the rebalance listener of the subscription on a rebalance (like the KafkaConsumer does).
+ */
+public class LoadTestConsumer extends MockConsumer<String, byte[]> {
+
+    /**
+     * Rebalance listener of the current subscription
+     */
+    private ConsumerRebalanceListener rebalanceListener;
+
+    /**
+     * LoadTestConsumer constructor.
+     */
+    public LoadTestConsumer() {
+        super(OffsetResetStrategy.EARLIEST);
+        this.rebalanceListener = new NoOpConsumerRebalanceListener();
+    }
+
+    /**
+     * Subscribes the topics and remembers the rebalance listener.
+     *
+     * @param topics   Topics
+     * @param listener Rebalance listener
+     */
+    @Override
+    public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+        super.subscribe(topics, listener);
+        this.rebalanceListener = listener;
+    }
+
+    /**
+     * Assigns the partitions and calls the rebalance listener with the revoked and the assigned partitions.
+     *
+     * @param newAssignment Assigned partitions
+     */
+    @Override
+    public synchronized void rebalance(Collection<TopicPartition> newAssignment) {
+        this.rebalanceListener.onPartitionsRevoked(new ArrayList<>(assignment()));
+        super.rebalance(newAssignment);
+        this.rebalanceListener.onPartitionsAssigned(newAssignment);
+    }
+
+    /**
+     * Polls the records and waits for at most the timeout if there are none.
+     *
+     * @param timeout Timeout
+     * @return Records
+     */
+    @Override
+    public synchronized ConsumerRecords<String, byte[]> poll(Duration timeout) {
+        ConsumerRecords<String, byte[]> records = super.poll(Duration.ZERO);
+        long timeoutMillis = timeout.toMillis();
+        if (records.isEmpty() && timeoutMillis > 0) {
+            try {
+                wait(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            records = super.poll(Duration.ZERO);
+        }
+        return records;
+    }
+
+    /**
+     * Adds a record and wakes up a blocked poll() call.
+     *
+     * @param record Record
+     */
+    @Override
+    public synchronized void addRecord(ConsumerRecord<String, byte[]> record) {
+        super.addRecord(record);
+        notifyAll();
+    }
+
+    /**
+     * Wakes up a blocked poll() call such that it throws a WakeupException.
+     */
+    @Override
+    public synchronized void wakeup() {
+        super.wakeup();
+        notifyAll();
+    }
+}
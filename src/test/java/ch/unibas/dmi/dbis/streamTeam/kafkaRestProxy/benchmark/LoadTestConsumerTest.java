@@ -0,0 +1,84 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the LoadTestConsumer of the load test.
+ */
+public class LoadTestConsumerTest {
+
+    /**
+     * Creates a consumer which is assigned to partition 0 of topic0.
+     *
+     * @return Consumer
+     */
+    private static LoadTestConsumer createConsumer() {
+        LoadTestConsumer consumer = new LoadTestConsumer();
+        TopicPartition topicPartition = new TopicPartition("topic0", 0);
+        consumer.assign(Collections.singletonList(topicPartition));
+        consumer.updateBeginningOffsets(Collections.singletonMap(topicPartition, 0L));
+        return consumer;
+    }
+
+    /**
+     * Without records poll() blocks for the timeout instead of returning immediately.
+     */
+    @Test
+    public void pollWaitsForTimeout() {
+        LoadTestConsumer consumer = createConsumer();
+        long start = System.nanoTime();
+        ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(100));
+        assertTrue(records.isEmpty());
+        assertTrue(System.nanoTime() - start >= 90000000L);
+    }
+
+    /**
+     * Adding a record wakes up a blocked poll() call.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    @Test
+    public void addRecordWakesUpPoll() throws InterruptedException {
+        LoadTestConsumer consumer = createConsumer();
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumer.addRecord(new ConsumerRecord<>("topic0", 0, 0L, "key0", new byte[]{1}));
+        });
+        producer.start();
+        long start = System.nanoTime();
+        ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofSeconds(10));
+        producer.join();
+        assertEquals(1, records.count());
+        assertTrue(System.nanoTime() - start < 5000000000L);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal persistent HTTP/1.1 client connection which sends GET requests over a TCP or a Unix domain socket.
+ * Both transports share the same request and response handling such that a latency comparison only measures the transport.
+ */
+public class RawHttpConnection implements Closeable {
+
+    /**
+     * Socket (TCP or Unix domain socket)
+     */
+    private final Socket socket;
+
+    /**
+     * Buffered input stream of the socket
+     */
+    private final InputStream in;
+
+    /**
+     * Output stream of the socket
+     */
+    private final OutputStream out;
+
+    /**
+     * Value of the Host header
+     */
+    private final String host;
+
+    /**
+     * RawHttpConnection constructor.
+     *
+     * @param socket Connected socket
+     * @param host   Value of the Host header
+     * @throws IOException Thrown if the streams of the socket cannot be opened
+     */
+    private RawHttpConnection(Socket socket, String host) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), 65536);
+        this.out = socket.getOutputStream();
+        this.host = host;
+    }
+
+    /**
+     * Opens a connection over TCP.
+     *
+     * @param hostname Hostname
+     * @param port     Port
+     * @return RawHttpConnection
+     * @throws IOException Thrown if the connection cannot be established
+     */
+    public static RawHttpConnection openTcp(String hostname, int port) throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(hostname, port));
+        return new RawHttpConnection(socket, hostname + ":" + port);
+    }
+
+    /**
+     * Opens a connection over a Unix domain socket.
+     *
+     * @param path Path of the Unix domain socket
+     * @return RawHttpConnection
+     * @throws IOException Thrown if the connection cannot be established
+     */
+    public static RawHttpConnection openUnixSocket(String path) throws IOException {
+        return new RawHttpConnection(UnixSocketChannel.open(new UnixSocketAddress(path)).socket(), "localhost");
+    }
+
+    /**
+     * Sends a GET request and reads the whole response body.
+     *
+     * @param path Path (including the query string)
+     * @return Response body
+     * @throws IOException Thrown if the request fails, the connection is closed or the status is 5xx
+     */
+    public byte[] get(String path) throws IOException {
+        this.out.write(("GET " + path + " HTTP/1.1\r\nHost: " + this.host + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        this.out.flush();
+
+        String statusLine = readLine();
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int contentLength = -1;
+        boolean chunked = false;
+        String headerLine;
+        while (!(headerLine = readLine()).isEmpty()) {
+            int colon = headerLine.indexOf(':');
+            String name = headerLine.substring(0, colon).trim();
+            String value = headerLine.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding") && value.equalsIgnoreCase("chunked")) {
+                chunked = true;
+            }
+        }
+
+        byte[] body;
+        if (chunked) {
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+            int chunkSize;
+            while ((chunkSize = Integer.parseInt(readLine().split(";")[0].trim(), 16)) > 0) {
+                chunks.write(readFully(chunkSize));
+                readLine();
+            }
+            while (!readLine().isEmpty()) {
+                // skip the trailers
+            }
+            body = chunks.toByteArray();
+        } else {
+            body = readFully(Math.max(contentLength, 0));
+        }
+
+        if (status >= 500) {
+            throw new IOException("HTTP status " + status + " for " + path);
+        }
+        return body;
+    }
+
+    /**
+     * Reads a CRLF-terminated line.
+     *
+     * @return Line without CRLF
+     * @throws IOException Thrown if the connection is closed
+     */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = this.in.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("Connection closed.");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Reads the given number of bytes.
+     *
+     * @param length Number of bytes
+     * @return Bytes
+     * @throws IOException Thrown if the connection is closed
+     */
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = this.in.read(bytes, offset, length - offset);
+            if (read == -1) {
+                throw new IOException("Connection closed.");
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException Thrown if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+}
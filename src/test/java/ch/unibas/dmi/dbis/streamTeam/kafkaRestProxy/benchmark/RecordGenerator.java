@@ -0,0 +1,188 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+
+/**
+ * Feeds the records of a RecordSource into the LoadTestConsumer with a fixed rate.
+ */
+public class RecordGenerator implements Closeable, Runnable {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RecordGenerator.class);
+
+    /**
+     * LoadTestConsumer
+     */
+    private final LoadTestConsumer consumer;
+
+    /**
+     * Record source
+     */
+    private final RecordSource recordSource;
+
+    /**
+     * Number of records that are generated per second
+     */
+    private final long recordsPerSecond;
+
+    /**
+     * Number of records that have been generated so far
+     */
+    private volatile long generatedRecords;
+
+    /**
+     * Flag that indicates if the RecordGenerator should continue generating records or not
+     */
+    private volatile boolean runFlag;
+
+    /**
+     * RecordGenerator constructor.
+     *
+     * @param consumer         LoadTestConsumer
+     * @param recordSource     Record source
+     * @param recordsPerSecond Number of records that are generated per second
+     */
+    public RecordGenerator(LoadTestConsumer consumer, RecordSource recordSource, long recordsPerSecond) {
+        this.consumer = consumer;
+        this.recordSource = recordSource;
+        this.recordsPerSecond = recordsPerSecond;
+        this.generatedRecords = 0;
+        this.runFlag = true;
+
+        // Announce the topics such that the SubscriptionUpdater of the StreamConsumer subscribes them
+        Map<String, List<PartitionInfo>> partitionsPerTopic = new HashMap<>();
+        for (TopicPartition topicPartition : recordSource.getTopicPartitions()) {
+            partitionsPerTopic.computeIfAbsent(topicPartition.topic(), topic -> new ArrayList<>()).add(new PartitionInfo(topicPartition.topic(), topicPartition.partition(), Node.noNode(), new Node[0], new Node[0]));
+        }
+        for (Map.Entry<String, List<PartitionInfo>> entry : partitionsPerTopic.entrySet()) {
+            consumer.updatePartitions(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of records that have been generated so far.
+     *
+     * @return Number of records that have been generated so far
+     */
+    public long getGeneratedRecords() {
+        return this.generatedRecords;
+    }
+
+    /**
+     * Generates records until the RecordGenerator is closed. The partitions follow the subscription of the StreamConsumer (re-checked every 100 ms),
+     * such that a node of a sharded proxy cluster only gets the records of the topics it owns. Records of topics which are not subscribed are skipped.
+     */
+    @Override
+    public void run() {
+        Collection<TopicPartition> topicPartitions = this.recordSource.getTopicPartitions();
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        for (TopicPartition topicPartition : topicPartitions) {
+            beginningOffsets.put(topicPartition, 0L);
+        }
+        synchronized (this.consumer) {
+            this.consumer.updateBeginningOffsets(beginningOffsets);
+        }
+
+        Set<String> assignedTopics = new HashSet<>();
+        long lastAssignmentCheck = 0;
+        long startTime = System.nanoTime();
+        logger.info("Start generating {} records per second.", this.recordsPerSecond);
+        while (this.runFlag) {
+            long now = System.nanoTime();
+            if (now - lastAssignmentCheck >= 100000000L) {
+                lastAssignmentCheck = now;
+                assignedTopics = updateAssignment(topicPartitions, assignedTopics);
+            }
+
+            long expectedRecords = (now - startTime) / 1000 * this.recordsPerSecond / 1000000;
+            if (this.generatedRecords < expectedRecords) {
+                synchronized (this.consumer) {
+                    while (this.generatedRecords < expectedRecords) {
+                        ConsumerRecord<String, byte[]> record = this.recordSource.nextRecord();
+                        if (assignedTopics.contains(record.topic())) {
+                            this.consumer.addRecord(record);
+                        }
+                        this.generatedRecords++;
+                    }
+                }
+            } else {
+                sleep(1);
+            }
+        }
+        logger.info("Stopped RecordGenerator after {} records.", this.generatedRecords);
+    }
+
+    /**
+     * Assigns the partitions of the subscribed topics if the subscription has changed.
+     *
+     * @param topicPartitions All topic partitions of the record source
+     * @param assignedTopics  Topics whose partitions are currently assigned
+     * @return Topics whose partitions are assigned afterwards
+     */
+    private Set<String> updateAssignment(Collection<TopicPartition> topicPartitions, Set<String> assignedTopics) {
+        synchronized (this.consumer) { // the StreamConsumer subscribes while holding the consumer monitor
+            Set<String> subscription = this.consumer.subscription();
+            if (subscription.equals(assignedTopics)) {
+                return assignedTopics;
+            }
+            List<TopicPartition> assignment = new ArrayList<>();
+            for (TopicPartition topicPartition : topicPartitions) {
+                if (subscription.contains(topicPartition.topic())) {
+                    assignment.add(topicPartition);
+                }
+            }
+            this.consumer.rebalance(assignment);
+            logger.info("Assigned {} partitions of {} topics.", assignment.size(), subscription.size());
+            return new HashSet<>(subscription);
+        }
+    }
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis Time in ms
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            logger.trace("InterruptedException in RecordGenerator.", e);
+        }
+    }
+
+    /**
+     * Stops the RecordGenerator.
+     */
+    @Override
+    public void close() {
+        this.runFlag = false;
+    }
+}
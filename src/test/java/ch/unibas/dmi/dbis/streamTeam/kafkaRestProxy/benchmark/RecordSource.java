@@ -0,0 +1,45 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+
+/**
+ * Source of the records which the RecordGenerator feeds into the LoadTestConsumer.
+ * Implementations have to provide a public constructor with a single Properties parameter.
+ */
+public interface RecordSource {
+
+    /**
+     * Returns all topic partitions for which the record source generates records.
+     *
+     * @return Topic partitions
+     */
+    Collection<TopicPartition> getTopicPartitions();
+
+    /**
+     * Generates the next record. The first eight bytes of the value have to contain the generation time (in ms) as big-endian long since they are used to measure the ingest lag.
+     *
+     * @return Record
+     */
+    ConsumerRecord<String, byte[]> nextRecord();
+}
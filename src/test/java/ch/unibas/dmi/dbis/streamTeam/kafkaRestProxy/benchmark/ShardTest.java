@@ -0,0 +1,271 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Starts a sharded proxy cluster of shardTest.nodes ShardTestNodes (one JVM per node on localhost) and verifies the routing and the rebalancing:
+ * every topic has to be served via every node, one node is killed (its topics have to be taken over by the remaining nodes) and restarted (it has to rejoin the ring).
+ * Logs the distribution of the topics over the nodes, the failure detection time, the takeover time and the rejoin time. The logs of the nodes are written to java.io.tmpdir.
+ */
+public class ShardTest {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ShardTest.class);
+
+    /**
+     * Returns the base URL of a node.
+     *
+     * @param basePort Port of the first node
+     * @param index    Index of the node
+     * @return Base URL
+     */
+    static String getNodeUrl(int basePort, int index) {
+        return "http://localhost:" + (basePort + index);
+    }
+
+    /**
+     * Runs the shard test.
+     *
+     * @param args Parameters
+     */
+    public static void main(String[] args) {
+        Properties properties = new Properties();
+        LoadTest.loadProperties(properties, "/kafkaRestProxy.properties");
+        LoadTest.loadProperties(properties, "/loadTest.properties");
+        int numberOfNodes = PropertyReadHelper.readIntOrDie(properties, "shardTest.nodes");
+        int basePort = PropertyReadHelper.readIntOrDie(properties, "shardTest.basePort");
+        int numberOfTopics = PropertyReadHelper.readIntOrDie(properties, "shardTest.topics");
+        long timeoutMillis = PropertyReadHelper.readLongOrDie(properties, "shardTest.timeoutMillis");
+
+        List<String> nodeUrls = new ArrayList<>();
+        for (int i = 0; i < numberOfNodes; ++i) {
+            nodeUrls.add(getNodeUrl(basePort, i));
+        }
+        Process[] processes = new Process[numberOfNodes];
+        boolean passed;
+        try {
+            passed = runSteps(processes, nodeUrls, numberOfTopics, timeoutMillis);
+        } catch (IOException | InterruptedException e) {
+            logger.error("Shard test failed.", e);
+            passed = false;
+        } finally {
+            for (Process process : processes) {
+                if (process != null) {
+                    process.destroy();
+                }
+            }
+        }
+        logger.info("===== Shard test {} =====", passed ? "passed" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Starts the nodes, kills the last node and restarts it. Stops at the first failed step.
+     *
+     * @param processes      Processes of the nodes (filled with the started processes)
+     * @param nodeUrls       Base URLs of the nodes
+     * @param numberOfTopics Number of topics
+     * @param timeoutMillis  Time in ms after which a step fails
+     * @return True if all steps have passed
+     * @throws IOException          Thrown if unable to start a node
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    private static boolean runSteps(Process[] processes, List<String> nodeUrls, int numberOfTopics, long timeoutMillis) throws IOException, InterruptedException {
+        int numberOfNodes = nodeUrls.size();
+        for (int i = 0; i < numberOfNodes; ++i) {
+            processes[i] = startNode(i);
+        }
+        long start = System.currentTimeMillis();
+        if (!await("all nodes in the ring", timeoutMillis, () -> allAlive(nodeUrls, numberOfNodes))
+                || !await("all topics served via every node", timeoutMillis, () -> allTopicsServed(nodeUrls, numberOfTopics))) {
+            return false;
+        }
+        logger.info("Cluster of {} nodes serves all {} topics after {} ms.", numberOfNodes, numberOfTopics, System.currentTimeMillis() - start);
+        logTopicDistribution(nodeUrls);
+
+        // Kill the last node, its topics have to move to the remaining nodes
+        int killed = numberOfNodes - 1;
+        List<String> survivors = new ArrayList<>(nodeUrls.subList(0, killed));
+        processes[killed].destroyForcibly().waitFor();
+        start = System.currentTimeMillis();
+        if (!await("failure detection", timeoutMillis, () -> allAlive(survivors, killed))) {
+            return false;
+        }
+        logger.info("Failure of {} detected after {} ms.", nodeUrls.get(killed), System.currentTimeMillis() - start);
+        if (!await("takeover", timeoutMillis, () -> allTopicsServed(survivors, numberOfTopics))) {
+            return false;
+        }
+        logger.info("All topics served by the remaining nodes after {} ms.", System.currentTimeMillis() - start);
+        logTopicDistribution(survivors);
+
+        // Restart the node, it has to rejoin the ring and get its topics back
+        processes[killed] = startNode(killed);
+        start = System.currentTimeMillis();
+        if (!await("rejoin", timeoutMillis, () -> allAlive(nodeUrls, numberOfNodes))
+                || !await("all topics served after the rejoin", timeoutMillis, () -> allTopicsServed(nodeUrls, numberOfTopics))) {
+            return false;
+        }
+        logger.info("Restarted node {} rejoined and all topics are served after {} ms.", nodeUrls.get(killed), System.currentTimeMillis() - start);
+        logTopicDistribution(nodeUrls);
+        return true;
+    }
+
+    /**
+     * Starts a ShardTestNode in a new JVM with the classpath of this JVM.
+     *
+     * @param index Index of the node
+     * @return Process of the node
+     * @throws IOException Thrown if unable to start the JVM
+     */
+    private static Process startNode(int index) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        File log = new File(System.getProperty("java.io.tmpdir"), "shardTestNode-" + index + ".log");
+        logger.info("Start node {} (log: {}).", index, log);
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ShardTestNode.class.getName(), Integer.toString(index))
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    /**
+     * Polls a condition every 100 ms until it holds or the timeout has expired.
+     *
+     * @param description   Description of the condition
+     * @param timeoutMillis Timeout in ms
+     * @param condition     Condition
+     * @return True if the condition holds
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    private static boolean await(String description, long timeoutMillis, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        logger.error("Timeout while waiting for {}.", description);
+        return false;
+    }
+
+    /**
+     * Checks if every node reports the expected number of alive nodes.
+     *
+     * @param nodeUrls      Base URLs of the nodes
+     * @param expectedAlive Expected number of alive nodes
+     * @return True if all nodes agree
+     */
+    private static boolean allAlive(List<String> nodeUrls, int expectedAlive) {
+        for (String nodeUrl : nodeUrls) {
+            String health = get(nodeUrl + "/shard/health");
+            if (health == null) {
+                return false;
+            }
+            int nodesStart = health.indexOf("\"a\":[") + 5;
+            String aliveNodes = health.substring(nodesStart, health.indexOf(']', nodesStart));
+            if (aliveNodes.split(",").length != expectedAlive) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if every topic is served via every node (/consume answers with data, regardless of which node owns the topic) and if every node lists all topics.
+     *
+     * @param nodeUrls       Base URLs of the nodes
+     * @param numberOfTopics Number of topics
+     * @return True if all topics are served
+     */
+    private static boolean allTopicsServed(List<String> nodeUrls, int numberOfTopics) {
+        for (String nodeUrl : nodeUrls) {
+            String topics = get(nodeUrl + "/listTopics");
+            if (topics == null || topics.split(",").length != numberOfTopics) {
+                return false;
+            }
+            for (int topicIndex = 0; topicIndex < numberOfTopics; ++topicIndex) {
+                if (get(nodeUrl + "/consume?t=" + SyntheticRecordSource.getTopicName(topicIndex) + "&l=1") == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Logs the number of topics which are buffered on every node.
+     *
+     * @param nodeUrls Base URLs of the nodes
+     */
+    private static void logTopicDistribution(List<String> nodeUrls) {
+        StringBuilder sb = new StringBuilder("Local topics per node:");
+        for (String nodeUrl : nodeUrls) {
+            String health = get(nodeUrl + "/shard/health");
+            String localTopics = health == null ? "?" : health.substring(health.indexOf("\"t\":") + 4, health.lastIndexOf('}'));
+            sb.append(" ").append(nodeUrl).append("=").append(localTopics);
+        }
+        logger.info(sb.toString());
+    }
+
+    /**
+     * Sends a GET request.
+     *
+     * @param url URL
+     * @return Response body or null if the response status is not 200 or the request fails
+     */
+    private static String get(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(5000);
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (in != null) {
+                byte[] chunk = new byte[8192];
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    body.write(chunk, 0, read);
+                }
+                in.close();
+            }
+            return status == 200 ? new String(body.toByteArray(), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
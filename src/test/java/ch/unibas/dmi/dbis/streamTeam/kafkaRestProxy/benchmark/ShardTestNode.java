@@ -0,0 +1,70 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+
+import java.util.Properties;
+
+/**
+ * Node of the sharded proxy cluster of the ShardTest (started in its own JVM by the ShardTest).
+ * Every node generates the records of all shardTest.topics topics, but only ingests the records of the topics which it owns.
+ */
+public class ShardTestNode {
+
+    /**
+     * Starts a node of the sharded proxy cluster.
+     *
+     * @param args Parameters (index of the node)
+     */
+    public static void main(String[] args) {
+        ShutdownHelper.initialize();
+
+        Properties properties = new Properties();
+        LoadTest.loadProperties(properties, "/kafkaRestProxy.properties");
+        LoadTest.loadProperties(properties, "/loadTest.properties"); // overrides the proxy properties where necessary
+
+        int index = Integer.parseInt(args[0]);
+        int numberOfNodes = PropertyReadHelper.readIntOrDie(properties, "shardTest.nodes");
+        int basePort = PropertyReadHelper.readIntOrDie(properties, "shardTest.basePort");
+        properties.setProperty("jetty.port", Integer.toString(basePort + index));
+        properties.setProperty("jetty.unixSocket.enabled", "false");
+        properties.setProperty("grpc.enabled", "false");
+        properties.setProperty("shard.enabled", "true");
+        properties.setProperty("shard.self", ShardTest.getNodeUrl(basePort, index));
+        StringBuilder nodes = new StringBuilder();
+        for (int i = 0; i < numberOfNodes; ++i) {
+            nodes.append(i > 0 ? "," : "").append(ShardTest.getNodeUrl(basePort, i));
+        }
+        properties.setProperty("shard.nodes", nodes.toString());
+        properties.setProperty("shard.secret", "shardTestSecret");
+        properties.setProperty("loadTest.topics", properties.getProperty("shardTest.topics"));
+        long recordsPerSecond = PropertyReadHelper.readLongOrDie(properties, "shardTest.recordsPerSecond");
+
+        LoadTestConsumer consumer = new LoadTestConsumer();
+        new KafkaRestProxy(properties, consumer);
+
+        RecordGenerator recordGenerator = new RecordGenerator(consumer, new SyntheticRecordSource(properties), recordsPerSecond);
+        ShutdownHelper.addCloseable(recordGenerator);
+        Thread recordGeneratorThread = new Thread(recordGenerator, "RecordGenerator");
+        recordGeneratorThread.start();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Record source which generates random records for a configurable number of topics, partitions and keys with a configurable payload size.
+ */
+public class SyntheticRecordSource implements RecordSource {
+
+    /**
+     * Number of topics
+     */
+    private final int numberOfTopics;
+
+    /**
+     * Number of partitions per topic
+     */
+    private final int numberOfPartitions;
+
+    /**
+     * Number of distinct keys per topic
+     */
+    private final int keyCardinality;
+
+    /**
+     * Payload size in bytes
+     */
+    private final int payloadSize;
+
+    /**
+     * Next offset for every topic partition (index: topic * numberOfPartitions + partition)
+     */
+    private final long[] nextOffsets;
+
+    /**
+     * Random number generator
+     */
+    private final Random random;
+
+    /**
+     * SyntheticRecordSource constructor.
+     *
+     * @param properties Properties
+     */
+    public SyntheticRecordSource(Properties properties) {
+        this.numberOfTopics = PropertyReadHelper.readIntOrDie(properties, "loadTest.topics");
+        this.numberOfPartitions = PropertyReadHelper.readIntOrDie(properties, "loadTest.partitions");
+        this.keyCardinality = PropertyReadHelper.readIntOrDie(properties, "loadTest.keyCardinality");
+        this.payloadSize = Math.max(Long.BYTES, PropertyReadHelper.readIntOrDie(properties, "loadTest.payloadSize"));
+        this.nextOffsets = new long[this.numberOfTopics * this.numberOfPartitions];
+        this.random = new Random(42);
+    }
+
+    /**
+     * Returns the name of a topic.
+     *
+     * @param topicIndex Index of the topic
+     * @return Name of the topic
+     */
+    public static String getTopicName(int topicIndex) {
+        return "topic" + topicIndex;
+    }
+
+    /**
+     * Returns the name of a key.
+     *
+     * @param keyIndex Index of the key
+     * @return Name of the key
+     */
+    public static String getKeyName(int keyIndex) {
+        return "key" + keyIndex;
+    }
+
+    /**
+     * Returns all topic partitions for which the record source generates records.
+     *
+     * @return Topic partitions
+     */
+    @Override
+    public Collection<TopicPartition> getTopicPartitions() {
+        List<TopicPartition> topicPartitions = new ArrayList<>();
+        for (int topicIndex = 0; topicIndex < this.numberOfTopics; ++topicIndex) {
+            for (int partition = 0; partition < this.numberOfPartitions; ++partition) {
+                topicPartitions.add(new TopicPartition(getTopicName(topicIndex), partition));
+            }
+        }
+        return topicPartitions;
+    }
+
+    /**
+     * Generates the next record.
+     *
+     * @return Record
+     */
+    @Override
+    public ConsumerRecord<String, byte[]> nextRecord() {
+        int topicIndex = this.random.nextInt(this.numberOfTopics);
+        int keyIndex = this.random.nextInt(this.keyCardinality);
+        int partition = keyIndex % this.numberOfPartitions; // Same key always ends up in the same partition (as with the Kafka default partitioner)
+        long offset = this.nextOffsets[topicIndex * this.numberOfPartitions + partition]++;
+
+        long now = System.currentTimeMillis();
+        byte[] value = new byte[this.payloadSize];
+        this.random.nextBytes(value);
+        ByteBuffer.wrap(value).putLong(now);
+
+        String key = getKeyName(keyIndex);
+        return new ConsumerRecord<>(getTopicName(topicIndex), partition, offset, now, TimestampType.CREATE_TIME, 0L, key.length(), value.length, key, value);
+    }
+}
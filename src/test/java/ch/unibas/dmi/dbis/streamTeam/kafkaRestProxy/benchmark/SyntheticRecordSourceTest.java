@@ -0,0 +1,90 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the SyntheticRecordSource of the load test.
+ */
+public class SyntheticRecordSourceTest {
+
+    /**
+     * Creates a record source.
+     *
+     * @param payloadSize Payload size
+     * @return Record source
+     */
+    private static SyntheticRecordSource createRecordSource(int payloadSize) {
+        Properties properties = new Properties();
+        properties.setProperty("loadTest.topics", "3");
+        properties.setProperty("loadTest.partitions", "4");
+        properties.setProperty("loadTest.keyCardinality", "20");
+        properties.setProperty("loadTest.payloadSize", Integer.toString(payloadSize));
+        return new SyntheticRecordSource(properties);
+    }
+
+    /**
+     * The record source announces every partition of every topic.
+     */
+    @Test
+    public void announcesAllTopicPartitions() {
+        assertEquals(12, createRecordSource(16).getTopicPartitions().size());
+    }
+
+    /**
+     * A key always ends up in the same partition, the offsets are consecutive per partition and the payload starts with the generation time.
+     */
+    @Test
+    public void generatesConsistentRecords() {
+        SyntheticRecordSource recordSource = createRecordSource(16);
+        Map<String, Long> nextOffsets = new HashMap<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000; ++i) {
+            ConsumerRecord<String, byte[]> record = recordSource.nextRecord();
+            int keyIndex = Integer.parseInt(record.key().substring(3));
+            assertEquals(keyIndex % 4, record.partition());
+
+            String topicPartition = record.topic() + "-" + record.partition();
+            long expectedOffset = nextOffsets.containsKey(topicPartition) ? nextOffsets.get(topicPartition) : 0L;
+            assertEquals(expectedOffset, record.offset());
+            nextOffsets.put(topicPartition, expectedOffset + 1);
+
+            assertEquals(16, record.value().length);
+            long generationTime = ByteBuffer.wrap(record.value()).getLong();
+            assertTrue(generationTime >= start && generationTime == record.timestamp());
+        }
+    }
+
+    /**
+     * The payload has at least room for the generation time.
+     */
+    @Test
+    public void enforcesMinimumPayloadSize() {
+        assertEquals(Long.BYTES, createRecordSource(1).nextRecord().value().length);
+    }
+}
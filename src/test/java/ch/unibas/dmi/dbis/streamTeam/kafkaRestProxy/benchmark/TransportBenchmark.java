@@ -0,0 +1,254 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ErrorCode;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.properties.PropertyReadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Compares the latency and the CPU time of /consume requests over TCP loopback (jetty.port) and over the Unix domain socket (jetty.unixSocket.path) of the same KafkaRestProxy.
+ * Both transports are measured with the same minimal HTTP/1.1 client (RawHttpConnection) and persistent connections while the KafkaRestProxy ingests records from a RecordSource.
+ * Small limits make the transport overhead visible, large limits show how much of it remains when the response body dominates.
+ * The CPU time is the CPU time of the whole process (clients and server) divided by the number of requests.
+ */
+public class TransportBenchmark {
+
+    /**
+     * Slf4j logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(TransportBenchmark.class);
+
+    /**
+     * Runs the transport benchmark.
+     *
+     * @param args Parameters
+     */
+    public static void main(String[] args) {
+        ShutdownHelper.initialize();
+
+        Properties properties = new Properties();
+        LoadTest.loadProperties(properties, "/kafkaRestProxy.properties");
+        LoadTest.loadProperties(properties, "/loadTest.properties"); // overrides the proxy properties where necessary
+
+        if (!PropertyReadHelper.readBooleanOrDie(properties, "jetty.unixSocket.enabled")) {
+            logger.error("The transport benchmark requires jetty.unixSocket.enabled=true.");
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+        int port = PropertyReadHelper.readIntOrDie(properties, "jetty.port");
+        String unixSocketPath = PropertyReadHelper.readStringOrDie(properties, "jetty.unixSocket.path");
+        int numberOfTopics = PropertyReadHelper.readIntOrDie(properties, "loadTest.topics");
+        int keyCardinality = PropertyReadHelper.readIntOrDie(properties, "loadTest.keyCardinality");
+        long recordsPerSecond = PropertyReadHelper.readLongOrDie(properties, "loadTest.recordsPerSecond");
+        String recordSourceClass = PropertyReadHelper.readStringOrDie(properties, "loadTest.recordSource");
+        int consumeLimit = PropertyReadHelper.readIntOrDie(properties, "transport.consumeLimit");
+        double consumeKeyProbability = PropertyReadHelper.readDoubleOrDie(properties, "loadTest.consumeKeyProbability");
+        int clientThreads = PropertyReadHelper.readIntOrDie(properties, "transport.clientThreads");
+        long warmupMillis = PropertyReadHelper.readLongOrDie(properties, "transport.warmupMillis");
+        long durationMillis = PropertyReadHelper.readLongOrDie(properties, "transport.durationMillis");
+        int rounds = PropertyReadHelper.readIntOrDie(properties, "transport.rounds");
+
+        RecordSource recordSource = null;
+        try {
+            recordSource = (RecordSource) Class.forName(recordSourceClass).getConstructor(Properties.class).newInstance(properties);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.error("Unable to instantiate record source {}", recordSourceClass, e);
+            ShutdownHelper.shutdown(ErrorCode.PropertyException);
+        }
+
+        // Start the KafkaRestProxy (the constructor returns after all components have been started)
+        LoadTestConsumer consumer = new LoadTestConsumer();
+        new KafkaRestProxy(properties, consumer);
+
+        RecordGenerator recordGenerator = new RecordGenerator(consumer, recordSource, recordsPerSecond);
+        Thread recordGeneratorThread = new Thread(recordGenerator, "RecordGenerator");
+        recordGeneratorThread.start();
+
+        LoadTest.waitForServer("http://localhost:" + port);
+
+        // Alternate the transports such that drifts (JIT, buffer fill level) affect both equally
+        LatencyRecorder tcpLatencies = new LatencyRecorder();
+        LatencyRecorder unixSocketLatencies = new LatencyRecorder();
+        long tcpCpuNanos = 0;
+        long unixSocketCpuNanos = 0;
+        double tcpSeconds = 0;
+        double unixSocketSeconds = 0;
+        for (int round = 0; round < rounds; ++round) {
+            for (boolean unixSocket : new boolean[]{false, true}) {
+                String transport = unixSocket ? "Unix domain socket" : "TCP loopback";
+                logger.info("Round {}: warm up {} for {} ms.", round + 1, transport, warmupMillis);
+                runClients(port, unixSocketPath, unixSocket, clientThreads, numberOfTopics, keyCardinality, consumeLimit, consumeKeyProbability, warmupMillis);
+
+                logger.info("Round {}: measure {} with {} client threads for {} ms.", round + 1, transport, clientThreads, durationMillis);
+                long cpuBefore = getProcessCpuNanos();
+                long start = System.nanoTime();
+                LatencyRecorder latencies = runClients(port, unixSocketPath, unixSocket, clientThreads, numberOfTopics, keyCardinality, consumeLimit, consumeKeyProbability, durationMillis);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long cpuNanos = getProcessCpuNanos() - cpuBefore;
+                if (unixSocket) {
+                    unixSocketLatencies.merge(latencies);
+                    unixSocketCpuNanos += cpuNanos;
+                    unixSocketSeconds += seconds;
+                } else {
+                    tcpLatencies.merge(latencies);
+                    tcpCpuNanos += cpuNanos;
+                    tcpSeconds += seconds;
+                }
+            }
+        }
+
+        logger.info("===== Transport benchmark results ({} rounds, /consume with l={}) =====", rounds, consumeLimit);
+        report("TCP loopback", tcpLatencies, tcpSeconds, tcpCpuNanos);
+        report("Unix domain socket", unixSocketLatencies, unixSocketSeconds, unixSocketCpuNanos);
+        if (tcpLatencies.getCount() > 0 && unixSocketLatencies.getCount() > 0) {
+            logger.info("Unix domain socket vs. TCP loopback: p50 {}%, p99 {}%, CPU/req {}%",
+                    String.format("%+.1f", relativeChange(tcpLatencies.getPercentile(50), unixSocketLatencies.getPercentile(50))),
+                    String.format("%+.1f", relativeChange(tcpLatencies.getPercentile(99), unixSocketLatencies.getPercentile(99))),
+                    String.format("%+.1f", relativeChange((double) tcpCpuNanos / tcpLatencies.getCount(), (double) unixSocketCpuNanos / unixSocketLatencies.getCount())));
+        }
+
+        recordGenerator.close();
+        System.exit(0); // the shutdown hook stops the StreamConsumer and the Jetty server
+    }
+
+    /**
+     * Runs client threads with one persistent connection each which send /consume requests for the given duration.
+     *
+     * @param port                  Port of the TCP connector
+     * @param unixSocketPath        Path of the Unix domain socket
+     * @param unixSocket            True if the clients connect over the Unix domain socket, false if over TCP loopback
+     * @param clientThreads         Number of client threads
+     * @param numberOfTopics        Number of topics
+     * @param keyCardinality        Number of distinct keys per topic
+     * @param consumeLimit          Limit (?l=...) of the /consume requests
+     * @param consumeKeyProbability Probability that a /consume request targets a single key
+     * @param durationMillis        Duration in ms
+     * @return Merged latencies of the /consume requests (in µs)
+     */
+    private static LatencyRecorder runClients(int port, String unixSocketPath, boolean unixSocket, int clientThreads, int numberOfTopics, int keyCardinality, int consumeLimit, double consumeKeyProbability, long durationMillis) {
+        long deadline = System.nanoTime() + durationMillis * 1000000;
+
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clientThreads; ++i) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            Random random = new Random(i);
+            Thread thread = new Thread(() -> {
+                RawHttpConnection connection = null;
+                while (System.nanoTime() < deadline) {
+                    StringBuilder path = new StringBuilder("/consume?t=").append(SyntheticRecordSource.getTopicName(random.nextInt(numberOfTopics))).append("&l=").append(consumeLimit);
+                    if (random.nextDouble() < consumeKeyProbability) {
+                        path.append("&k=").append(SyntheticRecordSource.getKeyName(random.nextInt(keyCardinality)));
+                    }
+                    try {
+                        if (connection == null) {
+                            connection = unixSocket ? RawHttpConnection.openUnixSocket(unixSocketPath) : RawHttpConnection.openTcp("localhost", port);
+                        }
+                        long start = System.nanoTime();
+                        connection.get(path.toString());
+                        recorder.record((System.nanoTime() - start) / 1000);
+                    } catch (IOException e) {
+                        logger.debug("Request {} failed.", path, e);
+                        recorder.recordError();
+                        connection = closeQuietly(connection);
+                    }
+                }
+                closeQuietly(connection);
+            }, "TransportClient-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        LatencyRecorder latencies = new LatencyRecorder();
+        for (int i = 0; i < clientThreads; ++i) {
+            try {
+                threads.get(i).join();
+            } catch (InterruptedException e) {
+                logger.trace("InterruptedException while joining client threads.", e);
+            }
+            latencies.merge(recorders.get(i));
+        }
+        return latencies;
+    }
+
+    /**
+     * Closes a connection and ignores failures.
+     *
+     * @param connection Connection or null
+     * @return null
+     */
+    private static RawHttpConnection closeQuietly(RawHttpConnection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                logger.trace("Unable to close connection.", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the CPU time of the process.
+     *
+     * @return CPU time in ns or 0 if the JVM does not provide it
+     */
+    private static long getProcessCpuNanos() {
+        OperatingSystemMXBean operatingSystemBean = ManagementFactory.getOperatingSystemMXBean();
+        if (operatingSystemBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) operatingSystemBean).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the relative change from a baseline in percent.
+     *
+     * @param baseline Baseline
+     * @param value    Value
+     * @return Relative change in percent
+     */
+    private static double relativeChange(double baseline, double value) {
+        return baseline == 0 ? 0 : (value - baseline) * 100.0 / baseline;
+    }
+
+    /**
+     * Logs the throughput, the latency percentiles and the CPU time per request of a transport.
+     *
+     * @param transport Transport
+     * @param latencies Latencies (in µs)
+     * @param seconds   Measured duration in seconds
+     * @param cpuNanos  CPU time of the process during the measurement in ns
+     */
+    private static void report(String transport, LatencyRecorder latencies, double seconds, long cpuNanos) {
+        logger.info("{}: {} req/s, errors={}, p50={}us p99={}us p999={}us max={}us, CPU={}us/req", transport, String.format("%.0f", latencies.getCount() / seconds), latencies.getErrors(), latencies.getPercentile(50), latencies.getPercentile(99), latencies.getPercentile(99.9), latencies.getMax(), latencies.getCount() == 0 ? 0 : cpuNanos / 1000 / latencies.getCount());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the DataStreamBuffer.
+ */
+public class DataStreamBufferTest {
+
+    /**
+     * The elements are buffered per topic and per key, and the ring buffers of the keys are bounded by the buffer size.
+     */
+    @Test
+    public void buffersPerTopicAndKey() {
+        DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(4);
+        for (int i = 0; i < 10; ++i) {
+            dataStreamBuffer.add(new DataStreamElement(new byte[10], "key" + (i % 2), "topicA", 0, i, i));
+        }
+        dataStreamBuffer.add(new DataStreamElement(new byte[10], "key0", "topicB", 0, 0, 0));
+
+        assertEquals(2, dataStreamBuffer.getTopics().size());
+        assertTrue(dataStreamBuffer.getTopics().contains("topicA"));
+        assertNull(dataStreamBuffer.getTopicBuffer("topicC"));
+
+        TopicBuffer topicBuffer = dataStreamBuffer.getTopicBuffer("topicA");
+        assertEquals(4, topicBuffer.getRingBufferForKey("key0").size());
+        assertEquals(4, topicBuffer.getRingBufferForKey("key1").size());
+        List<DataStreamElement> result = new ArrayList<>();
+        topicBuffer.getRingBufferForKey("key1").collect("topicA", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, result);
+        assertEquals(9, result.get(0).offset);
+        assertEquals(3, result.get(3).offset);
+    }
+
+    /**
+     * The partition ring buffers reference the key string of the key ring buffer instead of a new key string per element.
+     */
+    @Test
+    public void deduplicatesKeys() {
+        DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(4);
+        dataStreamBuffer.add(new DataStreamElement(new byte[1], new String("key"), "topic", 0, 0, 0));
+        dataStreamBuffer.add(new DataStreamElement(new byte[1], new String("key"), "topic", 0, 1, 1));
+
+        TopicBuffer topicBuffer = dataStreamBuffer.getTopicBuffer("topic");
+        List<DataStreamElement> result = new ArrayList<>();
+        topicBuffer.getRingBufferForPartition(0).collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, result);
+        assertEquals(2, result.size());
+        assertSame(topicBuffer.getRingBufferForKey("key").getKey(), result.get(0).key);
+        assertSame(result.get(0).key, result.get(1).key);
+    }
+
+    /**
+     * The content size estimate is based on the average content size of the topic and capped at the buffer size.
+     */
+    @Test
+    public void estimatesContentBytes() {
+        DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(4);
+        for (int i = 0; i < 10; ++i) {
+            dataStreamBuffer.add(new DataStreamElement(new byte[100], "key", "topic", 0, i, i));
+        }
+        assertEquals(200, dataStreamBuffer.estimateContentBytes("topic", 2));
+        assertEquals(400, dataStreamBuffer.estimateContentBytes("topic", 1000));
+        assertEquals(0, dataStreamBuffer.estimateContentBytes("unknown", 10));
+    }
+
+    /**
+     * Elements without content (tombstones) are buffered and count as 0 bytes in the average content size.
+     */
+    @Test
+    public void buffersNullContents() {
+        DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(4);
+        dataStreamBuffer.add(new DataStreamElement(new byte[128], "key", "topic", 0, 0, 0));
+        dataStreamBuffer.add(new DataStreamElement(null, "key", "topic", 0, 1, 1));
+
+        TopicBuffer topicBuffer = dataStreamBuffer.getTopicBuffer("topic");
+        assertEquals(126, topicBuffer.getAverageContentBytes(), 0);
+        assertEquals(126, dataStreamBuffer.estimateContentBytes("topic", 1));
+
+        List<DataStreamElement> result = new ArrayList<>();
+        topicBuffer.getRingBufferForKey("key").collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, result);
+        assertEquals(2, result.size());
+        assertNull(result.get(0).content);
+        assertEquals(128, result.get(1).content.length);
+        assertNull(topicBuffer.getLatestValueTable().get("topic", "key").content);
+
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(2, topicBuffer.appendConsumeResultJsonForAll(dataJsonArray, 10, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null, null));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Downsampler.
+ */
+public class DownsamplerTest {
+
+    /**
+     * Counts the accepted timestamps of a descending sequence.
+     *
+     * @param downsampler Started downsampler
+     * @param latest      Latest timestamp
+     * @param candidates  Number of candidates (timestamps latest, latest - 1, ...)
+     * @return Number of accepted timestamps
+     */
+    private static int countAccepted(Downsampler downsampler, long latest, int candidates) {
+        int accepted = 0;
+        for (int i = 0; i < candidates; ++i) {
+            if (downsampler.accept(latest - i)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Starts a downsampler again.
+     *
+     * @param downsampler Downsampler
+     * @param candidates  Number of candidates
+     * @return Downsampler
+     */
+    private static Downsampler restart(Downsampler downsampler, int candidates) {
+        downsampler.start(candidates);
+        return downsampler;
+    }
+
+    /**
+     * A stride accepts every n-th candidate starting with the latest one.
+     */
+    @Test
+    public void acceptsEveryNthCandidate() {
+        Downsampler downsampler = new Downsampler(3, 0, Integer.MAX_VALUE);
+        downsampler.start(10);
+        assertTrue(downsampler.accept(100));
+        assertFalse(downsampler.accept(99));
+        assertFalse(downsampler.accept(98));
+        assertTrue(downsampler.accept(97));
+        assertEquals(34, countAccepted(restart(downsampler, 100), 1000, 100));
+    }
+
+    /**
+     * A bucket accepts the latest candidate per time bucket.
+     */
+    @Test
+    public void acceptsLatestCandidatePerBucket() {
+        Downsampler downsampler = new Downsampler(1, 10, Integer.MAX_VALUE);
+        downsampler.start(100);
+        assertTrue(downsampler.accept(59));
+        assertFalse(downsampler.accept(55));
+        assertFalse(downsampler.accept(50));
+        assertTrue(downsampler.accept(49));
+        assertTrue(downsampler.accept(-1));
+        assertFalse(downsampler.accept(-10));
+        assertEquals(10, countAccepted(restart(downsampler, 100), 99, 100));
+    }
+
+    /**
+     * Max points widens the stride such that the candidates are spread evenly and at most max points are accepted.
+     */
+    @Test
+    public void spreadsMaxPointsOverCandidates() {
+        Downsampler downsampler = new Downsampler(1, 0, 10);
+        downsampler.start(95);
+        assertEquals(10, countAccepted(downsampler, 1000, 95));
+        downsampler.start(5);
+        assertEquals(5, countAccepted(downsampler, 1000, 5));
+        assertEquals(10, downsampler.getMaxPoints());
+    }
+
+    /**
+     * A ring buffer read starts the downsampler with the number of candidates in the time range.
+     */
+    @Test
+    public void isStartedWithCandidatesOfRingBufferRead() {
+        RingBuffer ringBuffer = new RingBuffer(1000, "key");
+        for (int i = 0; i < 1000; ++i) {
+            ringBuffer.add(new byte[0], "key", 0, i, i);
+        }
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(10, ringBuffer.appendConsumeResultJson(dataJsonArray, "topic", Integer.MAX_VALUE, 500, 599, null, new Downsampler(1, 0, 10), null, null));
+        assertTrue(dataJsonArray.toString().startsWith("{\"v\":\"\",\"k\":\"key\",\"t\":\"topic\",\"p\":0,\"o\":599,"));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.PayloadDecoder;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter.ElementFilter;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the key index and the key prefix reads of the TopicBuffer.
+ */
+public class KeyPrefixTest {
+
+    /**
+     * Creates a topic buffer with the keys player1, player2, player10 and ball (element i has offset i, timestamp i and the JSON content {"i":i}).
+     *
+     * @return Topic buffer
+     */
+    private static TopicBuffer createTopicBuffer() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 100, null);
+        String[] keys = {"player1", "player2", "player10", "ball"};
+        for (int i = 0; i < 80; ++i) {
+            topicBuffer.add(new DataStreamElement(("{\"i\":" + i + "}").getBytes(StandardCharsets.UTF_8), keys[i % keys.length], "topic", 0, i, i));
+        }
+        return topicBuffer;
+    }
+
+    /**
+     * The key index returns the keys with a prefix in key order and paginates them.
+     */
+    @Test
+    public void listsKeysWithPrefixInPages() {
+        TopicBuffer topicBuffer = createTopicBuffer();
+        List<String> keys = new ArrayList<>();
+        assertTrue(topicBuffer.getKeys("player", null, 2, keys));
+        assertEquals(Arrays.asList("player1", "player10"), keys);
+
+        keys.clear();
+        assertFalse(topicBuffer.getKeys("player", "player10", 2, keys));
+        assertEquals(Arrays.asList("player2"), keys);
+
+        keys.clear();
+        assertFalse(topicBuffer.getKeys("", null, 10, keys));
+        assertEquals(Arrays.asList("ball", "player1", "player10", "player2"), keys);
+        assertEquals(3, topicBuffer.getRingBuffersForKeyPrefix("player").size());
+    }
+
+    /**
+     * A key prefix read merges the ring buffers of the matching keys latest first.
+     */
+    @Test
+    public void mergesMatchingKeysLatestFirst() {
+        TopicBuffer topicBuffer = createTopicBuffer();
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(4, topicBuffer.openCursorForKeyPrefix("player", 4, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null).appendConsumeResultJson(dataJsonArray, 4, false));
+        StringBuffer expected = new StringBuffer();
+        int appended = 0;
+        for (int i = 78; appended < 4; --i) {
+            if (i % 4 != 3) { // skip ball
+                if (appended++ > 0) {
+                    expected.append(",");
+                }
+                String key = i % 4 == 0 ? "player1" : i % 4 == 1 ? "player2" : "player10";
+                DataStreamElement.appendConsumeResultJson(expected, ("{\"i\":" + i + "}").getBytes(StandardCharsets.UTF_8), key, "topic", 0, i, i);
+            }
+        }
+        assertEquals(expected.toString(), dataJsonArray.toString());
+        assertNull(topicBuffer.openCursorForKeyPrefix("referee", 4, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null));
+    }
+
+    /**
+     * The filter is only evaluated until the limit is reached (the contents of the other data stream elements are never decoded).
+     */
+    @Test
+    public void filtersLazilyUpToLimit() {
+        TopicBuffer topicBuffer = createTopicBuffer();
+        AtomicInteger decoded = new AtomicInteger();
+        PayloadDecoder countingDecoder = content -> {
+            decoded.incrementAndGet();
+            return new String(content, StandardCharsets.UTF_8);
+        };
+        ElementFilter filter = ElementFilter.compile("i>=10", null);
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(5, topicBuffer.openCursorForKeyPrefix("player", 5, Long.MIN_VALUE, Long.MAX_VALUE, null, countingDecoder, filter).appendConsumeResultJson(dataJsonArray, 5, false));
+        assertEquals(5, decoded.get());
+        assertTrue(dataJsonArray.toString().startsWith("{\"v\":{\"i\":78},\"k\":\"player10\""));
+    }
+
+    /**
+     * The downsampler is applied to the merged sequence of the matching keys.
+     */
+    @Test
+    public void downsamplesMergedSequence() {
+        TopicBuffer topicBuffer = createTopicBuffer();
+        StringBuffer dataJsonArray = new StringBuffer();
+        DataStreamCursor cursor = topicBuffer.openCursorForKeyPrefix("player", Integer.MAX_VALUE, 40, Long.MAX_VALUE, new Downsampler(3, 0, Integer.MAX_VALUE), null, null);
+        assertEquals(10, cursor.appendConsumeResultJson(dataJsonArray, Integer.MAX_VALUE, false)); // 30 matching data stream elements from timestamp 40 on, every third one
+        assertTrue(dataJsonArray.toString().contains("\"ts\":78}"));
+        assertFalse(dataJsonArray.toString().contains("\"ts\":76}"));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the LatestValueTable.
+ */
+public class LatestValueTableTest {
+
+    /**
+     * Only the latest data stream element of every key is kept.
+     */
+    @Test
+    public void keepsLatestValuePerKey() {
+        LatestValueTable latestValueTable = new LatestValueTable();
+        latestValueTable.update("a", new byte[]{1}, 0, 0, 100);
+        latestValueTable.update("b", new byte[]{2}, 1, 0, 101);
+        latestValueTable.update("a", new byte[]{3}, 0, 1, 102);
+
+        DataStreamElement latest = latestValueTable.get("topic", "a");
+        assertEquals(3, latest.content[0]);
+        assertEquals(1, latest.offset);
+        assertEquals(102, latest.timestamp);
+        assertEquals("topic", latest.topic);
+        assertNull(latestValueTable.get("topic", "c"));
+
+        List<DataStreamElement> result = new ArrayList<>();
+        latestValueTable.collectLatest("topic", null, 0, result);
+        assertEquals(2, result.size());
+        assertEquals(3, latestValueTable.getVersion());
+    }
+
+    /**
+     * An incremental read only returns the keys which have been updated since the version of the previous read.
+     */
+    @Test
+    public void returnsUpdatesSinceVersion() {
+        LatestValueTable latestValueTable = new LatestValueTable();
+        latestValueTable.update("a", new byte[]{1}, 0, 0, 100);
+        latestValueTable.update("b", new byte[]{2}, 0, 1, 101);
+        long version = latestValueTable.getVersion();
+        latestValueTable.update("b", new byte[]{3}, 0, 2, 102);
+
+        List<DataStreamElement> result = new ArrayList<>();
+        latestValueTable.collectLatest("topic", null, version, result);
+        assertEquals(1, result.size());
+        assertEquals("b", result.get(0).key);
+        assertEquals(2, result.get(0).offset);
+
+        result.clear();
+        latestValueTable.collectLatest("topic", null, latestValueTable.getVersion(), result);
+        assertEquals(0, result.size());
+    }
+
+    /**
+     * Requested keys are rendered in the requested order, unknown keys are skipped.
+     */
+    @Test
+    public void rendersRequestedKeys() {
+        LatestValueTable latestValueTable = new LatestValueTable();
+        latestValueTable.update("a", new byte[]{1}, 0, 0, 100);
+        latestValueTable.update("b", new byte[]{2}, 0, 1, 101);
+
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(2, latestValueTable.appendLatestJson(dataJsonArray, "topic", Arrays.asList("b", "unknown", "a"), 0));
+        assertEquals(new DataStreamElement(new byte[]{2}, "b", "topic", 0, 1, 101).getConsumeResultJson() + "," + new DataStreamElement(new byte[]{1}, "a", "topic", 0, 0, 100).getConsumeResultJson(), dataJsonArray.toString());
+    }
+
+    /**
+     * The topic buffer updates its latest-value table on every added data stream element.
+     */
+    @Test
+    public void isUpdatedByTopicBuffer() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 4, null);
+        for (int i = 0; i < 10; ++i) {
+            topicBuffer.add(new DataStreamElement(new byte[]{(byte) i}, "key" + (i % 3), "topic", 0, i, i));
+        }
+        assertEquals(9, topicBuffer.getLatestValueTable().get("topic", "key0").offset);
+        assertEquals(7, topicBuffer.getLatestValueTable().get("topic", "key1").offset);
+        assertEquals(8, topicBuffer.getLatestValueTable().get("topic", "key2").offset);
+        assertEquals(10, topicBuffer.getLatestValueTable().getVersion());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server.RestResult;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the ListingSnapshot.
+ */
+public class ListingSnapshotTest {
+
+    /**
+     * The rendered listing is reused until the snapshot is invalidated.
+     */
+    @Test
+    public void rendersOncePerGeneration() {
+        ListingSnapshot<String> listingSnapshot = new ListingSnapshot<>();
+        AtomicInteger renderings = new AtomicInteger();
+        String first = listingSnapshot.get(() -> "listing" + renderings.incrementAndGet());
+        assertEquals("listing1", first);
+        assertSame(first, listingSnapshot.get(() -> "listing" + renderings.incrementAndGet()));
+        assertEquals(1, renderings.get());
+
+        listingSnapshot.invalidate();
+        assertEquals("listing2", listingSnapshot.get(() -> "listing" + renderings.incrementAndGet()));
+        assertEquals("listing2", listingSnapshot.get(() -> "listing" + renderings.incrementAndGet()));
+        assertEquals(2, renderings.get());
+    }
+
+    /**
+     * A listing which is rendered concurrently with an invalidation is not cached for the newer generation.
+     */
+    @Test
+    public void doesNotCacheListingOfOutdatedGeneration() {
+        ListingSnapshot<String> listingSnapshot = new ListingSnapshot<>();
+        assertEquals("old", listingSnapshot.get(() -> {
+            listingSnapshot.invalidate(); // a new entry appears while rendering
+            return "old";
+        }));
+        assertEquals("new", listingSnapshot.get(() -> "new"));
+    }
+
+    /**
+     * The topic listing and the key listings are invalidated if a new topic or key appears, but not by further data stream elements of known keys.
+     */
+    @Test
+    public void isInvalidatedByNewTopicsAndKeys() {
+        DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(4);
+        dataStreamBuffer.add(new DataStreamElement(new byte[0], "a", "topicA", 0, 0, 0));
+        TopicBuffer topicBuffer = dataStreamBuffer.getTopicBuffer("topicA");
+
+        RestResult topicListing = dataStreamBuffer.getTopicListing().get(() -> RestResult.generateNoDataResult("topicA", null));
+        RestResult keyListing = topicBuffer.getKeyListing().get(() -> RestResult.generateNoDataResult("topicA", "a"));
+        dataStreamBuffer.add(new DataStreamElement(new byte[0], "a", "topicA", 0, 1, 1));
+        assertSame(topicListing, dataStreamBuffer.getTopicListing().get(() -> RestResult.generateNoDataResult("topicA", null)));
+        assertSame(keyListing, topicBuffer.getKeyListing().get(() -> RestResult.generateNoDataResult("topicA", "a")));
+
+        dataStreamBuffer.add(new DataStreamElement(new byte[0], "b", "topicA", 0, 2, 2));
+        assertSame(topicListing, dataStreamBuffer.getTopicListing().get(() -> RestResult.generateNoDataResult("topicA", null)));
+        assertNotSame(keyListing, topicBuffer.getKeyListing().get(() -> RestResult.generateNoDataResult("topicA", "b")));
+
+        dataStreamBuffer.add(new DataStreamElement(new byte[0], "a", "topicB", 0, 0, 0));
+        assertNotSame(topicListing, dataStreamBuffer.getTopicListing().get(() -> RestResult.generateNoDataResult("topicB", null)));
+    }
+}
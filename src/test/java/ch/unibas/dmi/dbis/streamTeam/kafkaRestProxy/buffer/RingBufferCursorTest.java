@@ -0,0 +1,143 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder.PayloadDecoder;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the chunked reads of the RingBufferCursor.
+ */
+public class RingBufferCursorTest {
+
+    /**
+     * Pattern of the offsets in the JSON representations
+     */
+    private static final Pattern OFFSET_PATTERN = Pattern.compile("\"o\":(\\d+)");
+
+    /**
+     * Adds data stream elements with JSON contents whose offsets and timestamps are firstOffset, firstOffset + 1, ..., firstOffset + numberOfElements - 1.
+     *
+     * @param ringBuffer       Ring buffer
+     * @param firstOffset      Offset of the first data stream element
+     * @param numberOfElements Number of data stream elements
+     */
+    private static void addElements(RingBuffer ringBuffer, int firstOffset, int numberOfElements) {
+        for (int i = firstOffset; i < firstOffset + numberOfElements; ++i) {
+            ringBuffer.add(("{\"i\":" + i + "}").getBytes(), ringBuffer.getKey(), 0, i, i);
+        }
+    }
+
+    /**
+     * Returns the offsets of the data stream elements in a JSON array.
+     *
+     * @param dataJsonArray JSON array
+     * @return Offsets (in the order of the JSON array)
+     */
+    private static List<Long> getOffsets(StringBuffer dataJsonArray) {
+        List<Long> offsets = new ArrayList<>();
+        Matcher matcher = OFFSET_PATTERN.matcher(dataJsonArray);
+        while (matcher.find()) {
+            offsets.add(Long.parseLong(matcher.group(1)));
+        }
+        return offsets;
+    }
+
+    /**
+     * Reads which span multiple chunks return all data stream elements latest first and continue where the previous read stopped.
+     */
+    @Test
+    public void readsAcrossChunks() {
+        RingBuffer ringBuffer = new RingBuffer(1000, "key");
+        addElements(ringBuffer, 0, 600);
+
+        RingBufferCursor cursor = ringBuffer.openCursor("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null);
+        assertEquals(600, cursor.getRemaining());
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(300, cursor.appendConsumeResultJson(dataJsonArray, 300, false));
+        assertEquals(300, cursor.appendConsumeResultJson(dataJsonArray, 1000, true));
+        assertEquals(0, cursor.appendConsumeResultJson(dataJsonArray, 1000, true));
+        assertEquals(0, cursor.getRemaining());
+
+        List<Long> offsets = getOffsets(dataJsonArray);
+        assertEquals(600, offsets.size());
+        for (int i = 0; i < 600; ++i) {
+            assertEquals(599 - i, (long) offsets.get(i));
+        }
+    }
+
+    /**
+     * Data stream elements which are evicted while the cursor is in use are skipped, the elements which are still buffered are returned.
+     */
+    @Test
+    public void skipsElementsEvictedDuringRead() {
+        RingBuffer ringBuffer = new RingBuffer(300, "key");
+        addElements(ringBuffer, 0, 300);
+
+        RingBufferCursor cursor = ringBuffer.openCursor("topic", 10, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null);
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(10, cursor.appendConsumeResultJson(dataJsonArray, 10, false)); // offsets 299 to 290 (one chunk)
+        addElements(ringBuffer, 300, 5); // evicts offsets 0 to 4
+        assertEquals(285, cursor.appendConsumeResultJson(dataJsonArray, Integer.MAX_VALUE, true));
+
+        List<Long> offsets = getOffsets(dataJsonArray);
+        assertEquals(299, (long) offsets.get(0));
+        assertEquals(5, (long) offsets.get(offsets.size() - 1));
+
+        cursor = ringBuffer.openCursor("topic", 10, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null);
+        addElements(ringBuffer, 305, 300); // evicts everything before the first chunk is copied
+        assertEquals(0, cursor.appendConsumeResultJson(new StringBuffer(), Integer.MAX_VALUE, false));
+    }
+
+    /**
+     * Decoded contents are cached in the ring buffer such that repeated reads do not decode them again.
+     */
+    @Test
+    public void cachesDecodedContents() {
+        RingBuffer ringBuffer = new RingBuffer(10, "key");
+        addElements(ringBuffer, 0, 5);
+        AtomicInteger decodings = new AtomicInteger();
+        PayloadDecoder decoder = content -> {
+            decodings.incrementAndGet();
+            return new String(content, StandardCharsets.UTF_8);
+        };
+
+        StringBuffer dataJsonArray = new StringBuffer();
+        ringBuffer.openCursor("topic", 10, Long.MIN_VALUE, Long.MAX_VALUE, null, decoder, null).appendConsumeResultJson(dataJsonArray, 10, false);
+        assertEquals(5, decodings.get());
+        assertEquals("{\"v\":{\"i\":4},\"k\":\"key\",\"t\":\"topic\",\"p\":0,\"o\":4,\"ts\":4}", dataJsonArray.substring(0, dataJsonArray.indexOf("},{") + 1));
+
+        ringBuffer.openCursor("topic", 10, Long.MIN_VALUE, Long.MAX_VALUE, null, decoder, null).appendConsumeResultJson(new StringBuffer(), 10, false);
+        assertEquals(5, decodings.get());
+
+        addElements(ringBuffer, 5, 1);
+        ringBuffer.openCursor("topic", 10, Long.MIN_VALUE, Long.MAX_VALUE, null, decoder, null).appendConsumeResultJson(new StringBuffer(), 10, false);
+        assertEquals(6, decodings.get());
+    }
+}
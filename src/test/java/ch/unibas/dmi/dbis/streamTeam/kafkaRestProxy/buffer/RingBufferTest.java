@@ -0,0 +1,234 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the RingBuffer.
+ */
+public class RingBufferTest {
+
+    /**
+     * Adds data stream elements whose offsets and timestamps are 0, 1, ..., numberOfElements - 1.
+     *
+     * @param ringBuffer       Ring buffer
+     * @param numberOfElements Number of data stream elements
+     */
+    private static void addElements(RingBuffer ringBuffer, int numberOfElements) {
+        for (int i = 0; i < numberOfElements; ++i) {
+            ringBuffer.add(new byte[]{(byte) i}, ringBuffer.getKey(), 0, i, i);
+        }
+    }
+
+    /**
+     * Collects all data stream elements of a ring buffer.
+     *
+     * @param ringBuffer Ring buffer
+     * @return Data stream elements (latest first)
+     */
+    private static List<DataStreamElement> collectAll(RingBuffer ringBuffer) {
+        List<DataStreamElement> result = new ArrayList<>();
+        ringBuffer.collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, result);
+        return result;
+    }
+
+    /**
+     * The arrays grow on demand and the elements keep their order across the growth steps.
+     */
+    @Test
+    public void keepsOrderWhileGrowing() {
+        RingBuffer ringBuffer = new RingBuffer(100, "key");
+        addElements(ringBuffer, 37);
+        List<DataStreamElement> result = collectAll(ringBuffer);
+        assertEquals(37, result.size());
+        for (int i = 0; i < 37; ++i) {
+            DataStreamElement dataStreamElement = result.get(i);
+            assertEquals(36 - i, dataStreamElement.offset);
+            assertEquals(36 - i, dataStreamElement.content[0]);
+            assertEquals("key", dataStreamElement.key);
+            assertEquals("topic", dataStreamElement.topic);
+        }
+    }
+
+    /**
+     * A full ring buffer overwrites the oldest element and notifies the eviction listener.
+     */
+    @Test
+    public void evictsOldestElements() {
+        List<Long> evictedOffsets = new ArrayList<>();
+        RingBuffer ringBuffer = new RingBuffer(10, "key", (content, key, partition, offset, timestamp) -> evictedOffsets.add(offset));
+        addElements(ringBuffer, 25);
+        assertEquals(10, ringBuffer.size());
+        List<DataStreamElement> result = collectAll(ringBuffer);
+        assertEquals(24, result.get(0).offset);
+        assertEquals(15, result.get(9).offset);
+        assertEquals(15, evictedOffsets.size());
+        for (int i = 0; i < 15; ++i) {
+            assertEquals(i, (long) evictedOffsets.get(i));
+        }
+    }
+
+    /**
+     * Partition ring buffers store the (deduplicated) key per element.
+     */
+    @Test
+    public void storesKeysPerElement() {
+        RingBuffer ringBuffer = new RingBuffer(10, null);
+        String keyA = "a";
+        String keyB = "b";
+        ringBuffer.add(new byte[0], keyA, 3, 0, 0);
+        ringBuffer.add(new byte[0], keyB, 3, 1, 1);
+        List<DataStreamElement> result = collectAll(ringBuffer);
+        assertSame(keyB, result.get(0).key);
+        assertSame(keyA, result.get(1).key);
+        assertEquals(3, result.get(1).partition);
+    }
+
+    /**
+     * The limit caps the number of rendered elements and the rendering matches the JSON representation of DataStreamElement.
+     */
+    @Test
+    public void rendersLatestElementsAsJson() {
+        RingBuffer ringBuffer = new RingBuffer(10, "key");
+        addElements(ringBuffer, 5);
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(2, ringBuffer.appendConsumeResultJson(dataJsonArray, "topic", 2));
+        String expected = new DataStreamElement(new byte[]{4}, "key", "topic", 0, 4, 4).getConsumeResultJson() + "," + new DataStreamElement(new byte[]{3}, "key", "topic", 0, 3, 3).getConsumeResultJson();
+        assertEquals(expected, dataJsonArray.toString());
+    }
+
+    /**
+     * The sequence number returned by collect() only returns the elements which have been added since the previous call.
+     */
+    @Test
+    public void collectsIncrementallyWithSequence() {
+        RingBuffer ringBuffer = new RingBuffer(10, "key");
+        addElements(ringBuffer, 3);
+        List<DataStreamElement> result = new ArrayList<>();
+        long sequence = ringBuffer.collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 0, result);
+        assertEquals(3, result.size());
+
+        ringBuffer.add(new byte[0], "key", 0, 3, 3);
+        result.clear();
+        sequence = ringBuffer.collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, sequence, result);
+        assertEquals(1, result.size());
+        assertEquals(3, result.get(0).offset);
+        assertEquals(4, sequence);
+    }
+
+    /**
+     * Adds data stream elements with the given timestamps (offsets 0, 1, ...).
+     *
+     * @param ringBuffer Ring buffer
+     * @param timestamps Timestamps
+     */
+    private static void addElementsWithTimestamps(RingBuffer ringBuffer, long... timestamps) {
+        for (int i = 0; i < timestamps.length; ++i) {
+            ringBuffer.add(new byte[]{(byte) i}, ringBuffer.getKey(), 0, i, timestamps[i]);
+        }
+    }
+
+    /**
+     * A time range read returns the elements whose timestamps are in the time range (latest first).
+     */
+    @Test
+    public void collectsTimeRange() {
+        RingBuffer ringBuffer = new RingBuffer(100, "key");
+        addElements(ringBuffer, 50);
+        List<DataStreamElement> result = new ArrayList<>();
+        ringBuffer.collect("topic", Integer.MAX_VALUE, 10, 19, result);
+        assertEquals(10, result.size());
+        assertEquals(19, result.get(0).timestamp);
+        assertEquals(10, result.get(9).timestamp);
+
+        result.clear();
+        ringBuffer.collect("topic", 3, 10, 19, result);
+        assertEquals(3, result.size());
+        assertEquals(17, result.get(2).timestamp);
+    }
+
+    /**
+     * An out-of-order element whose timestamp is in the time range is returned even though a later element has a timestamp after the time range.
+     */
+    @Test
+    public void collectsOutOfOrderElementsInTimeRange() {
+        RingBuffer ringBuffer = new RingBuffer(100, "key");
+        addElementsWithTimestamps(ringBuffer, 10, 50, 20);
+        List<DataStreamElement> result = new ArrayList<>();
+        ringBuffer.collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, 30, result);
+        assertEquals(2, result.size());
+        assertEquals(20, result.get(0).timestamp);
+        assertEquals(10, result.get(1).timestamp);
+
+        result.clear();
+        ringBuffer.collect("topic", Integer.MAX_VALUE, 15, 30, result);
+        assertEquals(1, result.size());
+        assertEquals(20, result.get(0).timestamp);
+    }
+
+    /**
+     * The cursor returns the out-of-order elements in the time range as well.
+     */
+    @Test
+    public void cursorReturnsOutOfOrderElementsInTimeRange() {
+        RingBuffer ringBuffer = new RingBuffer(100, "key");
+        addElementsWithTimestamps(ringBuffer, 10, 50, 20, 60, 5);
+        StringBuffer dataJsonArray = new StringBuffer();
+        assertEquals(3, ringBuffer.openCursor("topic", 100, Long.MIN_VALUE, 30, null, null, null).appendConsumeResultJson(dataJsonArray, 100, false));
+        assertEquals(new DataStreamElement(new byte[]{4}, "key", "topic", 0, 4, 5).getConsumeResultJson() + "," + new DataStreamElement(new byte[]{2}, "key", "topic", 0, 2, 20).getConsumeResultJson() + ","
+                + new DataStreamElement(new byte[]{0}, "key", "topic", 0, 0, 10).getConsumeResultJson(), dataJsonArray.toString());
+    }
+
+    /**
+     * The topic-wide sequence read of the partition ring buffers returns the out-of-order elements in the time range as well.
+     */
+    @Test
+    public void collectsOutOfOrderElementsInTopicSequenceRange() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 100, null);
+        long[] timestamps = {10, 50, 20};
+        for (int i = 0; i < timestamps.length; ++i) {
+            topicBuffer.add(new DataStreamElement(new byte[0], "key", "topic", 0, i, timestamps[i]));
+        }
+        List<DataStreamElement> result = new ArrayList<>();
+        topicBuffer.collectForAll(Integer.MAX_VALUE, Long.MIN_VALUE, 30, 0, result);
+        assertEquals(2, result.size());
+        assertEquals(20, result.get(0).timestamp);
+        assertEquals(10, result.get(1).timestamp);
+    }
+
+    /**
+     * Extreme lateness does not overflow the bound of the binary search.
+     */
+    @Test
+    public void handlesExtremeLateness() {
+        RingBuffer ringBuffer = new RingBuffer(100, "key");
+        addElementsWithTimestamps(ringBuffer, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1, 0);
+        List<DataStreamElement> result = new ArrayList<>();
+        ringBuffer.collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, 30, result);
+        assertEquals(2, result.size());
+        assertEquals(0, result.get(0).timestamp);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the partition ring buffers of the TopicBuffer which are merged at read time for the reads of all keys.
+ */
+public class TopicBufferTest {
+
+    /**
+     * The partitions are merged latest first by timestamp, ties are resolved by the lower partition.
+     */
+    @Test
+    public void mergesPartitionsByTimestamp() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 10, null);
+        add(topicBuffer, 1, 0, 1000);
+        add(topicBuffer, 0, 0, 2000);
+        add(topicBuffer, 1, 1, 3000);
+        add(topicBuffer, 0, 1, 3000);
+        add(topicBuffer, 2, 0, 1500);
+
+        List<DataStreamElement> result = new ArrayList<>();
+        topicBuffer.collectForAll(Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 0, result);
+        assertEquals(5, result.size());
+        assertElement(result.get(0), 0, 1);
+        assertElement(result.get(1), 1, 1);
+        assertElement(result.get(2), 0, 0);
+        assertElement(result.get(3), 2, 0);
+        assertElement(result.get(4), 1, 0);
+
+        result.clear();
+        topicBuffer.collectForAll(2, 1200, 2500, 0, result);
+        assertEquals(2, result.size());
+        assertElement(result.get(0), 0, 0);
+        assertElement(result.get(1), 2, 0);
+    }
+
+    /**
+     * The topic-wide cursor returns every data stream element of all partitions exactly once across incremental calls.
+     */
+    @Test
+    public void collectsIncrementallyAcrossPartitions() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 10, null);
+        add(topicBuffer, 0, 0, 1000);
+        add(topicBuffer, 1, 0, 2000);
+
+        List<DataStreamElement> result = new ArrayList<>();
+        long cursor = topicBuffer.collectForAll(Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 0, result);
+        assertEquals(2, result.size());
+
+        add(topicBuffer, 1, 1, 3000);
+        add(topicBuffer, 0, 1, 500); // late data stream element of another partition
+        result.clear();
+        cursor = topicBuffer.collectForAll(Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, cursor, result);
+        assertEquals(2, result.size());
+        assertElement(result.get(0), 1, 1);
+        assertElement(result.get(1), 0, 1);
+
+        result.clear();
+        topicBuffer.collectForAll(Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, cursor, result);
+        assertTrue(result.isEmpty());
+    }
+
+    /**
+     * The rendered reads of all keys are merged like the collected ones and report the oldest buffered offset per partition.
+     */
+    @Test
+    public void rendersMergedPartitionsWithOldestOffsets() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 10, null);
+        add(topicBuffer, 0, 5, 1000);
+        add(topicBuffer, 1, 7, 2000);
+        add(topicBuffer, 0, 6, 3000);
+
+        StringBuffer dataJsonArray = new StringBuffer();
+        Map<Integer, Long> oldestOffsets = new HashMap<>();
+        assertEquals(3, topicBuffer.appendConsumeResultJsonForAll(dataJsonArray, 10, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets, null, null, null));
+        String json = dataJsonArray.toString();
+        assertTrue(json.indexOf("\"p\":0,\"o\":6") < json.indexOf("\"p\":1,\"o\":7"));
+        assertTrue(json.indexOf("\"p\":1,\"o\":7") < json.indexOf("\"p\":0,\"o\":5"));
+        assertEquals(Long.valueOf(5), oldestOffsets.get(0));
+        assertEquals(Long.valueOf(7), oldestOffsets.get(1));
+
+        StringBuffer cursorJsonArray = new StringBuffer();
+        assertEquals(2, topicBuffer.openCursorForAll(2, Long.MIN_VALUE, Long.MAX_VALUE, null, null, null).appendConsumeResultJson(cursorJsonArray, 2, false));
+        assertTrue(json.startsWith(cursorJsonArray.toString()));
+    }
+
+    /**
+     * Every partition has its own ring buffer, hence a busy partition does not evict the data stream elements of a quiet one.
+     */
+    @Test
+    public void evictsPerPartition() {
+        TopicBuffer topicBuffer = new TopicBuffer("topic", 3, null);
+        add(topicBuffer, 0, 0, 1000);
+        for (int i = 0; i < 10; ++i) {
+            add(topicBuffer, 1, i, 2000 + i);
+        }
+
+        List<DataStreamElement> quietPartition = new ArrayList<>();
+        topicBuffer.getRingBufferForPartition(0).collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, quietPartition);
+        assertEquals(1, quietPartition.size());
+        List<DataStreamElement> busyPartition = new ArrayList<>();
+        topicBuffer.getRingBufferForPartition(1).collect("topic", Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, busyPartition);
+        assertEquals(3, busyPartition.size());
+        assertEquals(2, topicBuffer.getRingBuffersForPartitions().size());
+
+        List<DataStreamElement> result = new ArrayList<>();
+        topicBuffer.collectForAll(Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 0, result);
+        assertEquals(4, result.size());
+        assertElement(result.get(3), 0, 0);
+    }
+
+    /**
+     * Adds a data stream element with the key "key" + partition.
+     *
+     * @param topicBuffer TopicBuffer
+     * @param partition   Partition
+     * @param offset      Offset
+     * @param timestamp   Timestamp
+     */
+    private static void add(TopicBuffer topicBuffer, int partition, long offset, long timestamp) {
+        topicBuffer.add(new DataStreamElement("content".getBytes(StandardCharsets.UTF_8), "key" + partition, "topic", partition, offset, timestamp));
+    }
+
+    /**
+     * Asserts the partition and the offset of a data stream element.
+     *
+     * @param dataStreamElement Data stream element
+     * @param partition         Expected partition
+     * @param offset            Expected offset
+     */
+    private static void assertElement(DataStreamElement dataStreamElement, int partition, long offset) {
+        assertEquals(partition, dataStreamElement.partition);
+        assertEquals(offset, dataStreamElement.offset);
+    }
+}
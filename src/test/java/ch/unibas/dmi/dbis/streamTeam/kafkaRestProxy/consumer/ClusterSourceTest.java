@@ -0,0 +1,131 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the topic naming and the source resolution of the ClusterSources.
+ */
+public class ClusterSourceTest {
+
+    /**
+     * Qualified topics of additional clusters are buffered as &lt;name&gt;:&lt;topic&gt; and resolve to their cluster and Kafka topic.
+     */
+    @Test
+    public void resolvesQualifiedTopics() {
+        List<ClusterSource> clusterSources = ClusterSource.createClusterSources(createProperties("qualified"));
+        assertEquals(2, clusterSources.size());
+        ClusterSource home = clusterSources.get(0);
+        ClusterSource eu = clusterSources.get(1);
+        assertEquals("eu", eu.name);
+        assertEquals("eu:9092", eu.getBrokerList());
+
+        DataStreamElement dataStreamElement = eu.ingest(createRecord("topic", 3, 7));
+        assertEquals("eu:topic", dataStreamElement.topic);
+        assertEquals(3, dataStreamElement.partition);
+        assertEquals(7, dataStreamElement.offset);
+        assertEquals("topic", eu.getKafkaTopic("eu:topic"));
+        assertNull(eu.getKafkaTopic("topic"));
+        assertSame(eu, ClusterSource.getSourceCluster(clusterSources, "eu:topic"));
+
+        assertEquals("topic", home.ingest(createRecord("topic", 0, 0)).topic);
+        assertSame(home, ClusterSource.getSourceCluster(clusterSources, "topic"));
+    }
+
+    /**
+     * Topics which no cluster has ingested (e.g., reflected by the RecordProducer) belong to the home cluster.
+     */
+    @Test
+    public void resolvesUningestedTopicsToHomeCluster() {
+        List<ClusterSource> clusterSources = ClusterSource.createClusterSources(createProperties("qualified"));
+        assertSame(clusterSources.get(0), ClusterSource.getSourceCluster(clusterSources, "reflectedTopic"));
+    }
+
+    /**
+     * Merged topics which are ingested from several clusters have no unique source (their partitions and offsets are ambiguous).
+     */
+    @Test
+    public void detectsTopicsOfSeveralClusters() {
+        List<ClusterSource> clusterSources = ClusterSource.createClusterSources(createProperties("merged"));
+        ClusterSource home = clusterSources.get(0);
+        ClusterSource eu = clusterSources.get(1);
+
+        assertEquals("topic", eu.ingest(createRecord("topic", 0, 0)).topic);
+        assertSame(eu, ClusterSource.getSourceCluster(clusterSources, "topic"));
+
+        home.ingest(createRecord("topic", 0, 0));
+        assertNull(ClusterSource.getSourceCluster(clusterSources, "topic"));
+    }
+
+    /**
+     * Only separators with a character which is illegal in Kafka topic names cannot collide with topic names.
+     */
+    @Test
+    public void checksSeparators() {
+        assertTrue(ClusterSource.isUnambiguousSeparator(":"));
+        assertTrue(ClusterSource.isUnambiguousSeparator("/"));
+        assertTrue(ClusterSource.isUnambiguousSeparator("._:"));
+        assertFalse(ClusterSource.isUnambiguousSeparator("."));
+        assertFalse(ClusterSource.isUnambiguousSeparator("__"));
+        assertFalse(ClusterSource.isUnambiguousSeparator("-x-"));
+        assertFalse(ClusterSource.isUnambiguousSeparator(""));
+    }
+
+    /**
+     * Creates the properties with the home cluster and the additional cluster eu.
+     *
+     * @param namespace Topic namespace of the additional cluster (qualified or merged)
+     * @return Properties
+     */
+    private static Properties createProperties(String namespace) {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("clusters", "eu");
+        properties.setProperty("clusters.namespace", namespace);
+        properties.setProperty("cluster.eu.brokerList", "eu:9092");
+        properties.setProperty("cluster.eu.topicPattern", ".*");
+        properties.setProperty("cluster.eu.consumerThreads", "1");
+        return properties;
+    }
+
+    /**
+     * Creates a consumed record.
+     *
+     * @param topic     Kafka topic
+     * @param partition Partition
+     * @param offset    Offset
+     * @return Record
+     */
+    private static ConsumerRecord<String, byte[]> createRecord(String topic, int partition, long offset) {
+        return new ConsumerRecord<>(topic, partition, offset, "key", "content".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the deep reads of the HistoricalFetcher with a MockConsumer.
+ */
+public class HistoricalFetcherTest {
+
+    /**
+     * MockConsumer which keeps its records such that they can be read again after a seek (the MockConsumer forgets the records after a poll).
+     */
+    private static class ReplayingConsumer extends MockConsumer<String, byte[]> {
+
+        /**
+         * Records per partition (ordered by offset)
+         */
+        private final Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> log;
+
+        /**
+         * Number of poll() calls
+         */
+        private int polls;
+
+        /**
+         * ReplayingConsumer constructor.
+         */
+        ReplayingConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+            this.log = new HashMap<>();
+            this.polls = 0;
+        }
+
+        /**
+         * Appends a record to the log of its partition.
+         *
+         * @param partition Partition
+         * @param key       Key
+         * @param timestamp Timestamp
+         */
+        void append(int partition, String key, long timestamp) {
+            TopicPartition topicPartition = new TopicPartition("topic", partition);
+            List<ConsumerRecord<String, byte[]>> records = this.log.computeIfAbsent(topicPartition, p -> new ArrayList<>());
+            records.add(new ConsumerRecord<>("topic", partition, records.size(), timestamp, TimestampType.CREATE_TIME, 0L, key.length(), 1, key, new byte[]{(byte) partition}));
+        }
+
+        /**
+         * Announces the partitions and their beginning and end offsets.
+         */
+        void publish() {
+            List<PartitionInfo> partitionInfos = new ArrayList<>();
+            Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+            Map<TopicPartition, Long> endOffsets = new HashMap<>();
+            for (Map.Entry<TopicPartition, List<ConsumerRecord<String, byte[]>>> entry : this.log.entrySet()) {
+                partitionInfos.add(new PartitionInfo("topic", entry.getKey().partition(), Node.noNode(), new Node[0], new Node[0]));
+                beginningOffsets.put(entry.getKey(), 0L);
+                endOffsets.put(entry.getKey(), (long) entry.getValue().size());
+            }
+            updatePartitions("topic", partitionInfos);
+            updateBeginningOffsets(beginningOffsets);
+            updateEndOffsets(endOffsets);
+        }
+
+        /**
+         * Polls the records of the assigned partitions from their current positions.
+         *
+         * @param timeout Timeout
+         * @return Records
+         */
+        @Override
+        public synchronized ConsumerRecords<String, byte[]> poll(Duration timeout) {
+            this.polls++;
+            for (TopicPartition topicPartition : assignment()) {
+                long position = position(topicPartition);
+                for (ConsumerRecord<String, byte[]> record : this.log.getOrDefault(topicPartition, Collections.emptyList())) {
+                    if (record.offset() >= position) {
+                        addRecord(record);
+                    }
+                }
+            }
+            return super.poll(timeout);
+        }
+    }
+
+    /**
+     * Creates a HistoricalFetcher with a single consumer and a chunk size of 10 offsets.
+     *
+     * @param consumer          Consumer
+     * @param maxScannedRecords Maximum number of scanned records per partition
+     * @return HistoricalFetcher
+     */
+    private static HistoricalFetcher createHistoricalFetcher(ReplayingConsumer consumer, int maxScannedRecords) {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("deepRead.chunkSize", "10");
+        properties.setProperty("deepRead.maxScannedRecords", Integer.toString(maxScannedRecords));
+        properties.setProperty("deepRead.acquireTimeout", "10");
+        return new HistoricalFetcher(properties, Collections.singletonList(consumer));
+    }
+
+    /**
+     * Reads all data stream elements of a cursor in small steps and closes it.
+     *
+     * @param cursor Cursor
+     * @return Data stream elements
+     */
+    private static List<DataStreamElement> readAll(DeepReadCursor cursor) {
+        List<DataStreamElement> result = new ArrayList<>();
+        while (cursor.next(3, result) == 3) {
+            // next step
+        }
+        cursor.close();
+        return result;
+    }
+
+    /**
+     * A deep read of all keys merges the partitions latest first and only returns the data stream elements which are older than the buffered ones.
+     */
+    @Test
+    public void mergesPartitionsLatestFirst() {
+        ReplayingConsumer consumer = new ReplayingConsumer();
+        for (int i = 0; i < 25; ++i) {
+            consumer.append(0, "a", 2 * i);
+            consumer.append(1, "b", 2 * i + 1);
+        }
+        consumer.publish();
+        HistoricalFetcher historicalFetcher = createHistoricalFetcher(consumer, 1000);
+
+        Map<Integer, Long> oldestOffsets = new HashMap<>();
+        oldestOffsets.put(0, 20L); // offsets 20..24 of partition 0 are buffered
+        List<DataStreamElement> result = readAll(historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets));
+        assertEquals(45, result.size());
+        assertEquals(49, result.get(0).timestamp); // partition 1 offset 24
+        assertEquals(1, result.get(0).partition);
+        for (int i = 1; i < result.size(); ++i) {
+            assertTrue(result.get(i - 1).timestamp > result.get(i).timestamp);
+        }
+        for (DataStreamElement dataStreamElement : result) {
+            assertTrue(dataStreamElement.partition == 1 || dataStreamElement.offset < 20);
+        }
+    }
+
+    /**
+     * A deep read of a key only reads the partitions of the key and filters by key and time range.
+     */
+    @Test
+    public void filtersByKeyAndTimeRange() {
+        ReplayingConsumer consumer = new ReplayingConsumer();
+        for (int i = 0; i < 30; ++i) {
+            consumer.append(0, i % 2 == 0 ? "a" : "c", i);
+            consumer.append(1, "b", i);
+        }
+        consumer.publish();
+        HistoricalFetcher historicalFetcher = createHistoricalFetcher(consumer, 1000);
+
+        List<DataStreamElement> result = readAll(historicalFetcher.openCursor("topic", "a", Long.MIN_VALUE, 15, Collections.singletonMap(0, 30L)));
+        assertEquals(8, result.size());
+        assertEquals(14, result.get(0).timestamp);
+        assertEquals(0, result.get(7).timestamp);
+        for (DataStreamElement dataStreamElement : result) {
+            assertEquals("a", dataStreamElement.key);
+        }
+    }
+
+    /**
+     * The chunks are fetched lazily, i.e., a small read does not scan the whole partition.
+     */
+    @Test
+    public void fetchesChunksLazily() {
+        ReplayingConsumer consumer = new ReplayingConsumer();
+        for (int i = 0; i < 1000; ++i) {
+            consumer.append(0, "a", i);
+        }
+        consumer.publish();
+        HistoricalFetcher historicalFetcher = createHistoricalFetcher(consumer, 100000);
+
+        DeepReadCursor cursor = historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>());
+        List<DataStreamElement> result = new ArrayList<>();
+        assertEquals(15, cursor.next(15, result));
+        cursor.close();
+        assertEquals(999, result.get(0).offset);
+        assertEquals(985, result.get(14).offset);
+        assertEquals(2, consumer.polls);
+    }
+
+    /**
+     * The number of scanned records per partition is bounded.
+     */
+    @Test
+    public void boundsScannedRecords() {
+        ReplayingConsumer consumer = new ReplayingConsumer();
+        for (int i = 0; i < 100; ++i) {
+            consumer.append(0, "a", i);
+        }
+        consumer.publish();
+        HistoricalFetcher historicalFetcher = createHistoricalFetcher(consumer, 20);
+        assertEquals(20, readAll(historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>())).size());
+    }
+
+    /**
+     * An open cursor holds its consumer, i.e., further deep reads are rejected until it is closed.
+     */
+    @Test
+    public void rejectsDeepReadsWhileAllConsumersAreBusy() {
+        ReplayingConsumer consumer = new ReplayingConsumer();
+        consumer.append(0, "a", 0);
+        consumer.publish();
+        HistoricalFetcher historicalFetcher = createHistoricalFetcher(consumer, 1000);
+
+        DeepReadCursor cursor = historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>());
+        assertNotNull(cursor);
+        assertNull(historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>()));
+        cursor.close();
+        cursor.close(); // closing twice does not return the consumer twice
+        DeepReadCursor nextCursor = historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>());
+        assertNotNull(nextCursor);
+        assertNull(historicalFetcher.openCursor("topic", null, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>()));
+        assertEquals(1, readAll(nextCursor).size());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.consumer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.LoadTestConsumer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.RecordGenerator;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.SyntheticRecordSource;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard.ConsistentHashRing;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the StreamConsumer with an injected Kafka consumer (record source of the load test).
+ */
+public class StreamConsumerTest {
+
+    /**
+     * Initializes the ShutdownHelper with which the KafkaRestProxy registers its components.
+     */
+    @BeforeClass
+    public static void initialize() {
+        ShutdownHelper.initialize();
+    }
+
+    /**
+     * The records of the injected consumer are subscribed, consumed and buffered without a Kafka cluster.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    @Test
+    public void buffersRecordsOfInjectedConsumer() throws InterruptedException {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("loadTest.topics", "2");
+        properties.setProperty("loadTest.partitions", "2");
+        properties.setProperty("loadTest.keyCardinality", "10");
+        properties.setProperty("loadTest.payloadSize", "32");
+
+        LoadTestConsumer consumer = new LoadTestConsumer();
+        KafkaRestProxy kafkaRestProxy = new KafkaRestProxy(properties, consumer);
+        RecordGenerator recordGenerator = new RecordGenerator(consumer, new SyntheticRecordSource(properties), 2000);
+        Thread recordGeneratorThread = new Thread(recordGenerator, "RecordGenerator");
+        recordGeneratorThread.start();
+        try {
+            assertTrue(TestHelper.waitUntil(() -> kafkaRestProxy.getTopics().size() == 2 && kafkaRestProxy.getDataStreamElements("topic0", null, 10).size() == 10 && kafkaRestProxy.getDataStreamElements("topic1", null, 10).size() == 10, 10000));
+        } finally {
+            recordGenerator.close();
+            recordGeneratorThread.join();
+        }
+
+        List<DataStreamElement> dataStreamElements = kafkaRestProxy.getDataStreamElements("topic0", null, 10);
+        for (DataStreamElement dataStreamElement : dataStreamElements) {
+            assertEquals("topic0", dataStreamElement.topic);
+            assertTrue(dataStreamElement.key.startsWith("key"));
+            assertEquals(32, dataStreamElement.content.length);
+            assertEquals(Integer.parseInt(dataStreamElement.key.substring(3)) % 2, dataStreamElement.partition);
+        }
+    }
+
+    /**
+     * A topic which moves to another node of the sharded proxy cluster and back is replayed from the beginning instead of the committed offset.
+     *
+     * @throws Exception Thrown if unable to start the health check server or if interrupted while waiting
+     */
+    @Test
+    public void replaysTopicWhichMovesBack() throws Exception {
+        AtomicInteger healthStatus = new AtomicInteger(503);
+        HttpServer node = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        node.createContext("/shard/health", exchange -> {
+            exchange.sendResponseHeaders(healthStatus.get(), -1);
+            exchange.close();
+        });
+        node.start();
+        String self = "http://localhost:5555";
+        String other = "http://127.0.0.1:" + node.getAddress().getPort();
+
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("shard.enabled", "true");
+        properties.setProperty("shard.self", self);
+        properties.setProperty("shard.nodes", self + "," + other);
+        properties.setProperty("shard.virtualNodes", "64");
+        properties.setProperty("shard.healthIntervalMillis", "20");
+        properties.setProperty("shard.healthTimeoutMillis", "500");
+        properties.setProperty("shard.failureThreshold", "1");
+        properties.setProperty("shard.cachedTopics", "10");
+        properties.setProperty("shard.secret", "secret");
+
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList(self, other), 64);
+        String topic = null;
+        for (int i = 0; topic == null; ++i) {
+            if (ring.getOwner("topic" + i).equals(other)) {
+                topic = "topic" + i;
+            }
+        }
+        String movingTopic = topic;
+        TopicPartition topicPartition = new TopicPartition(movingTopic, 0);
+
+        LoadTestConsumer consumer = new LoadTestConsumer();
+        synchronized (consumer) {
+            consumer.updatePartitions(movingTopic, Collections.singletonList(new PartitionInfo(movingTopic, 0, Node.noNode(), new Node[0], new Node[0])));
+            consumer.updateBeginningOffsets(Collections.singletonMap(topicPartition, 0L));
+        }
+        KafkaRestProxy kafkaRestProxy = new KafkaRestProxy(properties, consumer);
+        try {
+            // The other node is down, this node owns the topic and consumes its records
+            assertTrue(TestHelper.waitUntil(() -> consumer.subscription().contains(movingTopic), 10000));
+            assignAndAddRecords(consumer, topicPartition);
+            assertTrue(TestHelper.waitUntil(() -> kafkaRestProxy.getDataStreamElements(movingTopic, null, 100).size() == 10, 10000));
+
+            // The other node joins and takes over the topic
+            healthStatus.set(200);
+            assertTrue(TestHelper.waitUntil(() -> !consumer.subscription().contains(movingTopic), 10000));
+            assertFalse(kafkaRestProxy.getTopics().contains(movingTopic));
+
+            // The other node leaves again, the topic is replayed from the beginning (the records are still in the partition)
+            healthStatus.set(503);
+            assertTrue(TestHelper.waitUntil(() -> consumer.subscription().contains(movingTopic), 10000));
+            synchronized (consumer) {
+                consumer.commitSync(Collections.singletonMap(topicPartition, new OffsetAndMetadata(10))); // the group has committed the consumed records (the MockConsumer forgets its committed offsets on subscribe)
+            }
+            assignAndAddRecords(consumer, topicPartition);
+            assertTrue(TestHelper.waitUntil(() -> kafkaRestProxy.getDataStreamElements(movingTopic, null, 100).size() == 10, 10000));
+        } finally {
+            node.stop(0);
+        }
+    }
+
+    /**
+     * Assigns the partition (which calls the rebalance listener) and adds the records with the offsets 0 to 9 to it.
+     *
+     * @param consumer       LoadTestConsumer
+     * @param topicPartition Partition
+     */
+    private static void assignAndAddRecords(LoadTestConsumer consumer, TopicPartition topicPartition) {
+        synchronized (consumer) {
+            consumer.rebalance(Collections.singletonList(topicPartition));
+            for (int offset = 0; offset < 10; ++offset) {
+                consumer.addRecord(new ConsumerRecord<>(topicPartition.topic(), topicPartition.partition(), offset, "key" + offset, new byte[]{(byte) offset}));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the DecoderRegistry.
+ */
+public class DecoderRegistryTest {
+
+    /**
+     * Folder for the descriptor set file
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Without decoder.topics no topic has a decoder.
+     */
+    @Test
+    public void hasNoDecodersByDefault() {
+        DecoderRegistry decoderRegistry = new DecoderRegistry(TestHelper.createEmbeddedProperties());
+        assertNull(decoderRegistry.getDecoder("topic"));
+    }
+
+    /**
+     * JSON and protobuf decoders (including nested message types) are registered per topic.
+     *
+     * @throws Exception Thrown if the descriptor set file cannot be written or a content cannot be decoded
+     */
+    @Test
+    public void registersDecodersPerTopic() throws Exception {
+        File descriptorFile = this.temporaryFolder.newFile("test.desc");
+        try (OutputStream out = new FileOutputStream(descriptorFile)) {
+            DecoderTestHelper.createDescriptorSet().writeTo(out);
+        }
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("decoder.topics", "jsonTopic=json, pointTopic=protobuf:test.Point,tagTopic=protobuf:test.Point.Tag");
+        properties.setProperty("decoder.protobufDescriptorFile", descriptorFile.getAbsolutePath());
+        DecoderRegistry decoderRegistry = new DecoderRegistry(properties);
+
+        assertTrue(decoderRegistry.getDecoder("jsonTopic") instanceof JsonPassthroughDecoder);
+        assertTrue(decoderRegistry.getDecoder("pointTopic") instanceof ProtobufDecoder);
+        assertNull(decoderRegistry.getDecoder("otherTopic"));
+
+        assertEquals("{\"name\":\"b\"}", decoderRegistry.getDecoder("tagTopic").decodeToJson(createTag("b")));
+    }
+
+    /**
+     * Serializes a test.Point.Tag message.
+     *
+     * @param name Name of the tag
+     * @return Serialized message
+     * @throws IOException Thrown if the message type cannot be built
+     */
+    private static byte[] createTag(String name) throws IOException {
+        try {
+            Descriptors.Descriptor descriptor = Descriptors.FileDescriptor.buildFrom(DecoderTestHelper.createDescriptorSet().getFile(0), new Descriptors.FileDescriptor[0])
+                    .findMessageTypeByName("Point").findNestedTypeByName("Tag");
+            return DynamicMessage.newBuilder(descriptor).setField(descriptor.findFieldByName("name"), name).build().toByteArray();
+        } catch (Descriptors.DescriptorValidationException e) {
+            throw new IOException(e);
+        }
+    }
+}
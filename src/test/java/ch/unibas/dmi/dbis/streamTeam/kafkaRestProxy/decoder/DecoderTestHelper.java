@@ -0,0 +1,71 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import com.google.protobuf.DescriptorProtos;
+
+/**
+ * Helper methods of the decoder tests.
+ */
+class DecoderTestHelper {
+
+    /**
+     * Creates a descriptor set with the message type test.Point (int32 x = 1, string label = 2) and the nested message type test.Point.Tag (string name = 1).
+     *
+     * @return Descriptor set
+     */
+    static DescriptorProtos.FileDescriptorSet createDescriptorSet() {
+        DescriptorProtos.DescriptorProto tag = DescriptorProtos.DescriptorProto.newBuilder()
+                .setName("Tag")
+                .addField(createField("name", 1, DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING))
+                .build();
+        DescriptorProtos.DescriptorProto point = DescriptorProtos.DescriptorProto.newBuilder()
+                .setName("Point")
+                .addField(createField("x", 1, DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT32))
+                .addField(createField("label", 2, DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING))
+                .addNestedType(tag)
+                .build();
+        DescriptorProtos.FileDescriptorProto file = DescriptorProtos.FileDescriptorProto.newBuilder()
+                .setName("test.proto")
+                .setPackage("test")
+                .setSyntax("proto3")
+                .addMessageType(point)
+                .build();
+        return DescriptorProtos.FileDescriptorSet.newBuilder().addFile(file).build();
+    }
+
+    /**
+     * Creates an optional field.
+     *
+     * @param name   Name of the field
+     * @param number Number of the field
+     * @param type   Type of the field
+     * @return Field
+     */
+    private static DescriptorProtos.FieldDescriptorProto createField(String name, int number, DescriptorProtos.FieldDescriptorProto.Type type) {
+        return DescriptorProtos.FieldDescriptorProto.newBuilder()
+                .setName(name)
+                .setJsonName(name)
+                .setNumber(number)
+                .setType(type)
+                .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_OPTIONAL)
+                .build();
+    }
+}
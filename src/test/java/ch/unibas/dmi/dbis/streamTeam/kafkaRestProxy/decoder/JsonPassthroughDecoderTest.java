@@ -0,0 +1,70 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the JsonPassthroughDecoder.
+ */
+public class JsonPassthroughDecoderTest {
+
+    /**
+     * A valid JSON document is embedded as it is (without surrounding whitespace).
+     *
+     * @throws DecodingException Thrown if the content cannot be decoded
+     */
+    @Test
+    public void passesValidDocumentThrough() throws DecodingException {
+        JsonPassthroughDecoder decoder = new JsonPassthroughDecoder();
+        assertEquals("{\"x\":1,\"y\":[true,null]}", decoder.decodeToJson(" {\"x\":1,\"y\":[true,null]}\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("42", decoder.decodeToJson("42".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Invalid documents, multiple documents and lenient syntax are rejected.
+     */
+    @Test
+    public void rejectsInvalidDocuments() {
+        JsonPassthroughDecoder decoder = new JsonPassthroughDecoder();
+        for (String content : new String[]{"{\"x\":", "{} {}", "{x:1}", "'a'", ""}) {
+            try {
+                decoder.decodeToJson(content.getBytes(StandardCharsets.UTF_8));
+                throw new AssertionError("Decoded invalid content " + content);
+            } catch (DecodingException e) {
+                // expected
+            }
+            assertNull(decoder.decodeToJsonOrNull(content.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * A null content (tombstone) is not decoded.
+     */
+    @Test
+    public void skipsNullContent() {
+        assertNull(new JsonPassthroughDecoder().decodeToJsonOrNull(null));
+    }
+}
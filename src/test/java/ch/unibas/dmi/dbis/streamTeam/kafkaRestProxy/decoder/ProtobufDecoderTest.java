@@ -0,0 +1,78 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.decoder;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the ProtobufDecoder with a message type which is built at runtime.
+ */
+public class ProtobufDecoderTest {
+
+    /**
+     * Returns the descriptor of test.Point.
+     *
+     * @return Descriptor
+     * @throws Descriptors.DescriptorValidationException Thrown if the descriptor set is invalid
+     */
+    private static Descriptors.Descriptor getPointDescriptor() throws Descriptors.DescriptorValidationException {
+        return Descriptors.FileDescriptor.buildFrom(DecoderTestHelper.createDescriptorSet().getFile(0), new Descriptors.FileDescriptor[0]).findMessageTypeByName("Point");
+    }
+
+    /**
+     * A serialized message is printed as compact JSON.
+     *
+     * @throws Exception Thrown if the message type cannot be built or the content cannot be decoded
+     */
+    @Test
+    public void decodesMessage() throws Exception {
+        Descriptors.Descriptor descriptor = getPointDescriptor();
+        byte[] content = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("x"), 7)
+                .setField(descriptor.findFieldByName("label"), "a")
+                .build().toByteArray();
+
+        assertEquals("{\"x\":7,\"label\":\"a\"}", new ProtobufDecoder(descriptor).decodeToJson(content));
+    }
+
+    /**
+     * Content which is no valid message is rejected and null contents (tombstones) are not decoded.
+     *
+     * @throws Exception Thrown if the message type cannot be built
+     */
+    @Test
+    public void rejectsInvalidContent() throws Exception {
+        ProtobufDecoder decoder = new ProtobufDecoder(getPointDescriptor());
+        byte[] content = new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+        try {
+            decoder.decodeToJson(content);
+            throw new AssertionError("Decoded invalid content");
+        } catch (DecodingException e) {
+            // expected
+        }
+        assertNull(decoder.decodeToJsonOrNull(content));
+        assertNull(decoder.decodeToJsonOrNull(null));
+    }
+}
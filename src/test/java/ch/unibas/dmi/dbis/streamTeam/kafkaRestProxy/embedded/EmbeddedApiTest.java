@@ -0,0 +1,198 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.embedded;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.LoadTestConsumer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the embedded Java API of a KafkaRestProxy which runs without Jetty server (data stream elements are added via addToBuffer).
+ */
+public class EmbeddedApiTest {
+
+    /**
+     * KafkaRestProxy (new for every test)
+     */
+    private KafkaRestProxy kafkaRestProxy;
+
+    /**
+     * Initializes the ShutdownHelper with which the KafkaRestProxy registers its components.
+     */
+    @BeforeClass
+    public static void initialize() {
+        ShutdownHelper.initialize();
+    }
+
+    /**
+     * Creates the KafkaRestProxy (the constructor returns without blocking since the Jetty server is disabled).
+     */
+    @Before
+    public void createKafkaRestProxy() {
+        this.kafkaRestProxy = new KafkaRestProxy(TestHelper.createEmbeddedProperties(), new LoadTestConsumer());
+    }
+
+    /**
+     * The snapshot methods return the buffered data stream elements (latest first) and the latest data stream element per key.
+     */
+    @Test
+    public void returnsBufferedDataStreamElements() {
+        add("key1", 0, 1000);
+        add("key2", 1, 2000);
+        add("key1", 2, 3000);
+
+        List<DataStreamElement> all = this.kafkaRestProxy.getDataStreamElements("topic", null, 10);
+        assertEquals(3, all.size());
+        assertEquals(2, all.get(0).offset);
+        assertEquals(1, all.get(1).offset);
+        assertEquals(0, all.get(2).offset);
+
+        List<DataStreamElement> key1 = this.kafkaRestProxy.getDataStreamElements("topic", "key1", 1);
+        assertEquals(1, key1.size());
+        assertEquals(2, key1.get(0).offset);
+        assertEquals("content2", new String(key1.get(0).content, StandardCharsets.UTF_8));
+
+        assertEquals(1, this.kafkaRestProxy.getLatestDataStreamElement("topic", "key2").offset);
+        assertNull(this.kafkaRestProxy.getLatestDataStreamElement("topic", "unknownKey"));
+        assertNull(this.kafkaRestProxy.getLatestDataStreamElement("unknownTopic", "key1"));
+        assertTrue(this.kafkaRestProxy.getDataStreamElements("unknownTopic", null, 10).isEmpty());
+        assertTrue(this.kafkaRestProxy.getTopics().contains("topic"));
+    }
+
+    /**
+     * The cursor of collectDataStreamElements restricts the next call to the data stream elements which have been added since the previous call.
+     */
+    @Test
+    public void collectsIncrementallyWithCursor() {
+        add("key1", 0, 1000);
+        add("key2", 1, 2000);
+
+        List<DataStreamElement> result = new ArrayList<>();
+        long cursor = this.kafkaRestProxy.collectDataStreamElements("topic", null, 10, Long.MIN_VALUE, Long.MAX_VALUE, 0, result);
+        assertEquals(2, result.size());
+
+        add("key1", 2, 3000);
+        result.clear();
+        cursor = this.kafkaRestProxy.collectDataStreamElements("topic", null, 10, Long.MIN_VALUE, Long.MAX_VALUE, cursor, result);
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).offset);
+
+        result.clear();
+        this.kafkaRestProxy.collectDataStreamElements("topic", null, 10, Long.MIN_VALUE, Long.MAX_VALUE, cursor, result);
+        assertTrue(result.isEmpty());
+
+        result.clear();
+        this.kafkaRestProxy.collectDataStreamElements("topic", null, 10, 1500, 2500, 0, result);
+        assertEquals(1, result.size());
+        assertEquals(1, result.get(0).offset);
+    }
+
+    /**
+     * The version of collectLatestDataStreamElements restricts the next call to the keys which have been updated since the previous call.
+     */
+    @Test
+    public void collectsLatestIncrementallyWithVersion() {
+        add("key1", 0, 1000);
+        add("key2", 1, 2000);
+
+        List<DataStreamElement> result = new ArrayList<>();
+        long version = this.kafkaRestProxy.collectLatestDataStreamElements("topic", null, 0, result);
+        assertEquals(2, result.size());
+
+        add("key2", 2, 3000);
+        result.clear();
+        version = this.kafkaRestProxy.collectLatestDataStreamElements("topic", null, version, result);
+        assertEquals(1, result.size());
+        assertEquals("key2", result.get(0).key);
+        assertEquals(2, result.get(0).offset);
+
+        result.clear();
+        this.kafkaRestProxy.collectLatestDataStreamElements("topic", Collections.singletonList("key1"), 0, result);
+        assertEquals(1, result.size());
+        assertEquals("key1", result.get(0).key);
+    }
+
+    /**
+     * Listeners receive the new data stream elements of their topic-key-combination or of all keys until their subscription is closed.
+     */
+    @Test
+    public void notifiesListenersUntilClosed() {
+        List<DataStreamElement> keyElements = new ArrayList<>();
+        List<DataStreamElement> allElements = new ArrayList<>();
+        ListenerSubscription keySubscription = this.kafkaRestProxy.subscribe("topic", "key1", keyElements::add);
+        ListenerSubscription allSubscription = this.kafkaRestProxy.subscribe("topic", null, allElements::add);
+
+        add("key1", 0, 1000);
+        add("key2", 1, 2000);
+        assertEquals(1, keyElements.size());
+        assertEquals("key1", keyElements.get(0).key);
+        assertEquals(2, allElements.size());
+
+        keySubscription.close();
+        allSubscription.close();
+        add("key1", 2, 3000);
+        assertEquals(1, keyElements.size());
+        assertEquals(2, allElements.size());
+    }
+
+    /**
+     * An exception of a listener neither affects the ingestion nor the other listeners.
+     */
+    @Test
+    public void isolatesFailingListeners() {
+        List<DataStreamElement> received = new ArrayList<>();
+        ListenerSubscription failingSubscription = this.kafkaRestProxy.subscribe("topic", null, dataStreamElement -> {
+            throw new IllegalStateException("listener failure");
+        });
+        ListenerSubscription subscription = this.kafkaRestProxy.subscribe("topic", null, received::add);
+        try {
+            add("key1", 0, 1000);
+        } finally {
+            failingSubscription.close();
+            subscription.close();
+        }
+        assertEquals(1, received.size());
+        assertEquals(1, this.kafkaRestProxy.getDataStreamElements("topic", null, 10).size());
+    }
+
+    /**
+     * Adds a data stream element with the content "content" + offset to the partition 0 of the topic "topic".
+     *
+     * @param key       Key
+     * @param offset    Offset
+     * @param timestamp Timestamp
+     */
+    private void add(String key, long offset, long timestamp) {
+        this.kafkaRestProxy.addToBuffer(new DataStreamElement(("content" + offset).getBytes(StandardCharsets.UTF_8), key, "topic", 0, offset, timestamp));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ElementFilter and the ElementFilterCache.
+ */
+public class ElementFilterTest {
+
+    /**
+     * Decoded content of the tests
+     */
+    private static final String CONTENT = "{\"team\":\"A\",\"position\":{\"x\":60,\"y\":10}}";
+
+    /**
+     * All clauses have to match and the decoded content is passed through without projection.
+     */
+    @Test
+    public void appliesConjunction() {
+        ElementFilter filter = ElementFilter.compile("team==A,position.x>=52.5", null);
+        assertFalse(filter.isProjecting());
+        assertEquals(CONTENT, filter.apply(CONTENT));
+        assertNull(ElementFilter.compile("team==A,position.x<52.5", null).apply(CONTENT));
+        assertEquals(CONTENT, ElementFilter.compile(" , ", null).apply(CONTENT));
+    }
+
+    /**
+     * Contents which could not be decoded or are no valid JSON never match.
+     */
+    @Test
+    public void neverMatchesUndecodedContents() {
+        ElementFilter filter = ElementFilter.compile(null, null);
+        assertNull(filter.apply(null));
+        assertNull(filter.apply("{\"team\":"));
+    }
+
+    /**
+     * Projected contents only contain the selected (nested) fields.
+     */
+    @Test
+    public void projectsFields() {
+        ElementFilter filter = ElementFilter.compile("team==A", "team, position.x,missing");
+        assertTrue(filter.isProjecting());
+        assertEquals("{\"team\":\"A\",\"position\":{\"x\":60}}", filter.apply(CONTENT));
+
+        try {
+            ElementFilter.compile(null, " , ");
+            throw new AssertionError("Compiled empty projection");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The cache returns the compiled filter of a repeated query and evicts the least recently used query.
+     */
+    @Test
+    public void cachesCompiledFilters() {
+        ElementFilterCache cache = new ElementFilterCache(2);
+        ElementFilter first = cache.get("team==A", null);
+        assertSame(first, cache.get("team==A", null));
+        ElementFilter second = cache.get("team==A", "team");
+        assertNotSame(first, second);
+
+        cache.get("team==A", null); // first is now the most recently used query
+        cache.get("team==B", null); // evicts second
+        assertSame(first, cache.get("team==A", null));
+        assertNotSame(second, cache.get("team==A", "team"));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the FieldPredicate.
+ */
+public class FieldPredicateTest {
+
+    /**
+     * Decoded content of the tests
+     */
+    private static final JsonElement CONTENT = JsonParser.parseString("{\"team\":\"A\",\"number\":7,\"position\":{\"x\":52.5,\"y\":\"n/a\"},\"tags\":[1]}");
+
+    /**
+     * Checks if a filter clause matches the decoded content.
+     *
+     * @param clause Filter clause
+     * @return True if the clause matches
+     */
+    private static boolean matches(String clause) {
+        return FieldPredicate.compile(clause).matches(CONTENT);
+    }
+
+    /**
+     * Equality compares numbers numerically and everything else as string.
+     */
+    @Test
+    public void comparesEquality() {
+        assertTrue(matches("team==A"));
+        assertTrue(matches(" team == A "));
+        assertFalse(matches("team==B"));
+        assertTrue(matches("team!=B"));
+        assertTrue(matches("number==7.0"));
+        assertTrue(matches("position.x==52.5"));
+        assertFalse(matches("number!=7"));
+    }
+
+    /**
+     * Range operators compare numerically and never match non-numeric fields.
+     */
+    @Test
+    public void comparesRanges() {
+        assertTrue(matches("position.x>=52.5"));
+        assertFalse(matches("position.x>52.5"));
+        assertTrue(matches("position.x<=52.5"));
+        assertTrue(matches("number<8"));
+        assertFalse(matches("number<7"));
+        assertTrue(matches("number>-1"));
+        assertFalse(matches("position.y>=0"));
+        assertFalse(matches("team<1"));
+    }
+
+    /**
+     * Missing and non-primitive fields only match !=.
+     */
+    @Test
+    public void handlesMissingAndNonPrimitiveFields() {
+        assertFalse(matches("missing==A"));
+        assertTrue(matches("missing!=A"));
+        assertFalse(matches("position.z>=0"));
+        assertFalse(matches("team.x==A"));
+        assertFalse(matches("tags==1"));
+        assertFalse(matches("position!=A"));
+    }
+
+    /**
+     * Clauses without operator, without field or with a non-numeric range value are rejected.
+     */
+    @Test
+    public void rejectsInvalidClauses() {
+        for (String clause : new String[]{"team", "team=A", "==A", "number>=seven"}) {
+            try {
+                FieldPredicate.compile(clause);
+                throw new AssertionError("Compiled invalid clause " + clause);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
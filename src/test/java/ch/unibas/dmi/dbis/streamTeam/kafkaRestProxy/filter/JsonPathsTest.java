@@ -0,0 +1,61 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.filter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the JsonPaths.
+ */
+public class JsonPathsTest {
+
+    /**
+     * Nested fields are resolved along the path and missing paths return null.
+     */
+    @Test
+    public void getsNestedFields() {
+        JsonElement content = JsonParser.parseString("{\"a\":{\"b\":{\"c\":1}},\"d\":2}");
+        assertEquals("1", JsonPaths.get(content, new String[]{"a", "b", "c"}).toString());
+        assertEquals("{\"c\":1}", JsonPaths.get(content, new String[]{"a", "b"}).toString());
+        assertNull(JsonPaths.get(content, new String[]{"a", "x"}));
+        assertNull(JsonPaths.get(content, new String[]{"d", "x"}));
+        assertNull(JsonPaths.get(JsonParser.parseString("[1]"), new String[]{"a"}));
+    }
+
+    /**
+     * Copying creates the enclosing objects, merges siblings and skips missing fields.
+     */
+    @Test
+    public void copiesNestedFields() {
+        JsonElement content = JsonParser.parseString("{\"a\":{\"b\":1,\"c\":2,\"x\":3},\"d\":4}");
+        JsonObject target = new JsonObject();
+        JsonPaths.copy(content, target, new String[]{"a", "b"});
+        JsonPaths.copy(content, target, new String[]{"a", "c"});
+        JsonPaths.copy(content, target, new String[]{"d"});
+        JsonPaths.copy(content, target, new String[]{"missing", "e"});
+        assertEquals("{\"a\":{\"b\":1,\"c\":2},\"d\":4}", target.toString());
+    }
+}
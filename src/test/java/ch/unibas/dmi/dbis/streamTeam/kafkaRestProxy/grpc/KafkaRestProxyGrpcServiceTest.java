@@ -0,0 +1,227 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.LoadTestConsumer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ConsumeRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ConsumeResponse;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.KafkaRestProxyServiceGrpc;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListKeysRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListKeysResponse;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.ListTopicsRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.StreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.grpc.proto.SubscribeRequest;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the gRPC API with an embedded KafkaRestProxy whose buffer is filled via addToBuffer.
+ */
+public class KafkaRestProxyGrpcServiceTest {
+
+    /**
+     * KafkaRestProxy with the gRPC server
+     */
+    private static KafkaRestProxy kafkaRestProxy;
+
+    /**
+     * Channel to the gRPC server
+     */
+    private static ManagedChannel channel;
+
+    /**
+     * Blocking stub of the gRPC API
+     */
+    private static KafkaRestProxyServiceGrpc.KafkaRestProxyServiceBlockingStub blockingStub;
+
+    /**
+     * Starts a KafkaRestProxy with the gRPC server on a free port and buffers a data stream element with content and a tombstone.
+     *
+     * @throws IOException Thrown if unable to find a free port
+     */
+    @BeforeClass
+    public static void initialize() throws IOException {
+        ShutdownHelper.initialize();
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("grpc.enabled", "true");
+        properties.setProperty("grpc.port", Integer.toString(port));
+        kafkaRestProxy = new KafkaRestProxy(properties, new LoadTestConsumer());
+        kafkaRestProxy.addToBuffer(new DataStreamElement("content".getBytes(StandardCharsets.UTF_8), "key1", "topic", 0, 0, 1000));
+        kafkaRestProxy.addToBuffer(new DataStreamElement(null, "key2", "topic", 0, 1, 2000));
+
+        channel = ManagedChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+        blockingStub = KafkaRestProxyServiceGrpc.newBlockingStub(channel);
+    }
+
+    /**
+     * Closes the channel to the gRPC server.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting for the termination of the channel
+     */
+    @AfterClass
+    public static void close() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A data stream element with content is converted into a message with the content.
+     */
+    @Test
+    public void convertsContent() {
+        DataStreamElement dataStreamElement = new DataStreamElement("content".getBytes(StandardCharsets.UTF_8), "key", "topic", 2, 3, 4);
+        StreamElement message = KafkaRestProxyGrpcService.toMessage(dataStreamElement, true);
+        assertEquals("topic", message.getTopic());
+        assertEquals("key", message.getKey());
+        assertEquals(2, message.getPartition());
+        assertEquals(3, message.getOffset());
+        assertEquals(4, message.getTimestamp());
+        assertTrue(message.hasContent());
+        assertEquals("content", message.getContent().toStringUtf8());
+        assertTrue(message.getConflated());
+    }
+
+    /**
+     * A tombstone is converted into a message without content which is distinguishable from an empty content.
+     */
+    @Test
+    public void convertsTombstone() {
+        StreamElement tombstone = KafkaRestProxyGrpcService.toMessage(new DataStreamElement(null, "key", "topic", 0, 0, 0), false);
+        assertFalse(tombstone.hasContent());
+        assertTrue(tombstone.getContent().isEmpty());
+
+        StreamElement empty = KafkaRestProxyGrpcService.toMessage(new DataStreamElement(new byte[0], "key", "topic", 0, 0, 0), false);
+        assertTrue(empty.hasContent());
+        assertTrue(empty.getContent().isEmpty());
+    }
+
+    /**
+     * Consume returns the buffered data stream elements (latest first) including the tombstone.
+     */
+    @Test
+    public void consumesTombstones() {
+        ConsumeResponse response = blockingStub.consume(ConsumeRequest.newBuilder().setTopic("topic").setLimit(10).build());
+        assertEquals(2, response.getElementsCount());
+        assertEquals("key2", response.getElements(0).getKey());
+        assertFalse(response.getElements(0).hasContent());
+        assertEquals("key1", response.getElements(1).getKey());
+        assertEquals("content", response.getElements(1).getContent().toStringUtf8());
+
+        ConsumeResponse keyResponse = blockingStub.consume(ConsumeRequest.newBuilder().setTopic("topic").setKey("key2").setLimit(10).build());
+        assertEquals(1, keyResponse.getElementsCount());
+        assertFalse(keyResponse.getElements(0).hasContent());
+    }
+
+    /**
+     * ListTopics and ListKeys return the buffered topic and its keys (paged with max and after).
+     */
+    @Test
+    public void listsTopicsAndKeys() {
+        assertTrue(blockingStub.listTopics(ListTopicsRequest.newBuilder().build()).getTopicsList().contains("topic"));
+
+        ListKeysResponse firstPage = blockingStub.listKeys(ListKeysRequest.newBuilder().setTopic("topic").setMax(1).build());
+        assertEquals(1, firstPage.getKeysCount());
+        assertEquals("key1", firstPage.getAfter());
+        ListKeysResponse secondPage = blockingStub.listKeys(ListKeysRequest.newBuilder().setTopic("topic").setMax(1).setAfter(firstPage.getAfter()).build());
+        assertEquals(1, secondPage.getKeysCount());
+        assertEquals("key2", secondPage.getKeys(0));
+    }
+
+    /**
+     * Invalid requests are rejected with INVALID_ARGUMENT.
+     */
+    @Test
+    public void rejectsInvalidRequests() {
+        assertInvalidArgument(() -> blockingStub.consume(ConsumeRequest.newBuilder().setLimit(10).build()));
+        assertInvalidArgument(() -> blockingStub.consume(ConsumeRequest.newBuilder().setTopic("topic").build()));
+        assertInvalidArgument(() -> blockingStub.listKeys(ListKeysRequest.newBuilder().build()));
+        assertInvalidArgument(() -> blockingStub.listKeys(ListKeysRequest.newBuilder().setTopic("topic").setMax(-1).build()));
+    }
+
+    /**
+     * Subscribe streams new tombstones without content.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    @Test
+    public void streamsTombstones() throws InterruptedException {
+        List<StreamElement> received = new CopyOnWriteArrayList<>();
+        KafkaRestProxyServiceGrpc.newStub(channel).subscribe(SubscribeRequest.newBuilder().setTopic("subscribedTopic").build(), new StreamObserver<StreamElement>() {
+            @Override
+            public void onNext(StreamElement value) {
+                received.add(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        long[] offset = {0};
+        // the subscription is registered asynchronously, hence tombstones are published until the first one arrives
+        assertTrue(TestHelper.waitUntil(() -> {
+            kafkaRestProxy.addToBuffer(new DataStreamElement(null, "key", "subscribedTopic", 0, offset[0]++, 1000));
+            return !received.isEmpty();
+        }, 10000));
+        assertEquals("subscribedTopic", received.get(0).getTopic());
+        assertFalse(received.get(0).hasContent());
+    }
+
+    /**
+     * Asserts that the call fails with INVALID_ARGUMENT.
+     *
+     * @param call Call
+     */
+    private static void assertInvalidArgument(Runnable call) {
+        try {
+            call.run();
+            throw new AssertionError("INVALID_ARGUMENT expected");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the parsing of the AckMode.
+ */
+public class AckModeTest {
+
+    /**
+     * Acknowledgment modes are parsed case-insensitively and unknown modes are rejected.
+     */
+    @Test
+    public void parsesAckModes() {
+        assertEquals(AckMode.NONE, AckMode.parse("none"));
+        assertEquals(AckMode.ASYNC, AckMode.parse(" Async "));
+        assertEquals(AckMode.SYNC, AckMode.parse("SYNC"));
+        try {
+            AckMode.parse("all");
+            throw new AssertionError("Parsed unknown acknowledgment mode");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
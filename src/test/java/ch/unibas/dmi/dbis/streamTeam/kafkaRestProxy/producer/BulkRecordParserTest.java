@@ -0,0 +1,91 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the BulkRecordParser.
+ */
+public class BulkRecordParserTest {
+
+    /**
+     * Every non-empty line is parsed into a record with the key, the decoded value and the optional partition.
+     *
+     * @throws IOException Thrown if unable to read the body
+     */
+    @Test
+    public void parsesRecordPerLine() throws IOException {
+        String body = "{\"k\":\"player1\",\"v\":\"AAEC\"}\n\n{\"v\":\"AQ==\",\"p\":3}\r\n{\"k\":null,\"v\":\"\"}";
+        List<ProducerRecord<String, byte[]>> records = BulkRecordParser.parse("topic", new StringReader(body), 10);
+        assertEquals(3, records.size());
+
+        assertEquals("topic", records.get(0).topic());
+        assertEquals("player1", records.get(0).key());
+        assertArrayEquals(new byte[]{0, 1, 2}, records.get(0).value());
+        assertNull(records.get(0).partition());
+
+        assertNull(records.get(1).key());
+        assertArrayEquals(new byte[]{1}, records.get(1).value());
+        assertEquals(Integer.valueOf(3), records.get(1).partition());
+
+        assertNull(records.get(2).key());
+        assertEquals(0, records.get(2).value().length);
+    }
+
+    /**
+     * Invalid lines are reported with their line numbers and bodies with too many records are rejected.
+     *
+     * @throws IOException Thrown if unable to read the body
+     */
+    @Test
+    public void rejectsInvalidBodies() throws IOException {
+        assertRejected("{\"k\":\"a\",\"v\":\"AA==\"}\n[1]", "line 2 is not a JSON object.");
+        assertRejected("{\"k\":\"a\"}", "line 1 has no value (v).");
+        assertRejected("{\"v\":\"AA==\",\"p\":\"x\"}", "line 1 is not a valid record.");
+        assertRejected("{\"v\":", "line 1 is not a valid record.");
+        assertRejected("{\"v\":\"AA==\"}\n{\"v\":\"AA==\"}\n{\"v\":\"AA==\"}", "body contains more than 2 records.");
+    }
+
+    /**
+     * Asserts that a body is rejected.
+     *
+     * @param body    Body
+     * @param message Expected message
+     * @throws IOException Thrown if unable to read the body
+     */
+    private static void assertRejected(String body, String message) throws IOException {
+        try {
+            BulkRecordParser.parse("topic", new StringReader(body), 2);
+            throw new AssertionError("Parsed invalid body " + body);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
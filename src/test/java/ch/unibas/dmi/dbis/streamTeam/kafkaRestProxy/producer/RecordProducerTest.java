@@ -0,0 +1,121 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.producer;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the RecordProducer buffers every produced record exactly once regardless of whether the acknowledgment or the StreamConsumer comes first.
+ */
+public class RecordProducerTest {
+
+    /**
+     * MockProducer whose acknowledgments are completed by the tests
+     */
+    private MockProducer<String, byte[]> mockProducer;
+
+    /**
+     * Data stream elements which have been reflected
+     */
+    private List<DataStreamElement> reflected;
+
+    /**
+     * RecordProducer with reflection
+     */
+    private RecordProducer recordProducer;
+
+    /**
+     * Creates the RecordProducer with reflection.
+     */
+    @Before
+    public void createRecordProducer() {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("produce.reflect", "true");
+        this.mockProducer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        this.reflected = new ArrayList<>();
+        this.recordProducer = new RecordProducer(properties, this.mockProducer, this.reflected::add);
+    }
+
+    /**
+     * A record which is acknowledged before it is consumed is reflected and skipped by the StreamConsumer (once).
+     */
+    @Test
+    public void skipsConsumedRecordAfterReflection() {
+        send();
+        assertTrue(this.mockProducer.completeNext());
+        assertEquals(1, this.reflected.size());
+        assertEquals(0, this.reflected.get(0).offset);
+
+        assertTrue(this.recordProducer.consumeReflected("topic", 0, 0));
+        assertFalse(this.recordProducer.consumeReflected("topic", 0, 0)); // no longer tracked
+    }
+
+    /**
+     * A record which is consumed before its acknowledgment arrives is not reflected anymore.
+     */
+    @Test
+    public void skipsReflectionAfterConsumption() {
+        send();
+        assertFalse(this.recordProducer.consumeReflected("topic", 0, 0));
+        assertTrue(this.mockProducer.completeNext());
+        assertTrue(this.reflected.isEmpty());
+
+        send();
+        assertTrue(this.mockProducer.completeNext());
+        assertEquals(1, this.reflected.size());
+        assertEquals(1, this.reflected.get(0).offset);
+    }
+
+    /**
+     * Consumed records of topics without pending acknowledgments are neither skipped nor tracked.
+     */
+    @Test
+    public void ignoresRecordsOfOtherTopics() {
+        send();
+        assertFalse(this.recordProducer.consumeReflected("otherTopic", 0, 0));
+        assertTrue(this.mockProducer.completeNext());
+        assertEquals(1, this.reflected.size());
+        assertFalse(this.recordProducer.consumeReflected("otherTopic", 0, 0));
+    }
+
+    /**
+     * Sends a record with a key to the topic "topic".
+     */
+    private void send() {
+        List<ProducerRecord<String, byte[]>> records = Collections.singletonList(new ProducerRecord<>("topic", "key", "content".getBytes(StandardCharsets.UTF_8)));
+        this.recordProducer.send("topic", records, false);
+    }
+}
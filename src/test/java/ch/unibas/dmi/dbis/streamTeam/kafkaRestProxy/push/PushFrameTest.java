@@ -0,0 +1,96 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests the encoding of the PushFrames.
+ */
+public class PushFrameTest {
+
+    /**
+     * Decodes the header of a frame up to the timestamp and returns the remaining content bytes.
+     *
+     * @param frame             Frame
+     * @param dataStreamElement Expected data stream element
+     * @param flags             Expected flags
+     * @return Content bytes
+     */
+    private static byte[] assertHeader(byte[] frame, DataStreamElement dataStreamElement, byte flags) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        assertEquals(flags, buffer.get());
+        byte[] topic = new byte[buffer.getShort()];
+        buffer.get(topic);
+        assertEquals(dataStreamElement.topic, new String(topic, StandardCharsets.UTF_8));
+        byte[] key = new byte[buffer.getShort()];
+        buffer.get(key);
+        assertEquals(dataStreamElement.key, new String(key, StandardCharsets.UTF_8));
+        assertEquals(dataStreamElement.partition, buffer.getInt());
+        assertEquals(dataStreamElement.offset, buffer.getLong());
+        assertEquals(dataStreamElement.timestamp, buffer.getLong());
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return content;
+    }
+
+    /**
+     * A data stream element is encoded big-endian with the raw content as remaining bytes.
+     */
+    @Test
+    public void encodesDataStreamElement() {
+        DataStreamElement dataStreamElement = new DataStreamElement(new byte[]{1, 2, 3}, "käy", "topic", 2, 42, 1000);
+        byte[] frame = PushFrame.encode(dataStreamElement);
+        assertArrayEquals(new byte[]{1, 2, 3}, assertHeader(frame, dataStreamElement, (byte) 0));
+    }
+
+    /**
+     * A data stream element without content (tombstone) has no content bytes and the null content flag, an empty content has no flag.
+     */
+    @Test
+    public void flagsNullContent() {
+        DataStreamElement tombstone = new DataStreamElement(null, "key", "topic", 0, 7, 8);
+        assertEquals(0, assertHeader(PushFrame.encode(tombstone), tombstone, PushFrame.FLAG_NULL_CONTENT).length);
+
+        DataStreamElement empty = new DataStreamElement(new byte[0], "key", "topic", 0, 7, 8);
+        assertEquals(0, assertHeader(PushFrame.encode(empty), empty, (byte) 0).length);
+    }
+
+    /**
+     * The conflation flag is set on a copy such that the shared frame is not modified.
+     */
+    @Test
+    public void marksConflatedCopy() {
+        DataStreamElement tombstone = new DataStreamElement(null, "key", "topic", 0, 7, 8);
+        byte[] frame = PushFrame.encode(tombstone);
+        byte[] conflatedFrame = PushFrame.markConflated(frame);
+        assertEquals(PushFrame.FLAG_NULL_CONTENT, frame[0]);
+        assertEquals(PushFrame.FLAG_NULL_CONTENT | PushFrame.FLAG_CONFLATED, conflatedFrame[0]);
+        assertNotSame(frame, conflatedFrame);
+    }
+}
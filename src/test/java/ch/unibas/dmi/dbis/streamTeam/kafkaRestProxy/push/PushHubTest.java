@@ -0,0 +1,139 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.push;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the routing of the PushHub.
+ */
+public class PushHubTest {
+
+    /**
+     * Subscriber which records the offered data stream elements and frames.
+     */
+    private static class RecordingSubscriber implements PushSubscriber {
+
+        /**
+         * True if the subscriber uses the frames
+         */
+        private final boolean usesFrame;
+
+        /**
+         * Offered data stream elements
+         */
+        private final List<DataStreamElement> dataStreamElements = new ArrayList<>();
+
+        /**
+         * Offered frames
+         */
+        private final List<byte[]> frames = new ArrayList<>();
+
+        /**
+         * RecordingSubscriber constructor.
+         *
+         * @param usesFrame True if the subscriber uses the frames
+         */
+        private RecordingSubscriber(boolean usesFrame) {
+            this.usesFrame = usesFrame;
+        }
+
+        /**
+         * Returns if the subscriber uses the frames.
+         *
+         * @return True if the subscriber uses the frames
+         */
+        @Override
+        public boolean usesFrame() {
+            return this.usesFrame;
+        }
+
+        /**
+         * Records the offered data stream element and frame.
+         *
+         * @param dataStreamElement Data stream element
+         * @param frame             Frame or null
+         */
+        @Override
+        public void offer(DataStreamElement dataStreamElement, byte[] frame) {
+            this.dataStreamElements.add(dataStreamElement);
+            this.frames.add(frame);
+        }
+    }
+
+    /**
+     * Data stream elements are routed to the subscribers of their key and of all keys of their topic, a subscriber of both gets them only once.
+     */
+    @Test
+    public void routesPerTopicAndKey() {
+        PushHub pushHub = new PushHub(TestHelper.createEmbeddedProperties(), "all");
+        RecordingSubscriber keySubscriber = new RecordingSubscriber(false);
+        RecordingSubscriber allSubscriber = new RecordingSubscriber(false);
+        RecordingSubscriber bothSubscriber = new RecordingSubscriber(false);
+        pushHub.subscribe(keySubscriber, "topic", "a");
+        pushHub.subscribe(allSubscriber, "topic", "all");
+        pushHub.subscribe(bothSubscriber, "topic", "a");
+        pushHub.subscribe(bothSubscriber, "topic", "all");
+
+        pushHub.publish(new DataStreamElement(new byte[1], "a", "topic", 0, 0, 0));
+        pushHub.publish(new DataStreamElement(new byte[1], "b", "topic", 0, 1, 1));
+        pushHub.publish(new DataStreamElement(new byte[1], "a", "otherTopic", 0, 0, 0));
+
+        assertEquals(1, keySubscriber.dataStreamElements.size());
+        assertEquals(2, allSubscriber.dataStreamElements.size());
+        assertEquals(2, bothSubscriber.dataStreamElements.size());
+
+        pushHub.unsubscribe(keySubscriber, "topic", "a");
+        pushHub.unsubscribe(bothSubscriber, "topic", "a");
+        pushHub.publish(new DataStreamElement(new byte[1], "a", "topic", 0, 2, 2));
+        assertEquals(1, keySubscriber.dataStreamElements.size());
+        assertEquals(3, allSubscriber.dataStreamElements.size());
+        assertEquals(3, bothSubscriber.dataStreamElements.size());
+    }
+
+    /**
+     * The frame is only encoded if a subscriber uses it and is then shared by all subscribers, including tombstones.
+     */
+    @Test
+    public void sharesEncodedFrame() {
+        PushHub pushHub = new PushHub(TestHelper.createEmbeddedProperties(), "all");
+        RecordingSubscriber listener = new RecordingSubscriber(false);
+        RecordingSubscriber firstSession = new RecordingSubscriber(true);
+        RecordingSubscriber secondSession = new RecordingSubscriber(true);
+        pushHub.subscribe(listener, "topic", "all");
+        pushHub.publish(new DataStreamElement(new byte[1], "a", "topic", 0, 0, 0));
+        assertNull(listener.frames.get(0));
+
+        pushHub.subscribe(firstSession, "topic", "a");
+        pushHub.subscribe(secondSession, "topic", "all");
+        pushHub.publish(new DataStreamElement(null, "a", "topic", 0, 1, 1));
+        assertEquals(PushFrame.FLAG_NULL_CONTENT, firstSession.frames.get(0)[0]);
+        assertSame(firstSession.frames.get(0), secondSession.frames.get(0));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the per-client rate limit of the AdmissionHandler.
+ */
+public class AdmissionHandlerTest {
+
+    /**
+     * Clients are identified by their API key and get a 429 response with a Retry-After header once their token bucket is empty.
+     *
+     * @throws Exception Thrown if the server cannot be started or a call fails
+     */
+    @Test
+    public void limitsRatePerClient() throws Exception {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("admission.burst", "2");
+        properties.setProperty("admission.tokensPerSecond", "0.5");
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AdmissionHandler(new OkHandler(), null, properties)); // /topics calls do not estimate content sizes
+        server.start();
+        try {
+            int port = connector.getLocalPort();
+            assertEquals(200, call(port, "a").getResponseCode());
+            assertEquals(200, call(port, "a").getResponseCode());
+            HttpURLConnection rejected = call(port, "a");
+            assertEquals(429, rejected.getResponseCode());
+            assertEquals("2", rejected.getHeaderField("Retry-After"));
+            assertEquals(200, call(port, "b").getResponseCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sends a /topics call.
+     *
+     * @param port   Port of the server
+     * @param apiKey API key of the client
+     * @return Connection with the sent call
+     * @throws Exception Thrown if the call cannot be sent
+     */
+    private static HttpURLConnection call(int port, String apiKey) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/topics").openConnection();
+        connection.setRequestProperty("X-Api-Key", apiKey);
+        return connection;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.KafkaRestProxy;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.LoadTestConsumer;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.helper.ShutdownHelper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the dispatching and the load shedding of the DispatchHandler.
+ */
+public class DispatchHandlerTest {
+
+    /**
+     * Initializes the ShutdownHelper with which the KafkaRestProxy registers its components.
+     */
+    @BeforeClass
+    public static void initialize() {
+        ShutdownHelper.initialize();
+    }
+
+    /**
+     * Virtual threads are opt-in: without the Maven profile virtual-threads the REST API calls run on the Jetty threads.
+     */
+    @Test
+    public void disablesVirtualThreadsByDefault() {
+        assertEquals("false", TestHelper.createEmbeddedProperties().getProperty("server.virtualThreads"));
+    }
+
+    /**
+     * With virtual threads enabled the REST API calls are served on virtual threads (JDK 21+) or on the Jetty threads (older JDKs).
+     *
+     * @throws Exception Thrown if the server cannot be started or the call fails
+     */
+    @Test
+    public void servesCallsWithVirtualThreadsEnabled() throws Exception {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("server.virtualThreads", "true");
+        Server server = ServerFactoryTest.startServer(properties);
+        try {
+            HttpURLConnection connection = openConnection(server);
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                assertEquals("ok", new String(ServerFactoryTest.readFully(in), StandardCharsets.UTF_8));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * REST API calls beyond the concurrency limit are rejected with a 503 response and a Retry-After header.
+     *
+     * @throws Exception Thrown if the server cannot be started or the call fails
+     */
+    @Test
+    public void shedsLoadBeyondLimit() throws Exception {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("server.maxConcurrentRequests", "0");
+        properties.setProperty("server.retryAfterSeconds", "3");
+        Server server = ServerFactoryTest.startServer(properties);
+        try {
+            HttpURLConnection connection = openConnection(server);
+            assertEquals(503, connection.getResponseCode());
+            assertEquals("3", connection.getHeaderField("Retry-After"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Opens a connection for a /topics call.
+     *
+     * @param server Started server
+     * @return Connection
+     * @throws Exception Thrown if the connection cannot be opened
+     */
+    private static HttpURLConnection openConnection(Server server) throws Exception {
+        return (HttpURLConnection) new URL("http://localhost:" + ServerFactoryTest.getLocalPort(server) + "/topics").openConnection();
+    }
+
+    /**
+     * A /produce?ack=async call which is dispatched asynchronously releases its dispatch thread right away and is completed by the acknowledgment callback.
+     *
+     * @throws Exception Thrown if the server cannot be started or a call fails
+     */
+    @Test
+    public void completesAsyncAcknowledgmentsAfterDispatch() throws Exception {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("produce.enabled", "true");
+        MockProducer<String, byte[]> producer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        KafkaRestProxy kafkaRestProxy = new KafkaRestProxy(properties, new LoadTestConsumer(), producer);
+
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        ExecutorService dispatchExecutor = Executors.newSingleThreadExecutor(); // a second call can only be served after the first call has released the thread
+        server.setHandler(new DispatchHandler(new RequestHandler(kafkaRestProxy, properties), threadPool, 100, 1, dispatchExecutor));
+        server.start();
+        ExecutorService clientExecutor = Executors.newSingleThreadExecutor();
+        try {
+            URL produceUrl = new URL("http://localhost:" + connector.getLocalPort() + "/produce?t=topic&k=key&ack=async");
+            Future<String> produceResponse = clientExecutor.submit(() -> {
+                HttpURLConnection connection = (HttpURLConnection) produceUrl.openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(new byte[]{1, 2, 3});
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    return connection.getResponseCode() + " " + new String(ServerFactoryTest.readFully(in), StandardCharsets.UTF_8).trim();
+                }
+            });
+            assertTrue(TestHelper.waitUntil(() -> producer.history().size() == 1, 5000));
+
+            HttpURLConnection listTopics = (HttpURLConnection) new URL("http://localhost:" + connector.getLocalPort() + "/listTopics").openConnection();
+            listTopics.setReadTimeout(5000);
+            assertEquals(204, listTopics.getResponseCode());
+            assertFalse(produceResponse.isDone());
+
+            assertTrue(producer.completeNext());
+            assertEquals("200 {\"t\":\"topic\",\"d\":[{\"p\":0,\"o\":0}]}", produceResponse.get());
+        } finally {
+            clientExecutor.shutdownNow();
+            server.stop();
+            dispatchExecutor.shutdownNow();
+        }
+    }
+}
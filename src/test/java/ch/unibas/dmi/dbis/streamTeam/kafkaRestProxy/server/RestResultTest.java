@@ -0,0 +1,76 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the rendering of the RestResults.
+ */
+public class RestResultTest {
+
+    /**
+     * Streaming results are rendered while they are written and end with a line separator like materialized results.
+     *
+     * @throws IOException Thrown if unable to write the result
+     */
+    @Test
+    public void rendersStreamingResult() throws IOException {
+        RestResult restResult = RestResult.generateStreamingDataResult("topic", "key", writer -> {
+            writer.write("[");
+            writer.write("1,2");
+            writer.write("]");
+        });
+        assertEquals(200, restResult.httpStatusCode);
+        assertNull(restResult.content);
+
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(stringWriter)) {
+            restResult.writeTo(writer);
+        }
+        assertEquals("{\"t\":\"topic\",\"k\":\"key\",\"d\":[1,2]}" + System.lineSeparator(), stringWriter.toString());
+    }
+
+    /**
+     * Materialized results are written as they are and their encoded bytes are reused.
+     *
+     * @throws IOException Thrown if unable to write the result
+     */
+    @Test
+    public void writesMaterializedResult() throws IOException {
+        RestResult restResult = RestResult.generateNoDataResult("topic", "key");
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(stringWriter)) {
+            restResult.writeTo(writer);
+        }
+        assertEquals(restResult.content + System.lineSeparator(), stringWriter.toString());
+        assertEquals(stringWriter.toString(), new String(restResult.getContentBytes(), StandardCharsets.UTF_8));
+        assertSame(restResult.getContentBytes(), restResult.getContentBytes());
+    }
+}
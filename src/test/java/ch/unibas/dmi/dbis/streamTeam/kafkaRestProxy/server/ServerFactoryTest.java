@@ -0,0 +1,168 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the connectors of the Jetty server which is created by the ServerFactory.
+ */
+public class ServerFactoryTest {
+
+    /**
+     * Creates and starts a server on an ephemeral port.
+     *
+     * @param h2cEnabled True if HTTP/2 without TLS should be enabled
+     * @return Started server
+     * @throws Exception Thrown if the server cannot be started
+     */
+    static Server startServer(boolean h2cEnabled) throws Exception {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("http2.h2c.enabled", Boolean.toString(h2cEnabled));
+        return startServer(properties);
+    }
+
+    /**
+     * Creates and starts a server with an OkHandler on an ephemeral port.
+     *
+     * @param properties Properties
+     * @return Started server
+     * @throws Exception Thrown if the server cannot be started
+     */
+    static Server startServer(Properties properties) throws Exception {
+        properties.setProperty("jetty.port", "0");
+        Server server = ServerFactory.createServer(properties, new OkHandler());
+        server.start();
+        return server;
+    }
+
+    /**
+     * Returns the local port of the (only) connector of a started server.
+     *
+     * @param server Started server
+     * @return Local port
+     */
+    static int getLocalPort(Server server) {
+        return ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    /**
+     * HTTP/1.1 clients are served on the connector with h2c.
+     *
+     * @throws Exception Thrown if the server cannot be started or the call fails
+     */
+    @Test
+    public void servesHttp11() throws Exception {
+        Server server = startServer(true);
+        try {
+            assertTrue(server.getConnectors()[0].getProtocols().contains("h2c"));
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + getLocalPort(server) + "/topics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                assertEquals("ok", new String(readFully(in), StandardCharsets.UTF_8));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * A client with prior knowledge of h2c receives the SETTINGS frame with the configured concurrent-stream limit and stream window.
+     *
+     * @throws Exception Thrown if the server cannot be started or the connection fails
+     */
+    @Test
+    public void acceptsH2cPriorKnowledge() throws Exception {
+        Server server = startServer(true);
+        try (Socket socket = new Socket("localhost", getLocalPort(server))) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[]{0, 0, 0, 4, 0, 0, 0, 0, 0}); // empty SETTINGS frame
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int length = (in.readUnsignedShort() << 8) | in.readUnsignedByte();
+            assertEquals(4, in.readUnsignedByte()); // SETTINGS
+            assertEquals(0, in.readUnsignedByte()); // no ACK
+            assertEquals(0, in.readInt()); // connection stream
+            Map<Integer, Long> settings = new HashMap<>();
+            for (int i = 0; i < length / 6; ++i) {
+                settings.put(in.readUnsignedShort(), in.readInt() & 0xFFFFFFFFL);
+            }
+            assertEquals(Long.valueOf(256), settings.get(3)); // SETTINGS_MAX_CONCURRENT_STREAMS
+            assertEquals(Long.valueOf(524288), settings.get(4)); // SETTINGS_INITIAL_WINDOW_SIZE
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Without h2c the connector only speaks HTTP/1.1.
+     *
+     * @throws Exception Thrown if the server cannot be started
+     */
+    @Test
+    public void omitsH2cIfDisabled() throws Exception {
+        Server server = startServer(false);
+        try {
+            assertEquals(1, server.getConnectors().length);
+            assertEquals("[http/1.1]", server.getConnectors()[0].getProtocols().toString());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Reads an input stream until its end.
+     *
+     * @param in Input stream
+     * @return Read bytes
+     * @throws IOException Thrown if unable to read
+     */
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.server;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the TokenBucket with explicit times.
+ */
+public class TokenBucketTest {
+
+    /**
+     * One second in ns
+     */
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The bucket starts full, rejects calls which cost more than its tokens and reports the time until enough tokens are refilled.
+     */
+    @Test
+    public void limitsBursts() {
+        TokenBucket tokenBucket = new TokenBucket(10, 5, 0);
+        assertTrue(tokenBucket.isFull(0));
+        assertEquals(0, tokenBucket.tryAcquire(8, 0));
+        assertFalse(tokenBucket.isFull(0));
+        assertEquals(SECOND / 5 * 3, tokenBucket.tryAcquire(5, 0)); // 2 tokens left, 3 missing at 5 tokens/s
+        assertEquals(0, tokenBucket.tryAcquire(5, SECOND * 3 / 5));
+    }
+
+    /**
+     * The bucket is refilled with its rate up to its capacity and released tokens are returned up to the capacity.
+     */
+    @Test
+    public void refillsUpToCapacity() {
+        TokenBucket tokenBucket = new TokenBucket(10, 5, 0);
+        assertEquals(0, tokenBucket.tryAcquire(10, 0));
+        assertFalse(tokenBucket.isFull(SECOND));
+        assertTrue(tokenBucket.isFull(2 * SECOND));
+        assertTrue(tokenBucket.isFull(100 * SECOND));
+        assertTrue(tokenBucket.tryAcquire(11, 100 * SECOND) > 0);
+
+        assertEquals(0, tokenBucket.tryAcquire(4, 100 * SECOND));
+        tokenBucket.release(100);
+        assertTrue(tokenBucket.isFull(100 * SECOND));
+        assertEquals(0, tokenBucket.tryAcquire(10, 100 * SECOND));
+    }
+}
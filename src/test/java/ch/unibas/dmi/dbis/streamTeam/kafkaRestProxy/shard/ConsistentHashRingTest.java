@@ -0,0 +1,97 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the topic assignment of the ConsistentHashRing.
+ */
+public class ConsistentHashRingTest {
+
+    /**
+     * Number of topics which are assigned in the tests
+     */
+    private static final int TOPICS = 3000;
+
+    /**
+     * Rings with the same membership assign the topics equally regardless of the order of the nodes.
+     */
+    @Test
+    public void assignsDeterministically() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://b", "http://a", "http://c"), 64);
+        ConsistentHashRing sameRing = new ConsistentHashRing(Arrays.asList("http://c", "http://b", "http://a"), 64);
+        assertEquals(Arrays.asList("http://a", "http://b", "http://c"), ring.getNodes());
+        for (int i = 0; i < TOPICS; ++i) {
+            assertEquals(ring.getOwner("topic" + i), sameRing.getOwner("topic" + i));
+        }
+    }
+
+    /**
+     * The virtual nodes spread the topics roughly evenly across the nodes.
+     */
+    @Test
+    public void spreadsTopics() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://a", "http://b", "http://c"), 512);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < TOPICS; ++i) {
+            counts.merge(ring.getOwner("topic" + i), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue("unbalanced: " + counts, count > TOPICS / 3 * 0.7 && count < TOPICS / 3 * 1.3);
+        }
+    }
+
+    /**
+     * A leaving node only moves its own topics, the topics of the remaining nodes keep their owners.
+     */
+    @Test
+    public void movesOnlyTopicsOfLeavingNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://a", "http://b", "http://c"), 128);
+        ConsistentHashRing shrunkRing = new ConsistentHashRing(Arrays.asList("http://a", "http://c"), 128);
+        for (int i = 0; i < TOPICS; ++i) {
+            String owner = ring.getOwner("topic" + i);
+            String newOwner = shrunkRing.getOwner("topic" + i);
+            if (owner.equals("http://b")) {
+                assertTrue(newOwner.equals("http://a") || newOwner.equals("http://c"));
+            } else {
+                assertEquals(owner, newOwner);
+            }
+        }
+    }
+
+    /**
+     * A ring with a single node assigns all topics to it.
+     */
+    @Test
+    public void assignsAllTopicsToSingleNode() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://a"), 1);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals("http://a", ring.getOwner("topic" + i));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.shard;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the membership and the routing of the ShardRouter with a second node which answers the health checks.
+ */
+public class ShardRouterTest {
+
+    /**
+     * Base URL of this node
+     */
+    private static final String SELF = "http://localhost:5555";
+
+    /**
+     * Nodes which do not answer the health checks leave the ring, all topics are owned by the remaining node.
+     *
+     * @throws IOException Thrown if unable to find a free port
+     */
+    @Test
+    public void excludesUnreachableNodes() throws IOException {
+        String unreachable = "http://127.0.0.1:" + getFreePort();
+        ShardRouter shardRouter = new ShardRouter(createProperties(unreachable), () -> {
+        });
+        assertEquals(Collections.singletonList(SELF), shardRouter.getAliveNodes());
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(shardRouter.isOwner("topic" + i));
+        }
+    }
+
+    /**
+     * After a node has left, the cached owners are replaced together with the ring such that no topic is routed to the left node anymore.
+     *
+     * @throws Exception Thrown if unable to start the health check server or if interrupted while waiting
+     */
+    @Test
+    public void replacesCachedOwnersWithRing() throws Exception {
+        HttpServer node = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        node.createContext("/shard/health", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        node.start();
+        String other = "http://127.0.0.1:" + node.getAddress().getPort();
+
+        AtomicInteger membershipChanges = new AtomicInteger(0);
+        ShardRouter shardRouter = new ShardRouter(createProperties(other), membershipChanges::incrementAndGet);
+        Thread shardRouterThread = new Thread(shardRouter, "ShardRouter");
+        shardRouterThread.start();
+        try {
+            assertEquals(2, shardRouter.getAliveNodes().size());
+            assertTrue(shardRouter.getAliveNodes().contains(other));
+            String foreignTopic = null;
+            for (int i = 0; foreignTopic == null; ++i) {
+                if (!shardRouter.isOwner("topic" + i)) {
+                    foreignTopic = "topic" + i;
+                }
+            }
+            assertEquals(other, shardRouter.getOwner(foreignTopic)); // cached
+
+            node.stop(0);
+            assertTrue(TestHelper.waitUntil(() -> membershipChanges.get() == 1, 10000));
+            assertEquals(Collections.singletonList(SELF), shardRouter.getAliveNodes());
+            assertEquals(SELF, shardRouter.getOwner(foreignTopic));
+        } finally {
+            shardRouter.close();
+            shardRouterThread.join();
+            node.stop(0);
+        }
+    }
+
+    /**
+     * An empty shared secret is rejected since any client could then mark its calls as forwarded with an empty header.
+     *
+     * @throws IOException Thrown if unable to find a free port
+     */
+    @Test
+    public void rejectsEmptySecret() throws IOException {
+        Properties properties = createProperties("http://127.0.0.1:" + getFreePort());
+        properties.setProperty("shard.secret", "");
+        try {
+            new ShardRouter(properties, () -> {
+            });
+            throw new AssertionError("Empty shard.secret accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("shard.secret"));
+        }
+    }
+
+    /**
+     * Creates the properties of this node with one other node, fast health checks and a failure threshold of one.
+     *
+     * @param other Base URL of the other node
+     * @return Properties
+     */
+    private static Properties createProperties(String other) {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("shard.self", SELF);
+        properties.setProperty("shard.nodes", SELF + "," + other + "/");
+        properties.setProperty("shard.virtualNodes", "64");
+        properties.setProperty("shard.healthIntervalMillis", "20");
+        properties.setProperty("shard.healthTimeoutMillis", "500");
+        properties.setProperty("shard.failureThreshold", "1");
+        properties.setProperty("shard.cachedTopics", "10");
+        properties.setProperty("shard.secret", "secret");
+        return properties;
+    }
+
+    /**
+     * Returns a port on which nothing listens.
+     *
+     * @return Port
+     * @throws IOException Thrown if unable to open a socket
+     */
+    private static int getFreePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
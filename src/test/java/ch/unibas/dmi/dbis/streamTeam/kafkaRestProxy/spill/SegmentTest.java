@@ -0,0 +1,154 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the Segment of the SpillStore.
+ */
+public class SegmentTest {
+
+    /**
+     * Temporary directory for the segment files
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Creates a segment with an index entry every 64 bytes.
+     *
+     * @return Segment
+     * @throws IOException Thrown if the segment file cannot be created
+     */
+    private Segment createSegment() throws IOException {
+        return new Segment(new File(this.temporaryFolder.getRoot(), "segment"), 64, Long.MIN_VALUE);
+    }
+
+    /**
+     * Reads all data stream elements of a segment.
+     *
+     * @param segment Segment
+     * @param key     Key or null for all keys
+     * @param from    Start of the time range (inclusive)
+     * @param to      End of the time range (inclusive)
+     * @return Data stream elements (latest first)
+     * @throws IOException Thrown if the segment cannot be mapped
+     */
+    private static List<DataStreamElement> read(Segment segment, String key, long from, long to) throws IOException {
+        List<DataStreamElement> result = new ArrayList<>();
+        segment.read("topic", key == null ? null : key.getBytes("UTF-8"), Integer.MAX_VALUE, from, to, Collections.emptyMap(), result);
+        return result;
+    }
+
+    /**
+     * The records are read back latest first with all their fields.
+     *
+     * @throws IOException Thrown if the segment cannot be written or read
+     */
+    @Test
+    public void readsRecordsLatestFirst() throws IOException {
+        Segment segment = createSegment();
+        for (int i = 0; i < 100; ++i) {
+            segment.append(new DataStreamElement(new byte[]{(byte) i, 1, 2}, "key" + (i % 3), "topic", i % 2, i, 1000 + i));
+        }
+        List<DataStreamElement> result = read(segment, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(100, result.size());
+        DataStreamElement latest = result.get(0);
+        assertEquals(99, latest.offset);
+        assertEquals(1099, latest.timestamp);
+        assertEquals(1, latest.partition);
+        assertEquals("key0", latest.key);
+        assertEquals("topic", latest.topic);
+        assertArrayEquals(new byte[]{99, 1, 2}, latest.content);
+        segment.close();
+    }
+
+    /**
+     * Null keys and null contents (tombstones) are stored and read back as null.
+     *
+     * @throws IOException Thrown if the segment cannot be written or read
+     */
+    @Test
+    public void storesNullKeysAndNullContents() throws IOException {
+        Segment segment = createSegment();
+        segment.append(new DataStreamElement(new byte[]{1}, "key", "topic", 0, 0, 0));
+        segment.append(new DataStreamElement(null, "key", "topic", 0, 1, 1));
+        segment.append(new DataStreamElement(new byte[0], null, "topic", 0, 2, 2));
+        segment.append(new DataStreamElement(new byte[]{3}, "key", "topic", 0, 3, 3));
+
+        List<DataStreamElement> result = read(segment, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(4, result.size());
+        assertArrayEquals(new byte[]{3}, result.get(0).content);
+        assertNull(result.get(1).key);
+        assertEquals(0, result.get(1).content.length);
+        assertNull(result.get(2).content);
+        assertEquals("key", result.get(2).key);
+        assertArrayEquals(new byte[]{1}, result.get(3).content);
+
+        assertEquals(3, read(segment, "key", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        segment.close();
+    }
+
+    /**
+     * Only the records in the time range and older than the buffered data stream elements are read, at most limit records.
+     *
+     * @throws IOException Thrown if the segment cannot be written or read
+     */
+    @Test
+    public void filtersByTimeRangeOffsetsAndLimit() throws IOException {
+        Segment segment = createSegment();
+        for (int i = 0; i < 100; ++i) {
+            segment.append(new DataStreamElement(new byte[4], "key", "topic", i % 2, i, i));
+        }
+        List<DataStreamElement> result = read(segment, null, 20, 29);
+        assertEquals(10, result.size());
+        assertEquals(29, result.get(0).timestamp);
+        assertEquals(20, result.get(9).timestamp);
+
+        Map<Integer, Long> oldestOffsets = new HashMap<>();
+        oldestOffsets.put(0, 10L);
+        result.clear();
+        segment.read("topic", null, 3, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets, result);
+        assertEquals(3, result.size());
+        assertEquals(99, result.get(0).offset); // partition 1 has no buffered data stream elements
+        assertEquals(95, result.get(2).offset);
+
+        result.clear();
+        segment.read("topic", null, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets, result);
+        assertEquals(55, result.size());
+        segment.close();
+    }
+}
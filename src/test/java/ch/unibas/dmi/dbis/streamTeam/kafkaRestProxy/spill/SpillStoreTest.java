@@ -0,0 +1,90 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.spill;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.DataStreamElement;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.buffer.DataStreamBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the SpillStore with the evictions of a DataStreamBuffer.
+ */
+public class SpillStoreTest {
+
+    /**
+     * Temporary directory for the segment files
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The data stream elements evicted from the partition ring buffers and spilled tombstones are written by the writer thread and can be read back.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting
+     */
+    @Test
+    public void spillsEvictedDataStreamElements() throws InterruptedException {
+        Properties properties = TestHelper.createEmbeddedProperties();
+        properties.setProperty("spill.directory", this.temporaryFolder.getRoot().getAbsolutePath() + "/spill");
+        SpillStore spillStore = new SpillStore(properties);
+        Thread writerThread = new Thread(spillStore, "SpillStore");
+        writerThread.start();
+        try {
+            DataStreamBuffer dataStreamBuffer = new DataStreamBuffer(10, spillStore);
+            for (int i = 0; i < 30; ++i) {
+                dataStreamBuffer.add(new DataStreamElement(new byte[]{(byte) i}, "key" + (i % 2), "topic", 0, i, i));
+            }
+            spillStore.spill(new DataStreamElement(null, "key", "tombstones", 0, 0, 0));
+
+            Map<Integer, Long> oldestOffsets = new HashMap<>();
+            oldestOffsets.put(0, 20L);
+            assertTrue(TestHelper.waitUntil(() -> spillStore.read("topic", null, 100, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets).size() == 20, 5000));
+
+            List<DataStreamElement> result = spillStore.read("topic", null, 100, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets);
+            assertEquals(19, result.get(0).offset);
+            assertEquals(0, result.get(19).offset);
+            assertEquals(5, result.get(14).content[0]);
+
+            List<DataStreamElement> keyResult = spillStore.read("topic", "key1", 3, Long.MIN_VALUE, Long.MAX_VALUE, oldestOffsets);
+            assertEquals(3, keyResult.size());
+            assertEquals(19, keyResult.get(0).offset);
+            assertEquals(15, keyResult.get(2).offset);
+
+            assertTrue(TestHelper.waitUntil(() -> spillStore.read("tombstones", null, 100, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>()).size() == 1, 5000));
+            List<DataStreamElement> tombstones = spillStore.read("tombstones", null, 100, Long.MIN_VALUE, Long.MAX_VALUE, new HashMap<>());
+            assertNull(tombstones.get(0).content);
+        } finally {
+            spillStore.close();
+            writerThread.join();
+        }
+    }
+}
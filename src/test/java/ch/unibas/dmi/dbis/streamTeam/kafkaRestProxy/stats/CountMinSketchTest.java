@@ -0,0 +1,67 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the CountMinSketch.
+ */
+public class CountMinSketchTest {
+
+    /**
+     * The width is rounded up to the next power of two.
+     */
+    @Test
+    public void roundsWidthToPowerOfTwo() {
+        assertEquals(2048, new CountMinSketch(4, 2048).getWidth());
+        assertEquals(2048, new CountMinSketch(4, 1500).getWidth());
+        assertEquals(2, new CountMinSketch(4, 1).getWidth());
+    }
+
+    /**
+     * The estimates are exact without collisions and never underestimate with collisions.
+     */
+    @Test
+    public void neverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(4, 16);
+        int[] frequencies = new int[100];
+        for (int round = 0; round < 10; ++round) {
+            for (int i = 0; i < frequencies.length; ++i) {
+                if (i % 10 <= round) {
+                    frequencies[i]++;
+                    sketch.addAndEstimate("key" + i);
+                }
+            }
+        }
+        for (int i = 0; i < frequencies.length; ++i) {
+            assertTrue(sketch.addAndEstimate("key" + i) >= frequencies[i] + 1);
+        }
+
+        CountMinSketch wideSketch = new CountMinSketch(4, 1 << 16);
+        for (int i = 1; i <= 5; ++i) {
+            assertEquals(i, wideSketch.addAndEstimate("a"));
+        }
+        assertEquals(1, wideSketch.addAndEstimate("b"));
+    }
+}
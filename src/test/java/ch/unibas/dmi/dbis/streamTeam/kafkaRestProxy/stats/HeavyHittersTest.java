@@ -0,0 +1,60 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the HeavyHitters.
+ */
+public class HeavyHittersTest {
+
+    /**
+     * The most frequent keys are tracked (most frequent first) while rare keys are evicted from the top-K.
+     */
+    @Test
+    public void tracksMostFrequentKeys() {
+        HeavyHitters heavyHitters = new HeavyHitters(4, 1 << 16, 2);
+        for (int i = 0; i < 5; ++i) {
+            heavyHitters.add("b");
+        }
+        heavyHitters.add("c");
+        for (int i = 0; i < 10; ++i) {
+            heavyHitters.add("a");
+        }
+        heavyHitters.add("d");
+
+        StringBuffer jsonBuffer = new StringBuffer();
+        heavyHitters.appendJson(jsonBuffer);
+        assertEquals("{\"n\":17,\"e\":1,\"top\":[{\"k\":\"a\",\"c\":10},{\"k\":\"b\",\"c\":5}]}", jsonBuffer.toString());
+    }
+
+    /**
+     * Without occurrences the top-K is empty.
+     */
+    @Test
+    public void rendersEmptyTopK() {
+        StringBuffer jsonBuffer = new StringBuffer();
+        new HeavyHitters(4, 2048, 10).appendJson(jsonBuffer);
+        assertEquals("{\"n\":0,\"e\":0,\"top\":[]}", jsonBuffer.toString());
+    }
+}
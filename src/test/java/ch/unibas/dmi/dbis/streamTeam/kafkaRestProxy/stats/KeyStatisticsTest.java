@@ -0,0 +1,53 @@
+/*
+ * StreamTeam
+ * Copyright (C) 2019  University of Basel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.stats;
+
+import ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.TestHelper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the KeyStatistics.
+ */
+public class KeyStatisticsTest {
+
+    /**
+     * Ingests and reads are tracked per topic, reads of topics without ingested data stream elements are ignored.
+     */
+    @Test
+    public void tracksIngestsAndReadsPerTopic() {
+        KeyStatistics keyStatistics = new KeyStatistics(TestHelper.createEmbeddedProperties());
+        keyStatistics.countRead("topic", "a");
+        assertNull(keyStatistics.getReadStatsJson("topic"));
+
+        keyStatistics.countIngest("topic", "a");
+        keyStatistics.countIngest("topic", "a");
+        keyStatistics.countIngest("otherTopic", "b");
+        keyStatistics.countRead("topic", "a");
+
+        assertEquals("{\"n\":2,\"e\":1,\"top\":[{\"k\":\"a\",\"c\":2}]}", keyStatistics.getIngestStatsJson("topic"));
+        assertEquals("{\"n\":1,\"e\":1,\"top\":[{\"k\":\"b\",\"c\":1}]}", keyStatistics.getIngestStatsJson("otherTopic"));
+        assertEquals("{\"n\":1,\"e\":1,\"top\":[{\"k\":\"a\",\"c\":1}]}", keyStatistics.getReadStatsJson("topic"));
+        assertNull(keyStatistics.getReadStatsJson("otherTopic"));
+        assertNull(keyStatistics.getIngestStatsJson("unknownTopic"));
+    }
+}
@@ -0,0 +1,26 @@
+#!/bin/bash
+
+#
+# StreamTeam
+# Copyright (C) 2019  University of Basel
+#
+# This program is free software: you can redistribute it and/or modify
+# it under the terms of the GNU Affero General Public License as
+# published by the Free Software Foundation, either version 3 of the
+# License, or (at your option) any later version.
+#
+# This program is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+# GNU Affero General Public License for more details.
+#
+# You should have received a copy of the GNU Affero General Public License
+# along with this program.  If not, see <https://www.gnu.org/licenses/>.
+#
+
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+cd $DIR
+# The harness is part of the test sources (it is not shipped with the jar), hence it runs with the test classpath
+mvn -q -B test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+java -DlogFileName=footprintBenchmark -cp ./target/test-classes:./target/classes:$(cat ./target/test-classpath.txt) ch.unibas.dmi.dbis.streamTeam.kafkaRestProxy.benchmark.FootprintBenchmark